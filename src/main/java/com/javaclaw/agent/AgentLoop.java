@@ -2,24 +2,39 @@ package com.javaclaw.agent;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.javaclaw.approval.ApprovalInterceptor;
+import com.javaclaw.approval.DangerousOperation;
 import com.javaclaw.memory.MemoryStore;
 import com.javaclaw.providers.ChatRequest;
 import com.javaclaw.providers.ChatResponse;
 import com.javaclaw.providers.ModelProvider;
+import com.javaclaw.providers.ToolCallInfo;
+import com.javaclaw.shared.concurrent.Deadlines;
 import com.javaclaw.shared.model.AgentResponse;
-import com.javaclaw.tools.Tool;
+import com.javaclaw.tools.SpillStore;
 import com.javaclaw.tools.ToolContext;
+import com.javaclaw.tools.ToolOutputTool;
 import com.javaclaw.tools.ToolRegistry;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 public class AgentLoop {
 
     private static final int MAX_TOOL_ROUNDS = 10;
+    static final int DEFAULT_MAX_PARALLEL_TOOLS = 4;
+    static final long DEFAULT_SUMMARY_RESERVE_MS = 15_000;
+    static final String TIME_UP_PROMPT = "[Time limit reached] Do not call any more tools. Reply now with what "
+            + "you found so far, and say briefly what is left undone.";
+    static final String TIME_UP_REPLY = "Sorry, I ran out of time on this one before I could finish. "
+            + "Please ask again, perhaps with a narrower request.";
     private static final ObjectMapper MAPPER = new ObjectMapper();
 
     private final ModelProvider provider;
@@ -27,7 +42,11 @@ public class AgentLoop {
     private final ToolRegistry toolRegistry;
     private final ApprovalInterceptor approvalInterceptor;
     private final String workDir;
+    private final ToolDefinitionCache toolDefinitions;
     private MemoryStore memoryStore;
+    private SpillStore spillStore;
+    private volatile int maxParallelTools = DEFAULT_MAX_PARALLEL_TOOLS;
+    private volatile long summaryReserveMs = DEFAULT_SUMMARY_RESERVE_MS;
 
     public AgentLoop(ModelProvider provider, PromptBuilder promptBuilder,
                      ToolRegistry toolRegistry, String workDir,
@@ -35,6 +54,7 @@ public class AgentLoop {
         this.provider = provider;
         this.promptBuilder = promptBuilder;
         this.toolRegistry = toolRegistry;
+        this.toolDefinitions = toolRegistry != null ? new ToolDefinitionCache(toolRegistry) : null;
         this.workDir = workDir;
         this.approvalInterceptor = approvalInterceptor;
     }
@@ -43,6 +63,27 @@ public class AgentLoop {
         this.memoryStore = memoryStore;
     }
 
+    /**
+     * Oversized tool output is saved here and only a preview goes into the prompt and the
+     * session history; the model reads the rest through {@code tool_output}.
+     */
+    public void setSpillStore(SpillStore spillStore) {
+        this.spillStore = spillStore;
+    }
+
+    /**
+     * Time held back from a turn's deadline for the closing answer: tool rounds stop once
+     * only this much is left, and the model is asked to wrap up without tools.
+     */
+    public void setSummaryReserveMs(long summaryReserveMs) {
+        this.summaryReserveMs = Math.max(0, summaryReserveMs);
+    }
+
+    /** Caps how many parallel-safe tool calls of one round run at once; 1 runs every call in turn. */
+    public void setMaxParallelTools(int maxParallelTools) {
+        this.maxParallelTools = Math.max(1, maxParallelTools);
+    }
+
     public AgentResponse execute(String userMessage, List<Map<String, Object>> history,
                                   String sessionId, String channelId, String senderId) {
         return execute(userMessage, history, sessionId, channelId, senderId, null, null);
@@ -51,87 +92,198 @@ public class AgentLoop {
     public AgentResponse execute(String userMessage, List<Map<String, Object>> history,
                                   String sessionId, String channelId, String senderId,
                                   String systemPromptOverride, List<String> allowedTools) {
-        // Recall relevant memories and inject as context
-        var enrichedMessage = userMessage;
-        if (memoryStore != null) {
-            var memories = memoryStore.recall(userMessage, 3);
-            if (!memories.isEmpty()) {
-                var sb = new StringBuilder();
-                for (var m : memories) sb.append("- ").append(m.content()).append("\n");
-                enrichedMessage = "[Recalled memories]\n" + sb + "\n[User message]\n" + userMessage;
-            }
-        }
+        return execute(provider, userMessage, history, sessionId, channelId, senderId,
+                systemPromptOverride, allowedTools);
+    }
 
-        var messages = promptBuilder.build(enrichedMessage, history, systemPromptOverride);
+    /** Runs the turn against {@code provider} instead of the loop's default, e.g. the one for its model tier. */
+    public AgentResponse execute(ModelProvider provider, String userMessage, List<Map<String, Object>> history,
+                                  String sessionId, String channelId, String senderId,
+                                  String systemPromptOverride, List<String> allowedTools) {
+        return execute(provider, userMessage, history, sessionId, channelId, senderId,
+                systemPromptOverride, allowedTools, recall(userMessage), null);
+    }
+
+    /**
+     * Runs the turn with memories the caller already recalled (null for none), e.g. fetched
+     * concurrently with the session history, and within {@code deadline} (null for none).
+     * Model calls, tools and approval waits all shrink their timeouts to what is left; when
+     * time runs short the model gets one last call, without tools, to sum up.
+     */
+    public AgentResponse execute(ModelProvider provider, String userMessage, List<Map<String, Object>> history,
+                                  String sessionId, String channelId, String senderId,
+                                  String systemPromptOverride, List<String> allowedTools, String recalled,
+                                  Instant deadline) {
+        // Rounds stop short of the deadline so the closing answer still has time.
+        var workDeadline = deadline != null ? deadline.minusMillis(summaryReserveMs) : null;
+        var messages = promptBuilder.build(userMessage, recalled, history, systemPromptOverride, sessionId,
+                workDeadline);
         var tools = buildToolsDef(allowedTools);
         var allToolCalls = new ArrayList<Map<String, Object>>();
-        history.add(Map.of("role", "user", "content", userMessage));
+        history.add(Messages.of("user", userMessage));
+        boolean outOfTime = false;
 
         for (int round = 0; round < MAX_TOOL_ROUNDS; round++) {
-            var resp = provider.chat(new ChatRequest(null, messages, 0.7, tools));
+            if (Deadlines.expired(workDeadline)) {
+                outOfTime = true;
+                break;
+            }
+            // Tool output from earlier rounds can push the prompt past the budget; trim before every send.
+            promptBuilder.fit(messages, tools);
+            ChatResponse resp;
+            try {
+                resp = provider.chat(new ChatRequest(null, messages, 0.7, tools).withDeadline(workDeadline));
+            } catch (RuntimeException e) {
+                if (!Deadlines.expired(workDeadline)) throw e;
+                outOfTime = true;
+                break;
+            }
             if (!resp.hasToolCalls()) {
-                history.add(Map.of("role", "assistant", "content", resp.content()));
+                history.add(Messages.of("assistant", resp.content()));
                 storeMemory(userMessage, resp.content(), sessionId);
                 return new AgentResponse(resp.model(), resp.content(), allToolCalls, resp.usage());
             }
             var assistantMsg = buildAssistantMsg(resp);
             messages.add(assistantMsg);
             history.add(assistantMsg);
-            for (var tc : resp.toolCalls()) {
-                var result = executeTool(tc.name(), tc.arguments(), sessionId, channelId, senderId);
-                var toolMsg = Map.<String, Object>of("role", "tool", "tool_call_id", tc.id(), "content", result);
+            var results = executeTools(resp.toolCalls(), sessionId, channelId, senderId, workDeadline);
+            for (int i = 0; i < results.length; i++) {
+                var tc = resp.toolCalls().get(i);
+                var result = results[i];
+                var toolMsg = Messages.tool(tc.id(), result);
                 messages.add(toolMsg);
                 history.add(toolMsg);
                 allToolCalls.add(Map.of("tool", tc.name(), "input", tc.arguments(), "output", result));
             }
         }
-        var finalResp = provider.chat(new ChatRequest(null, messages, 0.7));
-        history.add(Map.of("role", "assistant", "content", finalResp.content()));
+        // A system nudge, so fit still sees the user's message as the current turn.
+        if (outOfTime) messages.add(Messages.of("system", TIME_UP_PROMPT));
+        promptBuilder.fit(messages, null);
+        ChatResponse finalResp;
+        try {
+            finalResp = provider.chat(new ChatRequest(null, messages, 0.7).withDeadline(deadline));
+        } catch (RuntimeException e) {
+            if (!outOfTime && !Deadlines.expired(deadline)) throw e;
+            finalResp = new ChatResponse(TIME_UP_REPLY, Map.of());
+        }
+        history.add(Messages.of("assistant", finalResp.content()));
         storeMemory(userMessage, finalResp.content(), sessionId);
         return new AgentResponse(finalResp.model(), finalResp.content(), allToolCalls, finalResp.usage());
     }
 
+    /** Memories relevant to {@code userMessage} as a bullet list, or null; PromptBuilder decides where they go. */
+    public String recall(String userMessage) {
+        if (memoryStore == null) return null;
+        var memories = memoryStore.recall(userMessage, 3);
+        if (memories.isEmpty()) return null;
+        var sb = new StringBuilder();
+        for (var m : memories) sb.append("- ").append(m.content()).append("\n");
+        return sb.toString();
+    }
+
     private List<Map<String, Object>> buildToolsDef(List<String> allowedTools) {
-        if (toolRegistry == null) return null;
-        var tools = new ArrayList<Map<String, Object>>();
-        for (Tool t : toolRegistry.all()) {
-            if (allowedTools != null && !allowedTools.contains(t.name())) continue;
-            var fn = new LinkedHashMap<String, Object>();
-            fn.put("name", t.name());
-            fn.put("description", t.description());
-            fn.put("parameters", MAPPER.convertValue(t.inputSchema(), Map.class));
-            tools.add(Map.of("type", "function", "function", fn));
-        }
-        return tools.isEmpty() ? null : tools;
+        return toolDefinitions != null ? toolDefinitions.get(allowedTools) : null;
     }
 
     private Map<String, Object> buildAssistantMsg(ChatResponse resp) {
-        var msg = new LinkedHashMap<String, Object>();
-        msg.put("role", "assistant");
-        msg.put("content", resp.content() != null ? resp.content() : "");
+        var msg = Messages.of("assistant", resp.content() != null ? resp.content() : "");
         var tcList = new ArrayList<Map<String, Object>>();
         for (var tc : resp.toolCalls()) {
-            tcList.add(Map.of(
-                    "id", tc.id(),
-                    "type", "function",
-                    "function", Map.of("name", tc.name(), "arguments", tc.arguments())));
+            var fn = new LinkedHashMap<String, Object>();
+            fn.put("name", tc.name());
+            fn.put("arguments", tc.arguments());
+            var call = new LinkedHashMap<String, Object>();
+            call.put("id", tc.id());
+            call.put("type", "function");
+            call.put("function", fn);
+            tcList.add(call);
         }
         msg.put("tool_calls", tcList);
         return msg;
     }
 
-    private String executeTool(String name, String argsJson, String sessionId, String channelId, String senderId) {
+    /**
+     * Runs one round's tool calls and returns their outputs in call order. A run of
+     * consecutive parallel-safe calls goes out together on virtual threads, at most
+     * {@code maxParallelTools} at a time; any other call waits for the calls before it
+     * and runs alone, so side effects and approval prompts keep the model's order.
+     */
+    private String[] executeTools(List<ToolCallInfo> calls, String sessionId, String channelId, String senderId,
+                                  Instant deadline) {
+        var results = new String[calls.size()];
+        int cap = maxParallelTools;
+        int i = 0;
+        while (i < calls.size()) {
+            int end = i;
+            while (cap > 1 && end < calls.size() && parallelSafe(calls.get(end))) end++;
+            if (end - i < 2) {
+                var tc = calls.get(i);
+                results[i] = executeTool(tc.name(), tc.arguments(), sessionId, channelId, senderId, deadline);
+                i++;
+                continue;
+            }
+            runConcurrently(calls, i, end, cap, results, sessionId, channelId, senderId, deadline);
+            i = end;
+        }
+        return results;
+    }
+
+    private void runConcurrently(List<ToolCallInfo> calls, int from, int to, int cap, String[] results,
+                                 String sessionId, String channelId, String senderId, Instant deadline) {
+        var permits = new Semaphore(cap);
+        var futures = new ArrayList<Future<String>>(to - from);
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = from; i < to; i++) {
+                var tc = calls.get(i);
+                futures.add(executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        return executeTool(tc.name(), tc.arguments(), sessionId, channelId, senderId, deadline);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+            for (int i = from; i < to; i++) {
+                try {
+                    results[i] = futures.get(i - from).get();
+                } catch (ExecutionException e) {
+                    results[i] = "[ERROR] " + e.getCause().getMessage();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    results[i] = "[ERROR] Interrupted";
+                }
+            }
+        }
+    }
+
+    private boolean parallelSafe(ToolCallInfo tc) {
+        var tool = toolRegistry != null ? toolRegistry.get(tc.name()) : null;
+        if (tool == null || tool.getClass().isAnnotationPresent(DangerousOperation.class)) return false;
+        try {
+            return tool.parallelSafe(MAPPER.readTree(tc.arguments()));
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private String executeTool(String name, String argsJson, String sessionId, String channelId, String senderId,
+                               Instant deadline) {
         if (toolRegistry == null) return "[ERROR] No tools registered";
         var tool = toolRegistry.get(name);
         if (tool == null) return "[ERROR] Unknown tool: " + name;
-        if (approvalInterceptor != null && !approvalInterceptor.check(tool, argsJson, channelId, senderId)) {
+        if (Deadlines.expired(deadline)) return "[TIMEOUT] Turn time limit reached; '" + name + "' was not run";
+        if (approvalInterceptor != null
+                && !approvalInterceptor.check(tool, argsJson, channelId, senderId, deadline)) {
             return "[DENIED] Tool '" + name + "' was not approved";
         }
         try {
-            var ctx = new ToolContext(workDir, sessionId, Set.of());
+            var ctx = new ToolContext(workDir, sessionId, Set.of(), deadline);
             var input = MAPPER.readTree(argsJson);
             var result = tool.execute(ctx, input);
-            return result.isError() ? "[ERROR] " + result.output() : result.output();
+            var output = result.isError() ? "[ERROR] " + result.output() : result.output();
+            // Pages of spilled output already fit; spilling them again would only hand back another handle.
+            return spillStore != null && !ToolOutputTool.NAME.equals(name) ? spillStore.spill(output) : output;
         } catch (Exception e) {
             return "[ERROR] " + e.getMessage();
         }
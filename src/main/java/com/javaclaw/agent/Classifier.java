@@ -1,8 +1,136 @@
 package com.javaclaw.agent;
 
+import com.javaclaw.providers.ChatRequest;
+import com.javaclaw.providers.ModelProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
+
+/**
+ * Labels each incoming message with the model tier that should answer it. Cheap
+ * heuristics decide the clear cases: greetings and short factual questions are
+ * trivial; code, long or multi-step requests and tool-heavy verbs are complex. Being
+ * short alone does not make a message trivial, so a terse command like "delete the
+ * old logs" is left undecided. Messages the heuristics can't place go to an optional
+ * small local model, and failing that to the standard tier.
+ */
 public class Classifier {
 
-    public boolean needsLlm(String message) {
-        return true;
+    private static final Logger log = LoggerFactory.getLogger(Classifier.class);
+
+    public enum Tier {
+        /** Greetings, acknowledgements, short factual lookups. */
+        TRIVIAL,
+        /** Ordinary conversation and single-step questions. */
+        STANDARD,
+        /** Code, multi-step or tool-heavy tasks. */
+        COMPLEX;
+
+        public static Tier parse(String name) {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    static final int TRIVIAL_MAX_CHARS = 80;
+    static final int COMPLEX_MIN_CHARS = 600;
+
+    private static final Pattern SMALL_TALK = Pattern.compile(
+            "(hi|hello|hey|yo|thanks|thank you|thx|ok|okay|cool|great|got it|good (morning|afternoon|evening|night)|bye"
+                    + "|你好|您好|嗨|哈喽|谢谢|多谢|好的|好|嗯|收到|早上好|晚上好|晚安|再见)[\\s!.,?~！。，？]*",
+            Pattern.CASE_INSENSITIVE);
+    /** A short question after a fact: "what is ...?", "who wrote ...?", "什么是...？". */
+    private static final Pattern LOOKUP = Pattern.compile(
+            "((what|who|when|where|which)('s|\\s)|whose\\s|how (many|much|old|far|long|tall|big)\\s).*\\?"
+                    + "|.*(什么|谁|哪|多少|几).*[?？吗]",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern CODE = Pattern.compile(
+            "```|\\b(class|def|function|SELECT|INSERT)\\b.*[{(;]|[\\w.-]+\\.(java|py|js|ts|go|rs|sql|ya?ml|json|sh)\\b"
+                    + "|(^|\\s)(~|\\.{1,2})?/[\\w.-]+/|https?://");
+    private static final Pattern ACTION = Pattern.compile(
+            "\\b(run|execute|install|deploy|build|compile|refactor|debug|fix|implement|migrate|benchmark|analy[sz]e"
+                    + "|write (a|an|the) (script|program|test|function)|search|browse|download|commit|clone)\\b"
+                    + "|运行|执行|安装|部署|编译|重构|调试|修复|实现|迁移|分析|搜索|下载|提交|写一个|编写",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern STEPS = Pattern.compile(
+            "(?m)^\\s*(\\d+[.)、]|[-*] )|\\b(and then|after that|step by step|first\\b.*\\bthen)\\b|首先|然后|步骤|接着",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern LABEL = Pattern.compile("\\b(trivial|standard|complex)\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern THINK = Pattern.compile("(?s)<think>.*?</think>");
+    private static final String CLASSIFY_PROMPT = """
+            Classify how hard the user's message is for an AI assistant with tools. \
+            Reply with exactly one word: trivial (greeting, thanks, short fact), \
+            standard (ordinary question or conversation), or complex (code, multi-step work, \
+            needs tools such as shell, files or web).""";
+
+    private final ModelProvider local;
+    private final String model;
+    private final long timeoutMs;
+
+    /** Heuristics only; messages they can't place are {@link Tier#STANDARD}. */
+    public Classifier() {
+        this(null, null, 0);
+    }
+
+    /** {@code local} (typically a small Ollama model) labels what the heuristics can't, within {@code timeoutMs}. */
+    public Classifier(ModelProvider local, String model, long timeoutMs) {
+        this.local = local;
+        this.model = model;
+        this.timeoutMs = timeoutMs;
+    }
+
+    public Tier classify(String message) {
+        var tier = heuristic(message);
+        if (tier != null) return tier;
+        if (local == null) return Tier.STANDARD;
+        return ask(message);
+    }
+
+    /** The tier if the message is clear-cut, else null. */
+    static Tier heuristic(String message) {
+        if (message == null) return Tier.TRIVIAL;
+        var text = message.strip();
+        if (text.isEmpty() || SMALL_TALK.matcher(text).matches()) return Tier.TRIVIAL;
+        if (text.length() >= COMPLEX_MIN_CHARS) return Tier.COMPLEX;
+
+        int signals = 0;
+        if (CODE.matcher(text).find()) signals += 2;
+        if (ACTION.matcher(text).find()) signals++;
+        if (STEPS.matcher(text).find()) signals++;
+        if (text.lines().count() >= 3) signals++;
+        if (signals >= 2) return Tier.COMPLEX;
+        if (signals == 0 && text.length() <= TRIVIAL_MAX_CHARS && text.lines().count() == 1
+                && LOOKUP.matcher(text).matches()) {
+            return Tier.TRIVIAL;
+        }
+        return null;
+    }
+
+    private Tier ask(String message) {
+        var request = new ChatRequest(model, List.of(
+                Map.of("role", "system", "content", CLASSIFY_PROMPT),
+                Map.of("role", "user", "content", message)), 0.0);
+        var future = local.chatAsync(request);
+        try {
+            var reply = future.get(timeoutMs, TimeUnit.MILLISECONDS).content();
+            var m = reply != null ? LABEL.matcher(THINK.matcher(reply).replaceAll("")) : null;
+            if (m != null && m.find()) return Tier.parse(m.group(1));
+            log.debug("Classifier model gave no tier: {}", reply);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            log.debug("Classifier model timed out after {}ms", timeoutMs);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | RuntimeException e) {
+            log.debug("Classifier model failed: {}", e.getMessage());
+        }
+        return Tier.STANDARD;
     }
 }
@@ -0,0 +1,188 @@
+package com.javaclaw.agent;
+
+import com.javaclaw.providers.ChatRequest;
+import com.javaclaw.providers.DeadlineExceededException;
+import com.javaclaw.providers.ModelProvider;
+import com.javaclaw.sessions.ConversationSummary;
+import com.javaclaw.sessions.SessionStore;
+import com.javaclaw.shared.concurrent.Deadlines;
+import com.javaclaw.shared.config.ContextConfig;
+import com.javaclaw.tokenizer.TokenCounter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compacts a session's history to {@code context.history-tokens} before it goes into a
+ * prompt. The last {@code recent-turns} user turns are always sent verbatim. When the
+ * rest does not fit, tool output of the older turns is stubbed out first; if that is
+ * still too much, the older turns are folded into a rolling summary, which is stored
+ * with the session so following turns reuse it until the verbatim tail outgrows the
+ * budget again. The stored history itself is never modified.
+ */
+public class ContextManager {
+
+    private static final Logger log = LoggerFactory.getLogger(ContextManager.class);
+
+    static final String SUMMARY_PREFIX = "[Summary of earlier conversation]\n";
+    static final String STALE_TOOL_OUTPUT = "[stale tool output dropped]";
+    private static final int MAX_TRANSCRIPT_CHARS = 2000;
+    private static final String SUMMARIZE_PROMPT = """
+            You maintain a running summary of a conversation between a user and an AI agent. \
+            Merge the existing summary (if any) with the new messages into one updated summary. \
+            Keep facts about the user, decisions made, file paths, commands, results and open tasks; \
+            drop pleasantries and raw tool output. Write in the user's language, as terse bullet points, \
+            at most 300 words. Reply with the summary only.""";
+
+    private final ModelProvider summarizer;
+    private final TokenCounter tokenCounter;
+    private final SessionStore store;
+    private final ContextConfig config;
+
+    /** {@code summarizer} and {@code store} may be null: old turns are then dropped, or summaries not kept. */
+    public ContextManager(ModelProvider summarizer, TokenCounter tokenCounter, SessionStore store,
+                          ContextConfig config) {
+        this.summarizer = summarizer;
+        this.tokenCounter = tokenCounter;
+        this.store = store;
+        this.config = config;
+    }
+
+    /** The messages to send in place of {@code history}; a new list, {@code history} is left as is. */
+    public List<Map<String, Object>> compact(String sessionId, List<Map<String, Object>> history) {
+        return compact(sessionId, history, null);
+    }
+
+    /**
+     * As above, with summarizer calls bounded by {@code deadline} (null for none); a summary
+     * that can't finish in time drops the older turns instead.
+     */
+    public List<Map<String, Object>> compact(String sessionId, List<Map<String, Object>> history,
+                                             Instant deadline) {
+        if (history == null || history.isEmpty()) return history;
+        var summary = loadSummary(sessionId, history.size());
+        int start = summary != null ? summary.coveredMessages() : 0;
+        int recent = recentStart(history, start);
+
+        var verbatim = window(summary, history, start, recent, false);
+        if (fits(verbatim) || recent == start) return verbatim;
+
+        var stubbed = window(summary, history, start, recent, true);
+        if (fits(stubbed)) return stubbed;
+
+        // Older turns still don't fit: fold them into the summary and keep only the recent ones.
+        String content = summary != null ? summary.content() : null;
+        if (config.summarize() && summarizer != null) {
+            try {
+                content = summarize(content, history.subList(start, recent), deadline);
+                var updated = new ConversationSummary(recent, content);
+                if (store != null && sessionId != null) store.saveSummary(sessionId, updated);
+                return window(updated, history, recent, recent, false);
+            } catch (RuntimeException e) {
+                log.warn("Summarizing session {} failed, dropping {} older messages: {}",
+                        sessionId, recent - start, e.getMessage());
+            }
+        }
+        return window(summary, history, recent, recent, false);
+    }
+
+    private ConversationSummary loadSummary(String sessionId, int historySize) {
+        if (store == null || sessionId == null) return null;
+        try {
+            var summary = store.loadSummary(sessionId);
+            // A summary covering more than exists belongs to a history that was since replaced.
+            return summary != null && summary.coveredMessages() <= historySize ? summary : null;
+        } catch (RuntimeException e) {
+            log.warn("Failed to load summary for session {}: {}", sessionId, e.getMessage());
+            return null;
+        }
+    }
+
+    /** Index of the first message of the last {@code recent-turns} user turns, never below {@code from}. */
+    private int recentStart(List<Map<String, Object>> history, int from) {
+        int keep = Math.max(config.recentTurns(), 1);
+        int turns = 0;
+        for (int i = history.size() - 1; i > from; i--) {
+            if ("user".equals(history.get(i).get("role")) && ++turns == keep) return i;
+        }
+        return from;
+    }
+
+    /** Summary (if any), then history from {@code start}, with tool output before {@code recent} optionally stubbed. */
+    private static List<Map<String, Object>> window(ConversationSummary summary, List<Map<String, Object>> history,
+                                                    int start, int recent, boolean stubOld) {
+        var out = new ArrayList<Map<String, Object>>(history.size() - start + 1);
+        if (summary != null) out.add(Messages.of("system", SUMMARY_PREFIX + summary.content()));
+        for (int i = start; i < history.size(); i++) {
+            var msg = history.get(i);
+            if (stubOld && i < recent && "tool".equals(msg.get("role"))) {
+                var stub = new LinkedHashMap<>(msg);
+                stub.put("content", STALE_TOOL_OUTPUT);
+                msg = stub;
+            }
+            out.add(msg);
+        }
+        return out;
+    }
+
+    private boolean fits(List<Map<String, Object>> messages) {
+        return tokenCounter.countMessages(messages) <= config.historyTokens();
+    }
+
+    /** Folds {@code messages} into {@code previous} a budget-sized chunk at a time. */
+    private String summarize(String previous, List<Map<String, Object>> messages, Instant deadline) {
+        var summary = previous;
+        var chunk = new StringBuilder();
+        int chunkTokens = 0;
+        for (var msg : messages) {
+            var line = transcriptLine(msg);
+            int lineTokens = tokenCounter.count(line);
+            if (chunkTokens > 0 && chunkTokens + lineTokens > config.historyTokens()) {
+                summary = summarizeChunk(summary, chunk.toString(), deadline);
+                chunk.setLength(0);
+                chunkTokens = 0;
+            }
+            chunk.append(line);
+            chunkTokens += lineTokens;
+        }
+        if (chunkTokens > 0) summary = summarizeChunk(summary, chunk.toString(), deadline);
+        return summary;
+    }
+
+    private String summarizeChunk(String previous, String transcript, Instant deadline) {
+        if (Deadlines.expired(deadline)) throw new DeadlineExceededException(summarizer.id(), null);
+        var input = (previous != null ? "Existing summary:\n" + previous + "\n\n" : "")
+                + "New messages:\n" + transcript;
+        var resp = summarizer.chat(new ChatRequest(config.summaryModel(), List.of(
+                Map.of("role", "system", "content", SUMMARIZE_PROMPT),
+                Map.of("role", "user", "content", input)), 0.2).withDeadline(deadline));
+        if (resp.content() == null || resp.content().isBlank()) {
+            throw new IllegalStateException("empty summary");
+        }
+        return resp.content().strip();
+    }
+
+    private static String transcriptLine(Map<String, Object> msg) {
+        var sb = new StringBuilder().append(msg.get("role")).append(": ");
+        var content = msg.get("content");
+        if (content != null) sb.append(truncate(String.valueOf(content)));
+        if (msg.get("tool_calls") instanceof List<?> calls) {
+            for (var call : calls) {
+                if (call instanceof Map<?, ?> c && c.get("function") instanceof Map<?, ?> fn) {
+                    sb.append(" [calls ").append(fn.get("name")).append(' ')
+                            .append(truncate(String.valueOf(fn.get("arguments")))).append(']');
+                }
+            }
+        }
+        return sb.append('\n').toString();
+    }
+
+    private static String truncate(String s) {
+        return s.length() <= MAX_TRANSCRIPT_CHARS ? s : s.substring(0, MAX_TRANSCRIPT_CHARS) + "…";
+    }
+}
@@ -5,22 +5,51 @@ import com.javaclaw.memory.MemoryStore;
 import com.javaclaw.observability.CostTracker;
 import com.javaclaw.providers.ModelProvider;
 import com.javaclaw.sessions.SessionStore;
+import com.javaclaw.shared.concurrent.Deadlines;
 import com.javaclaw.shared.model.AgentRequest;
 import com.javaclaw.shared.model.AgentResponse;
 import com.javaclaw.skills.SkillRegistry;
+import com.javaclaw.tools.SpillStore;
 import com.javaclaw.tools.ToolRegistry;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 
 public class DefaultAgentOrchestrator implements AgentOrchestrator {
 
+    private static final Logger log = LoggerFactory.getLogger(DefaultAgentOrchestrator.class);
+
+    /** Per tier: turns answered, their mean and worst wall-clock latency, and the cost of their final calls. */
+    public record TierStats(long turns, double avgLatencyMs, long maxLatencyMs, double costUsd) {}
+
+    static final long DEFAULT_RECALL_BUDGET_MS = 500;
+
     private final AgentLoop agentLoop;
-    private final Classifier classifier;
+    private final ModelProvider provider;
+    private volatile Classifier classifier = new Classifier();
+    private final Map<Classifier.Tier, ModelProvider> tierProviders = new EnumMap<>(Classifier.Tier.class);
+    private final Map<Classifier.Tier, TierCounters> tierCounters = new EnumMap<>(Classifier.Tier.class);
     private final SessionStore sessionStore;
     private final CostTracker costTracker;
     private SkillRegistry skillRegistry;
+    private volatile long recallBudgetMs = DEFAULT_RECALL_BUDGET_MS;
+    private final LongAdder recallTimeouts = new LongAdder();
 
     public DefaultAgentOrchestrator(ModelProvider provider, ToolRegistry toolRegistry,
                                     String workDir, SessionStore sessionStore,
@@ -32,8 +61,16 @@ public class DefaultAgentOrchestrator implements AgentOrchestrator {
                                     String workDir, SessionStore sessionStore,
                                     ApprovalInterceptor approvalInterceptor,
                                     CostTracker costTracker) {
-        this.agentLoop = new AgentLoop(provider, new PromptBuilder(), toolRegistry, workDir, approvalInterceptor);
-        this.classifier = new Classifier();
+        this(provider, toolRegistry, workDir, sessionStore, approvalInterceptor, costTracker, new PromptBuilder());
+    }
+
+    public DefaultAgentOrchestrator(ModelProvider provider, ToolRegistry toolRegistry,
+                                    String workDir, SessionStore sessionStore,
+                                    ApprovalInterceptor approvalInterceptor,
+                                    CostTracker costTracker, PromptBuilder promptBuilder) {
+        this.agentLoop = new AgentLoop(provider, promptBuilder, toolRegistry, workDir, approvalInterceptor);
+        this.provider = provider;
+        for (var tier : Classifier.Tier.values()) tierCounters.put(tier, new TierCounters());
         this.sessionStore = sessionStore;
         this.costTracker = costTracker;
     }
@@ -42,20 +79,59 @@ public class DefaultAgentOrchestrator implements AgentOrchestrator {
         this.agentLoop.setMemoryStore(memoryStore);
     }
 
+    public void setMaxParallelTools(int maxParallelTools) {
+        this.agentLoop.setMaxParallelTools(maxParallelTools);
+    }
+
+    public void setSpillStore(SpillStore spillStore) {
+        this.agentLoop.setSpillStore(spillStore);
+    }
+
+    public void setSummaryReserveMs(long summaryReserveMs) {
+        this.agentLoop.setSummaryReserveMs(summaryReserveMs);
+    }
+
+    /** How long after a turn starts it will wait for memory recall before going ahead without it. */
+    public void setRecallBudgetMs(long recallBudgetMs) {
+        this.recallBudgetMs = recallBudgetMs;
+    }
+
+    /** Turns that went ahead without memories because recall overran its budget. */
+    public long recallTimeouts() {
+        return recallTimeouts.sum();
+    }
+
     public void setSkillRegistry(SkillRegistry skillRegistry) {
         this.skillRegistry = skillRegistry;
     }
 
+    public void setClassifier(Classifier classifier) {
+        this.classifier = classifier;
+    }
+
+    /** Sends turns classified as {@code tier} to {@code provider}; tiers without one use the default provider. */
+    public synchronized void setTierProvider(Classifier.Tier tier, ModelProvider provider) {
+        tierProviders.put(tier, provider);
+    }
+
+    public Map<Classifier.Tier, TierStats> tierStats() {
+        var stats = new LinkedHashMap<Classifier.Tier, TierStats>();
+        tierCounters.forEach((tier, c) -> stats.put(tier, c.snapshot()));
+        return stats;
+    }
+
+    private synchronized ModelProvider providerFor(Classifier.Tier tier) {
+        return tierProviders.getOrDefault(tier, provider);
+    }
+
     @Override
     public AgentResponse run(AgentRequest request) {
-        if (!classifier.needsLlm(request.message())) {
-            return new AgentResponse(request.message(), List.of(), Map.of());
-        }
-        var history = new ArrayList<>(sessionStore.load(request.sessionId()));
+        long start = System.nanoTime();
         var ctx = request.context() != null ? request.context() : Map.<String, Object>of();
         var userId = (String) ctx.get("userId");
         var channelId = (String) ctx.get("channelId");
-        // Skill detection: /trigger message → override system prompt + tool subset
+        // Skill detection: /trigger message → override system prompt + tool subset.
+        // A map lookup, done first because recall needs the message without the trigger.
         String systemPrompt = null;
         List<String> allowedTools = null;
         var message = request.message();
@@ -70,15 +146,92 @@ public class DefaultAgentOrchestrator implements AgentOrchestrator {
             }
         }
 
-        var response = agentLoop.execute(message, history, request.sessionId(), channelId, userId,
-                systemPrompt, allowedTools);
+        // Classification, history load and memory recall are independent; run them side by side.
+        var turnMessage = message;
+        Classifier.Tier tier;
+        List<Map<String, Object>> history;
+        // Recall runs outside the scope: closing the scope waits for its tasks, and a search
+        // that ignores the interrupt would then hold the turn past the recall budget.
+        var recallTask = new FutureTask<>(() -> agentLoop.recall(turnMessage));
+        Thread.ofVirtual().name("memory-recall").start(recallTask);
+        try (var scope = Executors.newVirtualThreadPerTaskExecutor()) {
+            var tierTask = scope.submit(() -> classifier.classify(request.message()));
+            var historyTask = scope.submit(() -> sessionStore.load(request.sessionId()));
+            try {
+                history = new ArrayList<>(join(historyTask));
+                tier = join(tierTask);
+            } catch (RuntimeException e) {
+                scope.shutdownNow();
+                recallTask.cancel(true);
+                throw e;
+            }
+        }
+        var recalled = awaitRecall(recallTask, start, request.deadline());
+
+        var response = agentLoop.execute(providerFor(tier), message, history, request.sessionId(), channelId,
+                userId, systemPrompt, allowedTools, recalled, request.deadline());
         sessionStore.save(request.sessionId(), userId, channelId, history);
+        var model = response.model() != null ? response.model() : "unknown";
+        var usage = response.usage() != null ? response.usage() : Map.<String, Integer>of();
+        int promptTokens = usage.getOrDefault("promptTokens", 0);
+        int completionTokens = usage.getOrDefault("completionTokens", 0);
+        int cachedTokens = usage.getOrDefault("cachedTokens", 0);
         if (costTracker != null && response.usage() != null) {
-            var model = response.model() != null ? response.model() : "unknown";
-            costTracker.record(request.sessionId(), model, model,
-                    response.usage().getOrDefault("promptTokens", 0),
-                    response.usage().getOrDefault("completionTokens", 0));
+            costTracker.record(request.sessionId(), model, model, promptTokens, completionTokens, cachedTokens);
         }
+        long ms = (System.nanoTime() - start) / 1_000_000;
+        tierCounters.get(tier).record(ms, CostTracker.cost(model, promptTokens, completionTokens, cachedTokens));
+        log.debug("Turn for session {} ran as {} on {} in {}ms", request.sessionId(), tier, model, ms);
         return response;
     }
+
+    /** The recalled memories, or null if recall failed or is still running when the budget is spent. */
+    private String awaitRecall(Future<String> task, long turnStartNanos, Instant deadline) {
+        long remainingMs = Math.min(recallBudgetMs - (System.nanoTime() - turnStartNanos) / 1_000_000,
+                Deadlines.remainingMillis(deadline));
+        try {
+            return task.get(Math.max(remainingMs, 0), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            task.cancel(true);
+            recallTimeouts.increment();
+            log.debug("Memory recall missed its {}ms budget; continuing without it", recallBudgetMs);
+        } catch (ExecutionException e) {
+            log.warn("Memory recall failed: {}", e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            task.cancel(true);
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    private static <T> T join(Future<T> task) {
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while starting the turn", e);
+        }
+    }
+
+    private static final class TierCounters {
+        final LongAdder turns = new LongAdder();
+        final LongAdder latencyMs = new LongAdder();
+        final LongAccumulator maxLatencyMs = new LongAccumulator(Math::max, 0);
+        final DoubleAdder costUsd = new DoubleAdder();
+
+        void record(long ms, double cost) {
+            turns.increment();
+            latencyMs.add(ms);
+            maxLatencyMs.accumulate(ms);
+            costUsd.add(cost);
+        }
+
+        TierStats snapshot() {
+            long n = turns.sum();
+            return new TierStats(n, n == 0 ? 0 : (double) latencyMs.sum() / n, maxLatencyMs.get(), costUsd.sum());
+        }
+    }
 }
@@ -0,0 +1,28 @@
+package com.javaclaw.agent;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Chat messages with a fixed key order: role, content, tool_call_id — the order
+ * {@code PostgresSessionStore} loads them in. A message built during a turn then
+ * serialises to the same bytes as its reloaded copy on the next turn, which is what
+ * keeps provider prefix caches hitting ({@code Map.of} order differs per JVM run).
+ */
+final class Messages {
+
+    private Messages() {}
+
+    static Map<String, Object> of(String role, String content) {
+        var msg = new LinkedHashMap<String, Object>(4);
+        msg.put("role", role);
+        msg.put("content", content);
+        return msg;
+    }
+
+    static Map<String, Object> tool(String toolCallId, String content) {
+        var msg = of("tool", content);
+        msg.put("tool_call_id", toolCallId);
+        return msg;
+    }
+}
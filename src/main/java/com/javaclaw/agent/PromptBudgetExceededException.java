@@ -0,0 +1,18 @@
+package com.javaclaw.agent;
+
+/** The system prompt and current message alone exceed the prompt token budget; nothing left to trim. */
+public class PromptBudgetExceededException extends RuntimeException {
+
+    private final int tokens;
+    private final int budget;
+
+    public PromptBudgetExceededException(int tokens, int budget) {
+        super("Prompt needs " + tokens + " tokens, budget is " + budget);
+        this.tokens = tokens;
+        this.budget = budget;
+    }
+
+    public int tokens() { return tokens; }
+
+    public int budget() { return budget; }
+}
@@ -1,5 +1,8 @@
 package com.javaclaw.agent;
 
+import com.javaclaw.tokenizer.TokenCounter;
+
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -13,20 +16,148 @@ public class PromptBuilder {
             You MUST use the provided tools to fulfill requests — do NOT say you cannot perform actions. \
             You can execute shell commands, read and write files, run git operations, search the web, and make HTTP requests. \
             Always prefer taking action over explaining how to do it.""";
+    private static final String ELIDED = "[tool output elided to fit the context budget: ";
+
+    /** Where per-turn volatile context (recalled memories) goes. */
+    public enum Layout {
+        /** Prepended to the user message. */
+        CLASSIC,
+        /**
+         * Appended after the user message as its own message, so everything before it
+         * (system prompt, tools, history, the user message itself) is byte-identical to
+         * what the next turn resends and provider prefix caches can reuse it.
+         */
+        STABLE_PREFIX;
+
+        /** "classic" or "stable"/"stable-prefix", case-insensitively. */
+        public static Layout parse(String name) {
+            var key = name.trim().toUpperCase().replace('-', '_');
+            return "STABLE".equals(key) ? STABLE_PREFIX : valueOf(key);
+        }
+    }
+
+    private final TokenCounter tokenCounter;
+    private final int maxPromptTokens;
+    private final ContextManager contextManager;
+    private final Layout layout;
+
+    public PromptBuilder() {
+        this(null, 0);
+    }
+
+    /** Keeps every prompt under {@code maxPromptTokens} as counted by {@code tokenCounter}; 0 means no budget. */
+    public PromptBuilder(TokenCounter tokenCounter, int maxPromptTokens) {
+        this(tokenCounter, maxPromptTokens, null, Layout.CLASSIC);
+    }
+
+    /** As above, with session history compacted by {@code contextManager} before the hard budget applies. */
+    public PromptBuilder(TokenCounter tokenCounter, int maxPromptTokens, ContextManager contextManager,
+                         Layout layout) {
+        this.tokenCounter = tokenCounter;
+        this.maxPromptTokens = maxPromptTokens;
+        this.contextManager = contextManager;
+        this.layout = layout;
+    }
 
     public List<Map<String, Object>> build(String userMessage, List<Map<String, Object>> history) {
         return build(userMessage, history, null);
     }
 
     public List<Map<String, Object>> build(String userMessage, List<Map<String, Object>> history, String systemPromptOverride) {
+        return build(userMessage, null, history, systemPromptOverride, null);
+    }
+
+    /** {@code recalled} is context retrieved for this turn only (may be null); see {@link Layout}. */
+    public List<Map<String, Object>> build(String userMessage, String recalled, List<Map<String, Object>> history,
+                                           String systemPromptOverride, String sessionId) {
+        return build(userMessage, recalled, history, systemPromptOverride, sessionId, null);
+    }
+
+    /** As above, with any history summarizing bounded by {@code deadline} (null for none). */
+    public List<Map<String, Object>> build(String userMessage, String recalled, List<Map<String, Object>> history,
+                                           String systemPromptOverride, String sessionId, Instant deadline) {
         if (userMessage == null || userMessage.isBlank()) {
             throw new IllegalArgumentException("userMessage must not be empty");
         }
         var messages = new ArrayList<Map<String, Object>>();
-        messages.add(Map.of("role", "system", "content",
-                systemPromptOverride != null ? systemPromptOverride : SYSTEM_PROMPT));
+        messages.add(Messages.of("system", systemPromptOverride != null ? systemPromptOverride : SYSTEM_PROMPT));
+        if (contextManager != null) history = contextManager.compact(sessionId, history, deadline);
         if (history != null) messages.addAll(history);
-        messages.add(Map.of("role", "user", "content", userMessage));
+        if (recalled == null) {
+            messages.add(Messages.of("user", userMessage));
+        } else if (layout == Layout.STABLE_PREFIX) {
+            messages.add(Messages.of("user", userMessage));
+            messages.add(Messages.of("system", "[Recalled memories]\n" + recalled));
+        } else {
+            messages.add(Messages.of("user", "[Recalled memories]\n" + recalled + "\n[User message]\n" + userMessage));
+        }
+        fit(messages, null);
         return messages;
     }
+
+    /**
+     * Trims {@code messages} in place until they and {@code tools} fit the budget and
+     * returns the token count, or -1 when no budget is set. Whole history turns go
+     * first, oldest first, so an assistant tool call never loses its results; a rolling
+     * summary leading the history outlives them all, since it stands in for turns
+     * already gone. Then the oldest tool outputs of the current turn are elided. The
+     * system prompt and the current user message are never touched.
+     *
+     * @throws PromptBudgetExceededException if trimming everything else is not enough
+     */
+    public int fit(List<Map<String, Object>> messages, List<Map<String, Object>> tools) {
+        if (tokenCounter == null || maxPromptTokens <= 0) return -1;
+        int tokens = tokenCounter.countMessages(messages) + tokenCounter.countTools(tools);
+        int current = lastUserIndex(messages);
+        int first = hasSummary(messages, current) ? 2 : 1;
+
+        while (tokens > maxPromptTokens && current > first) {
+            int end = nextTurn(messages, first, current);
+            for (int i = first; i < end; i++) tokens -= tokenCounter.countMessage(messages.get(i));
+            messages.subList(first, end).clear();
+            current -= end - first;
+        }
+        if (tokens > maxPromptTokens && first == 2) {
+            tokens -= tokenCounter.countMessage(messages.remove(1));
+            current--;
+        }
+        for (int i = current + 1; tokens > maxPromptTokens && i < messages.size(); i++) {
+            var msg = messages.get(i);
+            if (!"tool".equals(msg.get("role")) || String.valueOf(msg.get("content")).startsWith(ELIDED)) continue;
+            var elided = elide(msg);
+            tokens += tokenCounter.countMessage(elided) - tokenCounter.countMessage(msg);
+            messages.set(i, elided);
+        }
+        if (tokens > maxPromptTokens) throw new PromptBudgetExceededException(tokens, maxPromptTokens);
+        return tokens;
+    }
+
+    /** Whether {@link ContextManager}'s rolling summary sits right after the system prompt. */
+    private static boolean hasSummary(List<Map<String, Object>> messages, int current) {
+        if (current <= 1) return false;
+        var msg = messages.get(1);
+        return "system".equals(msg.get("role"))
+                && String.valueOf(msg.get("content")).startsWith(ContextManager.SUMMARY_PREFIX);
+    }
+
+    private static int lastUserIndex(List<Map<String, Object>> messages) {
+        for (int i = messages.size() - 1; i > 0; i--) {
+            if ("user".equals(messages.get(i).get("role"))) return i;
+        }
+        return messages.size();
+    }
+
+    /** End of the turn starting at {@code from}: everything up to the next user message. */
+    private static int nextTurn(List<Map<String, Object>> messages, int from, int limit) {
+        int i = from + 1;
+        while (i < limit && !"user".equals(messages.get(i).get("role"))) i++;
+        return i;
+    }
+
+    private Map<String, Object> elide(Map<String, Object> toolMsg) {
+        var content = String.valueOf(toolMsg.get("content"));
+        var out = new LinkedHashMap<String, Object>(toolMsg);
+        out.put("content", ELIDED + tokenCounter.count(content) + " tokens]");
+        return out;
+    }
 }
@@ -0,0 +1,85 @@
+package com.javaclaw.agent;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.javaclaw.providers.PrecompiledTools;
+import com.javaclaw.tools.Tool;
+import com.javaclaw.tools.ToolRegistry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Function definitions for the model, built once per tool and once per allowed-tools
+ * subset. Each tool's schema is serialised a single time, so {@code inputSchema()} is
+ * not re-run every turn and the bytes sent never change while the tool is registered.
+ * Everything is rebuilt when the {@link ToolRegistry} version moves.
+ */
+class ToolDefinitionCache {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /** {@code allowed} is null for "all tools". */
+    private record Subset(Set<String> allowed) {}
+
+    private final ToolRegistry registry;
+    private Map<Tool, String> definitions = new IdentityHashMap<>();
+    private final Map<Subset, PrecompiledTools> subsets = new HashMap<>();
+    private long version = -1;
+
+    ToolDefinitionCache(ToolRegistry registry) {
+        this.registry = registry;
+    }
+
+    /** Definitions of the registered tools in {@code allowedTools} (all if null), or null if none. */
+    synchronized PrecompiledTools get(List<String> allowedTools) {
+        long current = registry.version();
+        if (current != version) {
+            // Keep definitions of tools that are still registered; a re-registered name is a new instance.
+            var kept = new IdentityHashMap<Tool, String>();
+            for (var t : registry.all()) {
+                var def = definitions.get(t);
+                if (def != null) kept.put(t, def);
+            }
+            definitions = kept;
+            subsets.clear();
+            version = current;
+        }
+        var key = new Subset(allowedTools != null ? Set.copyOf(allowedTools) : null);
+        var cached = subsets.get(key);
+        if (cached == null && !subsets.containsKey(key)) {
+            cached = build(key.allowed());
+            subsets.put(key, cached);
+        }
+        return cached;
+    }
+
+    private PrecompiledTools build(Set<String> allowed) {
+        var serialized = new ArrayList<String>();
+        for (Tool t : registry.all()) {
+            if (allowed != null && !allowed.contains(t.name())) continue;
+            serialized.add(definitions.computeIfAbsent(t, ToolDefinitionCache::serialize));
+        }
+        return serialized.isEmpty() ? null : PrecompiledTools.of(serialized);
+    }
+
+    private static String serialize(Tool t) {
+        var fn = new LinkedHashMap<String, Object>();
+        fn.put("name", t.name());
+        fn.put("description", t.description());
+        fn.put("parameters", t.inputSchema());
+        var def = new LinkedHashMap<String, Object>();
+        def.put("type", "function");
+        def.put("function", fn);
+        try {
+            return MAPPER.writeValueAsString(def);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialise tool definition: " + t.name(), e);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.javaclaw.approval;
 
 import com.javaclaw.tools.Tool;
 
+import java.time.Instant;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -19,6 +20,11 @@ public class ApprovalInterceptor {
     }
 
     public boolean check(Tool tool, String arguments, String channelId, String senderId) {
+        return check(tool, arguments, channelId, senderId, null);
+    }
+
+    /** Approval waits end by {@code deadline} (null for none); running out of time counts as a denial. */
+    public boolean check(Tool tool, String arguments, String channelId, String senderId, Instant deadline) {
         if (!tool.getClass().isAnnotationPresent(DangerousOperation.class)) {
             return true;
         }
@@ -30,6 +36,6 @@ public class ApprovalInterceptor {
             strategy = defaultStrategy;
         }
         if (strategy == null) return false;
-        return strategy.approve(tool.name(), arguments, channelId, senderId);
+        return strategy.approve(tool.name(), arguments, channelId, senderId, deadline);
     }
 }
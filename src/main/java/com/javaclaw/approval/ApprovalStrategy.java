@@ -1,5 +1,17 @@
 package com.javaclaw.approval;
 
+import java.time.Instant;
+
 public interface ApprovalStrategy {
     boolean approve(String toolName, String arguments, String channelId, String senderId);
+
+    /**
+     * As {@link #approve(String, String, String, String)}, but a wait for the user ends
+     * (as a denial) by {@code deadline}; null for no deadline. Strategies that cannot
+     * bound their wait ignore it.
+     */
+    default boolean approve(String toolName, String arguments, String channelId, String senderId,
+                            Instant deadline) {
+        return approve(toolName, arguments, channelId, senderId);
+    }
 }
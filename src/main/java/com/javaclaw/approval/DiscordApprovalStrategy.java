@@ -1,5 +1,6 @@
 package com.javaclaw.approval;
 
+import com.javaclaw.shared.concurrent.Deadlines;
 import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
 import net.dv8tion.jda.api.events.interaction.component.ButtonInteractionEvent;
 import net.dv8tion.jda.api.interactions.components.buttons.Button;
@@ -7,6 +8,7 @@ import net.dv8tion.jda.api.JDA;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Instant;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
@@ -28,6 +30,13 @@ public class DiscordApprovalStrategy implements ApprovalStrategy {
 
     @Override
     public boolean approve(String toolName, String arguments, String channelId, String senderId) {
+        return approve(toolName, arguments, channelId, senderId, null);
+    }
+
+    @Override
+    public boolean approve(String toolName, String arguments, String channelId, String senderId,
+                           Instant deadline) {
+        long timeoutSeconds = Deadlines.clampSeconds(deadline, TIMEOUT_SECONDS);
         var dcChannelId = channelId.contains(":") ? channelId.split(":", 2)[1] : channelId;
         var channel = jda.getChannelById(MessageChannel.class, dcChannelId);
         if (channel == null) return false;
@@ -37,14 +46,14 @@ public class DiscordApprovalStrategy implements ApprovalStrategy {
         pending.put(requestId, future);
         if (senderId != null) pendingSenders.put(requestId, senderId);
 
-        channel.sendMessage(String.format("[APPROVAL] Tool '%s'\nArgs: %s\n60s timeout", toolName, arguments))
+        channel.sendMessage(String.format("[APPROVAL] Tool '%s'\nArgs: %s\n%ds timeout", toolName, arguments, timeoutSeconds))
                 .setActionRow(
                         Button.success("approve:" + requestId, "\u2705 Approve"),
                         Button.danger("deny:" + requestId, "\u274C Deny"))
                 .queue();
 
         try {
-            return future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            return future.get(timeoutSeconds, TimeUnit.SECONDS);
         } catch (Exception e) {
             log.warn("Discord approval timeout/error for tool '{}'", toolName);
             return false;
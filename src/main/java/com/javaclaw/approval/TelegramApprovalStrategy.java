@@ -1,5 +1,6 @@
 package com.javaclaw.approval;
 
+import com.javaclaw.shared.concurrent.Deadlines;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
@@ -10,6 +11,7 @@ import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKe
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardRow;
 import org.telegram.telegrambots.meta.generics.TelegramClient;
 
+import java.time.Instant;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
@@ -31,6 +33,13 @@ public class TelegramApprovalStrategy implements ApprovalStrategy {
 
     @Override
     public boolean approve(String toolName, String arguments, String channelId, String senderId) {
+        return approve(toolName, arguments, channelId, senderId, null);
+    }
+
+    @Override
+    public boolean approve(String toolName, String arguments, String channelId, String senderId,
+                           Instant deadline) {
+        long timeoutSeconds = Deadlines.clampSeconds(deadline, TIMEOUT_SECONDS);
         var chatId = channelId.contains(":") ? channelId.split(":", 2)[1] : channelId;
         if (chatId.isBlank()) return false;
         var requestId = UUID.randomUUID().toString();
@@ -47,11 +56,11 @@ public class TelegramApprovalStrategy implements ApprovalStrategy {
 
         var msg = SendMessage.builder()
                 .chatId(chatId)
-                .text(String.format("[APPROVAL] Tool '%s'\nArgs: %s\n60s timeout", toolName, arguments))
+                .text(String.format("[APPROVAL] Tool '%s'\nArgs: %s\n%ds timeout", toolName, arguments, timeoutSeconds))
                 .replyMarkup(keyboard).build();
         try {
             telegramClient.execute(msg);
-            return future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            return future.get(timeoutSeconds, TimeUnit.SECONDS);
         } catch (Exception e) {
             log.warn("Telegram approval timeout/error for tool '{}'", toolName);
             return false;
@@ -1,6 +1,7 @@
 package com.javaclaw.channels;
 
 import com.javaclaw.approval.DiscordApprovalStrategy;
+import com.javaclaw.shared.concurrent.MailboxExecutor;
 import com.javaclaw.shared.model.InboundMessage;
 import com.javaclaw.shared.model.OutboundMessage;
 import net.dv8tion.jda.api.JDA;
@@ -23,6 +24,7 @@ public class DiscordAdapter extends ListenerAdapter implements ChannelAdapter {
     private final String botToken;
     private JDA jda;
     private MessageSink sink;
+    private MailboxExecutor<String> mailboxes = new MailboxExecutor<>("discord");
     private DiscordApprovalStrategy approvalStrategy;
 
     public DiscordAdapter(String botToken) {
@@ -37,6 +39,11 @@ public class DiscordAdapter extends ListenerAdapter implements ChannelAdapter {
         this.approvalStrategy = strategy;
     }
 
+    /** Turns are queued per sender, which is also the session id, so one session never runs two at once. */
+    public void setMailboxes(MailboxExecutor<String> mailboxes) {
+        this.mailboxes = mailboxes;
+    }
+
     @Override
     public String id() {
         return "discord";
@@ -70,7 +77,7 @@ public class DiscordAdapter extends ListenerAdapter implements ChannelAdapter {
         var senderId = event.getAuthor().getId();
         var channelId = event.getChannel().getId();
         var inbound = new InboundMessage(senderId, "discord:" + channelId, content, Instant.now());
-        Thread.startVirtualThread(() -> sink.accept(inbound));
+        mailboxes.execute(senderId, () -> sink.accept(inbound));
     }
 
     @Override
@@ -1,6 +1,7 @@
 package com.javaclaw.channels;
 
 import com.javaclaw.approval.TelegramApprovalStrategy;
+import com.javaclaw.shared.concurrent.MailboxExecutor;
 import com.javaclaw.shared.model.InboundMessage;
 import com.javaclaw.shared.model.OutboundMessage;
 import org.slf4j.Logger;
@@ -23,6 +24,7 @@ public class TelegramAdapter implements ChannelAdapter, LongPollingSingleThreadU
     private TelegramClient telegramClient;
     private TelegramBotsLongPollingApplication bot;
     private MessageSink sink;
+    private MailboxExecutor<String> mailboxes = new MailboxExecutor<>("telegram");
     private TelegramApprovalStrategy approvalStrategy;
 
     public TelegramAdapter(String botToken) {
@@ -37,6 +39,11 @@ public class TelegramAdapter implements ChannelAdapter, LongPollingSingleThreadU
         this.approvalStrategy = strategy;
     }
 
+    /** Turns are queued per sender, which is also the session id, so one session never runs two at once. */
+    public void setMailboxes(MailboxExecutor<String> mailboxes) {
+        this.mailboxes = mailboxes;
+    }
+
     @Override
     public String id() {
         return "telegram";
@@ -67,7 +74,7 @@ public class TelegramAdapter implements ChannelAdapter, LongPollingSingleThreadU
         var senderId = String.valueOf(msg.getFrom().getId());
         var chatId = String.valueOf(msg.getChatId());
         var inbound = new InboundMessage(senderId, "telegram:" + chatId, msg.getText(), Instant.now());
-        Thread.startVirtualThread(() -> sink.accept(inbound));
+        mailboxes.execute(senderId, () -> sink.accept(inbound));
     }
 
     @Override
@@ -1,6 +1,9 @@
 package com.javaclaw.gateway;
 
+import com.javaclaw.agent.Classifier;
+import com.javaclaw.agent.ContextManager;
 import com.javaclaw.agent.DefaultAgentOrchestrator;
+import com.javaclaw.agent.PromptBuilder;
 import com.javaclaw.approval.ApprovalInterceptor;
 import com.javaclaw.approval.CliApprovalStrategy;
 import com.javaclaw.approval.TelegramApprovalStrategy;
@@ -13,17 +16,29 @@ import com.javaclaw.channels.DiscordAdapter;
 import com.javaclaw.auth.PairingService;
 import com.javaclaw.auth.WhitelistService;
 import com.javaclaw.mcp.McpManager;
+import com.javaclaw.memory.EmbeddingCache;
 import com.javaclaw.memory.EmbeddingService;
 import com.javaclaw.memory.LuceneMemoryStore;
 import com.javaclaw.skills.SkillLoader;
 import com.javaclaw.skills.SkillRegistry;
 import com.javaclaw.observability.CostTracker;
 import com.javaclaw.observability.DoctorCommand;
+import com.javaclaw.observability.MetricsConfig;
+import com.javaclaw.providers.AdmissionProvider;
+import com.javaclaw.providers.CachingProvider;
+import com.javaclaw.providers.CircuitBreakerRegistry;
+import com.javaclaw.providers.CoalescingProvider;
 import com.javaclaw.providers.DeepSeekProvider;
 import com.javaclaw.providers.OllamaProvider;
 import com.javaclaw.providers.OpenAiProvider;
+import com.javaclaw.providers.ProviderRouter;
 import com.javaclaw.providers.ReliableProvider;
+import com.javaclaw.providers.RetryBudget;
+import com.javaclaw.shared.concurrent.Deadlines;
+import com.javaclaw.shared.concurrent.MailboxExecutor;
 import com.javaclaw.shared.config.ConfigLoader;
+import com.javaclaw.shared.config.LlmCacheConfig;
+import com.javaclaw.shared.http.HttpClientRegistry;
 import com.javaclaw.security.DockerExecutor;
 import com.javaclaw.security.RestrictedNativeExecutor;
 import com.javaclaw.security.SecurityPolicy;
@@ -38,9 +53,12 @@ import com.javaclaw.tools.MemoryForgetTool;
 import com.javaclaw.tools.MemoryRecallTool;
 import com.javaclaw.tools.MemoryStoreTool;
 import com.javaclaw.tools.ShellTool;
+import com.javaclaw.tools.SpillStore;
+import com.javaclaw.tools.ToolOutputTool;
 import com.javaclaw.tools.ToolRegistry;
 import com.javaclaw.tools.BrowserTool;
 import com.javaclaw.tools.WebSearchTool;
+import com.javaclaw.tokenizer.TokenCounter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.SpringApplication;
@@ -53,9 +71,11 @@ import sun.misc.Signal;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 @SpringBootApplication(scanBasePackages = "com.javaclaw")
 public class JavaClawApp {
@@ -66,6 +86,7 @@ public class JavaClawApp {
     public static void main(String[] args) {
         var ctx = SpringApplication.run(JavaClawApp.class, args);
         var config = ConfigLoader.load();
+        HttpClientRegistry.configure(config.http());
 
         // Provider — build chain from config
         var providerIds = new ArrayList<String>();
@@ -81,7 +102,17 @@ public class JavaClawApp {
             log.error("No providers configured. Set providers.primary in ~/.javaclaw/config.yaml");
             System.exit(1);
         }
-        var reliable = new ReliableProvider(providerList, 2, 500);
+        var metrics = new MetricsConfig();
+        if (config.admission().enabled()) {
+            providerList.replaceAll(p -> new AdmissionProvider(p, config.admission(), metrics));
+        }
+        var breakers = new CircuitBreakerRegistry(config.circuitBreaker());
+        // One budget for every outbound model call, so retries stay bounded process-wide.
+        var retryBudget = config.retryBudget().enabled()
+                ? new RetryBudget(config.retryBudget().maxTokens(), config.retryBudget().tokenRatio())
+                : RetryBudget.unlimited();
+        var failover = failover(providerList, config, breakers, retryBudget);
+        ModelProvider reliable = decorate(failover, config, metrics, null);
 
         // Tools
         var workDir = System.getenv().getOrDefault("JAVACLAW_WORK_DIR", System.getProperty("user.home"));
@@ -134,14 +165,97 @@ public class JavaClawApp {
         var dataSource = ctx.getBean(javax.sql.DataSource.class);
         var sessionStore = new PostgresSessionStore(dataSource);
         var costTracker = new CostTracker(dataSource);
-        var doctor = new DoctorCommand(dataSource, config.apiKeys().getOrDefault("embedding-base-url", ""));
-        var agent = new DefaultAgentOrchestrator(reliable, toolRegistry, workDir, sessionStore, approvalInterceptor, costTracker);
+        var doctor = new DoctorCommand(dataSource, config.apiKeys().getOrDefault("embedding-base-url", ""), breakers);
+        doctor.addCheck(metrics::report);
+        if (config.hedging().enabled()) doctor.addCheck(hedgeCheck("primary", failover));
+        var tokenCounter = TokenCounter.fromConfig(config.context());
+        var contextManager = new ContextManager(reliable, tokenCounter, sessionStore, config.context());
+        var promptBuilder = new PromptBuilder(tokenCounter, config.context().maxPromptTokens(), contextManager,
+                PromptBuilder.Layout.parse(config.context().promptLayout()));
+        var agent = new DefaultAgentOrchestrator(reliable, toolRegistry, workDir, sessionStore, approvalInterceptor,
+                costTracker, promptBuilder);
+        agent.setMaxParallelTools(toolsConfig.maxParallel());
+        agent.setRecallBudgetMs(config.memory().recallBudgetMs());
+        agent.setSummaryReserveMs(config.agent().summaryReserveMs());
+        var spillConfig = toolsConfig.spill();
+        if (spillConfig.enabled()) {
+            try {
+                var spillStore = SpillStore.open(java.nio.file.Path.of(spillConfig.path()), spillConfig.thresholdChars(),
+                        spillConfig.previewChars(), java.time.Duration.ofHours(spillConfig.retentionHours()));
+                agent.setSpillStore(spillStore);
+                toolRegistry.register(new ToolOutputTool(spillStore));
+                doctor.addCheck(() -> {
+                    var s = spillStore.stats();
+                    return List.of(String.format("[OK] Tool output spill: %d outputs saved (%.1f MB as text, %.1f MB on disk), %d reads",
+                            s.spilled(), s.rawBytes() / 1e6, s.storedBytes() / 1e6, s.reads()));
+                });
+            } catch (Exception e) {
+                log.warn("Tool output spill unavailable, large outputs stay inline: {}", e.getMessage());
+            }
+        }
+        if (config.tiers().enabled()) {
+            var tiers = config.tiers();
+            if (tiers.classifierModel() != null) {
+                agent.setClassifier(new Classifier(new OllamaProvider(tiers.classifierModel()),
+                        tiers.classifierModel(), tiers.classifierTimeoutMs()));
+            }
+            for (var tier : Classifier.Tier.values()) {
+                var spec = tiers.providerFor(tier.name().toLowerCase());
+                if (spec == null || spec.equals(config.primaryProvider())) continue;
+                ModelProvider head = createProvider(spec, config);
+                if (head == null) continue;
+                if (config.admission().enabled()) head = new AdmissionProvider(head, config.admission(), metrics);
+                // The tier's own provider first, then the primary chain to fall back on.
+                var chain = new ArrayList<ModelProvider>();
+                chain.add(head);
+                for (var p : providerList) if (!p.id().equals(head.id())) chain.add(p);
+                var tierFailover = failover(chain, config, breakers, retryBudget);
+                if (config.hedging().enabled()) {
+                    doctor.addCheck(hedgeCheck(tier.name().toLowerCase() + " tier", tierFailover));
+                }
+                agent.setTierProvider(tier, decorate(tierFailover, config, metrics, tier.name().toLowerCase()));
+                log.info("Model tier {} routed to {}", tier, spec);
+            }
+        }
+        doctor.addCheck(() -> {
+            var lines = new ArrayList<String>();
+            agent.tierStats().forEach((tier, s) -> lines.add(String.format(
+                    "[OK] Tier %s: %d turns, avg %.0fms, max %dms, $%.4f",
+                    tier.name().toLowerCase(), s.turns(), s.avgLatencyMs(), s.maxLatencyMs(), s.costUsd())));
+            return lines;
+        });
 
         // Memory
         var embeddingBaseUrl = config.apiKeys().getOrDefault("embedding-base-url", "http://localhost:11434/v1");
         var embeddingModel = config.apiKeys().getOrDefault("embedding-model", "nomic-embed-text");
         var embeddingApiKey = config.apiKeys().getOrDefault("embedding-api-key", "");
-        var embeddingService = new EmbeddingService(embeddingBaseUrl, embeddingApiKey, embeddingModel);
+        var embeddingService = new EmbeddingService(embeddingBaseUrl, embeddingApiKey, embeddingModel,
+                config.embedding());
+        embeddingService.setRetryBudget(retryBudget);
+        var embeddingConfig = config.embedding();
+        if (embeddingConfig.cacheEnabled()) {
+            EmbeddingCache embeddingCache;
+            if (embeddingConfig.cachePath() == null || embeddingConfig.cachePath().isBlank()) {
+                embeddingCache = EmbeddingCache.inMemory(embeddingConfig.cacheEntries());
+            } else {
+                try {
+                    embeddingCache = EmbeddingCache.open(java.nio.file.Path.of(embeddingConfig.cachePath()),
+                            embeddingConfig.cacheEntries());
+                    Runtime.getRuntime().addShutdownHook(new Thread(embeddingCache::close, "embedding-cache-close"));
+                } catch (Exception e) {
+                    log.warn("Embedding cache file unavailable, caching in memory only: {}", e.getMessage());
+                    embeddingCache = EmbeddingCache.inMemory(embeddingConfig.cacheEntries());
+                }
+            }
+            embeddingService.setCache(embeddingCache);
+            var cacheForDoctor = embeddingCache;
+            doctor.addCheck(() -> {
+                var s = cacheForDoctor.stats();
+                return List.of(String.format(
+                        "[OK] Embedding cache: %.1f%% hit ratio (%d heap hits, %d disk hits, %d misses), %d vectors on disk",
+                        s.hitRatio() * 100, s.heapHits(), s.diskHits(), s.misses(), s.diskEntries()));
+            });
+        }
         var indexPath = System.getProperty("user.home") + "/.javaclaw/index";
         try {
             var memoryStore = new LuceneMemoryStore(embeddingService, indexPath);
@@ -149,6 +263,8 @@ public class JavaClawApp {
             toolRegistry.register(new MemoryRecallTool(memoryStore, securityPolicy));
             toolRegistry.register(new MemoryForgetTool(memoryStore, securityPolicy));
             agent.setMemoryStore(memoryStore);
+            doctor.addCheck(() -> List.of(String.format("[OK] Memory recall: %d turns skipped it after the %dms budget",
+                    agent.recallTimeouts(), config.memory().recallBudgetMs())));
             ctx.registerShutdownHook();
             Runtime.getRuntime().addShutdownHook(new Thread(memoryStore::close, "memory-close"));
             log.info("Memory store enabled at {}", indexPath);
@@ -183,11 +299,21 @@ public class JavaClawApp {
         registry.register(cli);
         installCtrlCShutdownHandler(registry, ctx);
 
+        // Remote turns run one at a time per session; sessions run in parallel
+        var mailboxes = new MailboxExecutor<String>("session");
+        doctor.addCheck(() -> {
+            var s = mailboxes.stats();
+            return List.of(String.format(
+                    "[OK] Session mailboxes: %d active, %d queued (max depth %d), wait avg %.0fms, max %dms",
+                    s.mailboxes(), s.queued(), s.maxDepth(), s.avgWaitMs(), s.maxWaitMs()));
+        });
+
         // Telegram（配置了 bot-token 才启动）
         TelegramAdapter telegramAdapter = null;
         var telegramToken = config.telegramBotToken();
         if (telegramToken != null && !telegramToken.isBlank()) {
             telegramAdapter = new TelegramAdapter(telegramToken);
+            telegramAdapter.setMailboxes(mailboxes);
             registry.register(telegramAdapter);
             log.info("Telegram channel enabled");
         }
@@ -197,6 +323,7 @@ public class JavaClawApp {
         var discordToken = config.discordBotToken();
         if (discordToken != null && !discordToken.isBlank()) {
             discordAdapter = new DiscordAdapter(discordToken);
+            discordAdapter.setMailboxes(mailboxes);
             registry.register(discordAdapter);
             log.info("Discord channel enabled");
         }
@@ -241,7 +368,8 @@ public class JavaClawApp {
 
             var response = agent.run(new AgentRequest(
                     msg.senderId(), msg.content(),
-                    Map.of("userId", msg.senderId(), "channelId", msg.channelId())));
+                    Map.of("userId", msg.senderId(), "channelId", msg.channelId()),
+                    Deadlines.after(config.agent().turnTimeoutMs())));
             ch.send(new OutboundMessage(msg.channelId(), response.content(), Map.of()));
         });
 
@@ -260,6 +388,53 @@ public class JavaClawApp {
         }
     }
 
+    /** Failover over {@code chain} under the shared breakers and retry budget, routed unless the policy is PRIMARY. */
+    private static ReliableProvider failover(List<ModelProvider> chain, com.javaclaw.shared.config.JavaClawConfig config,
+                                             CircuitBreakerRegistry breakers, RetryBudget retryBudget) {
+        var failover = new ReliableProvider(chain, 2, 500, Map.of(), config.hedging(), breakers);
+        failover.setRetryBudget(retryBudget);
+        var policy = ProviderRouter.Policy.parse(config.routing().policy());
+        if (policy != ProviderRouter.Policy.PRIMARY && chain.size() > 1) {
+            var router = new ProviderRouter();
+            chain.forEach(router::register);
+            router.setPolicy(policy);
+            router.setLatencySloMs(config.routing().latencySloMs());
+            for (var p : chain) {
+                var weight = config.routing().weights().get(p.id());
+                if (weight != null) router.setWeight(p.id(), weight);
+            }
+            failover.setRouter(router);
+        }
+        return failover;
+    }
+
+    /**
+     * Coalescing, then the LLM cache when enabled, around {@code failover}. Each tier
+     * ({@code tier} non-null) gets its own cache and persist file, since every chain
+     * shares the "reliable" id the cache keys on.
+     */
+    private static ModelProvider decorate(ReliableProvider failover, com.javaclaw.shared.config.JavaClawConfig config,
+                                          MetricsConfig metrics, String tier) {
+        ModelProvider provider = new CoalescingProvider(failover, config.llmCache().maxTemperature());
+        if (!config.llmCache().enabled()) return provider;
+        var cache = config.llmCache();
+        if (tier != null && cache.persistPath() != null && !cache.persistPath().isBlank()) {
+            cache = new LlmCacheConfig(cache.enabled(), cache.maxEntries(), cache.ttlSeconds(),
+                    cache.maxTemperature(), cache.persistPath() + "." + tier);
+        }
+        return new CachingProvider(provider, cache, metrics);
+    }
+
+    /** Per provider in {@code chain}: hedges it was sent, and hedged races it answered first. */
+    private static Supplier<List<String>> hedgeCheck(String chain, ReliableProvider failover) {
+        return () -> {
+            var lines = new ArrayList<String>();
+            failover.hedgeStats().forEach((id, s) -> lines.add(String.format(
+                    "[OK] Hedging (%s) %s: %d hedges sent, %d won", chain, id, s.hedged(), s.won())));
+            return lines;
+        };
+    }
+
     private static void installCtrlCShutdownHandler(ChannelRegistry registry, ConfigurableApplicationContext ctx) {
         try {
             var lastCtrlCAt = new AtomicLong(0L);
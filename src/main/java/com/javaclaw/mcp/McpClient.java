@@ -2,11 +2,13 @@ package com.javaclaw.mcp;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.javaclaw.shared.concurrent.Deadlines;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -158,13 +160,23 @@ public class McpClient implements Closeable {
     }
 
     public JsonNode callTool(String toolName, JsonNode arguments) throws IOException {
+        return callTool(toolName, arguments, null);
+    }
+
+    /** Waits for the result no longer than the request timeout or until {@code deadline}, whichever is sooner. */
+    public JsonNode callTool(String toolName, JsonNode arguments, Instant deadline) throws IOException {
         var params = MAPPER.createObjectNode();
         params.put("name", toolName);
         params.set("arguments", arguments != null ? arguments : MAPPER.createObjectNode());
-        return sendRequest("tools/call", params);
+        return sendRequest("tools/call", params, deadline);
     }
 
     private JsonNode sendRequest(String method, JsonNode params) throws IOException {
+        return sendRequest(method, params, null);
+    }
+
+    private JsonNode sendRequest(String method, JsonNode params, Instant deadline) throws IOException {
+        long timeoutMs = Deadlines.clampMillis(deadline, REQUEST_TIMEOUT_SECONDS * 1000L);
         int id = idSeq.getAndIncrement();
         var req = MAPPER.createObjectNode();
         req.put("jsonrpc", "2.0");
@@ -177,7 +189,7 @@ public class McpClient implements Closeable {
         writeMessage(req);
 
         try {
-            var response = future.get(REQUEST_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            var response = future.get(timeoutMs, TimeUnit.MILLISECONDS);
             if (response == null) return null;
             if (response.has("error")) {
                 log.warn("[mcp:{}] error: {}", name, response.get("error"));
@@ -186,7 +198,7 @@ public class McpClient implements Closeable {
             return response.get("result");
         } catch (TimeoutException e) {
             pending.remove(id);
-            throw new IOException("MCP request '" + method + "' timed out after " + REQUEST_TIMEOUT_SECONDS + "s");
+            throw new IOException("MCP request '" + method + "' timed out after " + timeoutMs + "ms");
         } catch (ExecutionException | InterruptedException e) {
             pending.remove(id);
             throw new IOException("MCP request '" + method + "' failed: " + e.getMessage(), e);
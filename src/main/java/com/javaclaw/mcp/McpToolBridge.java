@@ -30,7 +30,7 @@ public class McpToolBridge implements Tool {
     @Override
     public ToolResult execute(ToolContext ctx, JsonNode input) {
         try {
-            var result = client.callTool(def.name(), input);
+            var result = client.callTool(def.name(), input, ctx.deadline());
             if (result == null) {
                 return new ToolResult("[ERROR] MCP tool returned no result", true);
             }
@@ -0,0 +1,241 @@
+package com.javaclaw.memory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Content-addressed embedding cache keyed by the SHA-256 of (model, text). A bounded
+ * in-heap LRU sits in front of an optional on-disk tier: {@code vectors.f32} holds
+ * raw little-endian floats, appended and read through a memory mapping, and
+ * {@code index.bin} holds one fixed-size record (digest, offset, dimension) per vector.
+ * Both files are append-only; a record is written after its vector, so a crash at
+ * worst loses the last entry, and records pointing past the end of the vector file
+ * are ignored on load.
+ */
+public class EmbeddingCache implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingCache.class);
+
+    static final String VECTORS_FILE = "vectors.f32";
+    static final String INDEX_FILE = "index.bin";
+    private static final int DIGEST_BYTES = 32;
+    static final int RECORD_BYTES = DIGEST_BYTES + Long.BYTES + Integer.BYTES;
+    // One MappedByteBuffer addresses at most 2 GB; past that new vectors stay heap-only.
+    private static final long MAX_VECTOR_BYTES = Integer.MAX_VALUE;
+
+    /** Lookups served from heap or disk, lookups that missed, and entry counts per tier. */
+    public record Stats(long heapHits, long diskHits, long misses, int heapEntries, int diskEntries) {
+        public double hitRatio() {
+            long total = heapHits + diskHits + misses;
+            return total == 0 ? 0 : (double) (heapHits + diskHits) / total;
+        }
+    }
+
+    private record Slot(long offset, int dimension) {}
+
+    private final LinkedHashMap<String, float[]> heap;
+    private final Map<String, Slot> slots = new HashMap<>();
+    private final FileChannel vectors;
+    private final FileChannel index;
+    private MappedByteBuffer mapped;
+    private long vectorsEnd;
+    private long indexEnd;
+    private boolean full;
+    private final LongAdder heapHits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private EmbeddingCache(int heapEntries, FileChannel vectors, FileChannel index) {
+        this.heap = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, float[]> eldest) {
+                return size() > heapEntries;
+            }
+        };
+        this.vectors = vectors;
+        this.index = index;
+    }
+
+    /** Heap-only cache; nothing survives a restart. */
+    public static EmbeddingCache inMemory(int heapEntries) {
+        return new EmbeddingCache(heapEntries, null, null);
+    }
+
+    /** Heap LRU over the disk tier in {@code dir}, which is created if missing and loaded if present. */
+    public static EmbeddingCache open(Path dir, int heapEntries) throws IOException {
+        Files.createDirectories(dir);
+        var vectors = FileChannel.open(dir.resolve(VECTORS_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileChannel index;
+        try {
+            index = FileChannel.open(dir.resolve(INDEX_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            vectors.close();
+            throw e;
+        }
+        var cache = new EmbeddingCache(heapEntries, vectors, index);
+        try {
+            cache.load();
+        } catch (IOException e) {
+            cache.close();
+            throw e;
+        }
+        log.info("Embedding cache at {}: {} vectors", dir, cache.slots.size());
+        return cache;
+    }
+
+    public float[] get(String model, String text) {
+        var key = key(model, text);
+        synchronized (this) {
+            var vec = heap.get(key);
+            if (vec != null) {
+                heapHits.increment();
+                return vec;
+            }
+            var slot = slots.get(key);
+            if (slot != null) {
+                vec = read(slot);
+                if (vec != null) {
+                    heap.put(key, vec);
+                    diskHits.increment();
+                    return vec;
+                }
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(String model, String text, float[] vector) {
+        if (vector == null) return;
+        var key = key(model, text);
+        synchronized (this) {
+            heap.put(key, vector);
+            if (vectors != null && !slots.containsKey(key)) append(key, vector);
+        }
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(heapHits.sum(), diskHits.sum(), misses.sum(), heap.size(), slots.size());
+    }
+
+    @Override
+    public synchronized void close() {
+        mapped = null;
+        for (var channel : new FileChannel[]{vectors, index}) {
+            if (channel == null) continue;
+            try {
+                channel.force(false);
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Failed to close embedding cache: {}", e.getMessage());
+            }
+        }
+    }
+
+    /** Hex SHA-256 of model and text, separated by a NUL so ("ab", "c") and ("a", "bc") differ. */
+    static String key(String model, String text) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            digest.update((model != null ? model : "").getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(text.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+
+    private void load() throws IOException {
+        vectorsEnd = vectors.size();
+        long records = index.size() / RECORD_BYTES;
+        var buf = ByteBuffer.allocate((int) Math.min(records * RECORD_BYTES, 1 << 20));
+        long pos = 0;
+        var digest = new byte[DIGEST_BYTES];
+        while (pos < records * RECORD_BYTES) {
+            buf.clear();
+            buf.limit((int) Math.min(buf.capacity(), records * RECORD_BYTES - pos));
+            while (buf.hasRemaining()) {
+                if (index.read(buf, pos + buf.position()) < 0) break;
+            }
+            buf.flip();
+            while (buf.remaining() >= RECORD_BYTES) {
+                buf.get(digest);
+                long offset = buf.getLong();
+                int dimension = buf.getInt();
+                if (dimension > 0 && offset >= 0 && offset + (long) dimension * Float.BYTES <= vectorsEnd) {
+                    slots.put(HexFormat.of().formatHex(digest), new Slot(offset, dimension));
+                }
+            }
+            pos += buf.position();
+        }
+        // Drop a torn trailing record so the next append starts on a record boundary.
+        indexEnd = records * RECORD_BYTES;
+        if (index.size() != indexEnd) index.truncate(indexEnd);
+        if (vectorsEnd > 0) mapped = vectors.map(FileChannel.MapMode.READ_ONLY, 0, vectorsEnd);
+    }
+
+    private float[] read(Slot slot) {
+        int bytes = slot.dimension() * Float.BYTES;
+        try {
+            if (mapped == null || slot.offset() + bytes > mapped.capacity()) {
+                mapped = vectors.map(FileChannel.MapMode.READ_ONLY, 0, vectorsEnd);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to map embedding cache: {}", e.getMessage());
+            return null;
+        }
+        var out = new float[slot.dimension()];
+        mapped.slice((int) slot.offset(), bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(out);
+        return out;
+    }
+
+    private void append(String key, float[] vector) {
+        long bytes = (long) vector.length * Float.BYTES;
+        if (vectorsEnd + bytes > MAX_VECTOR_BYTES) {
+            if (!full) log.warn("Embedding cache file reached 2 GB; new vectors are kept in memory only");
+            full = true;
+            return;
+        }
+        try {
+            var data = ByteBuffer.allocate((int) bytes).order(ByteOrder.LITTLE_ENDIAN);
+            data.asFloatBuffer().put(vector);
+            writeFully(vectors, data, vectorsEnd);
+
+            var record = ByteBuffer.allocate(RECORD_BYTES);
+            record.put(HexFormat.of().parseHex(key)).putLong(vectorsEnd).putInt(vector.length).flip();
+            writeFully(index, record, indexEnd);
+
+            slots.put(key, new Slot(vectorsEnd, vector.length));
+            vectorsEnd += bytes;
+            indexEnd += RECORD_BYTES;
+        } catch (IOException e) {
+            log.warn("Failed to persist embedding: {}", e.getMessage());
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            position += channel.write(buf, position);
+        }
+    }
+}
@@ -1,16 +1,40 @@
 package com.javaclaw.memory;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.javaclaw.providers.ProviderException;
+import com.javaclaw.providers.ResilientCall;
+import com.javaclaw.providers.RetryBudget;
+import com.javaclaw.shared.concurrent.MicroBatcher;
+import com.javaclaw.shared.concurrent.SingleFlight;
+import com.javaclaw.shared.config.EmbeddingConfig;
+import com.javaclaw.shared.http.HttpClientRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 
+/**
+ * Client for an OpenAI-compatible {@code /embeddings} endpoint. Single {@link #embed}
+ * calls arriving within {@code batchWindowMs} of each other are merged into one request
+ * with an array {@code input}; {@link #embedBatch} splits bulk work into
+ * {@code batchSize} chunks and sends up to {@code concurrency} of them at once.
+ * With an {@link EmbeddingCache} set, texts already embedded with this model are
+ * answered from it and never reach the endpoint.
+ */
 public class EmbeddingService {
 
     private static final Logger log = LoggerFactory.getLogger(EmbeddingService.class);
@@ -20,41 +44,167 @@ public class EmbeddingService {
     private final String apiKey;
     private final String model;
     private final HttpClient httpClient;
+    private final int batchSize;
+    private final Semaphore requests;
+    private final SingleFlight<String, float[]> inFlight = new SingleFlight<>();
+    private final MicroBatcher<String, float[]> batcher;
+    private volatile RetryBudget retryBudget = RetryBudget.unlimited();
+    private volatile EmbeddingCache cache;
 
     public EmbeddingService(String baseUrl, String apiKey, String model) {
+        this(baseUrl, apiKey, model, EmbeddingConfig.defaults());
+    }
+
+    public EmbeddingService(String baseUrl, String apiKey, String model, EmbeddingConfig config) {
         this.baseUrl = baseUrl.replaceAll("/+$", "");
         this.apiKey = apiKey;
         this.model = model;
-        this.httpClient = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(10))
-                .build();
+        this.httpClient = HttpClientRegistry.shared().client();
+        this.batchSize = Math.max(config.batchSize(), 1);
+        this.requests = new Semaphore(Math.max(config.concurrency(), 1));
+        this.batcher = new MicroBatcher<>(batchSize, config.batchWindowMs(), this::send);
+    }
+
+    public String model() {
+        return model;
+    }
+
+    /** Retries of failed embedding calls draw on this budget; unlimited until set. */
+    public void setRetryBudget(RetryBudget retryBudget) {
+        this.retryBudget = retryBudget;
+    }
+
+    public void setCache(EmbeddingCache cache) {
+        this.cache = cache;
+    }
+
+    public EmbeddingCache cache() {
+        return cache;
     }
 
+    /**
+     * Concurrent calls for the same text share one request, and calls for different texts
+     * close together in time share one batch; callers must not mutate the result.
+     * Transient failures are retried; returns null once retries are exhausted or not allowed.
+     */
     public float[] embed(String text) {
+        var c = cache;
+        if (c != null) {
+            var cached = c.get(model, text);
+            if (cached != null) return cached;
+        }
         try {
-            var body = MAPPER.writeValueAsString(Map.of("model", model, "input", text));
-            var req = HttpRequest.newBuilder()
-                    .uri(URI.create(baseUrl + "/embeddings"))
-                    .header("Content-Type", "application/json")
-                    .header("Authorization", "Bearer " + apiKey)
-                    .timeout(Duration.ofSeconds(30))
-                    .POST(HttpRequest.BodyPublishers.ofString(body))
-                    .build();
-            var resp = httpClient.send(req, HttpResponse.BodyHandlers.ofString());
-            if (resp.statusCode() != 200) {
-                log.error("Embedding API error {}: {}", resp.statusCode(), resp.body());
-                return null;
+            var vec = inFlight.execute(text, () -> await(batcher.submit(text)));
+            if (c != null) c.put(model, text, vec);
+            return vec;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Embedding interrupted");
+            return null;
+        } catch (RuntimeException e) {
+            log.error("Embedding failed", e);
+            return null;
+        }
+    }
+
+    /**
+     * Embeddings for {@code texts} in the same order. Chunks of {@code batch-size} texts go
+     * out in parallel, bounded by {@code concurrency}; a chunk that still fails after retries
+     * leaves nulls in its positions.
+     */
+    public List<float[]> embedBatch(List<String> texts) {
+        if (texts.isEmpty()) return List.of();
+        var results = new float[texts.size()][];
+        var c = cache;
+        var missing = new ArrayList<Integer>();
+        for (int i = 0; i < texts.size(); i++) {
+            results[i] = c != null ? c.get(model, texts.get(i)) : null;
+            if (results[i] == null) missing.add(i);
+        }
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int from = 0; from < missing.size(); from += batchSize) {
+                var positions = missing.subList(from, Math.min(from + batchSize, missing.size()));
+                var chunk = positions.stream().map(texts::get).toList();
+                executor.submit(() -> {
+                    try {
+                        var vectors = send(chunk);
+                        for (int i = 0; i < vectors.size(); i++) {
+                            results[positions.get(i)] = vectors.get(i);
+                            if (c != null) c.put(model, chunk.get(i), vectors.get(i));
+                        }
+                    } catch (RuntimeException e) {
+                        log.error("Embedding batch of {} failed", chunk.size(), e);
+                    }
+                });
             }
-            var root = MAPPER.readTree(resp.body());
-            var arr = root.path("data").path(0).path("embedding");
+        }
+        return Arrays.asList(results);
+    }
+
+    /** One request for {@code texts}, retried, and counted against the concurrency limit. */
+    private List<float[]> send(List<String> texts) {
+        try {
+            requests.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted waiting for an embedding slot", e);
+        }
+        try {
+            return ResilientCall.execute(() -> fetch(texts), 2, 500, retryBudget);
+        } finally {
+            requests.release();
+        }
+    }
+
+    private List<float[]> fetch(List<String> texts) throws IOException, InterruptedException {
+        var body = MAPPER.writeValueAsString(Map.of("model", model, "input", texts));
+        var req = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/embeddings"))
+                .header("Content-Type", "application/json")
+                .header("Authorization", "Bearer " + apiKey)
+                .timeout(Duration.ofSeconds(30))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        HttpResponse<String> resp;
+        try {
+            resp = httpClient.send(req, HttpResponse.BodyHandlers.ofString());
+        } catch (IOException e) {
+            throw ProviderException.transport("embeddings", e);
+        }
+        if (resp.statusCode() != 200) {
+            throw ProviderException.fromResponse("embeddings", resp.statusCode(), resp.headers(), resp.body());
+        }
+        var data = MAPPER.readTree(resp.body()).path("data");
+        if (data.size() != texts.size()) {
+            throw new IOException("Expected " + texts.size() + " embeddings, got " + data.size());
+        }
+        var vectors = new ArrayList<float[]>(Collections.nCopies(texts.size(), (float[]) null));
+        for (int n = 0; n < data.size(); n++) {
+            var item = data.get(n);
+            // Entries carry their input position; servers are not required to keep order.
+            int index = item.path("index").asInt(n);
+            if (index < 0 || index >= texts.size()) {
+                throw new IOException("Embedding index " + index + " is outside the " + texts.size() + " inputs sent");
+            }
+            if (vectors.get(index) != null) {
+                throw new IOException("Embedding index " + index + " returned twice");
+            }
+            var arr = item.path("embedding");
             var vec = new float[arr.size()];
             for (int i = 0; i < arr.size(); i++) {
                 vec[i] = (float) arr.get(i).asDouble();
             }
-            return vec;
-        } catch (Exception e) {
-            log.error("Embedding failed", e);
-            return null;
+            vectors.set(index, vec);
+        }
+        return vectors;
+    }
+
+    private static float[] await(CompletableFuture<float[]> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new RuntimeException(e.getCause());
         }
     }
 }
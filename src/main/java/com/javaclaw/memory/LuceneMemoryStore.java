@@ -42,26 +42,43 @@ public class LuceneMemoryStore implements MemoryStore {
     @Override
     public void store(String content, Map<String, Object> metadata) {
         try {
-            var id = UUID.randomUUID().toString();
-            var doc = new Document();
-            doc.add(new StringField("id", id, Field.Store.YES));
-            doc.add(new TextField("content", content, Field.Store.YES));
-
-            if (metadata != null && !metadata.isEmpty()) {
-                doc.add(new StoredField("metadata", MAPPER.writeValueAsString(metadata)));
-            }
+            writer.addDocument(document(content, metadata, embeddingService.embed(content)));
+            writer.commit();
+        } catch (Exception e) {
+            log.error("Failed to store memory", e);
+        }
+    }
 
-            var vec = embeddingService.embed(content);
-            if (vec != null) {
-                if (vectorDimension < 0) vectorDimension = vec.length;
-                doc.add(new KnnFloatVectorField("embedding", vec));
+    /** Embeds all contents in batched requests and commits once. */
+    @Override
+    public void storeAll(List<String> contents, Map<String, Object> metadata) {
+        if (contents.isEmpty()) return;
+        try {
+            var vectors = embeddingService.embedBatch(contents);
+            for (int i = 0; i < contents.size(); i++) {
+                writer.addDocument(document(contents.get(i), metadata, vectors.get(i)));
             }
-
-            writer.addDocument(doc);
             writer.commit();
         } catch (Exception e) {
-            log.error("Failed to store memory", e);
+            log.error("Failed to store {} memories", contents.size(), e);
+        }
+    }
+
+    private Document document(String content, Map<String, Object> metadata, float[] vec) throws IOException {
+        var id = UUID.randomUUID().toString();
+        var doc = new Document();
+        doc.add(new StringField("id", id, Field.Store.YES));
+        doc.add(new TextField("content", content, Field.Store.YES));
+
+        if (metadata != null && !metadata.isEmpty()) {
+            doc.add(new StoredField("metadata", MAPPER.writeValueAsString(metadata)));
+        }
+
+        if (vec != null) {
+            if (vectorDimension < 0) vectorDimension = vec.length;
+            doc.add(new KnnFloatVectorField("embedding", vec));
         }
+        return doc;
     }
 
     @Override
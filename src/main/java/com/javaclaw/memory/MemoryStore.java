@@ -5,6 +5,12 @@ import java.util.Map;
 
 public interface MemoryStore {
     void store(String content, Map<String, Object> metadata);
+
+    /** Stores each of {@code contents} with the same metadata; implementations may batch the work. */
+    default void storeAll(List<String> contents, Map<String, Object> metadata) {
+        for (var content : contents) store(content, metadata);
+    }
+
     List<MemoryResult> recall(String query, int topK);
     void forget(String memoryId);
 }
@@ -14,9 +14,9 @@ public class CostTracker {
 
     private static final Logger log = LoggerFactory.getLogger(CostTracker.class);
 
-    // price per 1M tokens (USD)
+    // price per 1M tokens (USD): prompt, completion and, where discounted, prompt cache hits
     private static final Map<String, double[]> PRICING = Map.of(
-            "deepseek-chat", new double[]{0.14, 0.28},
+            "deepseek-chat", new double[]{0.14, 0.28, 0.014},
             "qwen3:4b", new double[]{0.0, 0.0}
     );
 
@@ -26,25 +26,45 @@ public class CostTracker {
         this.dataSource = dataSource;
     }
 
+    /** {prompt, completion[, cached prompt]} USD per 1M tokens, or null when the model has no known price. */
+    public static double[] pricing(String model) {
+        var prices = model != null ? PRICING.get(model) : null;
+        return prices != null ? prices.clone() : null;
+    }
+
     public void record(String sessionId, String provider, String model,
                        int promptTokens, int completionTokens) {
-        var prices = PRICING.getOrDefault(model, new double[]{0, 0});
-        var cost = (promptTokens * prices[0] + completionTokens * prices[1]) / 1_000_000.0;
+        record(sessionId, provider, model, promptTokens, completionTokens, 0);
+    }
+
+    /** {@code cachedTokens} is the part of {@code promptTokens} served from the provider's prefix cache. */
+    public void record(String sessionId, String provider, String model,
+                       int promptTokens, int completionTokens, int cachedTokens) {
+        var cost = cost(model, promptTokens, completionTokens, cachedTokens);
         try (var conn = dataSource.getConnection();
              var ps = conn.prepareStatement(
-                     "INSERT INTO llm_usage (session_id, provider, model, prompt_tokens, completion_tokens, cost_usd) VALUES (?,?,?,?,?,?)")) {
+                     "INSERT INTO llm_usage (session_id, provider, model, prompt_tokens, completion_tokens, cost_usd, cached_tokens) VALUES (?,?,?,?,?,?,?)")) {
             ps.setString(1, sessionId);
             ps.setString(2, provider);
             ps.setString(3, model);
             ps.setInt(4, promptTokens);
             ps.setInt(5, completionTokens);
             ps.setBigDecimal(6, BigDecimal.valueOf(cost));
+            ps.setInt(7, cachedTokens);
             ps.executeUpdate();
         } catch (Exception e) {
             log.error("Failed to record usage", e);
         }
     }
 
+    /** USD for one call at {@link #pricing} rates; unpriced models cost 0. */
+    public static double cost(String model, int promptTokens, int completionTokens, int cachedTokens) {
+        var prices = PRICING.getOrDefault(model, new double[]{0, 0});
+        int cached = Math.min(Math.max(cachedTokens, 0), promptTokens);
+        double cachedPrice = prices.length > 2 ? prices[2] : prices[0];
+        return ((promptTokens - cached) * prices[0] + cached * cachedPrice + completionTokens * prices[1]) / 1_000_000.0;
+    }
+
     public Map<String, Object> dailySummary() {
         return summary("created_at >= CURRENT_DATE");
     }
@@ -56,13 +76,18 @@ public class CostTracker {
     private Map<String, Object> summary(String whereClause) {
         try (var conn = dataSource.getConnection();
              var ps = conn.prepareStatement(
-                     "SELECT COALESCE(SUM(prompt_tokens),0), COALESCE(SUM(completion_tokens),0), COALESCE(SUM(cost_usd),0) FROM llm_usage WHERE " + whereClause);
+                     "SELECT COALESCE(SUM(prompt_tokens),0), COALESCE(SUM(completion_tokens),0), COALESCE(SUM(cost_usd),0), "
+                             + "COALESCE(SUM(cached_tokens),0) FROM llm_usage WHERE " + whereClause);
              var rs = ps.executeQuery()) {
             if (rs.next()) {
+                int prompt = rs.getInt(1);
+                int cached = rs.getInt(4);
                 return Map.of(
-                        "promptTokens", rs.getInt(1),
+                        "promptTokens", prompt,
                         "completionTokens", rs.getInt(2),
-                        "costUsd", rs.getBigDecimal(3));
+                        "costUsd", rs.getBigDecimal(3),
+                        "cachedTokens", cached,
+                        "cacheHitRatio", prompt > 0 ? (double) cached / prompt : 0.0);
             }
         } catch (Exception e) {
             log.error("Failed to query usage summary", e);
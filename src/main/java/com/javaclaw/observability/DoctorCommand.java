@@ -1,11 +1,16 @@
 package com.javaclaw.observability;
 
+import com.javaclaw.providers.CircuitBreaker;
+import com.javaclaw.providers.CircuitBreakerRegistry;
+import com.javaclaw.shared.http.HttpClientRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.sql.DataSource;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
 
 public class DoctorCommand {
 
@@ -13,10 +18,22 @@ public class DoctorCommand {
 
     private final DataSource dataSource;
     private final String embeddingBaseUrl;
+    private final CircuitBreakerRegistry breakers;
+    private final List<Supplier<List<String>>> extraChecks = new CopyOnWriteArrayList<>();
 
     public DoctorCommand(DataSource dataSource, String embeddingBaseUrl) {
+        this(dataSource, embeddingBaseUrl, CircuitBreakerRegistry.disabled());
+    }
+
+    public DoctorCommand(DataSource dataSource, String embeddingBaseUrl, CircuitBreakerRegistry breakers) {
         this.dataSource = dataSource;
         this.embeddingBaseUrl = embeddingBaseUrl;
+        this.breakers = breakers;
+    }
+
+    /** Adds report lines computed on each run, for components this class doesn't know about. */
+    public void addCheck(Supplier<List<String>> check) {
+        extraChecks.add(check);
     }
 
     public String run() {
@@ -24,6 +41,15 @@ public class DoctorCommand {
         results.add(checkDatabase());
         results.add(checkEmbeddingEndpoint());
         results.add(checkLuceneIndex());
+        results.add(checkHttpClients());
+        results.addAll(checkCircuitBreakers());
+        for (var check : extraChecks) {
+            try {
+                results.addAll(check.get());
+            } catch (RuntimeException e) {
+                results.add("[FAIL] " + e.getMessage());
+            }
+        }
         results.add(checkJavaVersion());
         return String.join("\n", results);
     }
@@ -40,7 +66,7 @@ public class DoctorCommand {
 
     private String checkEmbeddingEndpoint() {
         try {
-            var client = java.net.http.HttpClient.newHttpClient();
+            var client = HttpClientRegistry.shared().client(java.net.http.HttpClient.Redirect.NORMAL);
             var req = java.net.http.HttpRequest.newBuilder()
                     .uri(java.net.URI.create(embeddingBaseUrl))
                     .timeout(java.time.Duration.ofSeconds(5))
@@ -62,6 +88,27 @@ public class DoctorCommand {
                 : "[WARN] Lucene index directory not found (will be created on first store)";
     }
 
+    private String checkHttpClients() {
+        var stats = HttpClientRegistry.shared().stats();
+        return "[OK] HTTP client pool: " + stats.get("clients") + " clients, "
+                + stats.get("requests") + " requests (" + stats.get("failures") + " failed, "
+                + stats.get("inFlight") + " in flight), versions " + stats.get("versions")
+                + ", hosts " + stats.get("hosts");
+    }
+
+    private List<String> checkCircuitBreakers() {
+        if (!breakers.enabled()) return List.of("[OK] Circuit breakers disabled");
+        var snapshot = breakers.snapshot();
+        if (snapshot.isEmpty()) return List.of("[OK] Circuit breakers: no calls yet");
+        var lines = new ArrayList<String>();
+        snapshot.forEach((key, s) -> lines.add(
+                (s.state() == CircuitBreaker.State.CLOSED ? "[OK]" : "[WARN]")
+                + " Circuit " + key + ": " + s.state()
+                + String.format(" (health %.2f, %d calls, %.0f%% failed, %.0f%% slow)",
+                        s.health(), s.calls(), s.failureRate() * 100, s.slowCallRate() * 100)));
+        return lines;
+    }
+
     private String checkJavaVersion() {
         var ver = Runtime.version().feature();
         return ver >= 21
@@ -1,10 +1,19 @@
 package com.javaclaw.observability;
 
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collectors;
+
 public class MetricsConfig {
 
     private final MeterRegistry registry;
@@ -30,4 +39,68 @@ public class MetricsConfig {
     public Counter tokensUsed() {
         return Counter.builder("javaclaw.tokens.total").register(registry);
     }
+
+    public Counter llmCacheHits() {
+        return Counter.builder("javaclaw.llm.cache.hits").register(registry);
+    }
+
+    public Counter llmCacheMisses() {
+        return Counter.builder("javaclaw.llm.cache.misses").register(registry);
+    }
+
+    public Counter llmCacheEvictions() {
+        return Counter.builder("javaclaw.llm.cache.evictions").register(registry);
+    }
+
+    public Timer admissionWait(String provider) {
+        return Timer.builder("javaclaw.llm.admission.wait").tag("provider", provider).register(registry);
+    }
+
+    public Counter admissionShed(String provider) {
+        return Counter.builder("javaclaw.llm.admission.shed").tag("provider", provider).register(registry);
+    }
+
+    public <T> Gauge admissionQueueDepth(String provider, T state, ToDoubleFunction<T> depth) {
+        return Gauge.builder("javaclaw.llm.admission.queue", state, depth)
+                .tag("provider", provider).register(registry);
+    }
+
+    public <T> Gauge admissionLimit(String provider, T state, ToDoubleFunction<T> limit) {
+        return Gauge.builder("javaclaw.llm.admission.limit", state, limit)
+                .tag("provider", provider).register(registry);
+    }
+
+    /**
+     * One /doctor line per registered meter (cache hits/misses/evictions, admission wait,
+     * shed, queue and limit per provider, ...), since the registry is not exported anywhere.
+     */
+    public List<String> report() {
+        var meters = new ArrayList<>(registry.getMeters());
+        if (meters.isEmpty()) return List.of("[OK] Metrics: none registered");
+        meters.sort(Comparator.comparing(MetricsConfig::label));
+        var lines = new ArrayList<String>();
+        for (var meter : meters) {
+            String value;
+            if (meter instanceof Counter c) {
+                value = String.format("%.0f", c.count());
+            } else if (meter instanceof Timer t) {
+                value = String.format("%d calls, mean %.1fms, max %.1fms",
+                        t.count(), t.mean(TimeUnit.MILLISECONDS), t.max(TimeUnit.MILLISECONDS));
+            } else if (meter instanceof Gauge g) {
+                value = String.format("%.0f", g.value());
+            } else {
+                continue;
+            }
+            lines.add("[OK] Metric " + label(meter) + ": " + value);
+        }
+        return lines;
+    }
+
+    private static String label(Meter meter) {
+        var id = meter.getId();
+        if (id.getTags().isEmpty()) return id.getName();
+        return id.getName() + id.getTags().stream()
+                .map(t -> t.getKey() + "=" + t.getValue())
+                .collect(Collectors.joining(",", "{", "}"));
+    }
 }
@@ -0,0 +1,214 @@
+package com.javaclaw.providers;
+
+import com.javaclaw.shared.config.AdmissionConfig;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Client-side admission for one provider: a requests/min and a tokens/min token
+ * bucket plus an AIMD concurrency limit (+1/limit per success, halved on overload).
+ * Callers wait in FIFO order until all three allow them through, and are shed with
+ * {@link AdmissionRejectedException} if the queue is full or their wait runs past
+ * the deadline. A 429's Retry-After pauses admission instead of a caller sleeping.
+ */
+public class AdmissionController {
+
+    private static final double BACKOFF_RATIO = 0.5;
+    private static final long NANOS_PER_MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    private enum Outcome { SUCCESS, OVERLOADED, NEUTRAL }
+
+    private final String providerId;
+    private final AdmissionConfig config;
+    private final AdmissionConfig.RateLimit rate;
+    private final LongSupplier nanoClock;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final ArrayDeque<Object> queue = new ArrayDeque<>();
+
+    private double requestBucket;
+    private double tokenBucket;
+    private long lastRefill;
+    private long pausedUntil;
+    private double limit;
+    private int inFlight;
+
+    /** Held for the duration of one call; release exactly once. */
+    public final class Permit {
+        private final int estimatedTokens;
+        private final long waitedNanos;
+        private boolean released;
+
+        private Permit(int estimatedTokens, long waitedNanos) {
+            this.estimatedTokens = estimatedTokens;
+            this.waitedNanos = waitedNanos;
+        }
+
+        public long waitedNanos() { return waitedNanos; }
+
+        /** Call completed; charges tokens used beyond the estimate and grows the limit. */
+        public void success(int actualTokens) {
+            release(Outcome.SUCCESS, Math.max(actualTokens - estimatedTokens, 0), 0);
+        }
+
+        /** Provider pushed back (429/503/timeout); halves the limit and honours Retry-After. */
+        public void overloaded(long retryAfterMs) {
+            release(Outcome.OVERLOADED, 0, retryAfterMs);
+        }
+
+        /** Failed for reasons unrelated to load; frees the slot without adjusting the limit. */
+        public void release() {
+            release(Outcome.NEUTRAL, 0, 0);
+        }
+
+        private void release(Outcome outcome, int extraTokens, long retryAfterMs) {
+            lock.lock();
+            try {
+                if (released) return;
+                released = true;
+                inFlight--;
+                switch (outcome) {
+                    case SUCCESS -> limit = Math.min(config.maxConcurrency(), limit + 1.0 / limit);
+                    case OVERLOADED -> {
+                        limit = Math.max(config.minConcurrency(), limit * BACKOFF_RATIO);
+                        if (retryAfterMs > 0) {
+                            pausedUntil = Math.max(pausedUntil, nanoClock.getAsLong()
+                                    + TimeUnit.MILLISECONDS.toNanos(retryAfterMs));
+                        }
+                    }
+                    case NEUTRAL -> {}
+                }
+                if (rate.tokensPerMinute() > 0) tokenBucket -= extraTokens;
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    public AdmissionController(String providerId, AdmissionConfig config) {
+        this(providerId, config, System::nanoTime);
+    }
+
+    AdmissionController(String providerId, AdmissionConfig config, LongSupplier nanoClock) {
+        this.providerId = providerId;
+        this.config = config;
+        this.rate = config.limitFor(providerId);
+        this.nanoClock = nanoClock;
+        this.requestBucket = rate.requestsPerMinute();
+        this.tokenBucket = rate.tokensPerMinute();
+        this.lastRefill = nanoClock.getAsLong();
+        this.limit = Math.max(config.initialConcurrency(), config.minConcurrency());
+    }
+
+    public Permit acquire(int estimatedTokens, long timeoutMs) throws InterruptedException {
+        // A request bigger than the whole bucket only waits for a full bucket.
+        int tokens = rate.tokensPerMinute() > 0 ? Math.min(estimatedTokens, rate.tokensPerMinute()) : 0;
+        long start = nanoClock.getAsLong();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        var ticket = new Object();
+
+        lock.lock();
+        try {
+            refill(start);
+            if (queue.isEmpty() && blockedFor(tokens, start) == 0) {
+                return grant(tokens, 0);
+            }
+            if (queue.size() >= config.maxQueue()) {
+                throw new AdmissionRejectedException(providerId, "queue full (" + queue.size() + " waiting)");
+            }
+            queue.addLast(ticket);
+            try {
+                while (true) {
+                    long now = nanoClock.getAsLong();
+                    refill(now);
+                    long waitNanos = queue.peekFirst() == ticket ? blockedFor(tokens, now) : Long.MAX_VALUE;
+                    if (waitNanos == 0) {
+                        return grant(tokens, now - start);
+                    }
+                    long remaining = deadline - now;
+                    if (remaining <= 0) {
+                        throw new AdmissionRejectedException(providerId,
+                                "queued " + TimeUnit.NANOSECONDS.toMillis(now - start) + "ms past deadline");
+                    }
+                    changed.awaitNanos(Math.min(waitNanos, remaining));
+                }
+            } finally {
+                queue.remove(ticket);
+                changed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int queueDepth() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public double limit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Permit grant(int tokens, long waitedNanos) {
+        if (rate.requestsPerMinute() > 0) requestBucket -= 1;
+        tokenBucket -= tokens;
+        inFlight++;
+        return new Permit(tokens, waitedNanos);
+    }
+
+    /** 0 if the head of the queue may go now, else roughly how long until that may change. */
+    private long blockedFor(int tokens, long now) {
+        if (now < pausedUntil) return pausedUntil - now;
+        if (inFlight >= (int) limit) return Long.MAX_VALUE;
+        long wait = 0;
+        if (rate.requestsPerMinute() > 0 && requestBucket < 1) {
+            wait = Math.max(wait, nanosToRefill(1 - requestBucket, rate.requestsPerMinute()));
+        }
+        if (rate.tokensPerMinute() > 0 && tokenBucket < tokens) {
+            wait = Math.max(wait, nanosToRefill(tokens - tokenBucket, rate.tokensPerMinute()));
+        }
+        return wait;
+    }
+
+    private void refill(long now) {
+        long elapsed = now - lastRefill;
+        if (elapsed <= 0) return;
+        lastRefill = now;
+        if (rate.requestsPerMinute() > 0) {
+            requestBucket = Math.min(rate.requestsPerMinute(),
+                    requestBucket + (double) elapsed * rate.requestsPerMinute() / NANOS_PER_MINUTE);
+        }
+        if (rate.tokensPerMinute() > 0) {
+            tokenBucket = Math.min(rate.tokensPerMinute(),
+                    tokenBucket + (double) elapsed * rate.tokensPerMinute() / NANOS_PER_MINUTE);
+        }
+    }
+
+    private static long nanosToRefill(double missing, int perMinute) {
+        return Math.max((long) Math.ceil(missing * NANOS_PER_MINUTE / perMinute), 1);
+    }
+}
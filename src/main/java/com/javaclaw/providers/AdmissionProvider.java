@@ -0,0 +1,166 @@
+package com.javaclaw.providers;
+
+import com.javaclaw.observability.MetricsConfig;
+import com.javaclaw.shared.concurrent.Deadlines;
+import com.javaclaw.shared.config.AdmissionConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+
+import java.io.Closeable;
+import java.net.http.HttpTimeoutException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decorator: every call first passes the provider's {@link AdmissionController}, so
+ * bursts queue (or are shed) locally instead of being answered with 429s. Wraps a
+ * single concrete provider and keeps its id, so it sits below {@link ReliableProvider}.
+ */
+public class AdmissionProvider implements ModelProvider {
+
+    private final ModelProvider delegate;
+    private final AdmissionController controller;
+    private final long queueTimeoutMs;
+    private final Timer waitTimer;
+    private final Counter shed;
+
+    public AdmissionProvider(ModelProvider delegate, AdmissionConfig config, MetricsConfig metrics) {
+        this(delegate, new AdmissionController(delegate.id(), config), config.queueTimeoutMs(), metrics);
+    }
+
+    AdmissionProvider(ModelProvider delegate, AdmissionController controller, long queueTimeoutMs,
+                      MetricsConfig metrics) {
+        this.delegate = delegate;
+        this.controller = controller;
+        this.queueTimeoutMs = queueTimeoutMs;
+        this.waitTimer = metrics.admissionWait(delegate.id());
+        this.shed = metrics.admissionShed(delegate.id());
+        metrics.admissionQueueDepth(delegate.id(), controller, AdmissionController::queueDepth);
+        metrics.admissionLimit(delegate.id(), controller, AdmissionController::limit);
+    }
+
+    @Override
+    public String id() { return delegate.id(); }
+
+    public AdmissionController controller() { return controller; }
+
+    @Override
+    public ChatResponse chat(ChatRequest request) {
+        var permit = admit(request);
+        try {
+            var resp = delegate.chat(request);
+            permit.success(totalTokens(resp));
+            return resp;
+        } catch (RuntimeException e) {
+            settle(permit, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public Iterator<ChatEvent> chatStream(ChatRequest request) {
+        var permit = admit(request);
+        try {
+            return new AdmittedStream(delegate.chatStream(request), permit);
+        } catch (RuntimeException e) {
+            settle(permit, e);
+            throw e;
+        }
+    }
+
+    /** Rough prompt size (4 chars per token) for the tokens/min bucket; usage corrects it afterwards. */
+    static int estimateTokens(ChatRequest request) {
+        long chars = 0;
+        for (var msg : request.messages()) {
+            var content = msg.get("content");
+            if (content != null) chars += content.toString().length();
+        }
+        return (int) Math.min(chars / 4 + 1, Integer.MAX_VALUE);
+    }
+
+    private AdmissionController.Permit admit(ChatRequest request) {
+        try {
+            var permit = controller.acquire(estimateTokens(request),
+                    Deadlines.clampMillis(request.deadline(), queueTimeoutMs));
+            waitTimer.record(permit.waitedNanos(), TimeUnit.NANOSECONDS);
+            return permit;
+        } catch (AdmissionRejectedException e) {
+            shed.increment();
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted waiting for admission to " + delegate.id(), e);
+        }
+    }
+
+    private static void settle(AdmissionController.Permit permit, RuntimeException e) {
+        int code = ResilientCall.statusCode(e);
+        if (CircuitBreakerRegistry.cancelled(e)) {
+            permit.release();
+        } else if (code == 429 || code == 503 || timedOut(e)) {
+            permit.overloaded(ResilientCall.retryAfterMs(e));
+        } else {
+            permit.release();
+        }
+    }
+
+    private static boolean timedOut(Throwable t) {
+        for (; t != null; t = t.getCause()) {
+            if (t instanceof HttpTimeoutException) return true;
+        }
+        return false;
+    }
+
+    private static int totalTokens(ChatResponse resp) {
+        if (resp == null || resp.usage() == null) return 0;
+        return resp.usage().getOrDefault("promptTokens", 0) + resp.usage().getOrDefault("completionTokens", 0);
+    }
+
+    /**
+     * Holds the permit until the stream ends, fails or is closed; a consumer that stops
+     * reading must close it, or the slot stays taken.
+     */
+    private static final class AdmittedStream implements Iterator<ChatEvent>, Closeable {
+        private final Iterator<ChatEvent> upstream;
+        private final AdmissionController.Permit permit;
+
+        AdmittedStream(Iterator<ChatEvent> upstream, AdmissionController.Permit permit) {
+            this.upstream = upstream;
+            this.permit = permit;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                boolean more = upstream != null && upstream.hasNext();
+                if (!more) permit.success(0);
+                return more;
+            } catch (RuntimeException e) {
+                settle(permit, e);
+                throw e;
+            }
+        }
+
+        @Override
+        public ChatEvent next() {
+            try {
+                var event = upstream.next();
+                if (event.done()) permit.success(totalTokens(event.response()));
+                return event;
+            } catch (NoSuchElementException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                settle(permit, e);
+                throw e;
+            }
+        }
+
+        /** Abandoned early: free the slot without treating it as a success or overload. */
+        @Override
+        public void close() {
+            permit.release();
+            Streams.closeQuietly(upstream);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.javaclaw.providers;
+
+/** A request was shed before reaching the provider: queue full or queue deadline passed. */
+public class AdmissionRejectedException extends RuntimeException {
+
+    private final String providerId;
+
+    public AdmissionRejectedException(String providerId, String reason) {
+        super("Admission rejected for provider " + providerId + ": " + reason);
+        this.providerId = providerId;
+    }
+
+    public String providerId() { return providerId; }
+}
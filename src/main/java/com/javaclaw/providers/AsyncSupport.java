@@ -0,0 +1,26 @@
+package com.javaclaw.providers;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+final class AsyncSupport {
+
+    private AsyncSupport() {}
+
+    /** Runs {@code body} on a new virtual thread; cancelling the returned future interrupts it. */
+    static <T> CompletableFuture<T> supply(Supplier<T> body) {
+        var future = new CompletableFuture<T>();
+        var thread = Thread.ofVirtual().name("provider-async").unstarted(() -> {
+            try {
+                future.complete(body.get());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        future.whenComplete((r, e) -> {
+            if (future.isCancelled()) thread.interrupt();
+        });
+        thread.start();
+        return future;
+    }
+}
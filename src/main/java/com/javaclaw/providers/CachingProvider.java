@@ -0,0 +1,270 @@
+package com.javaclaw.providers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.javaclaw.observability.MetricsConfig;
+import com.javaclaw.shared.config.LlmCacheConfig;
+import io.micrometer.core.instrument.Counter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.LongSupplier;
+
+/**
+ * Decorator: serves repeated requests from a bounded LRU keyed by the SHA-256 of the
+ * normalised request (model, messages, tools, temperature). Requests that opt out via
+ * {@link ChatRequest#noCache()} or run above the temperature threshold go straight to
+ * the delegate. Entries expire after the TTL and can be persisted to an append-only
+ * JSON-lines file so they survive restarts.
+ */
+public class CachingProvider implements ModelProvider {
+
+    private static final Logger log = LoggerFactory.getLogger(CachingProvider.class);
+    // Sorted keys so Map.of / LinkedHashMap messages with the same content hash the same
+    private static final ObjectMapper CANONICAL = new ObjectMapper()
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final ModelProvider delegate;
+    private final LlmCacheConfig config;
+    private final LongSupplier clock;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    private final Path persistFile;
+    private final LinkedHashMap<String, Entry> entries;
+
+    private record Entry(ChatResponse response, long expiresAt) {}
+
+    public CachingProvider(ModelProvider delegate, LlmCacheConfig config, MetricsConfig metrics) {
+        this(delegate, config, metrics, System::currentTimeMillis);
+    }
+
+    CachingProvider(ModelProvider delegate, LlmCacheConfig config, MetricsConfig metrics, LongSupplier clock) {
+        this.delegate = delegate;
+        this.config = config;
+        this.clock = clock;
+        this.hits = metrics.llmCacheHits();
+        this.misses = metrics.llmCacheMisses();
+        this.evictions = metrics.llmCacheEvictions();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > config.maxEntries()) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.persistFile = config.persistPath() != null && !config.persistPath().isBlank()
+                ? Path.of(config.persistPath()) : null;
+        if (persistFile != null) load();
+    }
+
+    @Override
+    public String id() { return delegate.id(); }
+
+    @Override
+    public ChatResponse chat(ChatRequest request) {
+        if (!cacheable(request)) return delegate.chat(request);
+        var key = key(request);
+        var cached = get(key);
+        if (cached != null) return cached;
+        var resp = delegate.chat(request);
+        put(key, resp);
+        return resp;
+    }
+
+    @Override
+    public Iterator<ChatEvent> chatStream(ChatRequest request) {
+        if (!cacheable(request)) return delegate.chatStream(request);
+        var key = key(request);
+        var cached = get(key);
+        if (cached != null) {
+            var events = new ArrayList<ChatEvent>();
+            if (!cached.content().isEmpty()) events.add(ChatEvent.text(cached.content()));
+            events.add(ChatEvent.done(cached));
+            return events.iterator();
+        }
+        return new CachingStream(delegate.chatStream(request), key);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /** Caches the final response as it passes; closing forwards to the delegate's stream. */
+    private final class CachingStream implements Iterator<ChatEvent>, Closeable {
+        private final Iterator<ChatEvent> upstream;
+        private final String key;
+
+        CachingStream(Iterator<ChatEvent> upstream, String key) {
+            this.upstream = upstream;
+            this.key = key;
+        }
+
+        @Override public boolean hasNext() { return upstream.hasNext(); }
+
+        @Override public ChatEvent next() {
+            if (!upstream.hasNext()) throw new NoSuchElementException();
+            var e = upstream.next();
+            if (e.done() && e.response() != null) put(key, e.response());
+            return e;
+        }
+
+        @Override public void close() { Streams.closeQuietly(upstream); }
+    }
+
+    private boolean cacheable(ChatRequest request) {
+        return cacheable(request, config.maxTemperature());
+    }
+
+    /** Whether a cache with this temperature ceiling would store or serve {@code request}. */
+    static boolean cacheable(ChatRequest request, double maxTemperature) {
+        return request.cacheable() && request.temperature() <= maxTemperature;
+    }
+
+    private synchronized ChatResponse get(String key) {
+        var e = entries.get(key);
+        if (e != null && e.expiresAt() <= clock.getAsLong()) {
+            entries.remove(key);
+            evictions.increment();
+            e = null;
+        }
+        if (e == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return e.response();
+    }
+
+    private void put(String key, ChatResponse resp) {
+        var entry = new Entry(resp, clock.getAsLong() + config.ttlSeconds() * 1000);
+        synchronized (this) {
+            entries.put(key, entry);
+        }
+        if (persistFile != null) append(key, entry);
+    }
+
+    String key(ChatRequest request) {
+        return key(delegate.id(), request);
+    }
+
+    /** SHA-256 of the normalised request; also the coalescing key in {@link CoalescingProvider}. */
+    static String key(String providerId, ChatRequest request) {
+        var norm = new LinkedHashMap<String, Object>();
+        norm.put("provider", providerId);
+        norm.put("model", request.model());
+        norm.put("messages", request.messages());
+        norm.put("tools", request.tools());
+        norm.put("temperature", Math.round(request.temperature() * 100) / 100.0);
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(CANONICAL.writeValueAsBytes(norm)));
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Failed to hash chat request", e);
+        }
+    }
+
+    // --- persistence: one JSON object per line, later lines win ---
+
+    private synchronized void append(String key, Entry entry) {
+        try {
+            Files.createDirectories(persistFile.toAbsolutePath().getParent());
+            var line = MAPPER.writeValueAsString(toJson(key, entry)) + "\n";
+            Files.writeString(persistFile, line, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            log.warn("Failed to persist LLM cache entry: {}", e.getMessage());
+        }
+    }
+
+    private synchronized void load() {
+        if (!Files.exists(persistFile)) return;
+        long now = clock.getAsLong();
+        int lines = 0;
+        try (var reader = Files.newBufferedReader(persistFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+                lines++;
+                try {
+                    var node = MAPPER.readTree(line);
+                    long expiresAt = node.path("expiresAt").asLong(0);
+                    if (expiresAt <= now) continue;
+                    entries.put(node.path("key").asText(), new Entry(fromJson(node.path("response")), expiresAt));
+                } catch (IOException e) {
+                    log.debug("Skipping corrupt LLM cache line: {}", e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to load LLM cache from {}: {}", persistFile, e.getMessage());
+            return;
+        }
+        if (lines > entries.size()) compact();
+        log.info("Loaded {} cached LLM responses from {}", entries.size(), persistFile);
+    }
+
+    private void compact() {
+        var tmp = persistFile.resolveSibling(persistFile.getFileName() + ".tmp");
+        try (var writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (var e : entries.entrySet()) {
+                writer.write(MAPPER.writeValueAsString(toJson(e.getKey(), e.getValue())));
+                writer.write('\n');
+            }
+        } catch (IOException e) {
+            log.warn("Failed to compact LLM cache: {}", e.getMessage());
+            return;
+        }
+        try {
+            Files.move(tmp, persistFile, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.warn("Failed to replace LLM cache file: {}", e.getMessage());
+        }
+    }
+
+    private static Map<String, Object> toJson(String key, Entry entry) {
+        var r = entry.response();
+        var calls = new ArrayList<Map<String, String>>();
+        if (r.toolCalls() != null) {
+            for (var tc : r.toolCalls()) {
+                calls.add(Map.of("id", tc.id(), "name", tc.name(), "arguments", tc.arguments()));
+            }
+        }
+        var resp = new LinkedHashMap<String, Object>();
+        resp.put("model", r.model());
+        resp.put("content", r.content());
+        resp.put("usage", r.usage());
+        resp.put("toolCalls", calls);
+        return Map.of("key", key, "expiresAt", entry.expiresAt(), "response", resp);
+    }
+
+    private static ChatResponse fromJson(com.fasterxml.jackson.databind.JsonNode node) {
+        var usage = new LinkedHashMap<String, Integer>();
+        node.path("usage").fields().forEachRemaining(f -> usage.put(f.getKey(), f.getValue().asInt()));
+        var calls = new ArrayList<ToolCallInfo>();
+        for (var tc : node.path("toolCalls")) {
+            calls.add(new ToolCallInfo(tc.path("id").asText(), tc.path("name").asText(),
+                    tc.path("arguments").asText()));
+        }
+        return new ChatResponse(node.path("model").asText(null), node.path("content").asText(""),
+                usage, List.copyOf(calls));
+    }
+}
@@ -1,6 +1,32 @@
 package com.javaclaw.providers;
 
+/**
+ * One increment of a streamed completion. Text arrives as {@code delta}, tool-call
+ * fragments as {@code toolCall}; the final event has {@code done} set and carries the
+ * assembled {@code response} (content, tool calls, model, usage).
+ */
 public record ChatEvent(
     String delta,
+    ToolCallDelta toolCall,
+    ChatResponse response,
     boolean done
-) {}
+) {
+    public ChatEvent(String delta, boolean done) {
+        this(delta, null, null, done);
+    }
+
+    public static ChatEvent text(String delta) {
+        return new ChatEvent(delta, null, null, false);
+    }
+
+    public static ChatEvent toolCall(ToolCallDelta toolCall) {
+        return new ChatEvent(null, toolCall, null, false);
+    }
+
+    public static ChatEvent done(ChatResponse response) {
+        return new ChatEvent(null, null, response, true);
+    }
+
+    /** Fragment of a tool call; {@code id}/{@code name} are only set on the first fragment of an index. */
+    public record ToolCallDelta(int index, String id, String name, String argumentsDelta) {}
+}
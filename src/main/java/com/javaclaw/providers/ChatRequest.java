@@ -1,5 +1,6 @@
 package com.javaclaw.providers;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 
@@ -7,9 +8,35 @@ public record ChatRequest(
     String model,
     List<Map<String, Object>> messages,
     double temperature,
-    List<Map<String, Object>> tools
+    List<Map<String, Object>> tools,
+    boolean cacheable,
+    Instant deadline
 ) {
     public ChatRequest(String model, List<Map<String, Object>> messages, double temperature) {
         this(model, messages, temperature, null);
     }
+
+    public ChatRequest(String model, List<Map<String, Object>> messages, double temperature,
+                       List<Map<String, Object>> tools) {
+        this(model, messages, temperature, tools, true);
+    }
+
+    public ChatRequest(String model, List<Map<String, Object>> messages, double temperature,
+                       List<Map<String, Object>> tools, boolean cacheable) {
+        this(model, messages, temperature, tools, cacheable, null);
+    }
+
+    public ChatRequest withModel(String model) {
+        return new ChatRequest(model, messages, temperature, tools, cacheable, deadline);
+    }
+
+    /** Opts this request out of response caching. */
+    public ChatRequest noCache() {
+        return new ChatRequest(model, messages, temperature, tools, false, deadline);
+    }
+
+    /** Gives up once {@code deadline} passes (null for none); not part of the cache key. */
+    public ChatRequest withDeadline(Instant deadline) {
+        return new ChatRequest(model, messages, temperature, tools, cacheable, deadline);
+    }
 }
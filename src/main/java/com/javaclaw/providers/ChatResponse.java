@@ -17,6 +17,11 @@ public record ChatResponse(
         this(null, content, usage, toolCalls);
     }
 
+    /** Prompt tokens the provider served from its prefix cache; 0 when not reported. */
+    public int cachedTokens() {
+        return usage != null ? usage.getOrDefault("cachedTokens", 0) : 0;
+    }
+
     public boolean hasToolCalls() {
         return toolCalls != null && !toolCalls.isEmpty();
     }
@@ -0,0 +1,137 @@
+package com.javaclaw.providers;
+
+import com.javaclaw.shared.config.CircuitBreakerConfig;
+
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+/**
+ * Count-based sliding-window breaker. Opens when the last {@code windowSize} calls
+ * (at least {@code minCalls}) exceed the failure-rate or slow-call-rate threshold,
+ * rejects everything for {@code openSeconds}, then lets {@code halfOpenProbes} trial
+ * calls through: all succeeding closes it again, any failure re-opens it.
+ * Every granted {@link #tryAcquire()} must be followed by exactly one of
+ * {@link #onSuccess}, {@link #onFailure} or {@link #release()}.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    public record Snapshot(State state, int calls, double failureRate, double slowCallRate) {
+        /** 1.0 is fully healthy, 0.0 means every recent call failed or was slow. */
+        public double health() {
+            return 1.0 - Math.max(failureRate, slowCallRate);
+        }
+    }
+
+    private final CircuitBreakerConfig config;
+    private final LongSupplier clock;
+    private final boolean[] failed;
+    private final boolean[] slow;
+
+    private State state = State.CLOSED;
+    private int next;
+    private int calls;
+    private int failures;
+    private int slowCalls;
+    private long openedAt;
+    private int probesInFlight;
+    private int probesSucceeded;
+
+    CircuitBreaker(CircuitBreakerConfig config, LongSupplier clock) {
+        this.config = config;
+        this.clock = clock;
+        this.failed = new boolean[Math.max(config.windowSize(), 1)];
+        this.slow = new boolean[failed.length];
+    }
+
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (clock.getAsLong() - openedAt < config.openSeconds() * 1000) return false;
+            state = State.HALF_OPEN;
+            probesInFlight = 0;
+            probesSucceeded = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesInFlight + probesSucceeded >= config.halfOpenProbes()) return false;
+            probesInFlight++;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess(long latencyMs) {
+        if (state == State.HALF_OPEN) {
+            probesInFlight = Math.max(probesInFlight - 1, 0);
+            if (++probesSucceeded >= config.halfOpenProbes()) close();
+            return;
+        }
+        if (state == State.CLOSED) {
+            record(false, latencyMs >= config.slowCallMs());
+        }
+    }
+
+    public synchronized void onFailure(long latencyMs) {
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        if (state == State.CLOSED) {
+            record(true, latencyMs >= config.slowCallMs());
+        }
+    }
+
+    /** Gives back a permit without an outcome, e.g. when the call was cancelled. */
+    public synchronized void release() {
+        if (state == State.HALF_OPEN) probesInFlight = Math.max(probesInFlight - 1, 0);
+    }
+
+    public synchronized State state() {
+        if (state == State.OPEN && clock.getAsLong() - openedAt >= config.openSeconds() * 1000) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    public synchronized Snapshot snapshot() {
+        return new Snapshot(state(), calls,
+                calls == 0 ? 0.0 : (double) failures / calls,
+                calls == 0 ? 0.0 : (double) slowCalls / calls);
+    }
+
+    private void record(boolean isFailure, boolean isSlow) {
+        if (calls == failed.length) {
+            if (failed[next]) failures--;
+            if (slow[next]) slowCalls--;
+        } else {
+            calls++;
+        }
+        failed[next] = isFailure;
+        slow[next] = isSlow;
+        if (isFailure) failures++;
+        if (isSlow) slowCalls++;
+        next = (next + 1) % failed.length;
+
+        if (calls >= config.minCalls()
+                && ((double) failures / calls >= config.failureRateThreshold()
+                    || (double) slowCalls / calls >= config.slowCallRateThreshold())) {
+            open();
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = clock.getAsLong();
+        probesInFlight = 0;
+        probesSucceeded = 0;
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        next = 0;
+        calls = 0;
+        failures = 0;
+        slowCalls = 0;
+        Arrays.fill(failed, false);
+        Arrays.fill(slow, false);
+    }
+}
@@ -0,0 +1,103 @@
+package com.javaclaw.providers;
+
+import com.javaclaw.shared.config.CircuitBreakerConfig;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Breakers keyed by provider id and by provider/model. The provider breaker only
+ * counts transport failures (no HTTP status: refused, reset, timed out), so one
+ * broken model does not take the whole provider out; the model breaker counts
+ * every retryable failure. Non-retryable 4xx answers mean the provider is up and
+ * the request was bad, so they count as healthy for both. Calls shed by admission
+ * never reached the provider and are not counted.
+ */
+public class CircuitBreakerRegistry {
+
+    private final CircuitBreakerConfig config;
+    private final LongSupplier clock;
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    public CircuitBreakerRegistry(CircuitBreakerConfig config) {
+        this(config, System::currentTimeMillis);
+    }
+
+    CircuitBreakerRegistry(CircuitBreakerConfig config, LongSupplier clock) {
+        this.config = config;
+        this.clock = clock;
+    }
+
+    public static CircuitBreakerRegistry disabled() {
+        var defaults = CircuitBreakerConfig.defaults();
+        return new CircuitBreakerRegistry(new CircuitBreakerConfig(false, defaults.windowSize(),
+                defaults.minCalls(), defaults.failureRateThreshold(), defaults.slowCallMs(),
+                defaults.slowCallRateThreshold(), defaults.openSeconds(), defaults.halfOpenProbes()));
+    }
+
+    public boolean enabled() {
+        return config.enabled();
+    }
+
+    public CircuitBreaker forProvider(String providerId) {
+        return breakers.computeIfAbsent(providerId, k -> new CircuitBreaker(config, clock));
+    }
+
+    public CircuitBreaker forModel(String providerId, String model) {
+        return forProvider(providerId + "/" + (model != null ? model : "default"));
+    }
+
+    /** Breaker snapshots by key, provider breakers sorting before their models. */
+    public Map<String, CircuitBreaker.Snapshot> snapshot() {
+        var out = new TreeMap<String, CircuitBreaker.Snapshot>();
+        breakers.forEach((key, breaker) -> out.put(key, breaker.snapshot()));
+        return out;
+    }
+
+    /** Runs one attempt against {@code providerId}/{@code model}, or fails fast if either breaker is open. */
+    <T> T execute(String providerId, String model, Callable<T> call) throws Exception {
+        if (!config.enabled()) return call.call();
+
+        var provider = forProvider(providerId);
+        var perModel = forModel(providerId, model);
+        if (!provider.tryAcquire()) throw new CircuitOpenException(providerId, null);
+        if (!perModel.tryAcquire()) {
+            provider.release();
+            throw new CircuitOpenException(providerId, model);
+        }
+
+        long start = System.nanoTime();
+        try {
+            var result = call.call();
+            long ms = (System.nanoTime() - start) / 1_000_000;
+            provider.onSuccess(ms);
+            perModel.onSuccess(ms);
+            return result;
+        } catch (Exception e) {
+            long ms = (System.nanoTime() - start) / 1_000_000;
+            if (cancelled(e) || e instanceof AdmissionRejectedException) {
+                provider.release();
+                perModel.release();
+            } else if (ResilientCall.isNonRetryable(e)) {
+                provider.onSuccess(ms);
+                perModel.onSuccess(ms);
+            } else {
+                if (ResilientCall.statusCode(e) == 0) provider.onFailure(ms);
+                else provider.onSuccess(ms);
+                perModel.onFailure(ms);
+            }
+            throw e;
+        }
+    }
+
+    static boolean cancelled(Throwable t) {
+        if (Thread.currentThread().isInterrupted()) return true;
+        for (; t != null; t = t.getCause()) {
+            if (t instanceof InterruptedException || t instanceof DeadlineExceededException) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,21 @@
+package com.javaclaw.providers;
+
+/** Thrown instead of calling a provider whose breaker is open; never retried. */
+public class CircuitOpenException extends RuntimeException {
+
+    private final String providerId;
+    private final String model;
+
+    public CircuitOpenException(String providerId, String model) {
+        super(model == null
+                ? "Circuit open for provider " + providerId
+                : "Circuit open for provider " + providerId + " model " + model);
+        this.providerId = providerId;
+        this.model = model;
+    }
+
+    public String providerId() { return providerId; }
+
+    /** Null when the whole provider is open rather than a single model. */
+    public String model() { return model; }
+}
@@ -0,0 +1,48 @@
+package com.javaclaw.providers;
+
+import com.javaclaw.shared.concurrent.SingleFlight;
+
+import java.util.Iterator;
+
+/**
+ * Decorator: concurrent identical {@link #chat} calls (same key as
+ * {@link CachingProvider}) share one upstream call. Only requests the cache would
+ * serve are coalesced; those that opt out via {@link ChatRequest#noCache()} or run
+ * hotter than the cache's temperature ceiling skip the key hashing and go straight
+ * through, as do streams, since a stream cannot be replayed to several consumers as
+ * it arrives.
+ */
+public class CoalescingProvider implements ModelProvider {
+
+    private final ModelProvider delegate;
+    private final double maxTemperature;
+    private final SingleFlight<String, ChatResponse> inFlight = new SingleFlight<>();
+
+    public CoalescingProvider(ModelProvider delegate, double maxTemperature) {
+        this.delegate = delegate;
+        this.maxTemperature = maxTemperature;
+    }
+
+    @Override
+    public String id() { return delegate.id(); }
+
+    @Override
+    public ChatResponse chat(ChatRequest request) {
+        if (!CachingProvider.cacheable(request, maxTemperature)) return delegate.chat(request);
+        try {
+            return inFlight.execute(CachingProvider.key(delegate.id(), request), () -> delegate.chat(request));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted waiting for " + delegate.id(), e);
+        }
+    }
+
+    @Override
+    public Iterator<ChatEvent> chatStream(ChatRequest request) {
+        return delegate.chatStream(request);
+    }
+
+    public long coalesced() {
+        return inFlight.coalesced();
+    }
+}
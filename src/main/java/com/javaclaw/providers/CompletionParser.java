@@ -0,0 +1,211 @@
+package com.javaclaw.providers;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Token-level reader for OpenAI-style completion payloads. Pulls {@code model},
+ * {@code usage} and {@code choices[0].delta|message} (content and tool_calls) with a
+ * {@link JsonParser}, skipping everything else without building a tree, and
+ * accumulates them across SSE chunks.
+ */
+final class CompletionParser {
+
+    private final JsonFactory factory;
+    private final StringBuilder content = new StringBuilder();
+    // index -> (id, name), index -> argsBuf
+    private final Map<Integer, String[]> toolCallMeta = new LinkedHashMap<>();
+    private final Map<Integer, StringBuilder> toolCallArgs = new LinkedHashMap<>();
+    private String model;
+    private Map<String, Integer> usage = Map.of("promptTokens", 0, "completionTokens", 0);
+
+    CompletionParser(JsonFactory factory) {
+        this.factory = factory;
+    }
+
+    /** Parses one SSE {@code data:} payload (or a whole non-streamed body) and emits its deltas. */
+    void chunk(byte[] buf, int off, int len, Consumer<ChatEvent> out) throws IOException {
+        try (var p = factory.createParser(buf, off, len)) {
+            root(p, out);
+        }
+    }
+
+    void chunk(InputStream in, Consumer<ChatEvent> out) throws IOException {
+        try (var p = factory.createParser(in)) {
+            root(p, out);
+        }
+    }
+
+    ChatResponse result() {
+        var toolCalls = new ArrayList<ToolCallInfo>();
+        for (var entry : toolCallMeta.entrySet()) {
+            var v = entry.getValue();
+            toolCalls.add(new ToolCallInfo(v[0], v[1], toolCallArgs.get(entry.getKey()).toString()));
+        }
+        return new ChatResponse(model, content.toString(), usage, toolCalls);
+    }
+
+    private void root(JsonParser p, Consumer<ChatEvent> out) throws IOException {
+        if (p.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Expected JSON object in completion payload");
+        }
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            var field = p.currentName();
+            var t = p.nextToken();
+            switch (field) {
+                case "model" -> {
+                    if (model == null && t == JsonToken.VALUE_STRING) model = p.getText();
+                }
+                case "usage" -> {
+                    if (t == JsonToken.START_OBJECT) usage(p);
+                    else p.skipChildren();
+                }
+                case "choices" -> {
+                    if (t == JsonToken.START_ARRAY) choices(p, out);
+                    else p.skipChildren();
+                }
+                default -> p.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * Cached prompt tokens come as {@code prompt_tokens_details.cached_tokens} (OpenAI)
+     * or {@code prompt_cache_hit_tokens} (DeepSeek); either becomes "cachedTokens".
+     */
+    private void usage(JsonParser p) throws IOException {
+        Integer prompt = null;
+        int completion = 0;
+        Integer cached = null;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            var field = p.currentName();
+            var t = p.nextToken();
+            if ("prompt_tokens".equals(field) && t == JsonToken.VALUE_NUMBER_INT) {
+                prompt = p.getIntValue();
+            } else if ("completion_tokens".equals(field) && t == JsonToken.VALUE_NUMBER_INT) {
+                completion = p.getIntValue();
+            } else if ("prompt_cache_hit_tokens".equals(field) && t == JsonToken.VALUE_NUMBER_INT) {
+                cached = p.getIntValue();
+            } else if ("prompt_tokens_details".equals(field) && t == JsonToken.START_OBJECT) {
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    var inner = p.currentName();
+                    var it = p.nextToken();
+                    if ("cached_tokens".equals(inner) && it == JsonToken.VALUE_NUMBER_INT) cached = p.getIntValue();
+                    else p.skipChildren();
+                }
+            } else {
+                p.skipChildren();
+            }
+        }
+        if (prompt != null) {
+            usage = cached != null
+                    ? Map.of("promptTokens", prompt, "completionTokens", completion, "cachedTokens", cached)
+                    : Map.of("promptTokens", prompt, "completionTokens", completion);
+        }
+    }
+
+    private void choices(JsonParser p, Consumer<ChatEvent> out) throws IOException {
+        boolean first = true;
+        while (p.nextToken() != JsonToken.END_ARRAY) {
+            if (first && p.currentToken() == JsonToken.START_OBJECT) {
+                choice(p, out);
+            } else {
+                p.skipChildren();
+            }
+            first = false;
+        }
+    }
+
+    private void choice(JsonParser p, Consumer<ChatEvent> out) throws IOException {
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            var field = p.currentName();
+            var t = p.nextToken();
+            if (("delta".equals(field) || "message".equals(field)) && t == JsonToken.START_OBJECT) {
+                message(p, out);
+            } else {
+                p.skipChildren();
+            }
+        }
+    }
+
+    private void message(JsonParser p, Consumer<ChatEvent> out) throws IOException {
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            var field = p.currentName();
+            var t = p.nextToken();
+            if ("content".equals(field) && t == JsonToken.VALUE_STRING) {
+                var c = p.getText();
+                if (!c.isEmpty()) {
+                    content.append(c);
+                    out.accept(ChatEvent.text(c));
+                }
+            } else if ("tool_calls".equals(field) && t == JsonToken.START_ARRAY) {
+                int position = 0;
+                while (p.nextToken() == JsonToken.START_OBJECT) {
+                    toolCall(p, position++, out);
+                }
+            } else {
+                p.skipChildren();
+            }
+        }
+    }
+
+    private void toolCall(JsonParser p, int position, Consumer<ChatEvent> out) throws IOException {
+        int idx = position;
+        String id = null;
+        String name = null;
+        String args = null;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            var field = p.currentName();
+            var t = p.nextToken();
+            switch (field) {
+                case "index" -> {
+                    if (t == JsonToken.VALUE_NUMBER_INT) idx = p.getIntValue();
+                }
+                case "id" -> {
+                    if (t == JsonToken.VALUE_STRING) id = p.getText();
+                }
+                case "function" -> {
+                    if (t != JsonToken.START_OBJECT) {
+                        p.skipChildren();
+                        continue;
+                    }
+                    while (p.nextToken() == JsonToken.FIELD_NAME) {
+                        var fnField = p.currentName();
+                        var ft = p.nextToken();
+                        if ("name".equals(fnField) && ft == JsonToken.VALUE_STRING) {
+                            name = p.getText();
+                        } else if ("arguments".equals(fnField) && ft == JsonToken.VALUE_STRING) {
+                            args = p.getText();
+                        } else {
+                            p.skipChildren();
+                        }
+                    }
+                }
+                default -> p.skipChildren();
+            }
+        }
+
+        // Some backends (older Ollama builds) send no id; the first fragment of a call still names it.
+        boolean isNew = (id != null || name != null) && !toolCallMeta.containsKey(idx);
+        if (isNew) {
+            if (id == null) id = "call_" + idx;
+            toolCallMeta.put(idx, new String[]{id, name});
+            toolCallArgs.put(idx, new StringBuilder());
+        }
+        if (args != null && toolCallArgs.containsKey(idx)) {
+            toolCallArgs.get(idx).append(args);
+        }
+        if (isNew || (args != null && !args.isEmpty())) {
+            out.accept(ChatEvent.toolCall(new ChatEvent.ToolCallDelta(
+                    idx, isNew ? id : null, isNew ? name : null, args)));
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.javaclaw.providers;
+
+import java.util.Map;
+
+/**
+ * The request's deadline passed before or while calling the provider. Not retried, and
+ * not held against the provider by breakers or admission control: the caller ran out
+ * of time, the provider did not fail.
+ */
+public class DeadlineExceededException extends ProviderException {
+
+    public DeadlineExceededException(String providerId, Throwable cause) {
+        super(providerId, 0, Map.of(), false, providerId + " call abandoned: request deadline reached", cause);
+    }
+}
@@ -0,0 +1,192 @@
+package com.javaclaw.providers;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Cold {@link Flow.Publisher} over a blocking iterator. The iterator is opened
+ * asynchronously on the first {@code request}, then a virtual thread pulls one element
+ * per unit of demand, so a slow subscriber stops reads from the network instead of
+ * buffering. {@code cancel} cancels a pending open, closes a {@link Closeable}
+ * iterator and interrupts a pull that is blocked upstream.
+ */
+final class IteratorPublisher<T> implements Flow.Publisher<T> {
+
+    private final Supplier<? extends CompletableFuture<? extends Iterator<T>>> source;
+
+    IteratorPublisher(Supplier<? extends CompletableFuture<? extends Iterator<T>>> source) {
+        this.source = source;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        Objects.requireNonNull(subscriber);
+        subscriber.onSubscribe(new PullSubscription<>(subscriber, source));
+    }
+
+    private static final class PullSubscription<T> implements Flow.Subscription {
+        private final Flow.Subscriber<? super T> subscriber;
+        private final Supplier<? extends CompletableFuture<? extends Iterator<T>>> source;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition demanded = lock.newCondition();
+
+        private long demand;
+        private boolean started;
+        private volatile boolean cancelled;
+        private volatile boolean pulling;
+        private Throwable invalidRequest;
+        private CompletableFuture<? extends Iterator<T>> opening;
+        private Iterator<T> iterator;
+        private Thread worker;
+
+        PullSubscription(Flow.Subscriber<? super T> subscriber,
+                         Supplier<? extends CompletableFuture<? extends Iterator<T>>> source) {
+            this.subscriber = subscriber;
+            this.source = source;
+        }
+
+        @Override
+        public void request(long n) {
+            boolean open = false;
+            boolean failNow = false;
+            lock.lock();
+            try {
+                if (cancelled) return;
+                if (n <= 0) {
+                    // Reactive Streams §3.9: signal onError and stop.
+                    invalidRequest = new IllegalArgumentException("request must be positive: " + n);
+                    cancelled = true;
+                    failNow = worker == null;
+                } else {
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                    if (!started) {
+                        started = true;
+                        open = true;
+                    }
+                }
+                demanded.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            if (failNow) {
+                cancelUpstream();
+                subscriber.onError(invalidRequest);
+            } else if (open) {
+                open();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            lock.lock();
+            try {
+                cancelled = true;
+                demanded.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            cancelUpstream();
+        }
+
+        private void open() {
+            CompletableFuture<? extends Iterator<T>> future;
+            try {
+                future = source.get();
+            } catch (Throwable t) {
+                if (!cancelled) subscriber.onError(t);
+                return;
+            }
+            lock.lock();
+            try {
+                opening = future;
+            } finally {
+                lock.unlock();
+            }
+            if (cancelled) future.cancel(true);
+            future.whenComplete((it, err) -> {
+                if (err != null) {
+                    if (!cancelled) subscriber.onError(unwrap(err));
+                    return;
+                }
+                lock.lock();
+                try {
+                    iterator = it;
+                    worker = Thread.ofVirtual().name("provider-publisher").unstarted(this::drain);
+                } finally {
+                    lock.unlock();
+                }
+                worker.start();
+            });
+        }
+
+        private void drain() {
+            try {
+                while (true) {
+                    lock.lock();
+                    try {
+                        while (demand == 0 && !cancelled) demanded.await();
+                        if (invalidRequest != null) {
+                            subscriber.onError(invalidRequest);
+                            return;
+                        }
+                        if (cancelled) return;
+                        demand--;
+                    } finally {
+                        lock.unlock();
+                    }
+
+                    pulling = true;
+                    boolean more;
+                    T next = null;
+                    try {
+                        more = iterator != null && iterator.hasNext();
+                        if (more) next = iterator.next();
+                    } finally {
+                        pulling = false;
+                        Thread.interrupted();
+                    }
+                    if (cancelled) return;
+                    if (!more) {
+                        subscriber.onComplete();
+                        return;
+                    }
+                    subscriber.onNext(next);
+                }
+            } catch (Throwable t) {
+                if (!cancelled) subscriber.onError(t);
+            } finally {
+                Streams.closeQuietly(iterator);
+            }
+        }
+
+        private void cancelUpstream() {
+            CompletableFuture<? extends Iterator<T>> future;
+            Iterator<T> it;
+            Thread pullingThread;
+            lock.lock();
+            try {
+                future = opening;
+                it = iterator;
+                pullingThread = worker;
+            } finally {
+                lock.unlock();
+            }
+            if (future != null && !future.isDone()) future.cancel(true);
+            Streams.closeQuietly(it);
+            if (pullingThread != null && pulling) pullingThread.interrupt();
+        }
+
+        private static Throwable unwrap(Throwable t) {
+            return (t instanceof CompletionException || t instanceof ExecutionException) && t.getCause() != null
+                    ? t.getCause() : t;
+        }
+    }
+}
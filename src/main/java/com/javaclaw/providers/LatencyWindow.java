@@ -0,0 +1,37 @@
+package com.javaclaw.providers;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size ring of recent successful call latencies for one provider; percentiles
+ * are computed over whatever is currently in the ring.
+ */
+final class LatencyWindow {
+
+    private final long[] samples;
+    private int next;
+    private int count;
+
+    LatencyWindow(int capacity) {
+        this.samples = new long[capacity];
+    }
+
+    synchronized void record(long millis) {
+        samples[next] = millis;
+        next = (next + 1) % samples.length;
+        if (count < samples.length) count++;
+    }
+
+    synchronized int count() {
+        return count;
+    }
+
+    /** Nearest-rank percentile, or -1 when no samples have been recorded. */
+    synchronized long percentile(double p) {
+        if (count == 0) return -1;
+        var sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(Math.min(Math.max(p, 0.0), 1.0) * count);
+        return sorted[Math.max(rank - 1, 0)];
+    }
+}
@@ -1,9 +1,28 @@
 package com.javaclaw.providers;
 
 import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
 
 public interface ModelProvider {
     String id();
     ChatResponse chat(ChatRequest request);
     Iterator<ChatEvent> chatStream(ChatRequest request);
+
+    /**
+     * Non-blocking {@link #chat}. The default runs the blocking call on a virtual thread;
+     * cancelling the future interrupts it.
+     */
+    default CompletableFuture<ChatResponse> chatAsync(ChatRequest request) {
+        return AsyncSupport.supply(() -> chat(request));
+    }
+
+    /**
+     * {@link #chatStream} as a cold publisher: each subscriber gets its own call, events
+     * are pulled only as fast as the subscriber requests them, and cancelling closes
+     * the upstream stream.
+     */
+    default Flow.Publisher<ChatEvent> chatPublisher(ChatRequest request) {
+        return new IteratorPublisher<>(() -> AsyncSupport.supply(() -> chatStream(request)));
+    }
 }
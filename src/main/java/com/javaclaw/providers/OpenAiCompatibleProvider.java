@@ -1,20 +1,29 @@
 package com.javaclaw.providers;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.javaclaw.shared.concurrent.Deadlines;
+import com.javaclaw.shared.http.HttpClientRegistry;
+import com.javaclaw.shared.http.JsonBodyPublisher;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.function.Function;
 
 public abstract class OpenAiCompatibleProvider implements ModelProvider {
 
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
     private final String apiKey;
     private final String baseUrl;
     private final String defaultModel;
@@ -25,9 +34,7 @@ public abstract class OpenAiCompatibleProvider implements ModelProvider {
         this.apiKey = apiKey;
         this.baseUrl = baseUrl.replaceAll("/+$", "");
         this.defaultModel = defaultModel;
-        this.httpClient = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(10))
-                .build();
+        this.httpClient = HttpClientRegistry.shared().client();
     }
 
     @Override
@@ -36,6 +43,8 @@ public abstract class OpenAiCompatibleProvider implements ModelProvider {
             return doChat(request);
         } catch (RuntimeException e) {
             throw e;
+        } catch (IOException e) {
+            throw transportFailure(request, e);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -43,119 +52,124 @@ public abstract class OpenAiCompatibleProvider implements ModelProvider {
 
     @Override
     public Iterator<ChatEvent> chatStream(ChatRequest request) {
-        ChatResponse resp = chat(request);
-        return List.of(new ChatEvent(resp.content(), true)).iterator();
+        try {
+            return send(request, true);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (IOException e) {
+            throw transportFailure(request, e);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
     }
 
-    private ChatResponse doChat(ChatRequest request) throws Exception {
-        var body = new LinkedHashMap<String, Object>();
-        body.put("model", request.model() != null ? request.model() : defaultModel);
-        body.put("messages", request.messages());
-        body.put("temperature", request.temperature());
-        if (request.tools() != null && !request.tools().isEmpty()) {
-            body.put("tools", request.tools());
-        }
+    /** Sent with {@link HttpClient#sendAsync}; no thread waits for the response. Cancel aborts the exchange. */
+    @Override
+    public CompletableFuture<ChatResponse> chatAsync(ChatRequest request) {
+        return cancellable(sendAsync(request, false, HttpResponse.BodyHandlers.ofByteArray()), resp -> {
+            if (resp.statusCode() != 200) {
+                throw ProviderException.fromResponse(id(), resp.statusCode(), resp.headers(),
+                        new String(resp.body(), StandardCharsets.UTF_8));
+            }
+            return new SseEventIterator(new ByteArrayInputStream(resp.body()), mapper.getFactory()).drain();
+        });
+    }
 
-        var json = mapper.writeValueAsString(body);
+    /** Headers arrive via {@link HttpClient#sendAsync}; the body is then pulled as demand allows. */
+    @Override
+    public Flow.Publisher<ChatEvent> chatPublisher(ChatRequest request) {
+        return new IteratorPublisher<>(() -> cancellable(
+                sendAsync(request, true, HttpResponse.BodyHandlers.ofInputStream()), this::events));
+    }
 
-        var httpReq = HttpRequest.newBuilder()
-                .uri(URI.create(baseUrl + "/chat/completions"))
-                .header("Content-Type", "application/json")
-                .header("Authorization", "Bearer " + apiKey)
-                .timeout(Duration.ofSeconds(30))
-                .POST(HttpRequest.BodyPublishers.ofString(json))
-                .build();
+    private ChatResponse doChat(ChatRequest request) throws Exception {
+        return send(request, false).drain();
+    }
 
-        var resp = httpClient.send(httpReq, HttpResponse.BodyHandlers.ofString());
+    /** Both paths read the body incrementally; a plain JSON body is handled by the iterator too. */
+    private SseEventIterator send(ChatRequest request, boolean stream) throws Exception {
+        if (Deadlines.expired(request.deadline())) throw new DeadlineExceededException(id(), null);
+        var resp = httpClient.send(newHttpRequest(writeBody(request, stream), stream, request),
+                HttpResponse.BodyHandlers.ofInputStream());
+        return events(resp);
+    }
 
+    private SseEventIterator events(HttpResponse<InputStream> resp) {
         if (resp.statusCode() != 200) {
-            throw new RuntimeException("LLM API error " + resp.statusCode() + ": " + resp.body());
+            String body;
+            try (var in = resp.body()) {
+                body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                body = "(body unreadable: " + e.getMessage() + ")";
+            }
+            throw ProviderException.fromResponse(id(), resp.statusCode(), resp.headers(), body);
         }
+        return new SseEventIterator(resp.body(), mapper.getFactory());
+    }
 
-        var respBody = resp.body().trim();
-        if (respBody.startsWith("{")) {
-            return parseResponse(mapper.readTree(respBody));
+    private <T> CompletableFuture<HttpResponse<T>> sendAsync(ChatRequest request, boolean stream,
+                                                             HttpResponse.BodyHandler<T> handler) {
+        if (Deadlines.expired(request.deadline())) {
+            return CompletableFuture.failedFuture(new DeadlineExceededException(id(), null));
+        }
+        JsonBodyPublisher body;
+        try {
+            body = writeBody(request, stream);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
         }
-        return parseSSE(respBody);
+        return httpClient.sendAsync(newHttpRequest(body, stream, request), handler);
     }
 
-    private ChatResponse parseResponse(JsonNode root) {
-        var choice = root.path("choices").path(0).path("message");
-        var content = choice.path("content").asText(null);
-        var model = root.path("model").asText(null);
-        var u = root.path("usage");
-        var usage = Map.of(
-                "promptTokens", u.path("prompt_tokens").asInt(0),
-                "completionTokens", u.path("completion_tokens").asInt(0)
-        );
-        var toolCalls = new java.util.ArrayList<ToolCallInfo>();
-        var tcNode = choice.path("tool_calls");
-        if (tcNode.isArray()) {
-            for (var tc : tcNode) {
-                var fn = tc.path("function");
-                toolCalls.add(new ToolCallInfo(
-                        tc.path("id").asText(),
-                        fn.path("name").asText(),
-                        fn.path("arguments").asText("")));
-            }
-        }
-        return new ChatResponse(model, content != null ? content : "", usage, toolCalls);
+    /** {@code thenApply} whose cancel is forwarded upstream, so it aborts the HTTP exchange. */
+    private static <T, R> CompletableFuture<R> cancellable(CompletableFuture<T> upstream,
+                                                           Function<? super T, R> fn) {
+        var result = upstream.thenApply(fn);
+        result.whenComplete((r, e) -> {
+            if (result.isCancelled()) upstream.cancel(true);
+        });
+        return result;
     }
 
-    private ChatResponse parseSSE(String sse) throws Exception {
-        var contentBuf = new StringBuilder();
-        String model = null;
-        Map<String, Integer> usage = Map.of("promptTokens", 0, "completionTokens", 0);
-        // index -> (id, name, argsBuf)
-        var toolCallMap = new LinkedHashMap<Integer, String[]>();
-        var toolCallArgs = new LinkedHashMap<Integer, StringBuilder>();
-
-        for (var line : sse.split("\n")) {
-            line = line.trim();
-            if (!line.startsWith("data:")) continue;
-            var data = line.substring(5).trim();
-            if ("[DONE]".equals(data)) break;
-
-            var node = mapper.readTree(data);
-            if (model == null) model = node.path("model").asText(null);
-
-            var u = node.path("usage");
-            if (!u.isMissingNode() && u.has("prompt_tokens")) {
-                usage = Map.of(
-                        "promptTokens", u.path("prompt_tokens").asInt(0),
-                        "completionTokens", u.path("completion_tokens").asInt(0));
+    /** Serialises the request straight into body chunks, without an intermediate String. */
+    private JsonBodyPublisher writeBody(ChatRequest request, boolean stream) throws IOException {
+        return JsonBodyPublisher.write(mapper, gen -> {
+            gen.writeStartObject();
+            gen.writeStringField("model", request.model() != null ? request.model() : defaultModel);
+            gen.writeFieldName("messages");
+            mapper.writeValue(gen, request.messages());
+            gen.writeNumberField("temperature", request.temperature());
+            if (request.tools() != null && !request.tools().isEmpty()) {
+                gen.writeFieldName("tools");
+                if (request.tools() instanceof PrecompiledTools pre) gen.writeRawValue(pre.json());
+                else mapper.writeValue(gen, request.tools());
             }
-
-            var delta = node.path("choices").path(0).path("delta");
-            var c = delta.path("content").asText(null);
-            if (c != null) contentBuf.append(c);
-
-            var tcs = delta.path("tool_calls");
-            if (tcs.isArray()) {
-                for (var tc : tcs) {
-                    int idx = tc.path("index").asInt(0);
-                    var id = tc.path("id").asText(null);
-                    var fn = tc.path("function");
-                    var name = fn.path("name").asText(null);
-                    if (id != null && !toolCallMap.containsKey(idx)) {
-                        toolCallMap.put(idx, new String[]{id, name});
-                        toolCallArgs.put(idx, new StringBuilder());
-                    }
-                    var args = fn.path("arguments").asText(null);
-                    if (args != null && toolCallArgs.containsKey(idx)) {
-                        toolCallArgs.get(idx).append(args);
-                    }
-                }
+            if (stream) {
+                gen.writeBooleanField("stream", true);
+                gen.writeObjectFieldStart("stream_options");
+                gen.writeBooleanField("include_usage", true);
+                gen.writeEndObject();
             }
-        }
+            gen.writeEndObject();
+        });
+    }
 
-        var toolCalls = new java.util.ArrayList<ToolCallInfo>();
-        for (var entry : toolCallMap.entrySet()) {
-            var v = entry.getValue();
-            toolCalls.add(new ToolCallInfo(v[0], v[1],
-                    toolCallArgs.get(entry.getKey()).toString()));
+    /** A timeout caused by our own deadline is the caller running out of time, not the provider failing. */
+    private ProviderException transportFailure(ChatRequest request, IOException e) {
+        if (e instanceof HttpTimeoutException && Deadlines.expired(request.deadline())) {
+            return new DeadlineExceededException(id(), null);
         }
+        return ProviderException.transport(id(), e);
+    }
 
-        return new ChatResponse(model, contentBuf.toString(), usage, toolCalls);
+    private HttpRequest newHttpRequest(JsonBodyPublisher body, boolean stream, ChatRequest request) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/chat/completions"))
+                .header("Content-Type", "application/json")
+                .header("Authorization", "Bearer " + apiKey)
+                .header("Accept", stream ? "text/event-stream" : "application/json")
+                .timeout(Deadlines.clamp(request.deadline(), REQUEST_TIMEOUT))
+                .POST(body)
+                .build();
     }
 }
@@ -0,0 +1,61 @@
+package com.javaclaw.providers;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Tool definitions serialised once. Providers that write their own request bodies splice
+ * {@link #json()} in verbatim, so the tools array is byte-identical on every request and
+ * provider-side prefix caches keep hitting; everything else sees an ordinary read-only
+ * list of the same definitions.
+ */
+public final class PrecompiledTools extends AbstractList<Map<String, Object>> implements RandomAccess {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final List<Map<String, Object>> definitions;
+    private final String json;
+
+    private PrecompiledTools(List<Map<String, Object>> definitions, String json) {
+        this.definitions = definitions;
+        this.json = json;
+    }
+
+    /** Joins already-serialised definitions (one JSON object each) into one payload. */
+    @SuppressWarnings("unchecked")
+    public static PrecompiledTools of(List<String> serializedDefinitions) {
+        var definitions = new ArrayList<Map<String, Object>>(serializedDefinitions.size());
+        for (var def : serializedDefinitions) {
+            try {
+                definitions.add(Collections.unmodifiableMap(MAPPER.readValue(def, LinkedHashMap.class)));
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("Invalid tool definition: " + def, e);
+            }
+        }
+        return new PrecompiledTools(Collections.unmodifiableList(definitions),
+                "[" + String.join(",", serializedDefinitions) + "]");
+    }
+
+    /** The definitions as a JSON array, exactly as sent. */
+    public String json() {
+        return json;
+    }
+
+    @Override
+    public Map<String, Object> get(int index) {
+        return definitions.get(index);
+    }
+
+    @Override
+    public int size() {
+        return definitions.size();
+    }
+}
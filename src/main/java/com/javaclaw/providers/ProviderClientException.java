@@ -0,0 +1,13 @@
+package com.javaclaw.providers;
+
+import java.util.List;
+import java.util.Map;
+
+/** Other 4xx (bad request, auth, unknown model): resending the same request cannot help. */
+public class ProviderClientException extends ProviderException {
+
+    public ProviderClientException(String providerId, int statusCode, Map<String, List<String>> headers,
+                                   String message) {
+        super(providerId, statusCode, headers, false, message, null);
+    }
+}
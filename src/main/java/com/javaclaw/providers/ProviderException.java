@@ -0,0 +1,108 @@
+package com.javaclaw.providers;
+
+import java.io.IOException;
+import java.net.http.HttpHeaders;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A failed call to a model or embedding endpoint, carrying the HTTP status (0 when
+ * the request never got a response), the response headers and whether retrying can
+ * help. Retry, breaker and admission decisions read these fields rather than
+ * guessing from the message text.
+ */
+public class ProviderException extends RuntimeException {
+
+    private static final int MAX_BODY_CHARS = 500;
+
+    private final String providerId;
+    private final int statusCode;
+    private final Map<String, List<String>> headers;
+    private final boolean retryable;
+
+    public ProviderException(String providerId, int statusCode, Map<String, List<String>> headers,
+                             boolean retryable, String message, Throwable cause) {
+        super(message, cause);
+        this.providerId = providerId;
+        this.statusCode = statusCode;
+        this.headers = headers != null ? headers : Map.of();
+        this.retryable = retryable;
+    }
+
+    /** The typed exception for a non-2xx response. */
+    public static ProviderException fromResponse(String providerId, int status, HttpHeaders headers, String body) {
+        var map = headers != null ? headers.map() : Map.<String, List<String>>of();
+        var message = providerId + " API error " + status + ": " + abbreviate(body);
+        if (status == 429) return new RateLimitedException(providerId, map, message);
+        if (status == 408 || (status >= 500 && status != 501)) {
+            return new ProviderUnavailableException(providerId, status, map, message);
+        }
+        return new ProviderClientException(providerId, status, map, message);
+    }
+
+    /** The request failed before a response arrived (connect, reset, timeout); worth retrying. */
+    public static ProviderException transport(String providerId, IOException cause) {
+        return new ProviderException(providerId, 0, Map.of(), true,
+                providerId + " request failed: " + cause, cause);
+    }
+
+    public String providerId() { return providerId; }
+
+    /** HTTP status, or 0 for transport failures. */
+    public int statusCode() { return statusCode; }
+
+    public Map<String, List<String>> headers() { return headers; }
+
+    public boolean retryable() { return retryable; }
+
+    /** First value of a response header, matched case-insensitively. */
+    public Optional<String> header(String name) {
+        for (var e : headers.entrySet()) {
+            if (e.getKey() != null && e.getKey().equalsIgnoreCase(name) && !e.getValue().isEmpty()) {
+                return Optional.of(e.getValue().get(0));
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * How long the server asked us to wait: {@code retry-after-ms} (OpenAI), else
+     * {@code Retry-After} as seconds or an HTTP date. 0 when absent or unparseable.
+     */
+    public long retryAfterMs() {
+        return retryAfterMs(Clock.systemUTC());
+    }
+
+    long retryAfterMs(Clock clock) {
+        var ms = header("retry-after-ms");
+        if (ms.isPresent()) {
+            try {
+                return Math.max((long) Double.parseDouble(ms.get().trim()), 0);
+            } catch (NumberFormatException ignored) {}
+        }
+        var value = header("retry-after").map(String::trim).orElse(null);
+        if (value == null || value.isEmpty()) return 0;
+        try {
+            double secs = Double.parseDouble(value);
+            return Double.isFinite(secs) && secs > 0 ? (long) (secs * 1000) : 0;
+        } catch (NumberFormatException notSeconds) {
+            try {
+                var at = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(Duration.between(clock.instant(), at.toInstant()).toMillis(), 0);
+            } catch (DateTimeParseException ignored) {
+                return 0;
+            }
+        }
+    }
+
+    private static String abbreviate(String body) {
+        if (body == null) return "";
+        return body.length() <= MAX_BODY_CHARS ? body : body.substring(0, MAX_BODY_CHARS) + "…";
+    }
+}
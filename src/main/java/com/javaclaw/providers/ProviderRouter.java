@@ -1,16 +1,62 @@
 package com.javaclaw.providers;
 
+import com.javaclaw.observability.CostTracker;
+
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
 
+/**
+ * Picks a provider per request. Each registered provider carries an EWMA of its
+ * latency and error rate plus the price of the last model it served (from
+ * {@link CostTracker} pricing), and the {@link Policy} ranks providers from those.
+ * {@link #route()} returns the full ranking so callers like {@link ReliableProvider}
+ * can fail over down the list; {@link #chat} just uses the head.
+ */
 public class ProviderRouter implements ModelProvider {
 
+    public enum Policy {
+        /** The configured primary, then registration order. */
+        PRIMARY,
+        /** Lowest EWMA latency, penalised by error rate. */
+        FASTEST,
+        /** Lowest per-token price among providers within the latency SLO; fastest if none are. */
+        CHEAPEST,
+        /** Smooth weighted round-robin over healthy providers. */
+        WEIGHTED_ROUND_ROBIN;
+
+        /** Accepts enum names case-insensitively, with dashes, and "weighted" as a short form. */
+        public static Policy parse(String name) {
+            var key = name.trim().toUpperCase().replace('-', '_');
+            return "WEIGHTED".equals(key) ? WEIGHTED_ROUND_ROBIN : valueOf(key);
+        }
+    }
+
+    /** Point-in-time view of one provider's routing inputs. */
+    public record ProviderStats(long calls, long successes, double latencyMs, double errorRate,
+                                double pricePerMillion) {}
+
+    private static final double ALPHA = 0.2;
+    private static final double UNHEALTHY_ERROR_RATE = 0.5;
+
     private final Map<String, ModelProvider> providers = new LinkedHashMap<>();
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+    private final Map<String, Integer> weights = new ConcurrentHashMap<>();
+    private final Map<String, Integer> currentWeights = new LinkedHashMap<>();
     private String primaryId;
+    private volatile Policy policy = Policy.PRIMARY;
+    private volatile long latencySloMs = 10_000;
 
     public void register(ModelProvider provider) {
         providers.put(provider.id(), provider);
+        stats.putIfAbsent(provider.id(), new Stats());
         if (primaryId == null) primaryId = provider.id();
     }
 
@@ -19,24 +65,181 @@ public class ProviderRouter implements ModelProvider {
         this.primaryId = id;
     }
 
+    public void setPolicy(Policy policy) {
+        this.policy = policy;
+    }
+
+    public void setLatencySloMs(long latencySloMs) {
+        this.latencySloMs = latencySloMs;
+    }
+
+    public void setWeight(String id, int weight) {
+        if (!providers.containsKey(id)) throw new IllegalArgumentException("Unknown provider: " + id);
+        weights.put(id, Math.max(weight, 0));
+    }
+
     @Override
     public String id() {
         return "router";
     }
 
-    private ModelProvider resolve() {
-        ModelProvider p = primaryId != null ? providers.get(primaryId) : null;
-        if (p == null) throw new IllegalStateException("No provider registered");
-        return p;
+    /** All registered providers, best first according to the current policy. */
+    public List<ModelProvider> route() {
+        if (providers.isEmpty()) throw new IllegalStateException("No provider registered");
+        var ranked = new ArrayList<>(providers.values());
+        // Snapshot once so concurrent updates can't reorder the list mid-sort.
+        var snap = stats();
+        Comparator<ModelProvider> fastest = Comparator.comparingDouble(p -> speedScore(snap.get(p.id())));
+        switch (policy) {
+            case PRIMARY -> {
+                var primary = providers.get(primaryId);
+                ranked.remove(primary);
+                ranked.add(0, primary);
+            }
+            case FASTEST -> ranked.sort(fastest);
+            case CHEAPEST -> ranked.sort(Comparator
+                    .comparing((ModelProvider p) -> !withinSlo(snap.get(p.id())))
+                    .thenComparingDouble(p -> withinSlo(snap.get(p.id()))
+                            ? price(snap.get(p.id())) : speedScore(snap.get(p.id()))));
+            case WEIGHTED_ROUND_ROBIN -> {
+                var next = nextWeighted(snap);
+                ranked.sort(fastest);
+                if (next != null) {
+                    ranked.remove(next);
+                    ranked.add(0, next);
+                }
+            }
+        }
+        return ranked;
+    }
+
+    public void recordSuccess(String providerId, String model, long latencyMs) {
+        var s = stats.get(providerId);
+        if (s != null) s.success(latencyMs, model);
+    }
+
+    public void recordFailure(String providerId) {
+        var s = stats.get(providerId);
+        if (s != null) s.failure();
+    }
+
+    public Map<String, ProviderStats> stats() {
+        var out = new LinkedHashMap<String, ProviderStats>();
+        for (var id : providers.keySet()) out.put(id, stats.get(id).snapshot());
+        return out;
     }
 
     @Override
     public ChatResponse chat(ChatRequest request) {
-        return resolve().chat(request);
+        var provider = route().get(0);
+        long start = System.nanoTime();
+        try {
+            var resp = provider.chat(request);
+            recordSuccess(provider.id(), resp.model() != null ? resp.model() : request.model(),
+                    (System.nanoTime() - start) / 1_000_000);
+            return resp;
+        } catch (RuntimeException e) {
+            recordFailure(provider.id());
+            throw e;
+        }
     }
 
     @Override
     public Iterator<ChatEvent> chatStream(ChatRequest request) {
-        return resolve().chatStream(request);
+        var provider = route().get(0);
+        long start = System.nanoTime();
+        try {
+            var it = provider.chatStream(request);
+            recordSuccess(provider.id(), request.model(), (System.nanoTime() - start) / 1_000_000);
+            return it;
+        } catch (RuntimeException e) {
+            recordFailure(provider.id());
+            throw e;
+        }
+    }
+
+    /** Forwards to the chosen provider's own async path; cancelling the future cancels its call. */
+    @Override
+    public CompletableFuture<ChatResponse> chatAsync(ChatRequest request) {
+        var provider = route().get(0);
+        long start = System.nanoTime();
+        var future = provider.chatAsync(request);
+        future.whenComplete((resp, e) -> {
+            if (e == null) {
+                recordSuccess(provider.id(), resp.model() != null ? resp.model() : request.model(),
+                        (System.nanoTime() - start) / 1_000_000);
+            } else if (!(e instanceof CancellationException)) {
+                recordFailure(provider.id());
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public Flow.Publisher<ChatEvent> chatPublisher(ChatRequest request) {
+        return route().get(0).chatPublisher(request);
+    }
+
+    /** Unmeasured providers score 0 so they get tried once; never-successful ones go last. */
+    private static double speedScore(ProviderStats s) {
+        if (s.calls() == 0) return 0;
+        if (s.successes() == 0) return Double.POSITIVE_INFINITY;
+        return s.latencyMs() * (1 + 4 * s.errorRate());
+    }
+
+    private boolean withinSlo(ProviderStats s) {
+        if (s.calls() == 0) return true;
+        return s.successes() > 0 && s.errorRate() < UNHEALTHY_ERROR_RATE && s.latencyMs() <= latencySloMs;
+    }
+
+    /** Unmeasured providers are free so they get tried once. */
+    private static double price(ProviderStats s) {
+        return s.calls() == 0 ? 0 : s.pricePerMillion();
+    }
+
+    /** nginx-style smooth WRR: add each weight, pick the max, subtract the total from it. */
+    private synchronized ModelProvider nextWeighted(Map<String, ProviderStats> snap) {
+        ModelProvider best = null;
+        int bestWeight = Integer.MIN_VALUE;
+        int total = 0;
+        for (var p : providers.values()) {
+            int w = weights.getOrDefault(p.id(), 1);
+            if (w == 0 || snap.get(p.id()).errorRate() >= UNHEALTHY_ERROR_RATE) continue;
+            total += w;
+            int current = currentWeights.merge(p.id(), w, Integer::sum);
+            if (current > bestWeight) {
+                bestWeight = current;
+                best = p;
+            }
+        }
+        if (best != null) currentWeights.merge(best.id(), -total, Integer::sum);
+        return best;
+    }
+
+    private static final class Stats {
+        private long calls;
+        private long successes;
+        private double latencyMs;
+        private double errorRate;
+        private double pricePerMillion;
+
+        synchronized void success(long ms, String model) {
+            latencyMs = successes == 0 ? ms : ALPHA * ms + (1 - ALPHA) * latencyMs;
+            errorRate = (1 - ALPHA) * errorRate;
+            calls++;
+            successes++;
+            var prices = CostTracker.pricing(model);
+            // Unknown models sort after every priced one under CHEAPEST.
+            pricePerMillion = prices != null ? (prices[0] + prices[1]) / 2 : Double.MAX_VALUE;
+        }
+
+        synchronized void failure() {
+            errorRate = ALPHA + (1 - ALPHA) * errorRate;
+            calls++;
+        }
+
+        synchronized ProviderStats snapshot() {
+            return new ProviderStats(calls, successes, latencyMs, errorRate, pricePerMillion);
+        }
     }
 }
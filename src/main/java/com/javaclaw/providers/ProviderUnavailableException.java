@@ -0,0 +1,13 @@
+package com.javaclaw.providers;
+
+import java.util.List;
+import java.util.Map;
+
+/** 5xx or 408: the provider is failing or overloaded, and the same request may succeed later. */
+public class ProviderUnavailableException extends ProviderException {
+
+    public ProviderUnavailableException(String providerId, int statusCode, Map<String, List<String>> headers,
+                                        String message) {
+        super(providerId, statusCode, headers, true, message, null);
+    }
+}
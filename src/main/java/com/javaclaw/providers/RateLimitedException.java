@@ -0,0 +1,12 @@
+package com.javaclaw.providers;
+
+import java.util.List;
+import java.util.Map;
+
+/** 429: retryable once the provider's Retry-After has passed. */
+public class RateLimitedException extends ProviderException {
+
+    public RateLimitedException(String providerId, Map<String, List<String>> headers, String message) {
+        super(providerId, 429, headers, true, message, null);
+    }
+}
@@ -1,13 +1,31 @@
 package com.javaclaw.providers;
 
+import com.javaclaw.shared.concurrent.Deadlines;
+import com.javaclaw.shared.config.HedgingConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
 
 /**
  * Decorator: retry per provider, then fallback to next provider.
- * Skips retries on non-retryable errors (4xx except 429/408).
+ * Skips retries on non-retryable errors (4xx except 429/408), and retries draw on a
+ * shared {@link RetryBudget} so an outage does not multiply the load it sees.
+ * With hedging enabled, a slow provider is raced against the next one instead of
+ * waiting for it to fail outright. Providers or models whose circuit breaker is open
+ * are skipped without a call. Once the request's deadline has passed no further
+ * provider or model is tried.
  */
 public class ReliableProvider implements ModelProvider {
 
@@ -17,6 +35,19 @@ public class ReliableProvider implements ModelProvider {
     private final int maxRetries;
     private final long baseDelayMs;
     private final Map<String, List<String>> modelFallbacks;
+    private final HedgingConfig hedging;
+    private final CircuitBreakerRegistry breakers;
+    private volatile ProviderRouter router;
+    private volatile RetryBudget retryBudget = RetryBudget.unlimited();
+    private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+    private final Map<String, HedgeCounters> hedgeCounters = new ConcurrentHashMap<>();
+
+    private static final int LATENCY_WINDOW = 128;
+    private static final int MIN_LATENCY_SAMPLES = 10;
+    private static final ExecutorService HEDGE_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    /** Per provider: hedge requests sent to it, and hedged races it answered first. */
+    public record HedgeStats(long hedged, long won) {}
 
     public ReliableProvider(List<ModelProvider> providers, int maxRetries, long baseDelayMs) {
         this(providers, maxRetries, baseDelayMs, Map.of());
@@ -24,10 +55,23 @@ public class ReliableProvider implements ModelProvider {
 
     public ReliableProvider(List<ModelProvider> providers, int maxRetries, long baseDelayMs,
                             Map<String, List<String>> modelFallbacks) {
+        this(providers, maxRetries, baseDelayMs, modelFallbacks, HedgingConfig.defaults());
+    }
+
+    public ReliableProvider(List<ModelProvider> providers, int maxRetries, long baseDelayMs,
+                            Map<String, List<String>> modelFallbacks, HedgingConfig hedging) {
+        this(providers, maxRetries, baseDelayMs, modelFallbacks, hedging, CircuitBreakerRegistry.disabled());
+    }
+
+    public ReliableProvider(List<ModelProvider> providers, int maxRetries, long baseDelayMs,
+                            Map<String, List<String>> modelFallbacks, HedgingConfig hedging,
+                            CircuitBreakerRegistry breakers) {
         this.providers = List.copyOf(providers);
         this.maxRetries = maxRetries;
         this.baseDelayMs = Math.max(baseDelayMs, 50);
         this.modelFallbacks = Map.copyOf(modelFallbacks);
+        this.hedging = hedging;
+        this.breakers = breakers;
     }
 
     @Override
@@ -35,16 +79,63 @@ public class ReliableProvider implements ModelProvider {
 
     @Override
     public ChatResponse chat(ChatRequest request) {
+        if (hedging.enabled() && providers.size() > 1) {
+            return hedgedChat(request);
+        }
+        return withFailover(request, ModelProvider::chat);
+    }
+
+    /**
+     * Orders providers per request by the router's policy instead of list order. The
+     * router must have the same providers registered; it is fed every attempt's outcome.
+     */
+    public void setRouter(ProviderRouter router) {
+        this.router = router;
+    }
+
+    /** Budget every retry of this decorator draws on; unlimited until set. */
+    public void setRetryBudget(RetryBudget retryBudget) {
+        this.retryBudget = retryBudget;
+    }
+
+    public RetryBudget retryBudget() {
+        return retryBudget;
+    }
+
+    public Map<String, HedgeStats> hedgeStats() {
+        var stats = new LinkedHashMap<String, HedgeStats>();
+        for (var provider : providers) {
+            var c = hedgeCounters.get(provider.id());
+            stats.put(provider.id(), c == null ? new HedgeStats(0, 0)
+                    : new HedgeStats(c.hedged.sum(), c.won.sum()));
+        }
+        return stats;
+    }
+
+    /**
+     * Retries and fails over only until the first event is in hand. After that the
+     * stream is committed to one provider and any failure surfaces as
+     * {@link StreamInterruptedException}, since replaying elsewhere would duplicate output.
+     */
+    @Override
+    public Iterator<ChatEvent> chatStream(ChatRequest request) {
+        return withFailover(request, ReliableProvider::openStream);
+    }
+
+    private <T> T withFailover(ChatRequest request, BiFunction<ModelProvider, ChatRequest, T> call) {
         var models = modelChain(request.model());
+        var ordered = ordered();
         var failures = new ArrayList<String>();
 
         for (var model : models) {
-            var req = withModel(request, model);
-            for (var provider : providers) {
+            var req = request.withModel(model);
+            for (var provider : ordered) {
+                if (Deadlines.expired(request.deadline())) throw deadlineExceeded(failures);
                 try {
                     var resp = ResilientCall.execute(
-                            () -> provider.chat(req), maxRetries, baseDelayMs);
-                    if (!Objects.equals(model, request.model()) || providers.indexOf(provider) > 0) {
+                            () -> guarded(provider, model, () -> call.apply(provider, req)),
+                            maxRetries, baseDelayMs, retryBudget, req.deadline());
+                    if (!Objects.equals(model, request.model()) || ordered.indexOf(provider) > 0) {
                         log.info("Recovered via provider={} model={}", provider.id(), model);
                     }
                     return resp;
@@ -57,11 +148,140 @@ public class ReliableProvider implements ModelProvider {
         throw new RuntimeException("All providers/models failed:\n" + String.join("\n", failures));
     }
 
-    @Override
-    public Iterator<ChatEvent> chatStream(ChatRequest request) {
-        // Fallback: use chat() and wrap as single event
-        var resp = chat(request);
-        return List.of(new ChatEvent(resp.content(), true)).iterator();
+    /**
+     * Walks the same model/provider chain as {@link #withFailover}, but if a provider is
+     * still working after its hedge delay the request also goes to the next provider.
+     * The first success wins and the other call is cancelled. Streams are not hedged,
+     * since both sides would already be emitting output.
+     */
+    private ChatResponse hedgedChat(ChatRequest request) {
+        var ordered = ordered();
+        var failures = new ArrayList<String>();
+
+        for (var model : modelChain(request.model())) {
+            var req = request.withModel(model);
+            int i = 0;
+            while (i < ordered.size()) {
+                if (Deadlines.expired(request.deadline())) throw deadlineExceeded(failures);
+                var primary = ordered.get(i);
+                var backup = i + 1 < ordered.size() ? ordered.get(i + 1) : null;
+                var race = race(primary, backup, req, failures);
+                if (race.winner() != null) {
+                    if (!Objects.equals(model, request.model()) || ordered.indexOf(race.winner()) > 0) {
+                        log.info("Recovered via provider={} model={}", race.winner().id(), model);
+                    }
+                    return race.response();
+                }
+                i += race.hedged() ? 2 : 1;
+            }
+        }
+        throw new RuntimeException("All providers/models failed:\n" + String.join("\n", failures));
+    }
+
+    private Race race(ModelProvider primary, ModelProvider backup, ChatRequest req, List<String> failures) {
+        var completion = new ExecutorCompletionService<Attempt>(HEDGE_EXECUTOR);
+        var running = new ArrayList<Future<Attempt>>(2);
+        running.add(completion.submit(() -> attempt(primary, req)));
+        boolean hedged = false;
+        try {
+            var done = completion.poll(hedgeDelayMs(primary), TimeUnit.MILLISECONDS);
+            if (done == null && backup != null) {
+                hedged = true;
+                counters(backup).hedged.increment();
+                log.info("Provider {} slow for model {}, hedging to {}", primary.id(), req.model(), backup.id());
+                running.add(completion.submit(() -> attempt(backup, req)));
+            }
+            for (int pending = running.size(); pending > 0; pending--) {
+                var attempt = (done != null ? done : completion.take()).get();
+                done = null;
+                if (attempt.error() == null) {
+                    if (hedged) counters(attempt.provider()).won.increment();
+                    return new Race(attempt.provider(), attempt.response(), hedged);
+                }
+                failures.add(attempt.provider().id() + "/" + req.model() + ": " + rootMessage(attempt.error()));
+                log.warn("Provider {} model {} failed, trying next", attempt.provider().id(), req.model());
+            }
+            return new Race(null, null, hedged);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for provider", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            for (var f : running) f.cancel(true);
+        }
+    }
+
+    private Attempt attempt(ModelProvider provider, ChatRequest req) {
+        long start = System.nanoTime();
+        try {
+            var resp = ResilientCall.execute(
+                    () -> guarded(provider, req.model(), () -> provider.chat(req)),
+                    maxRetries, baseDelayMs, retryBudget, req.deadline());
+            latency(provider).record((System.nanoTime() - start) / 1_000_000);
+            return new Attempt(provider, resp, null);
+        } catch (RuntimeException e) {
+            return new Attempt(provider, null, e);
+        }
+    }
+
+    private List<ModelProvider> ordered() {
+        var r = router;
+        return r != null ? r.route() : providers;
+    }
+
+    /** One attempt through the breakers, reporting its outcome to the router if there is one. */
+    private <T> T guarded(ModelProvider provider, String model, Callable<T> call) throws Exception {
+        long start = System.nanoTime();
+        try {
+            var result = breakers.execute(provider.id(), model, call);
+            var r = router;
+            if (r != null) {
+                var served = result instanceof ChatResponse resp && resp.model() != null ? resp.model() : model;
+                r.recordSuccess(provider.id(), served, (System.nanoTime() - start) / 1_000_000);
+            }
+            return result;
+        } catch (Exception e) {
+            var r = router;
+            if (r != null && !(e instanceof CircuitOpenException) && !ResilientCall.isNonRetryable(e)
+                    && !CircuitBreakerRegistry.cancelled(e)) {
+                r.recordFailure(provider.id());
+            }
+            throw e;
+        }
+    }
+
+    /** Configured percentile of observed latency once enough samples exist, else the initial delay. */
+    private long hedgeDelayMs(ModelProvider provider) {
+        var window = latency(provider);
+        if (window.count() < MIN_LATENCY_SAMPLES) return hedging.initialDelayMs();
+        return Math.max(window.percentile(hedging.percentile()), hedging.minDelayMs());
+    }
+
+    private LatencyWindow latency(ModelProvider provider) {
+        return latencies.computeIfAbsent(provider.id(), k -> new LatencyWindow(LATENCY_WINDOW));
+    }
+
+    private HedgeCounters counters(ModelProvider provider) {
+        return hedgeCounters.computeIfAbsent(provider.id(), k -> new HedgeCounters());
+    }
+
+    private record Attempt(ModelProvider provider, ChatResponse response, RuntimeException error) {}
+
+    private record Race(ModelProvider winner, ChatResponse response, boolean hedged) {}
+
+    private static final class HedgeCounters {
+        final LongAdder hedged = new LongAdder();
+        final LongAdder won = new LongAdder();
+    }
+
+    private static Iterator<ChatEvent> openStream(ModelProvider provider, ChatRequest req) {
+        var upstream = provider.chatStream(req);
+        if (upstream == null || !upstream.hasNext()) {
+            Streams.closeQuietly(upstream);
+            throw new IllegalStateException("Provider " + provider.id() + " returned an empty stream");
+        }
+        return new CommittedStream(provider.id(), req.model(), upstream.next(), upstream);
     }
 
     private List<String> modelChain(String model) {
@@ -74,12 +294,68 @@ public class ReliableProvider implements ModelProvider {
         return chain;
     }
 
-    private static ChatRequest withModel(ChatRequest req, String model) {
-        return new ChatRequest(model, req.messages(), req.temperature(), req.tools());
+    private DeadlineExceededException deadlineExceeded(List<String> failures) {
+        return new DeadlineExceededException(id(), failures.isEmpty() ? null
+                : new RuntimeException("Failed before the deadline:\n" + String.join("\n", failures)));
     }
 
     private static String rootMessage(Throwable t) {
         while (t.getCause() != null) t = t.getCause();
         return t.getMessage();
     }
+
+    /** Closing forwards to the provider's stream so an abandoned stream is released. */
+    private static final class CommittedStream implements Iterator<ChatEvent>, Closeable {
+        private final String providerId;
+        private final String model;
+        private final Iterator<ChatEvent> upstream;
+        private ChatEvent first;
+        private int emitted;
+
+        CommittedStream(String providerId, String model, ChatEvent first, Iterator<ChatEvent> upstream) {
+            this.providerId = providerId;
+            this.model = model;
+            this.first = first;
+            this.upstream = upstream;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (first != null) return true;
+            try {
+                return upstream.hasNext();
+            } catch (RuntimeException e) {
+                throw interrupted(e);
+            }
+        }
+
+        @Override
+        public ChatEvent next() {
+            if (first != null) {
+                var e = first;
+                first = null;
+                emitted++;
+                return e;
+            }
+            try {
+                var e = upstream.next();
+                emitted++;
+                return e;
+            } catch (NoSuchElementException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                throw interrupted(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            Streams.closeQuietly(upstream);
+        }
+
+        private StreamInterruptedException interrupted(RuntimeException cause) {
+            log.warn("Stream from provider {} model {} failed after {} events", providerId, model, emitted);
+            return new StreamInterruptedException(providerId, model, emitted, cause);
+        }
+    }
 }
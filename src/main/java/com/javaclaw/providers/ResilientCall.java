@@ -1,37 +1,59 @@
 package com.javaclaw.providers;
 
+import com.javaclaw.shared.concurrent.Deadlines;
+
+import java.time.Instant;
 import java.util.concurrent.Callable;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
+/**
+ * Retries with exponential backoff. Whether to retry comes from {@link ProviderException}
+ * (status and retryable flag); other exceptions are treated as transport failures and
+ * retried. A server-sent Retry-After stretches the wait, and a shared {@link RetryBudget}
+ * stops retries altogether once too many calls are failing. No retry is started if its
+ * wait would run past the caller's deadline.
+ */
 public class ResilientCall {
 
     private static final int MAX_RETRIES = 2;
     private static final long INITIAL_DELAY_MS = 500;
     private static final long MAX_BACKOFF_MS = 10_000;
     private static final long RETRY_AFTER_CAP_MS = 30_000;
-    private static final Pattern STATUS_CODE = Pattern.compile("\\b(\\d{3})\\b");
-    private static final Pattern RETRY_AFTER = Pattern.compile(
-            "(?i)retry[_-]after[:\\s]+([\\d.]+)");
 
     public static <T> T execute(Callable<T> action) {
         return execute(action, MAX_RETRIES, INITIAL_DELAY_MS);
     }
 
     public static <T> T execute(Callable<T> action, int maxRetries, long baseDelayMs) {
+        return execute(action, maxRetries, baseDelayMs, RetryBudget.unlimited());
+    }
+
+    public static <T> T execute(Callable<T> action, int maxRetries, long baseDelayMs, RetryBudget budget) {
+        return execute(action, maxRetries, baseDelayMs, budget, null);
+    }
+
+    public static <T> T execute(Callable<T> action, int maxRetries, long baseDelayMs, RetryBudget budget,
+                                Instant deadline) {
         Exception last = null;
         long delay = baseDelayMs;
 
         for (int attempt = 0; attempt <= maxRetries; attempt++) {
             try {
-                return action.call();
+                var result = action.call();
+                budget.onSuccess();
+                return result;
             } catch (Exception e) {
                 last = e;
                 if (isNonRetryable(e)) break;
+                budget.onFailure();
                 if (attempt < maxRetries) {
-                    long wait = isRateLimited(e)
-                            ? Math.max(delay, parseRetryAfterMs(e))
-                            : delay;
+                    long wait = Math.max(delay, Math.min(retryAfterMs(e), RETRY_AFTER_CAP_MS));
+                    if (wait >= Deadlines.remainingMillis(deadline)) {
+                        var pe = providerException(e);
+                        throw new DeadlineExceededException(pe != null ? pe.providerId() : "provider", e);
+                    }
+                    if (!budget.tryRetry()) {
+                        throw new RuntimeException("Retry budget exhausted", e);
+                    }
                     sleep(wait);
                     delay = Math.min(delay * 2, MAX_BACKOFF_MS);
                 }
@@ -41,40 +63,29 @@ public class ResilientCall {
     }
 
     static boolean isNonRetryable(Exception e) {
-        int code = extractStatusCode(e);
-        return code >= 400 && code < 500 && code != 429 && code != 408;
+        if (e instanceof CircuitOpenException || e instanceof AdmissionRejectedException) return true;
+        var pe = providerException(e);
+        return pe != null && !pe.retryable();
     }
 
-    static boolean isRateLimited(Exception e) {
-        int code = extractStatusCode(e);
-        if (code == 429) return true;
-        String msg = e.getMessage();
-        return msg != null && msg.contains("429")
-                && (msg.contains("Too Many") || msg.contains("rate") || msg.contains("limit"));
+    /** Server-requested wait from the Retry-After headers, or 0. */
+    static long retryAfterMs(Exception e) {
+        var pe = providerException(e);
+        return pe != null ? pe.retryAfterMs() : 0;
     }
 
-    static long parseRetryAfterMs(Exception e) {
-        if (e.getMessage() == null) return 0;
-        Matcher m = RETRY_AFTER.matcher(e.getMessage());
-        if (m.find()) {
-            try {
-                double secs = Double.parseDouble(m.group(1));
-                if (Double.isFinite(secs) && secs >= 0) {
-                    return Math.min((long) (secs * 1000), RETRY_AFTER_CAP_MS);
-                }
-            } catch (NumberFormatException ignored) {}
-        }
-        return 0;
+    /** HTTP status of the underlying provider error, or 0 for transport and unknown failures. */
+    static int statusCode(Exception e) {
+        var pe = providerException(e);
+        return pe != null ? pe.statusCode() : 0;
     }
 
-    private static int extractStatusCode(Exception e) {
-        if (e.getMessage() == null) return 0;
-        Matcher m = STATUS_CODE.matcher(e.getMessage());
-        while (m.find()) {
-            int code = Integer.parseInt(m.group(1));
-            if (code >= 100 && code < 600) return code;
+    /** The first {@link ProviderException} in the cause chain, or null. */
+    static ProviderException providerException(Throwable t) {
+        for (; t != null; t = t.getCause()) {
+            if (t instanceof ProviderException pe) return pe;
         }
-        return 0;
+        return null;
     }
 
     private static void sleep(long ms) {
@@ -0,0 +1,55 @@
+package com.javaclaw.providers;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide cap on retries, after gRPC's retry throttling: every failed attempt
+ * costs a token, every success earns back {@code tokenRatio}, and retries are only
+ * allowed while more than half of {@code maxTokens} remain. During an outage the
+ * budget drains within a few calls and callers fail fast instead of multiplying load.
+ */
+public class RetryBudget {
+
+    private final double maxTokens;
+    private final double tokenRatio;
+    private final LongAdder denied = new LongAdder();
+    private double tokens;
+
+    public RetryBudget(double maxTokens, double tokenRatio) {
+        this.maxTokens = maxTokens;
+        this.tokenRatio = tokenRatio;
+        this.tokens = maxTokens;
+    }
+
+    /** Never denies; for call sites that are not part of the shared budget. */
+    public static RetryBudget unlimited() {
+        return new RetryBudget(Double.POSITIVE_INFINITY, 0);
+    }
+
+    synchronized void onSuccess() {
+        tokens = Math.min(maxTokens, tokens + tokenRatio);
+    }
+
+    synchronized void onFailure() {
+        tokens = Math.max(0, tokens - 1);
+    }
+
+    /** Whether a retry may be sent now; counts the refusal if not. */
+    boolean tryRetry() {
+        boolean allowed;
+        synchronized (this) {
+            allowed = Double.isInfinite(maxTokens) || tokens > maxTokens / 2;
+        }
+        if (!allowed) denied.increment();
+        return allowed;
+    }
+
+    public synchronized double tokens() {
+        return tokens;
+    }
+
+    /** Retries refused because the budget was below threshold. */
+    public long denied() {
+        return denied.sum();
+    }
+}
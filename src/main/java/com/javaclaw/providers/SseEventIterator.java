@@ -0,0 +1,168 @@
+package com.javaclaw.providers;
+
+import com.fasterxml.jackson.core.JsonFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Pulls OpenAI-style SSE chunks off the response body as they arrive and turns them
+ * into {@link ChatEvent}s. Lines are scanned in a reused byte buffer and each
+ * {@code data:} payload goes to {@link CompletionParser} in place, so no per-line
+ * Strings or JSON trees are built. A body that starts with <code>{</code> (server
+ * ignored {@code stream}) is parsed as a single completion. The terminal event
+ * carries the assembled {@link ChatResponse}; the stream is closed once it ends or fails.
+ */
+final class SseEventIterator implements Iterator<ChatEvent>, Closeable {
+
+    private static final byte[] DATA = {'d', 'a', 't', 'a', ':'};
+    private static final byte[] DONE = {'[', 'D', 'O', 'N', 'E', ']'};
+
+    private final InputStream in;
+    private final CompletionParser parser;
+    private final ArrayDeque<ChatEvent> ready = new ArrayDeque<>();
+
+    private byte[] buf = new byte[8192];
+    private int start;
+    private int end;
+    private boolean eof;
+    private boolean sniffed;
+    private boolean finished;
+
+    SseEventIterator(InputStream in, JsonFactory factory) {
+        this.in = in;
+        this.parser = new CompletionParser(factory);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (ready.isEmpty() && !finished) {
+            pull();
+        }
+        return !ready.isEmpty();
+    }
+
+    @Override
+    public ChatEvent next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        return ready.poll();
+    }
+
+    /** Drains the stream and returns the assembled response. */
+    ChatResponse drain() {
+        ChatEvent last = null;
+        while (hasNext()) last = next();
+        return last != null ? last.response() : null;
+    }
+
+    private void pull() {
+        try {
+            if (!sniffed) {
+                sniff();
+                return;
+            }
+            int nl = indexOf((byte) '\n', start, end);
+            if (nl < 0) {
+                if (eof) {
+                    if (start < end) line(start, end);
+                    start = end;
+                    if (!finished) finish();
+                } else {
+                    fill();
+                }
+                return;
+            }
+            int lineEnd = nl > start && buf[nl - 1] == '\r' ? nl - 1 : nl;
+            int lineStart = start;
+            start = nl + 1;
+            line(lineStart, lineEnd);
+        } catch (IOException e) {
+            close();
+            throw new UncheckedIOException("SSE stream failed", e);
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private void sniff() throws IOException {
+        while (true) {
+            while (start < end && isSpace(buf[start])) start++;
+            if (start < end || eof) break;
+            fill();
+        }
+        sniffed = true;
+        if (start < end && buf[start] == '{') {
+            var rest = new SequenceInputStream(new ByteArrayInputStream(buf, start, end - start), in);
+            parser.chunk(rest, ready::add);
+            finish();
+        }
+    }
+
+    private void line(int from, int to) throws IOException {
+        while (from < to && isSpace(buf[from])) from++;
+        if (!startsWith(DATA, from, to)) return;
+        from += DATA.length;
+        while (from < to && isSpace(buf[from])) from++;
+        while (to > from && isSpace(buf[to - 1])) to--;
+        if (from == to) return;
+        if (to - from == DONE.length && startsWith(DONE, from, to)) {
+            finish();
+            return;
+        }
+        parser.chunk(buf, from, to - from, ready::add);
+    }
+
+    private void fill() throws IOException {
+        if (start > 0) {
+            System.arraycopy(buf, start, buf, 0, end - start);
+            end -= start;
+            start = 0;
+        }
+        if (end == buf.length) buf = Arrays.copyOf(buf, buf.length * 2);
+        int n = in.read(buf, end, buf.length - end);
+        if (n < 0) eof = true;
+        else end += n;
+    }
+
+    private void finish() {
+        finished = true;
+        ready.add(ChatEvent.done(parser.result()));
+        close();
+    }
+
+    private int indexOf(byte b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buf[i] == b) return i;
+        }
+        return -1;
+    }
+
+    private boolean startsWith(byte[] prefix, int from, int to) {
+        if (to - from < prefix.length) return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (buf[from + i] != prefix[i]) return false;
+        }
+        return true;
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    @Override
+    public void close() {
+        finished = true;
+        try {
+            in.close();
+        } catch (IOException ignored) {}
+    }
+}
@@ -0,0 +1,24 @@
+package com.javaclaw.providers;
+
+/**
+ * A streamed completion failed after events were already delivered to the caller,
+ * so it cannot be transparently retried or failed over.
+ */
+public class StreamInterruptedException extends RuntimeException {
+
+    private final String providerId;
+    private final String model;
+    private final int eventsEmitted;
+
+    public StreamInterruptedException(String providerId, String model, int eventsEmitted, Throwable cause) {
+        super("Stream from " + providerId + "/" + model + " interrupted after "
+                + eventsEmitted + " events: " + cause.getMessage(), cause);
+        this.providerId = providerId;
+        this.model = model;
+        this.eventsEmitted = eventsEmitted;
+    }
+
+    public String providerId() { return providerId; }
+    public String model() { return model; }
+    public int eventsEmitted() { return eventsEmitted; }
+}
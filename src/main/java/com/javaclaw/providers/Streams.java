@@ -0,0 +1,23 @@
+package com.javaclaw.providers;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/** Helpers for the {@code chatStream} iterators that decorators wrap around each other. */
+final class Streams {
+
+    private Streams() {}
+
+    /**
+     * Closes {@code it} if it holds a resource (e.g. the HTTP body under an
+     * {@link SseEventIterator}). Stream decorators forward their own {@code close} here so
+     * a consumer that stops early releases everything underneath.
+     */
+    static void closeQuietly(Object it) {
+        if (it instanceof Closeable c) {
+            try {
+                c.close();
+            } catch (IOException ignored) {}
+        }
+    }
+}
@@ -0,0 +1,4 @@
+package com.javaclaw.sessions;
+
+/** Rolling summary of the first {@code coveredMessages} messages of a session's history. */
+public record ConversationSummary(int coveredMessages, String content) {}
@@ -78,6 +78,37 @@ public class PostgresSessionStore implements SessionStore {
         }
     }
 
+    @Override
+    public ConversationSummary loadSummary(String sessionId) {
+        var sql = "SELECT covered_messages, content FROM session_summaries WHERE session_id = ?";
+        try (var conn = dataSource.getConnection();
+             var ps = conn.prepareStatement(sql)) {
+            ps.setString(1, sessionId);
+            var rs = ps.executeQuery();
+            return rs.next() ? new ConversationSummary(rs.getInt("covered_messages"), rs.getString("content")) : null;
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to load summary: " + sessionId, e);
+        }
+    }
+
+    @Override
+    public void saveSummary(String sessionId, ConversationSummary summary) {
+        // The session row exists: summaries are only written for history that was loaded from it.
+        var sql = """
+                INSERT INTO session_summaries (session_id, covered_messages, content) VALUES (?, ?, ?)
+                ON CONFLICT (session_id) DO UPDATE
+                SET covered_messages = EXCLUDED.covered_messages, content = EXCLUDED.content, updated_at = now()""";
+        try (var conn = dataSource.getConnection();
+             var ps = conn.prepareStatement(sql)) {
+            ps.setString(1, sessionId);
+            ps.setInt(2, summary.coveredMessages());
+            ps.setString(3, summary.content());
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to save summary: " + sessionId, e);
+        }
+    }
+
     private void upsertSession(Connection conn, String sessionId, String userId, String channelId) throws SQLException {
         var sql = "INSERT INTO sessions (id, user_id, channel_id) VALUES (?, ?, ?) ON CONFLICT (id) DO NOTHING";
         try (var ps = conn.prepareStatement(sql)) {
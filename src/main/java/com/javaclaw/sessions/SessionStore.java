@@ -7,4 +7,11 @@ public interface SessionStore {
     void save(String sessionId, String userId, String channelId, List<Map<String, Object>> messages);
     List<Map<String, Object>> load(String sessionId);
     void delete(String sessionId);
+
+    /** The stored rolling summary, or null if the session has none. */
+    default ConversationSummary loadSummary(String sessionId) {
+        return null;
+    }
+
+    default void saveSummary(String sessionId, ConversationSummary summary) {}
 }
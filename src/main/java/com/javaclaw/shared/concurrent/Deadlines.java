@@ -0,0 +1,42 @@
+package com.javaclaw.shared.concurrent;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Helpers for an optional absolute deadline, where {@code null} means none. A stage
+ * that has its own timeout shrinks it to what is left of the deadline instead of
+ * starting a fresh one, so nested calls can never outlast the turn that made them.
+ */
+public final class Deadlines {
+
+    private Deadlines() {}
+
+    public static Instant after(long millis) {
+        return Instant.now().plusMillis(millis);
+    }
+
+    /** Milliseconds left, 0 once passed, {@link Long#MAX_VALUE} without a deadline. */
+    public static long remainingMillis(Instant deadline) {
+        if (deadline == null) return Long.MAX_VALUE;
+        return Math.max(Duration.between(Instant.now(), deadline).toMillis(), 0);
+    }
+
+    public static boolean expired(Instant deadline) {
+        return deadline != null && !Instant.now().isBefore(deadline);
+    }
+
+    /** {@code timeoutMs}, or less if the deadline comes sooner; never below 1 so it stays a valid timeout. */
+    public static long clampMillis(Instant deadline, long timeoutMs) {
+        return Math.max(Math.min(timeoutMs, remainingMillis(deadline)), 1);
+    }
+
+    public static Duration clamp(Instant deadline, Duration timeout) {
+        return Duration.ofMillis(clampMillis(deadline, timeout.toMillis()));
+    }
+
+    /** Whole seconds for APIs that take them, rounded up so a sub-second remainder still gets a chance. */
+    public static long clampSeconds(Instant deadline, long timeoutSeconds) {
+        return (clampMillis(deadline, timeoutSeconds * 1000) + 999) / 1000;
+    }
+}
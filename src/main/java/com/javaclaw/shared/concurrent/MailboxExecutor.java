@@ -0,0 +1,92 @@
+package com.javaclaw.shared.concurrent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs tasks one at a time per key, in submission order, while different keys run in
+ * parallel. Each key with work queued has a mailbox drained by a single virtual thread;
+ * the mailbox is evicted as soon as it runs empty, so idle keys cost nothing. A task
+ * that throws is logged and the next one in its mailbox still runs.
+ */
+public final class MailboxExecutor<K> {
+
+    private static final Logger log = LoggerFactory.getLogger(MailboxExecutor.class);
+
+    /**
+     * Live mailboxes and tasks waiting in them, the deepest a mailbox has been, and how
+     * long tasks waited between submission and start.
+     */
+    public record Stats(int mailboxes, int queued, long maxDepth, long completed,
+                        double avgWaitMs, long maxWaitMs) {}
+
+    private final String name;
+    private final ConcurrentHashMap<K, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LongAccumulator maxDepth = new LongAccumulator(Math::max, 0);
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+
+    public MailboxExecutor(String name) {
+        this.name = name;
+    }
+
+    public void execute(K key, Runnable task) {
+        var letter = new Letter(task, System.nanoTime());
+        var created = new Mailbox[1];
+        mailboxes.compute(key, (k, existing) -> {
+            var b = existing != null ? existing : (created[0] = new Mailbox());
+            b.letters.add(letter);
+            queued.incrementAndGet();
+            maxDepth.accumulate(b.letters.size());
+            return b;
+        });
+        if (created[0] != null) {
+            Thread.ofVirtual().name(name + "-mailbox").start(() -> drain(key));
+        }
+    }
+
+    public Stats stats() {
+        long n = completed.sum();
+        return new Stats(mailboxes.size(), queued.get(), maxDepth.get(), n,
+                n == 0 ? 0 : waitNanos.sum() / 1e6 / n, maxWaitNanos.get() / 1_000_000);
+    }
+
+    /** Runs the mailbox's letters until it is empty; the removal happens atomically with the last poll. */
+    private void drain(K key) {
+        while (true) {
+            var next = new Letter[1];
+            mailboxes.compute(key, (k, b) -> {
+                next[0] = b.letters.poll();
+                return next[0] != null ? b : null;
+            });
+            var letter = next[0];
+            if (letter == null) return;
+            queued.decrementAndGet();
+            long waited = System.nanoTime() - letter.submittedNanos;
+            waitNanos.add(waited);
+            maxWaitNanos.accumulate(waited);
+            try {
+                letter.task.run();
+            } catch (Throwable e) {
+                log.error("Task for {} failed", key, e);
+            } finally {
+                completed.increment();
+            }
+        }
+    }
+
+    private record Letter(Runnable task, long submittedNanos) {}
+
+    /** Only touched inside {@code compute} for its key, which serializes access. */
+    private static final class Mailbox {
+        final ArrayDeque<Letter> letters = new ArrayDeque<>();
+    }
+}
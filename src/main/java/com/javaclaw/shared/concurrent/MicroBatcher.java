@@ -0,0 +1,108 @@
+package com.javaclaw.shared.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Merges items submitted within a short window into one call of a batch handler.
+ * The first item of a batch starts a {@code maxDelayMs} timer; the batch goes out when
+ * the timer fires or as soon as it reaches {@code maxBatch} items, whichever is first.
+ * Each batch runs on its own virtual thread, so a slow batch never holds up the next.
+ * The handler returns one result per item, in order; if it throws, every item of that
+ * batch fails with the same exception.
+ */
+public final class MicroBatcher<T, R> {
+
+    private final int maxBatch;
+    private final long maxDelayMs;
+    private final Function<List<T>, List<R>> handler;
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder items = new LongAdder();
+
+    private List<Pending<T, R>> open = new ArrayList<>();
+
+    public MicroBatcher(int maxBatch, long maxDelayMs, Function<List<T>, List<R>> handler) {
+        if (maxBatch < 1) throw new IllegalArgumentException("maxBatch must be at least 1");
+        this.maxBatch = maxBatch;
+        this.maxDelayMs = Math.max(maxDelayMs, 0);
+        this.handler = handler;
+    }
+
+    public CompletableFuture<R> submit(T item) {
+        var pending = new Pending<T, R>(item, new CompletableFuture<>());
+        List<Pending<T, R>> full = null;
+        List<Pending<T, R>> started = null;
+        synchronized (this) {
+            open.add(pending);
+            if (open.size() >= maxBatch) {
+                full = open;
+                open = new ArrayList<>();
+            } else if (open.size() == 1) {
+                started = open;
+            }
+        }
+        items.increment();
+        if (full != null) {
+            dispatch(full);
+        } else if (started != null) {
+            var batch = started;
+            Thread.ofVirtual().name("micro-batch-timer").start(() -> {
+                sleepQuietly(maxDelayMs);
+                flush(batch);
+            });
+        }
+        return pending.future;
+    }
+
+    /** Batches handed to the handler so far. */
+    public long batches() {
+        return batches.sum();
+    }
+
+    /** Items submitted so far. */
+    public long items() {
+        return items.sum();
+    }
+
+    /** Sends {@code batch} if it is still the open one; a size-triggered dispatch may have beaten the timer. */
+    private void flush(List<Pending<T, R>> batch) {
+        synchronized (this) {
+            if (open != batch || batch.isEmpty()) return;
+            open = new ArrayList<>();
+        }
+        dispatch(batch);
+    }
+
+    private void dispatch(List<Pending<T, R>> batch) {
+        batches.increment();
+        Thread.ofVirtual().name("micro-batch").start(() -> {
+            var inputs = new ArrayList<T>(batch.size());
+            for (var p : batch) inputs.add(p.item);
+            try {
+                var results = handler.apply(inputs);
+                if (results == null || results.size() != batch.size()) {
+                    throw new IllegalStateException("Batch handler returned "
+                            + (results == null ? "null" : results.size() + " results")
+                            + " for " + batch.size() + " items");
+                }
+                for (int i = 0; i < batch.size(); i++) batch.get(i).future.complete(results.get(i));
+            } catch (Throwable e) {
+                for (var p : batch) p.future.completeExceptionally(e);
+            }
+        });
+    }
+
+    private static void sleepQuietly(long ms) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record Pending<T, R>(T item, CompletableFuture<R> future) {}
+}
@@ -0,0 +1,112 @@
+package com.javaclaw.shared.concurrent;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces concurrent calls with the same key onto one in-flight load. The load runs
+ * on its own virtual thread, so a waiter that is interrupted only leaves; the load is
+ * cancelled (and its thread interrupted) once the last waiter has gone. Results are
+ * not cached: a call arriving after the load finished starts a fresh one.
+ */
+public final class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, Call> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Returns the shared result for {@code key}, starting {@code loader} if nothing is in
+     * flight. Unchecked exceptions from the loader are rethrown as-is, checked ones wrapped.
+     */
+    public V execute(K key, Callable<V> loader) throws InterruptedException {
+        while (true) {
+            var call = inFlight.computeIfAbsent(key, k -> new Call(k, loader));
+            if (call.task.isDone()) {
+                // Finished but done() has not unmapped it yet; never hand out a stale result.
+                inFlight.remove(key, call);
+                continue;
+            }
+            if (!call.join()) continue;  // abandoned between lookup and join; start over
+            if (call.started.compareAndSet(false, true)) {
+                loads.increment();
+                Thread.ofVirtual().name("single-flight").start(call.task);
+            } else {
+                coalesced.increment();
+            }
+            boolean left = false;
+            try {
+                return call.task.get();
+            } catch (InterruptedException e) {
+                left = true;
+                call.leave();
+                throw e;
+            } catch (ExecutionException e) {
+                var cause = e.getCause();
+                if (cause instanceof RuntimeException re) throw re;
+                if (cause instanceof Error err) throw err;
+                throw new RuntimeException(cause);
+            } catch (CancellationException e) {
+                // Only reachable if we joined a load that was cancelled under us; retry.
+                continue;
+            } finally {
+                if (!left) call.leave();
+            }
+        }
+    }
+
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    /** Loads actually started. */
+    public long loads() {
+        return loads.sum();
+    }
+
+    /** Calls that piggybacked on a load another caller had started. */
+    public long coalesced() {
+        return coalesced.sum();
+    }
+
+    private final class Call {
+        final K key;
+        final FutureTask<V> task;
+        final AtomicBoolean started = new AtomicBoolean();
+        private int waiters;
+        private boolean abandoned;
+
+        Call(K key, Callable<V> loader) {
+            this.key = key;
+            this.task = new FutureTask<>(loader) {
+                @Override
+                protected void done() {
+                    inFlight.remove(key, Call.this);
+                }
+            };
+        }
+
+        synchronized boolean join() {
+            if (abandoned) return false;
+            waiters++;
+            return true;
+        }
+
+        void leave() {
+            boolean cancel;
+            synchronized (this) {
+                cancel = --waiters == 0 && !task.isDone();
+                if (cancel) abandoned = true;
+            }
+            if (cancel) {
+                inFlight.remove(key, this);
+                task.cancel(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.javaclaw.shared.config;
+
+import java.util.Map;
+
+public record AdmissionConfig(
+    boolean enabled,
+    int initialConcurrency,
+    int minConcurrency,
+    int maxConcurrency,
+    int maxQueue,
+    long queueTimeoutMs,
+    Map<String, RateLimit> limits
+) {
+    /** 0 means unlimited. */
+    public record RateLimit(int requestsPerMinute, int tokensPerMinute) {
+        public static RateLimit unlimited() {
+            return new RateLimit(0, 0);
+        }
+    }
+
+    public RateLimit limitFor(String providerId) {
+        return limits.getOrDefault(providerId, RateLimit.unlimited());
+    }
+
+    public static AdmissionConfig defaults() {
+        return new AdmissionConfig(true, 4, 1, 64, 256, 30_000, Map.of());
+    }
+}
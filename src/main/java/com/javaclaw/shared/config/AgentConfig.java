@@ -0,0 +1,12 @@
+package com.javaclaw.shared.config;
+
+/**
+ * Time limits for one agent turn. Model calls, tools, MCP requests and approval waits all
+ * shrink their own timeouts to what is left of {@code turnTimeoutMs}; the last
+ * {@code summaryReserveMs} of it are kept for a closing answer without tools.
+ */
+public record AgentConfig(long turnTimeoutMs, long summaryReserveMs) {
+    public static AgentConfig defaults() {
+        return new AgentConfig(180_000, 15_000);
+    }
+}
@@ -0,0 +1,16 @@
+package com.javaclaw.shared.config;
+
+public record CircuitBreakerConfig(
+    boolean enabled,
+    int windowSize,
+    int minCalls,
+    double failureRateThreshold,
+    long slowCallMs,
+    double slowCallRateThreshold,
+    long openSeconds,
+    int halfOpenProbes
+) {
+    public static CircuitBreakerConfig defaults() {
+        return new CircuitBreakerConfig(true, 20, 5, 0.5, 30_000, 0.8, 30, 1);
+    }
+}
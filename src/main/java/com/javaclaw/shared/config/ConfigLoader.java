@@ -5,6 +5,7 @@ import org.yaml.snakeyaml.Yaml;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -43,6 +44,11 @@ public class ConfigLoader {
         var discord = (Map<String, Object>) raw.getOrDefault("discord", Map.of());
         var mcpServers = (Map<String, Map<String, Object>>) raw.getOrDefault("mcp-servers", Map.of());
         var tools = (Map<String, Object>) raw.getOrDefault("tools", Map.of());
+        var http = (Map<String, Object>) raw.getOrDefault("http", Map.of());
+        var context = (Map<String, Object>) raw.getOrDefault("context", Map.of());
+        var embedding = (Map<String, Object>) raw.getOrDefault("embedding", Map.of());
+        var memory = (Map<String, Object>) raw.getOrDefault("memory", Map.of());
+        var agent = (Map<String, Object>) raw.getOrDefault("agent", Map.of());
 
         var apiKeys = new java.util.HashMap<String, String>();
         keys.forEach((k, v) -> apiKeys.put(k, String.valueOf(v)));
@@ -68,7 +74,19 @@ public class ConfigLoader {
                 (String) discord.getOrDefault("bot-token", "")),
             mcpServers,
             parseSandboxConfig(sandbox),
-            parseToolsConfig(tools)
+            parseToolsConfig(tools),
+            parseHttpConfig(http),
+            parseLlmCacheConfig((Map<String, Object>) providers.getOrDefault("cache", Map.of())),
+            parseHedgingConfig((Map<String, Object>) providers.getOrDefault("hedging", Map.of())),
+            parseCircuitBreakerConfig((Map<String, Object>) providers.getOrDefault("circuit-breaker", Map.of())),
+            parseRoutingConfig((Map<String, Object>) providers.getOrDefault("routing", Map.of())),
+            parseAdmissionConfig((Map<String, Object>) providers.getOrDefault("admission", Map.of())),
+            parseContextConfig(context),
+            parseRetryBudgetConfig((Map<String, Object>) providers.getOrDefault("retry-budget", Map.of())),
+            parseTierConfig((Map<String, Object>) providers.getOrDefault("tiers", Map.of())),
+            parseEmbeddingConfig(embedding),
+            parseMemoryConfig(memory),
+            parseAgentConfig(agent)
         );
     }
 
@@ -84,17 +102,170 @@ public class ConfigLoader {
         );
     }
 
+    private static HttpConfig parseHttpConfig(Map<String, Object> http) {
+        var defaults = HttpConfig.defaults();
+        return new HttpConfig(
+            Boolean.parseBoolean(String.valueOf(http.getOrDefault("http2", defaults.http2()))),
+            Boolean.parseBoolean(String.valueOf(http.getOrDefault("virtual-threads", defaults.virtualThreads()))),
+            Integer.parseInt(String.valueOf(http.getOrDefault("connect-timeout", defaults.connectTimeoutSeconds())))
+        );
+    }
+
+    private static LlmCacheConfig parseLlmCacheConfig(Map<String, Object> cache) {
+        var defaults = LlmCacheConfig.defaults();
+        var persist = cache.get("persist-path");
+        return new LlmCacheConfig(
+            Boolean.parseBoolean(String.valueOf(cache.getOrDefault("enabled", defaults.enabled()))),
+            Integer.parseInt(String.valueOf(cache.getOrDefault("max-entries", defaults.maxEntries()))),
+            Long.parseLong(String.valueOf(cache.getOrDefault("ttl", defaults.ttlSeconds()))),
+            Double.parseDouble(String.valueOf(cache.getOrDefault("max-temperature", defaults.maxTemperature()))),
+            persist != null ? String.valueOf(persist) : defaults.persistPath()
+        );
+    }
+
+    private static ContextConfig parseContextConfig(Map<String, Object> context) {
+        var defaults = ContextConfig.defaults();
+        var vocab = context.get("vocab-path");
+        var summaryModel = context.get("summary-model");
+        return new ContextConfig(
+            Integer.parseInt(String.valueOf(context.getOrDefault("max-prompt-tokens", defaults.maxPromptTokens()))),
+            String.valueOf(context.getOrDefault("tokenizer", defaults.tokenizer())),
+            vocab != null ? String.valueOf(vocab) : defaults.vocabPath(),
+            Integer.parseInt(String.valueOf(context.getOrDefault("token-cache-entries", defaults.tokenCacheEntries()))),
+            Integer.parseInt(String.valueOf(context.getOrDefault("history-tokens", defaults.historyTokens()))),
+            Integer.parseInt(String.valueOf(context.getOrDefault("recent-turns", defaults.recentTurns()))),
+            Boolean.parseBoolean(String.valueOf(context.getOrDefault("summarize", defaults.summarize()))),
+            summaryModel != null ? String.valueOf(summaryModel) : defaults.summaryModel(),
+            String.valueOf(context.getOrDefault("prompt-layout", defaults.promptLayout()))
+        );
+    }
+
+    private static HedgingConfig parseHedgingConfig(Map<String, Object> hedging) {
+        var defaults = HedgingConfig.defaults();
+        return new HedgingConfig(
+            Boolean.parseBoolean(String.valueOf(hedging.getOrDefault("enabled", defaults.enabled()))),
+            Double.parseDouble(String.valueOf(hedging.getOrDefault("percentile", defaults.percentile()))),
+            Long.parseLong(String.valueOf(hedging.getOrDefault("min-delay-ms", defaults.minDelayMs()))),
+            Long.parseLong(String.valueOf(hedging.getOrDefault("initial-delay-ms", defaults.initialDelayMs())))
+        );
+    }
+
+    private static CircuitBreakerConfig parseCircuitBreakerConfig(Map<String, Object> cb) {
+        var defaults = CircuitBreakerConfig.defaults();
+        return new CircuitBreakerConfig(
+            Boolean.parseBoolean(String.valueOf(cb.getOrDefault("enabled", defaults.enabled()))),
+            Integer.parseInt(String.valueOf(cb.getOrDefault("window-size", defaults.windowSize()))),
+            Integer.parseInt(String.valueOf(cb.getOrDefault("min-calls", defaults.minCalls()))),
+            Double.parseDouble(String.valueOf(cb.getOrDefault("failure-rate", defaults.failureRateThreshold()))),
+            Long.parseLong(String.valueOf(cb.getOrDefault("slow-call-ms", defaults.slowCallMs()))),
+            Double.parseDouble(String.valueOf(cb.getOrDefault("slow-call-rate", defaults.slowCallRateThreshold()))),
+            Long.parseLong(String.valueOf(cb.getOrDefault("open-seconds", defaults.openSeconds()))),
+            Integer.parseInt(String.valueOf(cb.getOrDefault("half-open-probes", defaults.halfOpenProbes())))
+        );
+    }
+
+    @SuppressWarnings("unchecked")
+    private static RoutingConfig parseRoutingConfig(Map<String, Object> routing) {
+        var defaults = RoutingConfig.defaults();
+        var weights = new LinkedHashMap<String, Integer>();
+        ((Map<String, Object>) routing.getOrDefault("weights", Map.of()))
+                .forEach((id, w) -> weights.put(id, Integer.parseInt(String.valueOf(w))));
+        return new RoutingConfig(
+            String.valueOf(routing.getOrDefault("policy", defaults.policy())),
+            Long.parseLong(String.valueOf(routing.getOrDefault("latency-slo-ms", defaults.latencySloMs()))),
+            weights
+        );
+    }
+
+    @SuppressWarnings("unchecked")
+    private static AdmissionConfig parseAdmissionConfig(Map<String, Object> admission) {
+        var defaults = AdmissionConfig.defaults();
+        var limits = new LinkedHashMap<String, AdmissionConfig.RateLimit>();
+        ((Map<String, Object>) admission.getOrDefault("limits", Map.of())).forEach((id, v) -> {
+            var limit = (Map<String, Object>) v;
+            limits.put(id, new AdmissionConfig.RateLimit(
+                Integer.parseInt(String.valueOf(limit.getOrDefault("requests-per-minute", 0))),
+                Integer.parseInt(String.valueOf(limit.getOrDefault("tokens-per-minute", 0)))));
+        });
+        return new AdmissionConfig(
+            Boolean.parseBoolean(String.valueOf(admission.getOrDefault("enabled", defaults.enabled()))),
+            Integer.parseInt(String.valueOf(admission.getOrDefault("initial-concurrency", defaults.initialConcurrency()))),
+            Integer.parseInt(String.valueOf(admission.getOrDefault("min-concurrency", defaults.minConcurrency()))),
+            Integer.parseInt(String.valueOf(admission.getOrDefault("max-concurrency", defaults.maxConcurrency()))),
+            Integer.parseInt(String.valueOf(admission.getOrDefault("max-queue", defaults.maxQueue()))),
+            Long.parseLong(String.valueOf(admission.getOrDefault("queue-timeout-ms", defaults.queueTimeoutMs()))),
+            limits
+        );
+    }
+
+    private static RetryBudgetConfig parseRetryBudgetConfig(Map<String, Object> budget) {
+        var defaults = RetryBudgetConfig.defaults();
+        return new RetryBudgetConfig(
+            Boolean.parseBoolean(String.valueOf(budget.getOrDefault("enabled", defaults.enabled()))),
+            Double.parseDouble(String.valueOf(budget.getOrDefault("max-tokens", defaults.maxTokens()))),
+            Double.parseDouble(String.valueOf(budget.getOrDefault("token-ratio", defaults.tokenRatio())))
+        );
+    }
+
+    @SuppressWarnings("unchecked")
+    private static EmbeddingConfig parseEmbeddingConfig(Map<String, Object> embedding) {
+        var defaults = EmbeddingConfig.defaults();
+        var cache = (Map<String, Object>) embedding.getOrDefault("cache", Map.of());
+        var path = cache.get("path");
+        return new EmbeddingConfig(
+            Integer.parseInt(String.valueOf(embedding.getOrDefault("batch-size", defaults.batchSize()))),
+            Integer.parseInt(String.valueOf(embedding.getOrDefault("concurrency", defaults.concurrency()))),
+            Long.parseLong(String.valueOf(embedding.getOrDefault("batch-window-ms", defaults.batchWindowMs()))),
+            Boolean.parseBoolean(String.valueOf(cache.getOrDefault("enabled", defaults.cacheEnabled()))),
+            Integer.parseInt(String.valueOf(cache.getOrDefault("max-entries", defaults.cacheEntries()))),
+            path != null ? String.valueOf(path) : defaults.cachePath()
+        );
+    }
+
+    private static MemoryConfig parseMemoryConfig(Map<String, Object> memory) {
+        var defaults = MemoryConfig.defaults();
+        return new MemoryConfig(
+            Long.parseLong(String.valueOf(memory.getOrDefault("recall-budget-ms", defaults.recallBudgetMs())))
+        );
+    }
+
+    private static AgentConfig parseAgentConfig(Map<String, Object> agent) {
+        var defaults = AgentConfig.defaults();
+        return new AgentConfig(
+            Long.parseLong(String.valueOf(agent.getOrDefault("turn-timeout-ms", defaults.turnTimeoutMs()))),
+            Long.parseLong(String.valueOf(agent.getOrDefault("summary-reserve-ms", defaults.summaryReserveMs())))
+        );
+    }
+
+    private static TierConfig parseTierConfig(Map<String, Object> tiers) {
+        var defaults = TierConfig.defaults();
+        var model = tiers.get("classifier-model");
+        var providers = new LinkedHashMap<String, String>();
+        for (var tier : List.of("trivial", "standard", "complex")) {
+            var id = tiers.get(tier);
+            if (id != null && !String.valueOf(id).isBlank()) providers.put(tier, String.valueOf(id));
+        }
+        return new TierConfig(
+            Boolean.parseBoolean(String.valueOf(tiers.getOrDefault("enabled", defaults.enabled()))),
+            model != null ? String.valueOf(model) : defaults.classifierModel(),
+            Long.parseLong(String.valueOf(tiers.getOrDefault("classifier-timeout-ms", defaults.classifierTimeoutMs()))),
+            providers
+        );
+    }
+
     @SuppressWarnings("unchecked")
     private static ToolsConfig parseToolsConfig(Map<String, Object> tools) {
         var http = (Map<String, Object>) tools.getOrDefault("http-request", Map.of());
         var search = (Map<String, Object>) tools.getOrDefault("web-search", Map.of());
         var sec = (Map<String, Object>) tools.getOrDefault("security", Map.of());
         var browser = (Map<String, Object>) tools.getOrDefault("browser", Map.of());
+        var spill = (Map<String, Object>) tools.getOrDefault("spill", Map.of());
 
         var httpDef = ToolsConfig.HttpRequestConfig.defaults();
         var searchDef = ToolsConfig.WebSearchConfig.defaults();
         var secDef = ToolsConfig.SecurityConfig.defaults();
         var browserDef = ToolsConfig.BrowserConfig.defaults();
+        var spillDef = ToolsConfig.SpillConfig.defaults();
 
         var domains = http.containsKey("allowed-domains")
                 ? ((List<?>) http.get("allowed-domains")).stream()
@@ -125,6 +296,14 @@ public class ConfigLoader {
                             .map(String::valueOf).collect(Collectors.toSet())
                     : browserDef.allowedDomains(),
                 Integer.parseInt(String.valueOf(browser.getOrDefault("timeout", browserDef.timeoutSeconds())))
+            ),
+            Integer.parseInt(String.valueOf(tools.getOrDefault("max-parallel", ToolsConfig.defaults().maxParallel()))),
+            new ToolsConfig.SpillConfig(
+                Boolean.TRUE.equals(spill.getOrDefault("enabled", spillDef.enabled())),
+                Integer.parseInt(String.valueOf(spill.getOrDefault("threshold-chars", spillDef.thresholdChars()))),
+                Integer.parseInt(String.valueOf(spill.getOrDefault("preview-chars", spillDef.previewChars()))),
+                String.valueOf(spill.getOrDefault("path", spillDef.path())),
+                Integer.parseInt(String.valueOf(spill.getOrDefault("retention-hours", spillDef.retentionHours())))
             )
         );
     }
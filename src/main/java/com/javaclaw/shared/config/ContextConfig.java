@@ -0,0 +1,17 @@
+package com.javaclaw.shared.config;
+
+public record ContextConfig(
+    int maxPromptTokens,
+    String tokenizer,
+    String vocabPath,
+    int tokenCacheEntries,
+    int historyTokens,
+    int recentTurns,
+    boolean summarize,
+    String summaryModel,
+    String promptLayout
+) {
+    public static ContextConfig defaults() {
+        return new ContextConfig(60_000, "approximate", null, 4096, 24_000, 4, true, null, "stable");
+    }
+}
@@ -0,0 +1,19 @@
+package com.javaclaw.shared.config;
+
+public record EmbeddingConfig(
+    int batchSize,
+    int concurrency,
+    long batchWindowMs,
+    boolean cacheEnabled,
+    int cacheEntries,
+    String cachePath
+) {
+    public EmbeddingConfig(int batchSize, int concurrency, long batchWindowMs) {
+        this(batchSize, concurrency, batchWindowMs, false, 0, null);
+    }
+
+    public static EmbeddingConfig defaults() {
+        return new EmbeddingConfig(64, 4, 5, true, 10_000,
+                System.getProperty("user.home") + "/.javaclaw/embedding-cache");
+    }
+}
@@ -0,0 +1,12 @@
+package com.javaclaw.shared.config;
+
+public record HedgingConfig(
+    boolean enabled,
+    double percentile,
+    long minDelayMs,
+    long initialDelayMs
+) {
+    public static HedgingConfig defaults() {
+        return new HedgingConfig(false, 0.95, 200, 5000);
+    }
+}
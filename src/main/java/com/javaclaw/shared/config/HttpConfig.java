@@ -0,0 +1,11 @@
+package com.javaclaw.shared.config;
+
+public record HttpConfig(
+    boolean http2,
+    boolean virtualThreads,
+    int connectTimeoutSeconds
+) {
+    public static HttpConfig defaults() {
+        return new HttpConfig(true, true, 10);
+    }
+}
@@ -14,5 +14,17 @@ public record JavaClawConfig(
     String discordBotToken,
     Map<String, Map<String, Object>> mcpServers,
     SandboxConfig sandbox,
-    ToolsConfig tools
+    ToolsConfig tools,
+    HttpConfig http,
+    LlmCacheConfig llmCache,
+    HedgingConfig hedging,
+    CircuitBreakerConfig circuitBreaker,
+    RoutingConfig routing,
+    AdmissionConfig admission,
+    ContextConfig context,
+    RetryBudgetConfig retryBudget,
+    TierConfig tiers,
+    EmbeddingConfig embedding,
+    MemoryConfig memory,
+    AgentConfig agent
 ) {}
@@ -0,0 +1,13 @@
+package com.javaclaw.shared.config;
+
+public record LlmCacheConfig(
+    boolean enabled,
+    int maxEntries,
+    long ttlSeconds,
+    double maxTemperature,
+    String persistPath
+) {
+    public static LlmCacheConfig defaults() {
+        return new LlmCacheConfig(true, 1000, 3600, 0.0, null);
+    }
+}
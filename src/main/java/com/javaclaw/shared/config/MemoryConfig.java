@@ -0,0 +1,12 @@
+package com.javaclaw.shared.config;
+
+/**
+ * Long-term memory recall at the start of a turn. Recall runs alongside the session
+ * load; if it has not finished {@code recallBudgetMs} after the turn started, the turn
+ * goes ahead without recalled memories.
+ */
+public record MemoryConfig(long recallBudgetMs) {
+    public static MemoryConfig defaults() {
+        return new MemoryConfig(500);
+    }
+}
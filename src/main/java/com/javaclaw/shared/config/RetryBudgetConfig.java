@@ -0,0 +1,11 @@
+package com.javaclaw.shared.config;
+
+public record RetryBudgetConfig(
+    boolean enabled,
+    double maxTokens,
+    double tokenRatio
+) {
+    public static RetryBudgetConfig defaults() {
+        return new RetryBudgetConfig(true, 10, 0.1);
+    }
+}
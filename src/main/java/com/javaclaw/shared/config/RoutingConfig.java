@@ -0,0 +1,13 @@
+package com.javaclaw.shared.config;
+
+import java.util.Map;
+
+public record RoutingConfig(
+    String policy,
+    long latencySloMs,
+    Map<String, Integer> weights
+) {
+    public static RoutingConfig defaults() {
+        return new RoutingConfig("primary", 10_000, Map.of());
+    }
+}
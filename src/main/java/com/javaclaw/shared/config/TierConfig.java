@@ -0,0 +1,19 @@
+package com.javaclaw.shared.config;
+
+import java.util.Map;
+
+public record TierConfig(
+    boolean enabled,
+    String classifierModel,
+    long classifierTimeoutMs,
+    Map<String, String> providers
+) {
+    /** Provider id configured for a tier ("trivial", "standard", "complex"), or null to use the primary chain. */
+    public String providerFor(String tier) {
+        return providers.get(tier);
+    }
+
+    public static TierConfig defaults() {
+        return new TierConfig(true, null, 1_500, Map.of());
+    }
+}
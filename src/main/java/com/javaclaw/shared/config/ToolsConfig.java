@@ -6,7 +6,9 @@ public record ToolsConfig(
     HttpRequestConfig httpRequest,
     WebSearchConfig webSearch,
     SecurityConfig security,
-    BrowserConfig browser
+    BrowserConfig browser,
+    int maxParallel,
+    SpillConfig spill
 ) {
     public record HttpRequestConfig(boolean enabled, Set<String> allowedDomains,
                                      int timeoutSeconds, int maxResponseSize) {
@@ -34,12 +36,26 @@ public record ToolsConfig(
         }
     }
 
+    /**
+     * Outputs over {@code thresholdChars} are saved compressed under {@code path} and
+     * replaced in the prompt by a {@code previewChars} head/tail preview.
+     */
+    public record SpillConfig(boolean enabled, int thresholdChars, int previewChars,
+                              String path, int retentionHours) {
+        public static SpillConfig defaults() {
+            return new SpillConfig(true, 16_000, 2_000,
+                    System.getProperty("user.home") + "/.javaclaw/tool-output", 24);
+        }
+    }
+
     public static ToolsConfig defaults() {
         return new ToolsConfig(
             HttpRequestConfig.defaults(),
             WebSearchConfig.defaults(),
             SecurityConfig.defaults(),
-            BrowserConfig.defaults()
+            BrowserConfig.defaults(),
+            4,
+            SpillConfig.defaults()
         );
     }
 }
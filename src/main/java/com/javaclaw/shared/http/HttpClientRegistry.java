@@ -0,0 +1,74 @@
+package com.javaclaw.shared.http;
+
+import com.javaclaw.shared.config.HttpConfig;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Process-wide owner of {@link HttpClient}s. One client per redirect policy and connect
+ * timeout, so providers, embeddings, doctor and tools share keep-alive connections, TLS
+ * sessions and HTTP/2 streams per host instead of building a client per call.
+ */
+public final class HttpClientRegistry {
+
+    private static volatile HttpClientRegistry shared = new HttpClientRegistry(HttpConfig.defaults());
+
+    private final HttpConfig config;
+    private final ExecutorService executor;
+    private final HttpClientStats stats = new HttpClientStats();
+    private final Map<Key, HttpClient> clients = new ConcurrentHashMap<>();
+
+    private record Key(HttpClient.Redirect redirect, Duration connectTimeout) {}
+
+    public HttpClientRegistry(HttpConfig config) {
+        this.config = config;
+        this.executor = config.virtualThreads() ? Executors.newVirtualThreadPerTaskExecutor() : null;
+    }
+
+    public static HttpClientRegistry shared() {
+        return shared;
+    }
+
+    /** Replaces the shared registry; call once at startup before components are built. */
+    public static void configure(HttpConfig config) {
+        shared = new HttpClientRegistry(config);
+    }
+
+    /** Client that never follows redirects (callers that must validate each hop). */
+    public HttpClient client() {
+        return client(HttpClient.Redirect.NEVER);
+    }
+
+    public HttpClient client(HttpClient.Redirect redirect) {
+        return client(redirect, Duration.ofSeconds(config.connectTimeoutSeconds()));
+    }
+
+    /** Client with its own connect timeout, for callers with a configured one (e.g. tools). */
+    public HttpClient client(HttpClient.Redirect redirect, Duration connectTimeout) {
+        return clients.computeIfAbsent(new Key(redirect, connectTimeout), this::build);
+    }
+
+    public Map<String, Object> stats() {
+        var out = new LinkedHashMap<String, Object>();
+        out.put("clients", clients.size());
+        out.put("http2", config.http2());
+        out.put("virtualThreads", config.virtualThreads());
+        out.putAll(stats.snapshot());
+        return out;
+    }
+
+    private HttpClient build(Key key) {
+        var builder = HttpClient.newBuilder()
+                .connectTimeout(key.connectTimeout())
+                .followRedirects(key.redirect())
+                .version(config.http2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1);
+        if (executor != null) builder.executor(executor);
+        return new InstrumentedHttpClient(builder.build(), stats);
+    }
+}
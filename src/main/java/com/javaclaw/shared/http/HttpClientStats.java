@@ -0,0 +1,49 @@
+package com.javaclaw.shared.http;
+
+import java.net.http.HttpClient;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Request counters shared by every client of a {@link HttpClientRegistry}. */
+final class HttpClientStats {
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Map<String, LongAdder> perHost = new ConcurrentHashMap<>();
+    private final Map<HttpClient.Version, LongAdder> perVersion = new ConcurrentHashMap<>();
+
+    void started(String host) {
+        requests.increment();
+        inFlight.incrementAndGet();
+        perHost.computeIfAbsent(host != null ? host : "?", h -> new LongAdder()).increment();
+    }
+
+    void completed(HttpClient.Version version) {
+        inFlight.decrementAndGet();
+        perVersion.computeIfAbsent(version, v -> new LongAdder()).increment();
+    }
+
+    void failed() {
+        inFlight.decrementAndGet();
+        failures.increment();
+    }
+
+    Map<String, Object> snapshot() {
+        var out = new LinkedHashMap<String, Object>();
+        out.put("requests", requests.sum());
+        out.put("failures", failures.sum());
+        out.put("inFlight", inFlight.get());
+        var hosts = new TreeMap<String, Long>();
+        perHost.forEach((h, n) -> hosts.put(h, n.sum()));
+        out.put("hosts", hosts);
+        var versions = new TreeMap<String, Long>();
+        perVersion.forEach((v, n) -> versions.put(v.name(), n.sum()));
+        out.put("versions", versions);
+        return out;
+    }
+}
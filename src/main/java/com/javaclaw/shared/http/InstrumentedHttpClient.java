@@ -0,0 +1,71 @@
+package com.javaclaw.shared.http;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import java.io.IOException;
+import java.net.Authenticator;
+import java.net.CookieHandler;
+import java.net.ProxySelector;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/** Delegating client that records per-host request counts and negotiated protocol versions. */
+final class InstrumentedHttpClient extends HttpClient {
+
+    private final HttpClient delegate;
+    private final HttpClientStats stats;
+
+    InstrumentedHttpClient(HttpClient delegate, HttpClientStats stats) {
+        this.delegate = delegate;
+        this.stats = stats;
+    }
+
+    @Override
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler)
+            throws IOException, InterruptedException {
+        stats.started(request.uri().getHost());
+        try {
+            var resp = delegate.send(request, handler);
+            stats.completed(resp.version());
+            return resp;
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            stats.failed();
+            throw e;
+        }
+    }
+
+    @Override
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request,
+                                                            HttpResponse.BodyHandler<T> handler) {
+        return sendAsync(request, handler, null);
+    }
+
+    @Override
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request,
+                                                            HttpResponse.BodyHandler<T> handler,
+                                                            HttpResponse.PushPromiseHandler<T> pushHandler) {
+        stats.started(request.uri().getHost());
+        var future = delegate.sendAsync(request, handler, pushHandler);
+        // Hand back the delegate's own future so cancel() still aborts the exchange
+        future.whenComplete((resp, err) -> {
+            if (err != null) stats.failed();
+            else stats.completed(resp.version());
+        });
+        return future;
+    }
+
+    @Override public Optional<CookieHandler> cookieHandler() { return delegate.cookieHandler(); }
+    @Override public Optional<Duration> connectTimeout() { return delegate.connectTimeout(); }
+    @Override public Redirect followRedirects() { return delegate.followRedirects(); }
+    @Override public Optional<ProxySelector> proxy() { return delegate.proxy(); }
+    @Override public SSLContext sslContext() { return delegate.sslContext(); }
+    @Override public SSLParameters sslParameters() { return delegate.sslParameters(); }
+    @Override public Optional<Authenticator> authenticator() { return delegate.authenticator(); }
+    @Override public Version version() { return delegate.version(); }
+    @Override public Optional<Executor> executor() { return delegate.executor(); }
+}
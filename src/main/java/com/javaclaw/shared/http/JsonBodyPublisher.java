@@ -0,0 +1,140 @@
+package com.javaclaw.shared.http;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Request body that a {@link JsonGenerator} writes straight into fixed-size chunks,
+ * which are then published as-is. Avoids the intermediate String and the byte[] copy
+ * of {@code BodyPublishers.ofString}. The chunks are not pooled: HttpClient may still
+ * be writing a published buffer after {@code onComplete}, or subscribe again to resend
+ * the body, so there is no point at which reusing them would be safe.
+ */
+public final class JsonBodyPublisher implements HttpRequest.BodyPublisher {
+
+    static final int CHUNK_SIZE = 16 * 1024;
+
+    @FunctionalInterface
+    public interface JsonWriter {
+        void write(JsonGenerator gen) throws IOException;
+    }
+
+    private final List<byte[]> chunks;
+    private final int lastLength;
+
+    private JsonBodyPublisher(List<byte[]> chunks, int lastLength) {
+        this.chunks = chunks;
+        this.lastLength = lastLength;
+    }
+
+    public static JsonBodyPublisher write(ObjectMapper mapper, JsonWriter writer) throws IOException {
+        var out = new ChunkOutputStream();
+        try (var gen = mapper.createGenerator(out)) {
+            writer.write(gen);
+        }
+        return new JsonBodyPublisher(out.chunks, out.pos);
+    }
+
+    @Override
+    public long contentLength() {
+        return (long) (chunks.size() - 1) * CHUNK_SIZE + lastLength;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        subscriber.onSubscribe(new ChunkSubscription(subscriber));
+    }
+
+    private ByteBuffer chunk(int i) {
+        int len = i == chunks.size() - 1 ? lastLength : CHUNK_SIZE;
+        return ByteBuffer.wrap(chunks.get(i), 0, len).asReadOnlyBuffer();
+    }
+
+    private static final class ChunkOutputStream extends OutputStream {
+        final List<byte[]> chunks = new ArrayList<>();
+        byte[] current;
+        int pos;
+
+        ChunkOutputStream() {
+            current = new byte[CHUNK_SIZE];
+            chunks.add(current);
+        }
+
+        @Override
+        public void write(int b) {
+            if (pos == CHUNK_SIZE) next();
+            current[pos++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            while (len > 0) {
+                if (pos == CHUNK_SIZE) next();
+                int n = Math.min(len, CHUNK_SIZE - pos);
+                System.arraycopy(b, off, current, pos, n);
+                pos += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        private void next() {
+            current = new byte[CHUNK_SIZE];
+            chunks.add(current);
+            pos = 0;
+        }
+    }
+
+    private final class ChunkSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super ByteBuffer> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled;
+        private int index;
+
+        ChunkSubscription(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancelled = true;
+                subscriber.onError(new IllegalArgumentException("non-positive request: " + n));
+                return;
+            }
+            demand.getAndAccumulate(n, (a, b) -> a + b < 0 ? Long.MAX_VALUE : a + b);
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        // Serialises onNext across re-entrant request() calls from the subscriber
+        private void drain() {
+            if (wip.getAndIncrement() != 0) return;
+            do {
+                while (!cancelled && index < chunks.size() && demand.get() > 0) {
+                    demand.decrementAndGet();
+                    subscriber.onNext(chunk(index++));
+                }
+                if (!cancelled && index == chunks.size()) {
+                    cancelled = true;
+                    subscriber.onComplete();
+                }
+            } while (wip.decrementAndGet() != 0);
+        }
+    }
+}
@@ -1,9 +1,16 @@
 package com.javaclaw.shared.model;
 
+import java.time.Instant;
 import java.util.Map;
 
+/** One user turn; {@code deadline} bounds the whole turn, null for no limit. */
 public record AgentRequest(
     String sessionId,
     String message,
-    Map<String, Object> context
-) {}
+    Map<String, Object> context,
+    Instant deadline
+) {
+    public AgentRequest(String sessionId, String message, Map<String, Object> context) {
+        this(sessionId, message, context, null);
+    }
+}
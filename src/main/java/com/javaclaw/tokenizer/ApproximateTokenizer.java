@@ -0,0 +1,60 @@
+package com.javaclaw.tokenizer;
+
+/**
+ * Vocabulary-free estimate that lands close to cl100k/o200k counts: a token per six
+ * letters (or part of) in a Latin word, three digits per token, one per punctuation
+ * mark and 1.5 per CJK character. One pass, no allocation; good enough for
+ * budgeting when no vocabulary file is configured.
+ */
+public class ApproximateTokenizer implements Tokenizer {
+
+    @Override
+    public String id() {
+        return "approximate";
+    }
+
+    @Override
+    public int count(String text) {
+        if (text == null || text.isEmpty()) return 0;
+        double tokens = 0;
+        int letters = 0;
+        int digits = 0;
+        for (int i = 0; i < text.length(); ) {
+            int cp = text.codePointAt(i);
+            i += Character.charCount(cp);
+            if (cp < 128 && Character.isLetter(cp)) {
+                letters++;
+                continue;
+            }
+            if (cp < 128 && Character.isDigit(cp)) {
+                digits++;
+                continue;
+            }
+            tokens += runTokens(letters, digits);
+            letters = 0;
+            digits = 0;
+            if (cp == ' ') continue;  // leading spaces merge into the following word
+            if (Character.isWhitespace(cp)) {
+                tokens += 0.5;
+            } else if (isCjk(cp)) {
+                tokens += 1.5;
+            } else if (Character.isLetter(cp)) {
+                tokens += 0.5;  // accented / Cyrillic / Greek: roughly two chars per token
+            } else {
+                tokens += 1;
+            }
+        }
+        tokens += runTokens(letters, digits);
+        return (int) Math.ceil(tokens);
+    }
+
+    private static double runTokens(int letters, int digits) {
+        return Math.ceil(letters / 6.0) + Math.ceil(digits / 3.0);
+    }
+
+    private static boolean isCjk(int cp) {
+        return Character.isIdeographic(cp)
+                || (cp >= 0x3040 && cp <= 0x30FF)     // hiragana, katakana
+                || (cp >= 0xAC00 && cp <= 0xD7AF);    // hangul syllables
+    }
+}
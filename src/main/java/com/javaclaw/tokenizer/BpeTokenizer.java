@@ -0,0 +1,102 @@
+package com.javaclaw.tokenizer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Byte-level BPE over a tiktoken vocabulary file ({@code <base64 token> <rank>} per
+ * line, e.g. {@code cl100k_base.tiktoken}). Text is split with the cl100k
+ * pre-tokenizer pattern, and each piece is merged pairwise by lowest rank until no
+ * adjacent pair is in the vocabulary. Only counts are produced, so ids are not kept.
+ */
+public class BpeTokenizer implements Tokenizer {
+
+    /** cl100k_base split pattern; o200k differs only in edge cases that don't move counts much. */
+    static final Pattern CL100K_PATTERN = Pattern.compile(
+            "(?i:'s|'t|'re|'ve|'m|'ll|'d)|[^\\r\\n\\p{L}\\p{N}]?\\p{L}+|\\p{N}{1,3}"
+                    + "| ?[^\\s\\p{L}\\p{N}]+[\\r\\n]*|\\s*[\\r\\n]+|\\s+(?!\\S)|\\s+");
+
+    private final String name;
+    // Keys are token bytes widened one-per-char (ISO-8859-1), which hashes faster than byte[] wrappers.
+    private final Map<String, Integer> ranks;
+    private final Pattern pattern;
+
+    BpeTokenizer(String name, Map<String, Integer> ranks, Pattern pattern) {
+        this.name = name;
+        this.ranks = ranks;
+        this.pattern = pattern;
+    }
+
+    public static BpeTokenizer load(Path vocabFile) throws IOException {
+        var ranks = new HashMap<String, Integer>(1 << 17);
+        var decoder = Base64.getDecoder();
+        try (var lines = Files.lines(vocabFile, StandardCharsets.US_ASCII)) {
+            lines.forEach(line -> {
+                int space = line.indexOf(' ');
+                if (space <= 0) return;
+                var bytes = decoder.decode(line.substring(0, space));
+                ranks.put(new String(bytes, StandardCharsets.ISO_8859_1),
+                        Integer.parseInt(line.substring(space + 1).trim()));
+            });
+        }
+        if (ranks.isEmpty()) throw new IOException("Empty BPE vocabulary: " + vocabFile);
+        var fileName = vocabFile.getFileName().toString();
+        var name = fileName.endsWith(".tiktoken") ? fileName.substring(0, fileName.length() - 9) : fileName;
+        return new BpeTokenizer(name, ranks, CL100K_PATTERN);
+    }
+
+    @Override
+    public String id() {
+        return "bpe:" + name;
+    }
+
+    public int vocabularySize() {
+        return ranks.size();
+    }
+
+    @Override
+    public int count(String text) {
+        if (text == null || text.isEmpty()) return 0;
+        int tokens = 0;
+        var m = pattern.matcher(text);
+        while (m.find()) {
+            var piece = new String(m.group().getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1);
+            tokens += ranks.containsKey(piece) ? 1 : mergeCount(piece);
+        }
+        return tokens;
+    }
+
+    /**
+     * Classic greedy BPE: repeatedly merge the adjacent pair with the lowest rank.
+     * Pieces are short (one word or number run), so the quadratic scan is cheaper
+     * than maintaining a heap.
+     */
+    private int mergeCount(String piece) {
+        int n = piece.length();
+        // starts[i] = offset of the i-th part; parts end where the next one starts.
+        int[] starts = new int[n + 1];
+        for (int i = 0; i <= n; i++) starts[i] = i;
+        int parts = n;
+        while (parts > 1) {
+            int bestRank = Integer.MAX_VALUE;
+            int best = -1;
+            for (int i = 0; i < parts - 1; i++) {
+                var rank = ranks.get(piece.substring(starts[i], starts[i + 2]));
+                if (rank != null && rank < bestRank) {
+                    bestRank = rank;
+                    best = i;
+                }
+            }
+            if (best < 0) break;
+            System.arraycopy(starts, best + 2, starts, best + 1, parts - best - 1);
+            parts--;
+        }
+        return parts;
+    }
+}
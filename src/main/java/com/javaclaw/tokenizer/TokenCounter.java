@@ -0,0 +1,127 @@
+package com.javaclaw.tokenizer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.javaclaw.shared.config.ContextConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts chat-completion prompts the way OpenAI-compatible APIs bill them: a fixed
+ * overhead per message plus its role, content, name and tool calls, and a few tokens
+ * of reply priming. Messages and tool schemas are counted once and cached by value,
+ * so re-counting a growing conversation each round only tokenizes what is new.
+ */
+public class TokenCounter {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenCounter.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    static final int PER_MESSAGE = 3;
+    static final int PER_NAME = 1;
+    static final int REPLY_PRIMING = 3;
+
+    private final Tokenizer tokenizer;
+    private final Map<Object, Integer> cache;
+    private long hits;
+    private long misses;
+
+    public TokenCounter(Tokenizer tokenizer, int cacheEntries) {
+        this.tokenizer = tokenizer;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Integer> eldest) {
+                return size() > cacheEntries;
+            }
+        };
+    }
+
+    /** BPE when {@code context.tokenizer} is "bpe" and the vocabulary loads, otherwise approximate. */
+    public static TokenCounter fromConfig(ContextConfig config) {
+        Tokenizer tokenizer = new ApproximateTokenizer();
+        if ("bpe".equalsIgnoreCase(config.tokenizer())) {
+            if (config.vocabPath() == null || config.vocabPath().isBlank()) {
+                log.warn("context.tokenizer is bpe but no vocab-path is set, using approximate counts");
+            } else {
+                try {
+                    tokenizer = BpeTokenizer.load(Path.of(config.vocabPath()));
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Failed to load BPE vocabulary {}, using approximate counts: {}",
+                            config.vocabPath(), e.getMessage());
+                }
+            }
+        }
+        log.info("Token counting with {}", tokenizer.id());
+        return new TokenCounter(tokenizer, config.tokenCacheEntries());
+    }
+
+    public Tokenizer tokenizer() {
+        return tokenizer;
+    }
+
+    public int count(String text) {
+        return tokenizer.count(text);
+    }
+
+    /** Tokens for a whole request: every message plus reply priming. */
+    public int countMessages(List<Map<String, Object>> messages) {
+        int total = REPLY_PRIMING;
+        for (var m : messages) total += countMessage(m);
+        return total;
+    }
+
+    public int countMessage(Map<String, Object> message) {
+        var cached = cached(message);
+        if (cached != null) return cached;
+        int tokens = PER_MESSAGE;
+        for (var e : message.entrySet()) {
+            var value = e.getValue();
+            if (value == null) continue;
+            switch (e.getKey()) {
+                case "role", "content", "tool_call_id" -> tokens += tokenizer.count(String.valueOf(value));
+                case "name" -> tokens += PER_NAME + tokenizer.count(String.valueOf(value));
+                default -> tokens += tokenizer.count(json(value));
+            }
+        }
+        return store(message, tokens);
+    }
+
+    /** Tokens the function definitions add to a request; 0 when there are none. */
+    public int countTools(List<Map<String, Object>> tools) {
+        if (tools == null || tools.isEmpty()) return 0;
+        var cached = cached(tools);
+        if (cached != null) return cached;
+        return store(tools, tokenizer.count(json(tools)));
+    }
+
+    public synchronized double hitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    private synchronized Integer cached(Object key) {
+        var v = cache.get(key);
+        if (v != null) hits++;
+        else misses++;
+        return v;
+    }
+
+    private synchronized int store(Object key, int tokens) {
+        cache.put(key, tokens);
+        return tokens;
+    }
+
+    private static String json(Object value) {
+        try {
+            return MAPPER.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            return String.valueOf(value);
+        }
+    }
+}
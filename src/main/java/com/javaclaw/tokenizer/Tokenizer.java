@@ -0,0 +1,10 @@
+package com.javaclaw.tokenizer;
+
+/** Counts the tokens a model would see for a piece of text. Implementations are thread-safe. */
+public interface Tokenizer {
+
+    /** Short name shown in logs and /doctor, e.g. "approximate" or "bpe:cl100k_base". */
+    String id();
+
+    int count(String text);
+}
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.javaclaw.approval.DangerousOperation;
 import com.javaclaw.security.SecurityPolicy;
+import com.javaclaw.shared.concurrent.Deadlines;
 import com.javaclaw.shared.config.ToolsConfig;
 import com.microsoft.playwright.Browser;
 import com.microsoft.playwright.BrowserType;
@@ -62,7 +63,7 @@ public class BrowserTool implements Tool {
             try (var pw = Playwright.create();
                  var browser = pw.chromium().launch(new BrowserType.LaunchOptions().setHeadless(true))) {
                 var page = browser.newPage();
-                page.setDefaultTimeout(config.timeoutSeconds() * 1000.0);
+                page.setDefaultTimeout(Deadlines.clampMillis(ctx.deadline(), config.timeoutSeconds() * 1000L));
                 page.navigate(url);
 
                 if ("screenshot".equals(action)) {
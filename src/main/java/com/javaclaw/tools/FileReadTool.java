@@ -21,6 +21,8 @@ public class FileReadTool implements Tool {
         return "Read the contents of a file";
     }
 
+    @Override public boolean parallelSafe(JsonNode input) { return true; }
+
     @Override public JsonNode inputSchema() {
         return MAPPER.createObjectNode()
                 .put("type", "object")
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.javaclaw.approval.DangerousOperation;
 import com.javaclaw.security.SecurityPolicy;
+import com.javaclaw.shared.concurrent.Deadlines;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -15,6 +16,7 @@ import java.util.regex.Pattern;
 public class GitTool implements Tool {
 
     private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final long TIMEOUT_MS = 30_000;
     private static final Set<String> ALLOWED_OPS = Set.of(
             "status", "diff", "log", "show", "branch", "add", "commit");
     private static final Pattern UNSAFE = Pattern.compile("[;|&$`>\\n]");
@@ -73,10 +75,11 @@ public class GitTool implements Tool {
             var reader = Thread.startVirtualThread(() -> {
                 try { proc.getInputStream().transferTo(stdout); } catch (Exception ignored) {}
             });
-            if (!proc.waitFor(30, TimeUnit.SECONDS)) {
+            long timeoutMs = Deadlines.clampMillis(ctx.deadline(), TIMEOUT_MS);
+            if (!proc.waitFor(timeoutMs, TimeUnit.MILLISECONDS)) {
                 proc.destroyForcibly();
                 reader.join(5000);
-                return new ToolResult("[TIMEOUT] git command exceeded 30s", true);
+                return new ToolResult("[TIMEOUT] git command exceeded " + timeoutMs + "ms", true);
             }
             reader.join(5000);
             return new ToolResult(stdout.toString(), proc.exitValue() != 0);
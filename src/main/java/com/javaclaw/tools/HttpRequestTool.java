@@ -3,7 +3,9 @@ package com.javaclaw.tools;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.javaclaw.security.SecurityPolicy;
+import com.javaclaw.shared.concurrent.Deadlines;
 import com.javaclaw.shared.config.ToolsConfig;
+import com.javaclaw.shared.http.HttpClientRegistry;
 
 import java.net.URI;
 import java.net.http.HttpClient;
@@ -34,6 +36,12 @@ public class HttpRequestTool implements Tool {
         return "Make HTTP requests. Methods: GET, POST, PUT, DELETE, PATCH, HEAD";
     }
 
+    /** Reads (GET, HEAD) may overlap; anything that can change remote state runs alone. */
+    @Override public boolean parallelSafe(JsonNode input) {
+        var method = input.path("method").asText("GET").toUpperCase();
+        return method.equals("GET") || method.equals("HEAD");
+    }
+
     @Override public JsonNode inputSchema() {
         var props = MAPPER.createObjectNode();
         props.set("url", MAPPER.createObjectNode().put("type", "string"));
@@ -61,7 +69,7 @@ public class HttpRequestTool implements Tool {
 
             var builder = HttpRequest.newBuilder()
                     .uri(URI.create(url))
-                    .timeout(Duration.ofSeconds(config.timeoutSeconds()));
+                    .timeout(Deadlines.clamp(ctx.deadline(), Duration.ofSeconds(config.timeoutSeconds())));
 
             // Headers
             var headers = input.path("headers");
@@ -80,10 +88,8 @@ public class HttpRequestTool implements Tool {
                     : HttpRequest.BodyPublishers.ofString(body);
             builder.method(method, bodyPub);
 
-            var client = HttpClient.newBuilder()
-                    .followRedirects(HttpClient.Redirect.NEVER)
-                    .connectTimeout(Duration.ofSeconds(config.timeoutSeconds()))
-                    .build();
+            var client = HttpClientRegistry.shared().client(HttpClient.Redirect.NEVER,
+                    Duration.ofSeconds(config.timeoutSeconds()));
 
             // Manual redirect loop with per-hop SSRF validation
             var currentReq = builder.build();
@@ -97,7 +103,7 @@ public class HttpRequestTool implements Tool {
                 var redirectUri = currentReq.uri().resolve(location);
                 securityPolicy.validateDomain(redirectUri.toString());
                 currentReq = HttpRequest.newBuilder(redirectUri)
-                        .timeout(Duration.ofSeconds(config.timeoutSeconds()))
+                        .timeout(Deadlines.clamp(ctx.deadline(), Duration.ofSeconds(config.timeoutSeconds())))
                         .GET().build();
             }
 
@@ -22,6 +22,8 @@ public class MemoryRecallTool implements Tool {
         return "Search long-term memory for relevant knowledge. Returns matching memory snippets.";
     }
 
+    @Override public boolean parallelSafe(JsonNode input) { return true; }
+
     @Override public JsonNode inputSchema() {
         return MAPPER.createObjectNode()
                 .put("type", "object")
@@ -5,6 +5,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.javaclaw.approval.DangerousOperation;
 import com.javaclaw.security.SecurityPolicy;
 import com.javaclaw.security.ToolExecutor;
+import com.javaclaw.shared.concurrent.Deadlines;
 import com.javaclaw.shared.config.SandboxConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -51,7 +52,8 @@ public class ShellTool implements Tool {
             var risk = securityPolicy.classifyCommand(command);
             log.info("Shell command risk={}: {}", risk, command);
             var env = securityPolicy.sanitizedEnv();
-            var result = executor.execute(command, ctx.workDir(), timeoutSeconds, "shell", env);
+            var result = executor.execute(command, ctx.workDir(),
+                    Deadlines.clampSeconds(ctx.deadline(), timeoutSeconds), "shell", env);
             return new ToolResult(result.output(), result.isError());
         } catch (SecurityException e) {
             return new ToolResult(e.getMessage(), true);
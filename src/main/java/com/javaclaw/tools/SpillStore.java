@@ -0,0 +1,247 @@
+package com.javaclaw.tools;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Keeps oversized tool output out of the prompt. Output longer than the threshold is
+ * deflated into {@code <handle>.z} under the spill directory, named by its SHA-256 so a
+ * repeated output is stored once, and the model sees a head/tail preview with the
+ * handle instead. {@link ToolOutputTool} reads spilled output back by line range or
+ * pattern; files are memory-mapped for inflating and the last few are kept as lines in
+ * a small LRU, since paging usually walks one output. Files older than the retention
+ * are removed when the store opens and again whenever a new output is written, so a
+ * long-running gateway does not grow the directory without bound; the scan is cheap
+ * next to the deflate that precedes it.
+ */
+public class SpillStore {
+
+    private static final Logger log = LoggerFactory.getLogger(SpillStore.class);
+
+    static final String SUFFIX = ".z";
+    private static final Pattern HANDLE = Pattern.compile("[0-9a-f]{16}");
+    private static final int CACHED_OUTPUTS = 4;
+
+    /** Outputs spilled, their size as text and on disk, and pages or searches served. */
+    public record Stats(long spilled, long rawBytes, long storedBytes, long reads) {}
+
+    private final Path dir;
+    private final int thresholdChars;
+    private final int previewChars;
+    private final Duration retention;
+    private final Map<String, List<String>> cache = new LinkedHashMap<>(8, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, List<String>> eldest) {
+            return size() > CACHED_OUTPUTS;
+        }
+    };
+    private final LongAdder spilled = new LongAdder();
+    private final LongAdder rawBytes = new LongAdder();
+    private final LongAdder storedBytes = new LongAdder();
+    private final LongAdder reads = new LongAdder();
+
+    SpillStore(Path dir, int thresholdChars, int previewChars, Duration retention) {
+        this.dir = dir;
+        this.thresholdChars = thresholdChars;
+        this.previewChars = Math.min(previewChars, thresholdChars);
+        this.retention = retention;
+    }
+
+    /** Store under {@code dir}, which is created if missing and cleared of files older than {@code retention}. */
+    public static SpillStore open(Path dir, int thresholdChars, int previewChars, Duration retention)
+            throws IOException {
+        Files.createDirectories(dir);
+        var store = new SpillStore(dir, thresholdChars, previewChars, retention);
+        int pruned = store.prune();
+        log.info("Tool output spill at {} (outputs over {} chars, {} expired removed)", dir, thresholdChars, pruned);
+        return store;
+    }
+
+    public int thresholdChars() {
+        return thresholdChars;
+    }
+
+    /**
+     * {@code output} itself if it fits under the threshold, otherwise a preview naming the
+     * handle it was saved under. If saving fails the preview says so and the rest is lost,
+     * which still beats resending megabytes on every round.
+     */
+    public String spill(String output) {
+        if (output == null || output.length() <= thresholdChars) return output;
+        var bytes = output.getBytes(StandardCharsets.UTF_8);
+        var handle = handle(bytes);
+        try {
+            var file = dir.resolve(handle + SUFFIX);
+            if (!Files.exists(file)) {
+                write(file, bytes);
+                spilled.increment();
+                rawBytes.add(bytes.length);
+                storedBytes.add(Files.size(file));
+                pruneQuietly();
+            } else {
+                // Touch it so a repeat keeps the existing copy from expiring under it.
+                Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+            }
+        } catch (IOException e) {
+            log.warn("Failed to spill tool output: {}", e.getMessage());
+            return preview(output, null);
+        }
+        return preview(output, handle);
+    }
+
+    /** The spilled output's lines, or null if the handle is malformed or unknown (e.g. expired). */
+    public List<String> lines(String handle) {
+        if (handle == null || !HANDLE.matcher(handle).matches()) return null;
+        reads.increment();
+        synchronized (cache) {
+            var lines = cache.get(handle);
+            if (lines != null) return lines;
+        }
+        var file = dir.resolve(handle + SUFFIX);
+        if (!Files.exists(file)) return null;
+        List<String> lines;
+        try {
+            lines = read(file).lines().toList();
+        } catch (IOException | DataFormatException e) {
+            log.warn("Failed to read spilled output {}: {}", handle, e.getMessage());
+            return null;
+        }
+        synchronized (cache) {
+            cache.put(handle, lines);
+        }
+        return lines;
+    }
+
+    private void pruneQuietly() {
+        try {
+            int pruned = prune();
+            if (pruned > 0) log.debug("Removed {} expired spilled outputs from {}", pruned, dir);
+        } catch (IOException e) {
+            log.warn("Failed to prune spilled outputs in {}: {}", dir, e.getMessage());
+        }
+    }
+
+    /** Deletes spill files older than the retention; returns how many went. */
+    private int prune() throws IOException {
+        var cutoff = Instant.now().minus(retention);
+        int pruned = 0;
+        try (var files = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+            for (var file : files) {
+                if (Files.getLastModifiedTime(file).toInstant().isBefore(cutoff)) {
+                    var name = file.getFileName().toString();
+                    Files.deleteIfExists(file);
+                    synchronized (cache) {
+                        cache.remove(name.substring(0, name.length() - SUFFIX.length()));
+                    }
+                    pruned++;
+                }
+            }
+        }
+        return pruned;
+    }
+
+    public Stats stats() {
+        return new Stats(spilled.sum(), rawBytes.sum(), storedBytes.sum(), reads.sum());
+    }
+
+    String preview(String output, String handle) {
+        int half = previewChars / 2;
+        int headEnd = cutAtLine(output, half, true);
+        int tailStart = cutAtLine(output, output.length() - half, false);
+        long totalLines = output.lines().count();
+        long headLines = output.substring(0, headEnd).lines().count();
+        long tailLines = output.substring(tailStart).lines().count();
+        var note = handle != null
+                ? String.format("[... %d of %d lines (%d chars) not shown. Full output saved as handle %s: "
+                        + "call tool_output with this handle to read a line range or grep it ...]",
+                        totalLines - headLines - tailLines, totalLines, output.length(), handle)
+                : String.format("[... %d of %d lines (%d chars) dropped; the full output could not be saved ...]",
+                        totalLines - headLines - tailLines, totalLines, output.length());
+        return output.substring(0, headEnd) + "\n" + note + "\n" + output.substring(tailStart);
+    }
+
+    /**
+     * Nearest line break to {@code at}: the head ends before it, the tail starts after it.
+     * Falls back to {@code at} itself when no break lies within the preview half.
+     */
+    private int cutAtLine(String s, int at, boolean head) {
+        int half = previewChars / 2;
+        if (head) {
+            int nl = s.lastIndexOf('\n', at);
+            return nl > 0 && at - nl < half ? nl : at;
+        }
+        int nl = s.indexOf('\n', at);
+        return nl >= 0 && nl - at < half ? nl + 1 : at;
+    }
+
+    private static void write(Path file, byte[] bytes) throws IOException {
+        var tmp = Files.createTempFile(file.getParent(), "spill", ".tmp");
+        try {
+            var deflater = new Deflater(Deflater.BEST_SPEED);
+            try (var out = new DeflaterOutputStream(Files.newOutputStream(tmp), deflater, 64 * 1024)) {
+                out.write(bytes);
+            } finally {
+                deflater.end();
+            }
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static String read(Path file) throws IOException, DataFormatException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            var inflater = new Inflater();
+            try {
+                inflater.setInput(mapped);
+                var out = new ByteArrayOutputStream((int) Math.min(channel.size() * 4, Integer.MAX_VALUE - 8));
+                var buf = new byte[64 * 1024];
+                while (!inflater.finished()) {
+                    int n = inflater.inflate(buf);
+                    if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        throw new DataFormatException("truncated spill file");
+                    }
+                    out.write(buf, 0, n);
+                }
+                return out.toString(StandardCharsets.UTF_8);
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+
+    /** First 16 hex digits of the SHA-256; enough to keep distinct outputs apart. */
+    private static String handle(byte[] bytes) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+}
@@ -7,4 +7,13 @@ public interface Tool {
     String description();
     JsonNode inputSchema();
     ToolResult execute(ToolContext ctx, JsonNode input);
+
+    /**
+     * Whether this call may run concurrently with other parallel-safe calls in the same
+     * round. Only calls without side effects should say yes; the rest run alone, in the
+     * order the model asked for them.
+     */
+    default boolean parallelSafe(JsonNode input) {
+        return false;
+    }
 }
@@ -1,5 +1,11 @@
 package com.javaclaw.tools;
 
+import java.time.Instant;
 import java.util.Set;
 
-public record ToolContext(String workDir, String sessionId, Set<String> permissions) {}
+/** {@code deadline} is when the turn runs out of time (null for none); tools shrink their own timeouts to it. */
+public record ToolContext(String workDir, String sessionId, Set<String> permissions, Instant deadline) {
+    public ToolContext(String workDir, String sessionId, Set<String> permissions) {
+        this(workDir, sessionId, permissions, null);
+    }
+}
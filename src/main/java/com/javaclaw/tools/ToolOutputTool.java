@@ -0,0 +1,148 @@
+package com.javaclaw.tools;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Pages through tool output that {@link SpillStore} moved out of the prompt: a line
+ * range, or the lines matching a pattern. Replies stay under the spill threshold so
+ * they are never spilled themselves. Lines longer than {@value #SEGMENT_CHARS} chars
+ * (minified JSON, a one-line log dump) are shown in segments tagged {@code line@char},
+ * and a page can start at a char offset, so every byte of the output stays reachable.
+ */
+public class ToolOutputTool implements Tool {
+
+    public static final String NAME = "tool_output";
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int DEFAULT_LINES = 200;
+    private static final int MAX_MATCHES = 50;
+    private static final int SEGMENT_CHARS = 500;
+
+    private final SpillStore store;
+
+    public ToolOutputTool(SpillStore store) {
+        this.store = store;
+    }
+
+    @Override public String name() { return NAME; }
+
+    @Override public String description() {
+        return "Read a large tool output that was shortened to a preview. Pass its handle with "
+                + "from_line/lines to read a range, or with pattern (a regex) to list matching lines. "
+                + "Long lines come in segments marked line@char; pass from_char to resume inside one.";
+    }
+
+    @Override public boolean parallelSafe(JsonNode input) { return true; }
+
+    @Override public JsonNode inputSchema() {
+        return MAPPER.createObjectNode()
+                .put("type", "object")
+                .<com.fasterxml.jackson.databind.node.ObjectNode>set("properties",
+                        MAPPER.createObjectNode()
+                                .<com.fasterxml.jackson.databind.node.ObjectNode>set("handle",
+                                        MAPPER.createObjectNode().put("type", "string"))
+                                .<com.fasterxml.jackson.databind.node.ObjectNode>set("from_line",
+                                        MAPPER.createObjectNode().put("type", "integer").put("description", "1-based, default 1"))
+                                .<com.fasterxml.jackson.databind.node.ObjectNode>set("from_char",
+                                        MAPPER.createObjectNode().put("type", "integer").put("description", "0-based offset into from_line, default 0"))
+                                .<com.fasterxml.jackson.databind.node.ObjectNode>set("lines",
+                                        MAPPER.createObjectNode().put("type", "integer").put("description", "default 200"))
+                                .set("pattern",
+                                        MAPPER.createObjectNode().put("type", "string").put("description", "regex to grep for"))
+                )
+                .set("required", MAPPER.createArrayNode().add("handle"));
+    }
+
+    @Override
+    public ToolResult execute(ToolContext ctx, JsonNode input) {
+        var handle = input.path("handle").asText("").trim();
+        var lines = store.lines(handle);
+        if (lines == null) return new ToolResult("No saved output for handle '" + handle + "' (it may have expired)", true);
+        var pattern = input.path("pattern").asText("");
+        if (!pattern.isEmpty()) return grep(lines, pattern);
+        int from = Math.max(input.path("from_line").asInt(1), 1);
+        int fromChar = Math.max(input.path("from_char").asInt(0), 0);
+        int count = Math.max(input.path("lines").asInt(DEFAULT_LINES), 1);
+        return page(lines, from, fromChar, count);
+    }
+
+    private ToolResult page(List<String> lines, int from, int fromChar, int count) {
+        if (from > lines.size()) {
+            return new ToolResult("from_line " + from + " is past the end (" + lines.size() + " lines)", true);
+        }
+        if (fromChar > 0 && fromChar >= lines.get(from - 1).length()) {
+            return new ToolResult("from_char " + fromChar + " is past the end of line " + from
+                    + " (" + lines.get(from - 1).length() + " chars)", true);
+        }
+        int end = (int) Math.min((long) from - 1 + count, lines.size());
+        var sb = new StringBuilder();
+        int i = from - 1;
+        int offset = fromChar;
+        pages:
+        for (; i < end; i++, offset = 0) {
+            var line = lines.get(i);
+            do {
+                int segmentEnd = Math.min(offset + SEGMENT_CHARS, line.length());
+                var segment = numbered(i, offset, line.substring(offset, segmentEnd));
+                if (!sb.isEmpty() && sb.length() + segment.length() > budget()) break pages;
+                sb.append(segment);
+                offset = segmentEnd;
+            } while (offset < line.length());
+        }
+        if (i < lines.size() && offset > 0) {
+            // Stopped inside a long line: resume at the char where this page ran out.
+            sb.append(String.format("[lines %d-%d of %d; continue with from_line %d from_char %d]",
+                    from, i + 1, lines.size(), i + 1, offset));
+        } else {
+            sb.append(String.format("[lines %d-%d of %d", from, i, lines.size()));
+            sb.append(i < lines.size() ? "; continue with from_line " + (i + 1) + "]" : "]");
+        }
+        return new ToolResult(sb.toString(), false);
+    }
+
+    private ToolResult grep(List<String> lines, String regex) {
+        Pattern pattern;
+        try {
+            pattern = Pattern.compile(regex);
+        } catch (PatternSyntaxException e) {
+            return new ToolResult("Invalid pattern: " + e.getDescription(), true);
+        }
+        var sb = new StringBuilder();
+        int matches = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            var m = pattern.matcher(lines.get(i));
+            if (!m.find()) continue;
+            var line = around(i, lines.get(i), m.start());
+            if (matches == MAX_MATCHES || sb.length() + line.length() > budget()) {
+                sb.append("[more matches from line ").append(i + 1).append("; narrow the pattern or page from there]");
+                return new ToolResult(sb.toString(), false);
+            }
+            sb.append(line);
+            matches++;
+        }
+        if (matches == 0) return new ToolResult("No lines match /" + regex + "/ (" + lines.size() + " lines searched)", false);
+        sb.append("[").append(matches).append(" matching lines of ").append(lines.size()).append("]");
+        return new ToolResult(sb.toString(), false);
+    }
+
+    /** Room for lines, leaving space for the trailing status line. */
+    private int budget() {
+        return store.thresholdChars() - 200;
+    }
+
+    /** The segment of a long line that holds the match at {@code at}, with some context before it. */
+    private static String around(int index, String line, int at) {
+        if (line.length() <= SEGMENT_CHARS) return numbered(index, 0, line);
+        int start = Math.max(Math.min(at - SEGMENT_CHARS / 4, line.length() - SEGMENT_CHARS), 0);
+        return numbered(index, start, line.substring(start, start + SEGMENT_CHARS));
+    }
+
+    /** {@code 12: text}, or {@code 12@3000: text} for a segment that starts inside the line. */
+    private static String numbered(int index, int offset, String text) {
+        return (index + 1) + (offset > 0 ? "@" + offset : "") + ": " + text + "\n";
+    }
+}
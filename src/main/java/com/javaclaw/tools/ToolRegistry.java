@@ -6,12 +6,20 @@ import java.util.Map;
 
 public class ToolRegistry {
     private final Map<String, Tool> tools = new LinkedHashMap<>();
+    private volatile long version;
 
     public void register(Tool tool) {
         if (tools.containsKey(tool.name())) {
             throw new IllegalArgumentException("Duplicate tool: " + tool.name());
         }
         tools.put(tool.name(), tool);
+        version++;
+    }
+
+    public Tool unregister(String name) {
+        var removed = tools.remove(name);
+        if (removed != null) version++;
+        return removed;
     }
 
     public Tool get(String name) {
@@ -21,4 +29,9 @@ public class ToolRegistry {
     public Collection<Tool> all() {
         return tools.values();
     }
+
+    /** Bumped on every change, so callers can tell when derived data (e.g. tool definitions) is stale. */
+    public long version() {
+        return version;
+    }
 }
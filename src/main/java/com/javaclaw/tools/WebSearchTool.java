@@ -3,7 +3,9 @@ package com.javaclaw.tools;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.javaclaw.security.SecurityPolicy;
+import com.javaclaw.shared.concurrent.Deadlines;
 import com.javaclaw.shared.config.ToolsConfig;
+import com.javaclaw.shared.http.HttpClientRegistry;
 
 import java.net.URI;
 import java.net.URLEncoder;
@@ -38,6 +40,8 @@ public class WebSearchTool implements Tool {
         return "Search the web using DuckDuckGo. Returns titles, URLs and snippets.";
     }
 
+    @Override public boolean parallelSafe(JsonNode input) { return true; }
+
     @Override public JsonNode inputSchema() {
         return MAPPER.createObjectNode()
                 .put("type", "object")
@@ -62,13 +66,11 @@ public class WebSearchTool implements Tool {
             var encoded = URLEncoder.encode(query, StandardCharsets.UTF_8);
             var url = "https://html.duckduckgo.com/html/?q=" + encoded;
 
-            var client = HttpClient.newBuilder()
-                    .connectTimeout(Duration.ofSeconds(config.timeoutSeconds()))
-                    .followRedirects(HttpClient.Redirect.NORMAL)
-                    .build();
+            var client = HttpClientRegistry.shared().client(HttpClient.Redirect.NORMAL,
+                    Duration.ofSeconds(config.timeoutSeconds()));
             var req = HttpRequest.newBuilder()
                     .uri(URI.create(url))
-                    .timeout(Duration.ofSeconds(config.timeoutSeconds()))
+                    .timeout(Deadlines.clamp(ctx.deadline(), Duration.ofSeconds(config.timeoutSeconds())))
                     .header("User-Agent", "JavaClaw/1.0")
                     .GET().build();
             var resp = client.send(req, HttpResponse.BodyHandlers.ofString());
@@ -0,0 +1,6 @@
+CREATE TABLE session_summaries (
+    session_id       VARCHAR(64) PRIMARY KEY REFERENCES sessions(id) ON DELETE CASCADE,
+    covered_messages INT NOT NULL,
+    content          TEXT NOT NULL,
+    updated_at       TIMESTAMPTZ NOT NULL DEFAULT now()
+);
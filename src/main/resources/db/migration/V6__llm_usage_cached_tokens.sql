@@ -0,0 +1 @@
+ALTER TABLE llm_usage ADD COLUMN cached_tokens INT NOT NULL DEFAULT 0;
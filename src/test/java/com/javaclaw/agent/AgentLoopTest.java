@@ -7,21 +7,29 @@ import com.javaclaw.memory.MemoryResult;
 import com.javaclaw.memory.MemoryStore;
 import com.javaclaw.providers.ChatRequest;
 import com.javaclaw.providers.ChatResponse;
+import com.javaclaw.providers.DeadlineExceededException;
 import com.javaclaw.providers.ModelProvider;
 import com.javaclaw.providers.ToolCallInfo;
+import com.javaclaw.tools.SpillStore;
 import com.javaclaw.tools.Tool;
 import com.javaclaw.tools.ToolContext;
 import com.javaclaw.tools.ToolRegistry;
 import com.javaclaw.tools.ToolResult;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.util.ArrayList;
 import com.javaclaw.providers.ChatEvent;
 
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -29,6 +37,9 @@ class AgentLoopTest {
 
     private static final ObjectMapper MAPPER = new ObjectMapper();
 
+    @TempDir
+    Path spillDir;
+
     @Test
     void returnsDirectResponseWhenNoToolCalls() {
         var provider = stubProvider(new ChatResponse("hello", Map.of()));
@@ -132,8 +143,207 @@ class AgentLoopTest {
         assertTrue(stored.get(0).contains("answer"));
     }
 
+    @Test
+    void runsParallelSafeCallsConcurrentlyAndKeepsTheirOrder() {
+        var calls = List.of(
+                new ToolCallInfo("tc1", "read", "{\"text\":\"a\",\"ms\":150}"),
+                new ToolCallInfo("tc2", "read", "{\"text\":\"b\",\"ms\":100}"),
+                new ToolCallInfo("tc3", "read", "{\"text\":\"c\",\"ms\":50}"));
+        var read = new SlowReadTool();
+        var registry = new ToolRegistry();
+        registry.register(read);
+        var history = new ArrayList<Map<String, Object>>();
+        var loop = new AgentLoop(sequentialProvider(List.of(
+                new ChatResponse("", Map.of(), calls), new ChatResponse("done", Map.of()))),
+                new PromptBuilder(), registry, "/tmp", null);
+
+        var result = loop.execute("read", history, "s1", "cli", "user1");
+
+        assertEquals(3, read.maxActive.get(), "all three reads should overlap");
+        assertEquals(List.of("a", "b", "c"), result.toolCalls().stream().map(c -> c.get("output")).toList());
+        assertEquals(List.of("tc1", "tc2", "tc3"), history.subList(2, 5).stream().map(m -> m.get("tool_call_id")).toList());
+    }
+
+    @Test
+    void capsConcurrentCallsPerRound() {
+        var calls = new ArrayList<ToolCallInfo>();
+        for (int i = 0; i < 6; i++) calls.add(new ToolCallInfo("tc" + i, "read", "{\"text\":\"" + i + "\",\"ms\":30}"));
+        var read = new SlowReadTool();
+        var registry = new ToolRegistry();
+        registry.register(read);
+        var loop = new AgentLoop(sequentialProvider(List.of(
+                new ChatResponse("", Map.of(), calls), new ChatResponse("done", Map.of()))),
+                new PromptBuilder(), registry, "/tmp", null);
+        loop.setMaxParallelTools(2);
+
+        var result = loop.execute("read", new ArrayList<>(), "s1", "cli", "user1");
+
+        assertEquals(2, read.maxActive.get());
+        assertEquals(List.of("0", "1", "2", "3", "4", "5"),
+                result.toolCalls().stream().map(c -> c.get("output")).toList());
+    }
+
+    @Test
+    void exclusiveCallsWaitForEarlierCallsAndRunAlone() {
+        var events = new CopyOnWriteArrayList<String>();
+        var read = new SlowReadTool(events);
+        var registry = new ToolRegistry();
+        registry.register(read);
+        registry.register(new EchoTool() {
+            @Override public ToolResult execute(ToolContext ctx, JsonNode input) {
+                events.add("echo");
+                return super.execute(ctx, input);
+            }
+        });
+        var calls = List.of(
+                new ToolCallInfo("tc1", "read", "{\"text\":\"a\",\"ms\":80}"),
+                new ToolCallInfo("tc2", "read", "{\"text\":\"b\",\"ms\":40}"),
+                new ToolCallInfo("tc3", "echo", "{\"text\":\"x\"}"),
+                new ToolCallInfo("tc4", "read", "{\"text\":\"c\",\"ms\":0}"));
+        var loop = new AgentLoop(sequentialProvider(List.of(
+                new ChatResponse("", Map.of(), calls), new ChatResponse("done", Map.of()))),
+                new PromptBuilder(), registry, "/tmp", null);
+
+        var result = loop.execute("mixed", new ArrayList<>(), "s1", "cli", "user1");
+
+        assertEquals(List.of("end b", "end a", "echo", "end c"), events);
+        assertEquals(List.of("a", "b", "x", "c"), result.toolCalls().stream().map(c -> c.get("output")).toList());
+    }
+
+    @Test
+    void stopsCallingToolsWhenOnlyTheSummaryReserveIsLeft() {
+        var requests = new CopyOnWriteArrayList<ChatRequest>();
+        var provider = new ModelProvider() {
+            @Override public String id() { return "loop"; }
+            @Override public ChatResponse chat(ChatRequest req) {
+                requests.add(req);
+                if (req.tools() == null) return new ChatResponse("partial answer", Map.of());
+                return new ChatResponse("", Map.of(),
+                        List.of(new ToolCallInfo("tc" + requests.size(), "read", "{\"text\":\"a\",\"ms\":150}")));
+            }
+            @Override public Iterator<ChatEvent> chatStream(ChatRequest req) { return null; }
+        };
+        var read = new SlowReadTool();
+        var registry = new ToolRegistry();
+        registry.register(read);
+        var loop = new AgentLoop(provider, new PromptBuilder(), registry, "/tmp", null);
+        loop.setSummaryReserveMs(200);
+        var history = new ArrayList<Map<String, Object>>();
+        var deadline = Instant.now().plusMillis(300);
+
+        var result = loop.execute(provider, "dig", history, "s1", "cli", "user1", null, null, null, deadline);
+
+        assertEquals("partial answer", result.content());
+        assertEquals(1, result.toolCalls().size(), "the second round starts past the work deadline");
+        assertEquals(deadline.minusMillis(200), requests.get(0).deadline());
+        var last = requests.get(requests.size() - 1);
+        assertNull(last.tools());
+        assertEquals(deadline, last.deadline());
+        assertEquals(Messages.of("system", AgentLoop.TIME_UP_PROMPT), last.messages().get(last.messages().size() - 1));
+        assertTrue(last.messages().contains(Messages.of("user", "dig")), "the nudge is not taken for the current turn");
+        assertFalse(history.toString().contains("[Time limit reached]"), "the nudge is not persisted");
+    }
+
+    @Test
+    void answersWithCannedReplyWhenTheTurnIsAlreadyOutOfTime() {
+        var provider = new ModelProvider() {
+            @Override public String id() { return "late"; }
+            @Override public ChatResponse chat(ChatRequest req) {
+                throw new DeadlineExceededException(id(), null);
+            }
+            @Override public Iterator<ChatEvent> chatStream(ChatRequest req) { return null; }
+        };
+        var loop = new AgentLoop(provider, new PromptBuilder(), null, "/tmp", null);
+
+        var result = loop.execute(provider, "hi", new ArrayList<>(), "s1", "cli", "user1", null, null, null,
+                Instant.now().minusMillis(1));
+
+        assertEquals(AgentLoop.TIME_UP_REPLY, result.content());
+    }
+
+    @Test
+    void skipsToolsOnceTheDeadlineHasPassed() {
+        var read = new SlowReadTool();
+        var registry = new ToolRegistry();
+        registry.register(read);
+        var calls = List.of(new ToolCallInfo("tc1", "read", "{\"text\":\"a\",\"ms\":0}"));
+        var provider = new ModelProvider() {
+            private int idx = 0;
+            @Override public String id() { return "slow"; }
+            @Override public ChatResponse chat(ChatRequest req) {
+                if (idx++ > 0) return new ChatResponse("done", Map.of());
+                try {
+                    Thread.sleep(150);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return new ChatResponse("", Map.of(), calls);
+            }
+            @Override public Iterator<ChatEvent> chatStream(ChatRequest req) { return null; }
+        };
+        var loop = new AgentLoop(provider, new PromptBuilder(), registry, "/tmp", null);
+        loop.setSummaryReserveMs(0);
+
+        var result = loop.execute(provider, "read", new ArrayList<>(), "s1", "cli", "user1", null, null, null,
+                Instant.now().plusMillis(50));
+
+        assertEquals("done", result.content());
+        assertTrue(((String) result.toolCalls().get(0).get("output")).startsWith("[TIMEOUT]"));
+        assertTrue(read.events.isEmpty());
+    }
+
+    @Test
+    void spillsOversizedToolOutputOutOfThePrompt() throws Exception {
+        var big = "x".repeat(100) + "\n";
+        var calls = List.of(new ToolCallInfo("tc1", "read", "{\"text\":\"" + big.repeat(200).replace("\n", "\\n")
+                + "\",\"ms\":0}"));
+        var registry = new ToolRegistry();
+        registry.register(new SlowReadTool());
+        var history = new ArrayList<Map<String, Object>>();
+        var loop = new AgentLoop(sequentialProvider(List.of(
+                new ChatResponse("", Map.of(), calls), new ChatResponse("done", Map.of()))),
+                new PromptBuilder(), registry, "/tmp", null);
+        loop.setSpillStore(SpillStore.open(spillDir, 5_000, 1_000, Duration.ofHours(1)));
+
+        loop.execute("read", history, "s1", "cli", "user1");
+
+        var stored = (String) history.get(2).get("content");
+        assertTrue(stored.length() < 2_000, "history keeps the preview, " + stored.length() + " chars");
+        assertTrue(stored.contains("call tool_output with this handle"));
+    }
+
     // --- helpers ---
 
+    static class SlowReadTool implements Tool {
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger maxActive = new AtomicInteger();
+        final List<String> events;
+
+        SlowReadTool() { this(new CopyOnWriteArrayList<>()); }
+
+        SlowReadTool(List<String> events) { this.events = events; }
+
+        @Override public String name() { return "read"; }
+        @Override public String description() { return "read"; }
+        @Override public JsonNode inputSchema() {
+            return MAPPER.createObjectNode().put("type", "object");
+        }
+        @Override public boolean parallelSafe(JsonNode input) { return true; }
+        @Override public ToolResult execute(ToolContext ctx, JsonNode input) {
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(input.path("ms").asLong());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                active.decrementAndGet();
+            }
+            var text = input.path("text").asText();
+            events.add("end " + text);
+            return new ToolResult(text, false);
+        }
+    }
+
     @com.javaclaw.approval.DangerousOperation(reason = "test")
     static class EchoTool implements Tool {
         @Override public String name() { return "echo"; }
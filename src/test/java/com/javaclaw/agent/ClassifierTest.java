@@ -0,0 +1,104 @@
+package com.javaclaw.agent;
+
+import com.javaclaw.agent.Classifier.Tier;
+import com.javaclaw.providers.ChatEvent;
+import com.javaclaw.providers.ChatRequest;
+import com.javaclaw.providers.ChatResponse;
+import com.javaclaw.providers.ModelProvider;
+import org.junit.jupiter.api.Test;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClassifierTest {
+
+    private final AtomicInteger localCalls = new AtomicInteger();
+
+    private ModelProvider local(String reply) {
+        return new ModelProvider() {
+            @Override
+            public String id() { return "ollama"; }
+
+            @Override
+            public ChatResponse chat(ChatRequest request) {
+                localCalls.incrementAndGet();
+                return new ChatResponse(reply, Map.of());
+            }
+
+            @Override
+            public Iterator<ChatEvent> chatStream(ChatRequest request) {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Test
+    void greetingsAndShortLookupsAreTrivial() {
+        var classifier = new Classifier();
+        assertEquals(Tier.TRIVIAL, classifier.classify("hi!"));
+        assertEquals(Tier.TRIVIAL, classifier.classify("谢谢"));
+        assertEquals(Tier.TRIVIAL, classifier.classify("What is the capital of France?"));
+        assertEquals(Tier.TRIVIAL, classifier.classify("how many bytes are in a kibibyte?"));
+        assertEquals(Tier.TRIVIAL, classifier.classify("法国的首都是哪里？"));
+    }
+
+    @Test
+    void shortCommandsAreNotTrivial() {
+        assertNull(Classifier.heuristic("show git status"));
+        assertNull(Classifier.heuristic("delete the old logs"));
+        assertNull(Classifier.heuristic("check disk usage"));
+        assertEquals(Tier.STANDARD, new Classifier().classify("check disk usage"));
+    }
+
+    @Test
+    void codeAndMultiStepTasksAreComplex() {
+        var classifier = new Classifier();
+        assertEquals(Tier.COMPLEX, classifier.classify("Fix the NPE in src/main/App.java"));
+        assertEquals(Tier.COMPLEX, classifier.classify("```\nint x = null;\n```\nwhy does this fail?"));
+        assertEquals(Tier.COMPLEX, classifier.classify("Clone the repo, then run the tests and then deploy it"));
+        assertEquals(Tier.COMPLEX, classifier.classify("a".repeat(Classifier.COMPLEX_MIN_CHARS)));
+    }
+
+    @Test
+    void unclearMessagesAreStandardWithoutALocalModel() {
+        var msg = "Can you explain how the difference between a mutex and a semaphore matters in practice?";
+        assertNull(Classifier.heuristic(msg));
+        assertEquals(Tier.STANDARD, new Classifier().classify(msg));
+    }
+
+    @Test
+    void localModelLabelsOnlyWhatHeuristicsCannot() {
+        var classifier = new Classifier(local("<think>hmm, trivial?</think>\nComplex"), "qwen3:0.6b", 1_000);
+        assertEquals(Tier.TRIVIAL, classifier.classify("hello"));
+        assertEquals(0, localCalls.get());
+
+        var msg = "Can you explain how the difference between a mutex and a semaphore matters in practice?";
+        assertEquals(Tier.COMPLEX, classifier.classify(msg));
+        assertEquals(1, localCalls.get());
+    }
+
+    @Test
+    void fallsBackToStandardWhenTheLocalModelIsSlowOrUnclear() {
+        var msg = "Can you explain how the difference between a mutex and a semaphore matters in practice?";
+        assertEquals(Tier.STANDARD, new Classifier(local("no idea"), null, 1_000).classify(msg));
+
+        var hung = new ModelProvider() {
+            @Override
+            public String id() { return "ollama"; }
+
+            @Override
+            public ChatResponse chat(ChatRequest request) { throw new UnsupportedOperationException(); }
+
+            @Override
+            public CompletableFuture<ChatResponse> chatAsync(ChatRequest request) { return new CompletableFuture<>(); }
+
+            @Override
+            public Iterator<ChatEvent> chatStream(ChatRequest request) { throw new UnsupportedOperationException(); }
+        };
+        assertEquals(Tier.STANDARD, new Classifier(hung, null, 50).classify(msg));
+    }
+}
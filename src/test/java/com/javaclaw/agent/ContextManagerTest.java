@@ -0,0 +1,170 @@
+package com.javaclaw.agent;
+
+import com.javaclaw.providers.ChatEvent;
+import com.javaclaw.providers.ChatRequest;
+import com.javaclaw.providers.ChatResponse;
+import com.javaclaw.providers.ModelProvider;
+import com.javaclaw.sessions.ConversationSummary;
+import com.javaclaw.sessions.SessionStore;
+import com.javaclaw.shared.config.ContextConfig;
+import com.javaclaw.tokenizer.TokenCounter;
+import com.javaclaw.tokenizer.Tokenizer;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContextManagerTest {
+
+    private static final Tokenizer CHARS = new Tokenizer() {
+        @Override
+        public String id() { return "chars"; }
+
+        @Override
+        public int count(String text) { return text == null ? 0 : text.length(); }
+    };
+
+    private final List<ChatRequest> summaryRequests = new ArrayList<>();
+    private final InMemoryStore store = new InMemoryStore();
+
+    private final ModelProvider summarizer = new ModelProvider() {
+        @Override
+        public String id() { return "stub"; }
+
+        @Override
+        public ChatResponse chat(ChatRequest request) {
+            summaryRequests.add(request);
+            return new ChatResponse("summary " + summaryRequests.size(), Map.of());
+        }
+
+        @Override
+        public Iterator<ChatEvent> chatStream(ChatRequest request) {
+            throw new UnsupportedOperationException();
+        }
+    };
+
+    private ContextManager manager(int historyTokens, boolean summarize) {
+        var config = new ContextConfig(100_000, "approximate", null, 100, historyTokens, 2, summarize, null, "stable");
+        return new ContextManager(summarizer, new TokenCounter(CHARS, 1000), store, config);
+    }
+
+    private static List<Map<String, Object>> turns(int n, int size) {
+        var history = new ArrayList<Map<String, Object>>();
+        for (int i = 0; i < n; i++) {
+            history.add(Map.of("role", "user", "content", "q" + i + " " + "x".repeat(size)));
+            history.add(Map.of("role", "assistant", "content", "a" + i));
+        }
+        return history;
+    }
+
+    @Test
+    void sendsHistoryVerbatimWhenItFits() {
+        var history = turns(5, 10);
+        assertEquals(history, manager(10_000, true).compact("s1", history));
+        assertTrue(summaryRequests.isEmpty());
+    }
+
+    @Test
+    void dropsStaleToolOutputBeforeSummarizing() {
+        var history = new ArrayList<Map<String, Object>>();
+        history.add(Map.of("role", "user", "content", "run"));
+        history.add(Map.of("role", "assistant", "content", "", "tool_calls", List.of()));
+        history.add(Map.of("role", "tool", "tool_call_id", "c1", "content", "o".repeat(1000)));
+        history.addAll(turns(2, 10));
+
+        var out = manager(300, true).compact("s1", history);
+        assertEquals(history.size(), out.size());
+        assertEquals(ContextManager.STALE_TOOL_OUTPUT, out.get(2).get("content"));
+        assertEquals("c1", out.get(2).get("tool_call_id"));
+        assertTrue(summaryRequests.isEmpty());
+    }
+
+    @Test
+    void summarizesOlderTurnsAndKeepsRecentOnesVerbatim() {
+        var history = turns(6, 100);
+        var out = manager(500, true).compact("s1", history);
+
+        assertEquals(1, summaryRequests.size());
+        assertEquals(5, out.size());  // summary + last two turns
+        assertEquals("system", out.get(0).get("role"));
+        assertEquals(ContextManager.SUMMARY_PREFIX + "summary 1", out.get(0).get("content"));
+        assertEquals(history.get(8), out.get(1));
+        assertEquals(new ConversationSummary(8, "summary 1"), store.summaries.get("s1"));
+        assertEquals(12, history.size(), "stored history is untouched");
+    }
+
+    @Test
+    void summarizesWithinTheTurnDeadline() {
+        var deadline = Instant.now().plusSeconds(30);
+        manager(500, true).compact("s1", turns(6, 100), deadline);
+        assertEquals(1, summaryRequests.size());
+        assertEquals(deadline, summaryRequests.get(0).deadline());
+    }
+
+    @Test
+    void dropsOlderTurnsInsteadOfSummarizingPastTheDeadline() {
+        var history = turns(6, 100);
+        var out = manager(500, true).compact("s1", history, Instant.now().minusMillis(1));
+        assertTrue(summaryRequests.isEmpty());
+        assertEquals(history.subList(8, 12), out);
+    }
+
+    @Test
+    void reusesStoredSummaryUntilTheTailOutgrowsTheBudget() {
+        var history = new ArrayList<>(turns(6, 100));
+        var manager = manager(500, true);
+        manager.compact("s1", history);
+
+        history.addAll(List.of(Map.of("role", "user", "content", "next"), Map.of("role", "assistant", "content", "ok")));
+        var out = manager.compact("s1", history);
+        assertEquals(1, summaryRequests.size(), "no new summary while it fits");
+        assertEquals(7, out.size());
+
+        history.addAll(turns(3, 100));
+        manager.compact("s1", history);
+        assertEquals(2, summaryRequests.size());
+        var input = (String) summaryRequests.get(1).messages().get(1).get("content");
+        assertTrue(input.startsWith("Existing summary:\nsummary 1"), "rolls the previous summary forward");
+        assertFalse(input.contains("q3 "), "already summarized turns are not resent");
+    }
+
+    @Test
+    void ignoresSummaryCoveringMoreThanTheHistory() {
+        store.summaries.put("s1", new ConversationSummary(50, "stale"));
+        var history = turns(2, 10);
+        assertEquals(history, manager(10_000, true).compact("s1", history));
+    }
+
+    @Test
+    void dropsOlderTurnsWhenSummariesAreDisabled() {
+        var history = turns(6, 100);
+        var out = manager(500, false).compact("s1", history);
+        assertTrue(summaryRequests.isEmpty());
+        assertEquals(history.subList(8, 12), out);
+    }
+
+    private static final class InMemoryStore implements SessionStore {
+        final Map<String, ConversationSummary> summaries = new HashMap<>();
+
+        @Override
+        public void save(String sessionId, String userId, String channelId, List<Map<String, Object>> messages) {}
+
+        @Override
+        public List<Map<String, Object>> load(String sessionId) { return List.of(); }
+
+        @Override
+        public void delete(String sessionId) {}
+
+        @Override
+        public ConversationSummary loadSummary(String sessionId) { return summaries.get(sessionId); }
+
+        @Override
+        public void saveSummary(String sessionId, ConversationSummary summary) { summaries.put(sessionId, summary); }
+    }
+}
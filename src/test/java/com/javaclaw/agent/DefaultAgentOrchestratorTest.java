@@ -0,0 +1,164 @@
+package com.javaclaw.agent;
+
+import com.javaclaw.memory.MemoryResult;
+import com.javaclaw.memory.MemoryStore;
+import com.javaclaw.providers.ChatEvent;
+import com.javaclaw.providers.ChatRequest;
+import com.javaclaw.providers.ChatResponse;
+import com.javaclaw.providers.ModelProvider;
+import com.javaclaw.sessions.SessionStore;
+import com.javaclaw.shared.model.AgentRequest;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DefaultAgentOrchestratorTest {
+
+    private final List<ChatRequest> requests = new ArrayList<>();
+
+    private final ModelProvider provider = new ModelProvider() {
+        @Override
+        public String id() { return "stub"; }
+
+        @Override
+        public ChatResponse chat(ChatRequest request) {
+            requests.add(request);
+            return new ChatResponse("answer", Map.of());
+        }
+
+        @Override
+        public Iterator<ChatEvent> chatStream(ChatRequest request) {
+            throw new UnsupportedOperationException();
+        }
+    };
+
+    @Test
+    void loadsHistoryAndRecallsMemoriesConcurrently() {
+        var agent = new DefaultAgentOrchestrator(provider, null, "/tmp", new SlowStore(300), null);
+        agent.setMemoryStore(new SlowMemory(300));
+        agent.setRecallBudgetMs(2_000);
+
+        long start = System.nanoTime();
+        var response = agent.run(new AgentRequest("s1", "question", Map.of()));
+        long ms = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals("answer", response.content());
+        assertTrue(ms < 550, "load and recall should overlap, took " + ms + "ms");
+        assertTrue(prompt().contains("prior knowledge"));
+        assertTrue(prompt().contains("earlier question"));
+        assertEquals(0, agent.recallTimeouts());
+    }
+
+    @Test
+    void goesAheadWithoutMemoriesWhenRecallOverrunsItsBudget() {
+        var agent = new DefaultAgentOrchestrator(provider, null, "/tmp", new SlowStore(0), null);
+        agent.setMemoryStore(new SlowMemory(5_000));
+        agent.setRecallBudgetMs(100);
+
+        long start = System.nanoTime();
+        var response = agent.run(new AgentRequest("s1", "question", Map.of()));
+        long ms = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals("answer", response.content());
+        assertTrue(ms < 2_000, "recall is cancelled, not awaited; took " + ms + "ms");
+        assertFalse(prompt().contains("prior knowledge"));
+        assertEquals(1, agent.recallTimeouts());
+    }
+
+    @Test
+    void goesAheadWhenRecallIgnoresInterrupts() {
+        var agent = new DefaultAgentOrchestrator(provider, null, "/tmp", new SlowStore(0), null);
+        agent.setMemoryStore(new StubbornMemory(3_000));
+        agent.setRecallBudgetMs(100);
+
+        long start = System.nanoTime();
+        var response = agent.run(new AgentRequest("s1", "question", Map.of()));
+        long ms = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals("answer", response.content());
+        assertTrue(ms < 2_000, "the turn does not wait for the stuck recall; took " + ms + "ms");
+        assertFalse(prompt().contains("prior knowledge"));
+        assertEquals(1, agent.recallTimeouts());
+    }
+
+    private String prompt() {
+        return requests.get(0).messages().toString();
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** A search that, like Lucene's, keeps going when interrupted. */
+    private static final class StubbornMemory implements MemoryStore {
+        private final long delayMs;
+
+        StubbornMemory(long delayMs) { this.delayMs = delayMs; }
+
+        @Override
+        public void store(String content, Map<String, Object> metadata) {}
+
+        @Override
+        public List<MemoryResult> recall(String query, int topK) {
+            long end = System.nanoTime() + delayMs * 1_000_000;
+            while (System.nanoTime() < end) {
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException ignored) {
+                    // keep searching
+                }
+            }
+            return List.of(new MemoryResult("1", "prior knowledge", 0.9, Map.of()));
+        }
+
+        @Override
+        public void forget(String memoryId) {}
+    }
+
+    private static final class SlowMemory implements MemoryStore {
+        private final long delayMs;
+
+        SlowMemory(long delayMs) { this.delayMs = delayMs; }
+
+        @Override
+        public void store(String content, Map<String, Object> metadata) {}
+
+        @Override
+        public List<MemoryResult> recall(String query, int topK) {
+            sleep(delayMs);
+            if (Thread.currentThread().isInterrupted()) return List.of();
+            return List.of(new MemoryResult("1", "prior knowledge", 0.9, Map.of()));
+        }
+
+        @Override
+        public void forget(String memoryId) {}
+    }
+
+    private static final class SlowStore implements SessionStore {
+        private final long delayMs;
+
+        SlowStore(long delayMs) { this.delayMs = delayMs; }
+
+        @Override
+        public void save(String sessionId, String userId, String channelId, List<Map<String, Object>> messages) {}
+
+        @Override
+        public List<Map<String, Object>> load(String sessionId) {
+            sleep(delayMs);
+            return List.of(Map.of("role", "user", "content", "earlier question"),
+                    Map.of("role", "assistant", "content", "earlier answer"));
+        }
+
+        @Override
+        public void delete(String sessionId) {}
+    }
+}
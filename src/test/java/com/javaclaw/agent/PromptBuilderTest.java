@@ -1,7 +1,10 @@
 package com.javaclaw.agent;
 
+import com.javaclaw.tokenizer.TokenCounter;
+import com.javaclaw.tokenizer.Tokenizer;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -57,4 +60,158 @@ class PromptBuilderTest {
         var messages = builder.build("test", List.of());
         assertEquals(2, messages.size());
     }
+
+    /** One token per character. */
+    private static final Tokenizer CHARS = new Tokenizer() {
+        @Override
+        public String id() { return "chars"; }
+
+        @Override
+        public int count(String text) { return text == null ? 0 : text.length(); }
+    };
+
+    private static PromptBuilder budgeted(int maxTokens) {
+        return new PromptBuilder(new TokenCounter(CHARS, 100), maxTokens);
+    }
+
+    private static Map<String, Object> msg(String role, String content) {
+        return Map.of("role", role, "content", content);
+    }
+
+    private static int tokens(List<Map<String, Object>> messages) {
+        return new TokenCounter(CHARS, 100).countMessages(messages);
+    }
+
+    @Test
+    void keepsEverythingWithinBudget() {
+        var history = List.of(msg("user", "hi"), msg("assistant", "hello"));
+        var messages = budgeted(100_000).build("next", history);
+        assertEquals(4, messages.size());
+    }
+
+    @Test
+    void dropsOldestHistoryFirst() {
+        var history = List.of(msg("user", "x".repeat(500)), msg("assistant", "y".repeat(500)),
+                msg("user", "recent"), msg("assistant", "reply"));
+        var unbounded = builder.build("next", history);
+        var messages = budgeted(tokens(unbounded) - 500).build("next", history);
+        assertEquals("system", messages.get(0).get("role"));
+        assertEquals("recent", messages.get(1).get("content"));
+        assertEquals("next", messages.get(messages.size() - 1).get("content"));
+        assertEquals(4, messages.size());
+    }
+
+    @Test
+    void keepsTheRollingSummaryWhileOlderTurnsAreDropped() {
+        var summary = msg("system", ContextManager.SUMMARY_PREFIX + "user is migrating the build");
+        var history = List.of(summary, msg("user", "x".repeat(500)), msg("assistant", "y".repeat(500)),
+                msg("user", "recent"), msg("assistant", "reply"));
+        var unbounded = builder.build("next", history);
+        var messages = budgeted(tokens(unbounded) - 500).build("next", history);
+        assertEquals(summary, messages.get(1));
+        assertEquals("recent", messages.get(2).get("content"));
+        assertEquals(5, messages.size());
+    }
+
+    @Test
+    void dropsTheRollingSummaryOnlyOnceNoTurnsAreLeft() {
+        var summary = msg("system", ContextManager.SUMMARY_PREFIX + "s".repeat(300));
+        var history = List.of(summary, msg("user", "old"), msg("assistant", "reply"));
+        var unbounded = builder.build("next", history);
+        var messages = budgeted(tokens(unbounded) - 300).build("next", history);
+        assertEquals(2, messages.size());
+        assertEquals("next", messages.get(1).get("content"));
+    }
+
+    @Test
+    void dropsToolResultsTogetherWithTheirCall() {
+        var call = Map.<String, Object>of("role", "assistant", "content", "",
+                "tool_calls", List.of(Map.of("id", "c1")));
+        var result = Map.<String, Object>of("role", "tool", "tool_call_id", "c1", "content", "z".repeat(200));
+        var history = List.of(msg("user", "run it"), call, result, msg("assistant", "done"),
+                msg("user", "thanks"), msg("assistant", "np"));
+        var unbounded = builder.build("next", history);
+        var messages = budgeted(tokens(unbounded) - 1).build("next", history);
+        // Dropping "run it" alone would leave a tool_calls message first; the whole turn goes.
+        assertEquals("thanks", messages.get(1).get("content"));
+        assertTrue(messages.stream().noneMatch(m -> "tool".equals(m.get("role"))));
+    }
+
+    @Test
+    void elidesOldToolOutputOfTheCurrentTurn() {
+        var builder = budgeted(300);
+        var messages = builder.build("go", List.of(), "sys");
+        messages.add(Map.of("role", "assistant", "content", "", "tool_calls", List.of()));
+        messages.add(Map.of("role", "tool", "tool_call_id", "c1", "content", "o".repeat(300)));
+        messages.add(Map.of("role", "tool", "tool_call_id", "c2", "content", "p".repeat(100)));
+
+        int count = builder.fit(messages, null);
+        assertTrue(count <= 300);
+        assertTrue(((String) messages.get(3).get("content")).startsWith("[tool output elided"));
+        assertEquals("c1", messages.get(3).get("tool_call_id"));
+        assertEquals("p".repeat(100), messages.get(4).get("content"));
+    }
+
+    @Test
+    void countsToolSchemasAgainstTheBudget() {
+        var builder = budgeted(200);
+        var messages = new ArrayList<>(builder.build("go", List.of(msg("user", "u".repeat(100))), "sys"));
+        assertEquals(3, messages.size());
+        List<Map<String, Object>> tools = List.of(Map.of("description", "d".repeat(100)));
+        builder.fit(messages, tools);
+        assertEquals(2, messages.size());
+    }
+
+    @Test
+    void failsWhenSystemPromptAndMessageAloneExceedBudget() {
+        var ex = assertThrows(PromptBudgetExceededException.class, () -> budgeted(10).build("hello", List.of()));
+        assertEquals(10, ex.budget());
+    }
+
+    @Test
+    void noBudgetMeansNoCounting() {
+        assertEquals(-1, builder.fit(new ArrayList<>(builder.build("x", null)), null));
+    }
+
+    @Test
+    void classicLayoutPrependsRecalledMemoriesToTheUserMessage() {
+        var messages = builder.build("question", "- fact\n", List.of(), null, null);
+        assertEquals(2, messages.size());
+        assertEquals("[Recalled memories]\n- fact\n\n[User message]\nquestion", messages.get(1).get("content"));
+    }
+
+    @Test
+    void stableLayoutPutsRecalledMemoriesAtTheTail() {
+        var stable = new PromptBuilder(null, 0, null, PromptBuilder.Layout.STABLE_PREFIX);
+        var messages = stable.build("question", "- fact\n", List.of(), null, null);
+        assertEquals(3, messages.size());
+        assertEquals("question", messages.get(1).get("content"));
+        assertEquals("system", messages.get(2).get("role"));
+        assertTrue(((String) messages.get(2).get("content")).contains("- fact"));
+    }
+
+    @Test
+    void stableLayoutKeepsTheSerializedPrefixAcrossTurns() throws Exception {
+        var mapper = new com.fasterxml.jackson.databind.ObjectMapper();
+        var stable = new PromptBuilder(null, 0, null, PromptBuilder.Layout.STABLE_PREFIX);
+        var first = stable.build("question", "- fact\n", List.of(), null, null);
+
+        // Next turn: history holds the previous user message, reloaded with store key order.
+        var reloaded = new java.util.LinkedHashMap<String, Object>();
+        reloaded.put("role", "user");
+        reloaded.put("content", "question");
+        var second = stable.build("follow-up", "- other\n", List.of(reloaded, Map.of("role", "assistant", "content", "a")),
+                null, null);
+
+        var prefix = mapper.writeValueAsString(first.subList(0, 2));
+        var next = mapper.writeValueAsString(second.subList(0, 2));
+        assertEquals(prefix, next);
+    }
+
+    @Test
+    void parsesLayoutNames() {
+        assertEquals(PromptBuilder.Layout.STABLE_PREFIX, PromptBuilder.Layout.parse("stable"));
+        assertEquals(PromptBuilder.Layout.STABLE_PREFIX, PromptBuilder.Layout.parse("stable-prefix"));
+        assertEquals(PromptBuilder.Layout.CLASSIC, PromptBuilder.Layout.parse("Classic"));
+    }
 }
@@ -0,0 +1,104 @@
+package com.javaclaw.agent;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.javaclaw.tools.Tool;
+import com.javaclaw.tools.ToolContext;
+import com.javaclaw.tools.ToolRegistry;
+import com.javaclaw.tools.ToolResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ToolDefinitionCacheTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final class CountingTool implements Tool {
+        final String name;
+        final AtomicInteger schemaCalls = new AtomicInteger();
+
+        CountingTool(String name) { this.name = name; }
+
+        @Override public String name() { return name; }
+        @Override public String description() { return "tool " + name; }
+
+        @Override
+        public JsonNode inputSchema() {
+            schemaCalls.incrementAndGet();
+            var schema = MAPPER.createObjectNode().put("type", "object");
+            schema.putObject("properties").putObject("text").put("type", "string");
+            return schema;
+        }
+
+        @Override
+        public ToolResult execute(ToolContext ctx, JsonNode input) {
+            return new ToolResult("ok", false);
+        }
+    }
+
+    @Test
+    void buildsEachSchemaOnceAndReusesThePayload() {
+        var registry = new ToolRegistry();
+        var echo = new CountingTool("echo");
+        registry.register(echo);
+        var cache = new ToolDefinitionCache(registry);
+
+        var first = cache.get(null);
+        var second = cache.get(null);
+        assertSame(first, second);
+        assertEquals(1, echo.schemaCalls.get());
+        assertEquals("[{\"type\":\"function\",\"function\":{\"name\":\"echo\",\"description\":\"tool echo\","
+                + "\"parameters\":{\"type\":\"object\",\"properties\":{\"text\":{\"type\":\"string\"}}}}}]", first.json());
+    }
+
+    @Test
+    void listViewMatchesThePayload() throws Exception {
+        var registry = new ToolRegistry();
+        registry.register(new CountingTool("echo"));
+        var tools = new ToolDefinitionCache(registry).get(null);
+        assertEquals(1, tools.size());
+        assertEquals("function", tools.get(0).get("type"));
+        assertEquals(MAPPER.readTree(tools.json()), MAPPER.valueToTree(tools));
+    }
+
+    @Test
+    void cachesPerSubsetInRegistryOrder() {
+        var registry = new ToolRegistry();
+        var a = new CountingTool("a");
+        var b = new CountingTool("b");
+        registry.register(a);
+        registry.register(b);
+        var cache = new ToolDefinitionCache(registry);
+
+        var both = cache.get(List.of("b", "a"));
+        assertSame(both, cache.get(List.of("a", "b")));
+        assertEquals("a", ((Map<?, ?>) both.get(0).get("function")).get("name"));
+        assertEquals(1, cache.get(List.of("b")).size());
+        assertNull(cache.get(List.of("missing")));
+        assertEquals(1, a.schemaCalls.get());
+        assertEquals(1, b.schemaCalls.get());
+    }
+
+    @Test
+    void registryChangesInvalidate() {
+        var registry = new ToolRegistry();
+        var a = new CountingTool("a");
+        registry.register(a);
+        var cache = new ToolDefinitionCache(registry);
+        var before = cache.get(null);
+
+        registry.register(new CountingTool("b"));
+        var after = cache.get(null);
+        assertNotSame(before, after);
+        assertEquals(2, after.size());
+        assertEquals(1, a.schemaCalls.get(), "unchanged tools keep their serialised definition");
+
+        registry.unregister("b");
+        assertEquals(1, cache.get(null).size());
+    }
+}
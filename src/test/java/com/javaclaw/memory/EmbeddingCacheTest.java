@@ -0,0 +1,70 @@
+package com.javaclaw.memory;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmbeddingCacheTest {
+
+    @TempDir Path dir;
+
+    @Test
+    void keysByModelAndText() {
+        var cache = EmbeddingCache.inMemory(10);
+        cache.put("m1", "hello", new float[]{1, 2});
+        assertArrayEquals(new float[]{1, 2}, cache.get("m1", "hello"));
+        assertNull(cache.get("m2", "hello"));
+        assertNull(cache.get("m1", "hello "));
+        assertNotEquals(EmbeddingCache.key("ab", "c"), EmbeddingCache.key("a", "bc"));
+
+        var stats = cache.stats();
+        assertEquals(1, stats.heapHits());
+        assertEquals(2, stats.misses());
+        assertEquals(1.0 / 3, stats.hitRatio(), 1e-9);
+    }
+
+    @Test
+    void survivesReopenAndServesEvictedEntriesFromDisk() throws Exception {
+        try (var cache = EmbeddingCache.open(dir, 1)) {
+            cache.put("m", "a", new float[]{0.5f, -1.25f, 3});
+            cache.put("m", "b", new float[]{7});
+            assertArrayEquals(new float[]{0.5f, -1.25f, 3}, cache.get("m", "a"), "evicted from heap, read from disk");
+            assertEquals(1, cache.stats().diskHits());
+        }
+        assertEquals(16, Files.size(dir.resolve(EmbeddingCache.VECTORS_FILE)));
+
+        try (var cache = EmbeddingCache.open(dir, 10)) {
+            assertEquals(2, cache.stats().diskEntries());
+            assertArrayEquals(new float[]{7}, cache.get("m", "b"));
+            cache.put("m", "c", new float[]{9, 9});
+            assertArrayEquals(new float[]{9, 9}, cache.get("m", "c"));
+        }
+    }
+
+    @Test
+    void ignoresTornAndDanglingIndexRecords() throws Exception {
+        try (var cache = EmbeddingCache.open(dir, 10)) {
+            cache.put("m", "a", new float[]{1, 2});
+            cache.put("m", "b", new float[]{3, 4});
+        }
+        // A crash can leave half a record, or a record whose vector bytes never landed.
+        Files.write(dir.resolve(EmbeddingCache.INDEX_FILE), new byte[7], StandardOpenOption.APPEND);
+        try (var ch = FileChannel.open(dir.resolve(EmbeddingCache.VECTORS_FILE),
+                StandardOpenOption.WRITE)) {
+            ch.truncate(8);
+        }
+
+        try (var cache = EmbeddingCache.open(dir, 10)) {
+            assertEquals(1, cache.stats().diskEntries());
+            assertArrayEquals(new float[]{1, 2}, cache.get("m", "a"));
+            assertNull(cache.get("m", "b"));
+            assertEquals(2L * EmbeddingCache.RECORD_BYTES, Files.size(dir.resolve(EmbeddingCache.INDEX_FILE)));
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.javaclaw.memory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.javaclaw.shared.config.EmbeddingConfig;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmbeddingServiceTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private HttpServer server;
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+
+    /** Answers each input with [length, position], in reverse order to exercise the index field. */
+    @BeforeEach
+    void start() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/v1/embeddings", exchange -> {
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            try {
+                var input = MAPPER.readTree(exchange.getRequestBody()).path("input");
+                batchSizes.add(input.size());
+                Thread.sleep(20);
+                var data = new ArrayList<String>();
+                for (int i = input.size() - 1; i >= 0; i--) {
+                    data.add("{\"index\":" + i + ",\"embedding\":[" + input.get(i).asText().length() + "," + i + "]}");
+                }
+                var out = ("{\"data\":[" + String.join(",", data) + "]}").getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, out.length);
+                exchange.getResponseBody().write(out);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                active.decrementAndGet();
+                exchange.close();
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+    }
+
+    private EmbeddingService service(EmbeddingConfig config) {
+        return new EmbeddingService("http://127.0.0.1:" + server.getAddress().getPort() + "/v1", "key", "m", config);
+    }
+
+    @Test
+    void embedBatchChunksAndKeepsInputOrder() {
+        var texts = new ArrayList<String>();
+        for (int i = 0; i < 10; i++) texts.add("x".repeat(i + 1));
+
+        var vectors = service(new EmbeddingConfig(4, 2, 5)).embedBatch(texts);
+
+        assertEquals(10, vectors.size());
+        for (int i = 0; i < 10; i++) assertEquals(i + 1, (int) vectors.get(i)[0], "vector " + i);
+        assertEquals(List.of(2, 4, 4), batchSizes.stream().sorted().toList());
+        assertTrue(maxActive.get() <= 2, "at most two requests in flight, saw " + maxActive.get());
+    }
+
+    @Test
+    void concurrentEmbedCallsShareOneRequest() throws Exception {
+        var service = service(new EmbeddingConfig(64, 4, 100));
+        var results = new float[5][];
+        var threads = new ArrayList<Thread>();
+        for (int i = 0; i < 5; i++) {
+            int n = i;
+            threads.add(Thread.startVirtualThread(() -> results[n] = service.embed("t".repeat(n + 1))));
+        }
+        for (var t : threads) t.join();
+
+        assertEquals(List.of(5), batchSizes);
+        for (int i = 0; i < 5; i++) assertEquals(i + 1, (int) results[i][0]);
+    }
+
+    @Test
+    void failedRequestLeavesNulls() {
+        server.removeContext("/v1/embeddings");
+        server.createContext("/v1/embeddings", exchange -> {
+            var out = "{\"error\":\"bad model\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(400, out.length);
+            exchange.getResponseBody().write(out);
+            exchange.close();
+        });
+        var service = service(EmbeddingConfig.defaults());
+        assertNull(service.embed("a"));
+        var vectors = service.embedBatch(List.of("a", "b"));
+        assertEquals(2, vectors.size());
+        assertNull(vectors.get(0));
+    }
+
+    @Test
+    void outOfRangeOrRepeatedIndexesFailTheBatch() {
+        var replies = List.of("{\"data\":[{\"index\":0,\"embedding\":[1]},{\"index\":0,\"embedding\":[2]}]}",
+                "{\"data\":[{\"index\":0,\"embedding\":[1]},{\"index\":2,\"embedding\":[2]}]}");
+        for (var reply : replies) {
+            server.removeContext("/v1/embeddings");
+            server.createContext("/v1/embeddings", exchange -> {
+                var out = reply.getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, out.length);
+                exchange.getResponseBody().write(out);
+                exchange.close();
+            });
+            var vectors = service(EmbeddingConfig.defaults()).embedBatch(List.of("a", "b"));
+            assertEquals(2, vectors.size());
+            assertNull(vectors.get(0), reply);
+            assertNull(vectors.get(1), reply);
+        }
+    }
+
+    @Test
+    void cachedTextsNeverReachTheEndpoint() {
+        var service = service(new EmbeddingConfig(64, 4, 1));
+        service.setCache(EmbeddingCache.inMemory(100));
+
+        assertEquals(1, (int) service.embed("a")[0]);
+        assertEquals(1, (int) service.embed("a")[0]);
+        assertEquals(List.of(1), batchSizes);
+
+        var vectors = service.embedBatch(List.of("a", "bb", "ccc"));
+        assertEquals(3, (int) vectors.get(2)[0]);
+        assertEquals(List.of(1, 2), batchSizes, "only the two misses are sent");
+        assertEquals(2, service.cache().stats().heapHits());
+    }
+}
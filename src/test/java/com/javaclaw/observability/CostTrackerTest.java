@@ -32,6 +32,29 @@ class CostTrackerTest {
         verify(ps).executeUpdate();
     }
 
+    @Test
+    void cachedPromptTokensArePricedAtTheCacheHitRate() {
+        double uncached = CostTracker.cost("deepseek-chat", 1_000_000, 0, 0);
+        double cached = CostTracker.cost("deepseek-chat", 1_000_000, 0, 1_000_000);
+        assertEquals(0.14, uncached, 1e-9);
+        assertEquals(0.014, cached, 1e-9);
+        assertEquals(0.0, CostTracker.cost("unknown", 1000, 1000, 500), 1e-9);
+    }
+
+    @Test
+    void recordStoresCachedTokens() throws Exception {
+        var ps = mock(PreparedStatement.class);
+        var conn = mock(Connection.class);
+        when(conn.prepareStatement(anyString())).thenReturn(ps);
+        var ds = mock(DataSource.class);
+        when(ds.getConnection()).thenReturn(conn);
+
+        new CostTracker(ds).record("s1", "deepseek", "deepseek-chat", 1000, 500, 800);
+
+        verify(ps).setInt(7, 800);
+        verify(ps).executeUpdate();
+    }
+
     @Test
     void dailySummaryReturnsCounts() throws Exception {
         var rs = mock(ResultSet.class);
@@ -23,4 +23,18 @@ class MetricsConfigTest {
         config.llmCalls().increment();
         assertEquals(2.0, config.llmCalls().count());
     }
+
+    @Test
+    void reportListsEveryMeterForDoctor() {
+        var config = new MetricsConfig();
+        config.llmCacheHits().increment(3);
+        config.llmCacheMisses().increment();
+        config.admissionShed("deepseek").increment();
+
+        var report = config.report();
+
+        assertTrue(report.contains("[OK] Metric javaclaw.llm.cache.hits: 3"), report.toString());
+        assertTrue(report.contains("[OK] Metric javaclaw.llm.cache.misses: 1"), report.toString());
+        assertTrue(report.contains("[OK] Metric javaclaw.llm.admission.shed{provider=deepseek}: 1"), report.toString());
+    }
 }
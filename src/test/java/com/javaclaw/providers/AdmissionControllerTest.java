@@ -0,0 +1,169 @@
+package com.javaclaw.providers;
+
+import com.javaclaw.observability.MetricsConfig;
+import com.javaclaw.shared.config.AdmissionConfig;
+import org.junit.jupiter.api.Test;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionControllerTest {
+
+    private static AdmissionConfig config(int concurrency, int maxQueue, AdmissionConfig.RateLimit limit) {
+        return new AdmissionConfig(true, concurrency, 1, 8, maxQueue, 1_000, Map.of("p", limit));
+    }
+
+    @Test
+    void queuedCallerProceedsWhenSlotFrees() throws Exception {
+        var controller = new AdmissionController("p", config(1, 4, AdmissionConfig.RateLimit.unlimited()));
+        var first = controller.acquire(10, 100);
+        var admitted = new CountDownLatch(1);
+        Thread.startVirtualThread(() -> {
+            try {
+                controller.acquire(10, 2_000).release();
+                admitted.countDown();
+            } catch (InterruptedException ignored) {}
+        });
+        while (controller.queueDepth() == 0) Thread.sleep(1);
+        assertEquals(1, admitted.getCount());
+        first.release();
+        assertTrue(admitted.await(2, TimeUnit.SECONDS));
+        assertEquals(0, controller.inFlight());
+    }
+
+    @Test
+    void shedsAfterDeadline() throws Exception {
+        var controller = new AdmissionController("p", config(1, 4, AdmissionConfig.RateLimit.unlimited()));
+        controller.acquire(10, 100);
+        var ex = assertThrows(AdmissionRejectedException.class, () -> controller.acquire(10, 20));
+        assertTrue(ex.getMessage().contains("deadline"));
+        assertEquals(0, controller.queueDepth());
+    }
+
+    @Test
+    void shedsImmediatelyWhenQueueFull() throws Exception {
+        var controller = new AdmissionController("p", config(1, 0, AdmissionConfig.RateLimit.unlimited()));
+        controller.acquire(10, 100);
+        var ex = assertThrows(AdmissionRejectedException.class, () -> controller.acquire(10, 5_000));
+        assertTrue(ex.getMessage().contains("queue full"));
+    }
+
+    @Test
+    void requestBucketLimitsRate() throws Exception {
+        var now = new AtomicLong();
+        var controller = new AdmissionController("p",
+                config(8, 4, new AdmissionConfig.RateLimit(2, 0)), now::get);
+        controller.acquire(1, 0).release();
+        controller.acquire(1, 0).release();
+        assertThrows(AdmissionRejectedException.class, () -> controller.acquire(1, 0));
+        now.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        controller.acquire(1, 0).release();
+    }
+
+    @Test
+    void tokenBucketIsChargedForActualUsage() throws Exception {
+        var now = new AtomicLong();
+        var controller = new AdmissionController("p",
+                config(8, 4, new AdmissionConfig.RateLimit(0, 1_000)), now::get);
+        controller.acquire(100, 0).success(1_000);
+        assertThrows(AdmissionRejectedException.class, () -> controller.acquire(100, 0));
+        now.addAndGet(TimeUnit.SECONDS.toNanos(6));
+        controller.acquire(100, 0).release();
+    }
+
+    @Test
+    void aimdGrowsOnSuccessAndHalvesOnOverload() throws Exception {
+        var controller = new AdmissionController("p", config(4, 4, AdmissionConfig.RateLimit.unlimited()));
+        controller.acquire(1, 0).success(1);
+        assertEquals(4.25, controller.limit(), 1e-9);
+        controller.acquire(1, 0).overloaded(0);
+        assertEquals(2.125, controller.limit(), 1e-9);
+        for (int i = 0; i < 5; i++) controller.acquire(1, 0).overloaded(0);
+        assertEquals(1.0, controller.limit(), 1e-9);
+    }
+
+    @Test
+    void retryAfterPausesAdmission() throws Exception {
+        var now = new AtomicLong();
+        var controller = new AdmissionController("p", config(4, 4, AdmissionConfig.RateLimit.unlimited()), now::get);
+        controller.acquire(1, 0).overloaded(2_000);
+        assertThrows(AdmissionRejectedException.class, () -> controller.acquire(1, 0));
+        now.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        controller.acquire(1, 0).release();
+    }
+
+    @Test
+    void providerReleasesPermitAndTreats429AsOverload() {
+        var delegate = new ModelProvider() {
+            int calls;
+            @Override public String id() { return "p"; }
+            @Override public ChatResponse chat(ChatRequest r) {
+                if (calls++ == 0) throw new RateLimitedException("p", Map.of(), "p API error 429: Too Many Requests");
+                return new ChatResponse("m", "ok", Map.of("promptTokens", 5, "completionTokens", 5), List.of());
+            }
+            @Override public Iterator<ChatEvent> chatStream(ChatRequest r) {
+                return List.of(ChatEvent.text("a"), ChatEvent.done(chat(r))).iterator();
+            }
+        };
+        var config = config(4, 4, AdmissionConfig.RateLimit.unlimited());
+        var provider = new AdmissionProvider(delegate, config, new MetricsConfig());
+        var request = new ChatRequest("m", List.of(Map.of("role", "user", "content", "hello")), 0.0);
+
+        assertThrows(RuntimeException.class, () -> provider.chat(request));
+        assertEquals(2.0, provider.controller().limit(), 1e-9);
+        assertEquals("ok", provider.chat(request).content());
+
+        var it = provider.chatStream(request);
+        assertEquals(1, provider.controller().inFlight());
+        it.forEachRemaining(e -> {});
+        assertEquals(0, provider.controller().inFlight());
+    }
+
+    @Test
+    void closingAnAbandonedStreamFreesItsSlotAndClosesUpstream() throws Exception {
+        var upstreamClosed = new AtomicBoolean();
+        var delegate = new ModelProvider() {
+            @Override public String id() { return "p"; }
+            @Override public ChatResponse chat(ChatRequest r) { throw new UnsupportedOperationException(); }
+            @Override public Iterator<ChatEvent> chatStream(ChatRequest r) {
+                return new CloseableEvents(upstreamClosed, ChatEvent.text("a"), ChatEvent.text("b"));
+            }
+        };
+        var provider = new AdmissionProvider(delegate, config(1, 0, AdmissionConfig.RateLimit.unlimited()),
+                new MetricsConfig());
+        var request = new ChatRequest("m", List.of(Map.of("role", "user", "content", "hello")), 0.0);
+
+        var it = provider.chatStream(request);
+        it.next();
+        assertEquals(1, provider.controller().inFlight());
+        ((Closeable) it).close();
+        ((Closeable) it).close();
+
+        assertEquals(0, provider.controller().inFlight());
+        assertTrue(upstreamClosed.get());
+        ((Closeable) provider.chatStream(request)).close();
+        assertEquals(0, provider.controller().inFlight(), "the single slot is usable again");
+    }
+
+    static final class CloseableEvents implements Iterator<ChatEvent>, Closeable {
+        private final AtomicBoolean closed;
+        private final Iterator<ChatEvent> events;
+
+        CloseableEvents(AtomicBoolean closed, ChatEvent... events) {
+            this.closed = closed;
+            this.events = List.of(events).iterator();
+        }
+
+        @Override public boolean hasNext() { return !closed.get() && events.hasNext(); }
+        @Override public ChatEvent next() { return events.next(); }
+        @Override public void close() { closed.set(true); }
+    }
+}
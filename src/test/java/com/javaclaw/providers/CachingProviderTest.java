@@ -0,0 +1,125 @@
+package com.javaclaw.providers;
+
+import com.javaclaw.observability.MetricsConfig;
+import com.javaclaw.shared.config.LlmCacheConfig;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachingProviderTest {
+
+    @TempDir
+    Path tempDir;
+
+    static class CountingProvider implements ModelProvider {
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override public String id() { return "counting"; }
+
+        @Override
+        public ChatResponse chat(ChatRequest request) {
+            return new ChatResponse("m", "answer " + calls.incrementAndGet(), Map.of("promptTokens", 5),
+                    List.of(new ToolCallInfo("c1", "shell", "{}")));
+        }
+
+        @Override
+        public Iterator<ChatEvent> chatStream(ChatRequest request) {
+            var resp = chat(request);
+            return List.of(ChatEvent.text(resp.content()), ChatEvent.done(resp)).iterator();
+        }
+    }
+
+    private static ChatRequest req(double temperature) {
+        var msg = new LinkedHashMap<String, Object>();
+        msg.put("role", "user");
+        msg.put("content", "hello");
+        return new ChatRequest(null, List.of(msg), temperature);
+    }
+
+    private static LlmCacheConfig config(int maxEntries, String persist) {
+        return new LlmCacheConfig(true, maxEntries, 60, 0.2, persist);
+    }
+
+    @Test
+    void servesRepeatsFromCacheRegardlessOfMapKeyOrder() {
+        var delegate = new CountingProvider();
+        var metrics = new MetricsConfig();
+        var cache = new CachingProvider(delegate, config(10, null), metrics);
+
+        assertEquals("answer 1", cache.chat(req(0.0)).content());
+        var reordered = new ChatRequest(null, List.of(Map.of("content", "hello", "role", "user")), 0.0);
+        var hit = cache.chat(reordered);
+
+        assertEquals("answer 1", hit.content());
+        assertEquals("shell", hit.toolCalls().get(0).name());
+        assertEquals(1, delegate.calls.get());
+        assertEquals(1.0, metrics.llmCacheHits().count());
+        assertEquals(1.0, metrics.llmCacheMisses().count());
+    }
+
+    @Test
+    void bypassesHighTemperatureAndOptedOutRequests() {
+        var delegate = new CountingProvider();
+        var cache = new CachingProvider(delegate, config(10, null), new MetricsConfig());
+
+        cache.chat(req(0.7));
+        cache.chat(req(0.7));
+        cache.chat(req(0.0).noCache());
+        cache.chat(req(0.0).noCache());
+
+        assertEquals(4, delegate.calls.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void expiresEntriesAfterTtlAndEvictsLeastRecentlyUsed() {
+        var delegate = new CountingProvider();
+        var now = new AtomicLong(1_000);
+        var metrics = new MetricsConfig();
+        var cache = new CachingProvider(delegate, config(1, null), metrics, now::get);
+
+        cache.chat(req(0.0));
+        now.addAndGet(61_000);
+        assertEquals("answer 2", cache.chat(req(0.0)).content());
+
+        cache.chat(new ChatRequest("other", req(0.0).messages(), 0.0));
+        assertEquals(1, cache.size());
+        assertEquals(2.0, metrics.llmCacheEvictions().count());
+    }
+
+    @Test
+    void streamMissPopulatesCacheAndHitReplays() {
+        var delegate = new CountingProvider();
+        var cache = new CachingProvider(delegate, config(10, null), new MetricsConfig());
+
+        cache.chatStream(req(0.0)).forEachRemaining(e -> {});
+        var events = new ArrayList<ChatEvent>();
+        cache.chatStream(req(0.0)).forEachRemaining(events::add);
+
+        assertEquals(1, delegate.calls.get());
+        assertEquals("answer 1", events.get(0).delta());
+        assertTrue(events.get(1).done());
+    }
+
+    @Test
+    void persistsAcrossInstances() {
+        var file = tempDir.resolve("llm-cache.jsonl").toString();
+        var first = new CountingProvider();
+        new CachingProvider(first, config(10, file), new MetricsConfig()).chat(req(0.0));
+
+        var second = new CountingProvider();
+        var reloaded = new CachingProvider(second, config(10, file), new MetricsConfig());
+        assertEquals("answer 1", reloaded.chat(req(0.0)).content());
+        assertEquals(0, second.calls.get());
+    }
+}
@@ -0,0 +1,111 @@
+package com.javaclaw.providers;
+
+import com.javaclaw.shared.config.CircuitBreakerConfig;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    private CircuitBreaker breaker() {
+        return new CircuitBreaker(new CircuitBreakerConfig(true, 4, 4, 0.5, 1_000, 0.75, 10, 1), now::get);
+    }
+
+    @Test
+    void opensOnceFailureRateReachesThreshold() {
+        var cb = breaker();
+        cb.onSuccess(10);
+        cb.onSuccess(10);
+        cb.onFailure(10);
+        assertEquals(CircuitBreaker.State.CLOSED, cb.state());
+        cb.onFailure(10);
+        assertEquals(CircuitBreaker.State.OPEN, cb.state());
+        assertFalse(cb.tryAcquire());
+    }
+
+    @Test
+    void opensOnSlowCalls() {
+        var cb = breaker();
+        cb.onSuccess(10);
+        for (int i = 0; i < 3; i++) cb.onSuccess(5_000);
+        assertEquals(CircuitBreaker.State.OPEN, cb.state());
+    }
+
+    @Test
+    void slidingWindowForgetsOldFailures() {
+        var cb = breaker();
+        cb.onFailure(10);
+        for (int i = 0; i < 6; i++) cb.onSuccess(10);
+        cb.onFailure(10);
+        assertEquals(CircuitBreaker.State.CLOSED, cb.state());
+        assertEquals(0.25, cb.snapshot().failureRate(), 1e-9);
+    }
+
+    @Test
+    void halfOpenProbeClosesOnSuccessAndReopensOnFailure() {
+        var cb = breaker();
+        for (int i = 0; i < 4; i++) cb.onFailure(10);
+        now.addAndGet(10_000);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, cb.state());
+
+        assertTrue(cb.tryAcquire());
+        assertFalse(cb.tryAcquire(), "only one probe at a time");
+        cb.onFailure(10);
+        assertEquals(CircuitBreaker.State.OPEN, cb.state());
+
+        now.addAndGet(10_000);
+        assertTrue(cb.tryAcquire());
+        cb.onSuccess(10);
+        assertEquals(CircuitBreaker.State.CLOSED, cb.state());
+        assertEquals(0, cb.snapshot().calls());
+    }
+
+    @Test
+    void releasedProbeFreesThePermit() {
+        var cb = breaker();
+        for (int i = 0; i < 4; i++) cb.onFailure(10);
+        now.addAndGet(10_000);
+        assertTrue(cb.tryAcquire());
+        cb.release();
+        assertTrue(cb.tryAcquire());
+    }
+
+    @Test
+    void registryCountsOnlyTransportErrorsAgainstProvider() throws Exception {
+        var registry = new CircuitBreakerRegistry(
+                new CircuitBreakerConfig(true, 2, 2, 0.5, 60_000, 1.0, 10, 1), now::get);
+        for (int i = 0; i < 2; i++) {
+            assertThrows(RuntimeException.class, () -> registry.execute("p", "m", () -> {
+                throw new ProviderUnavailableException("p", 503, Map.of(), "p API error 503: overloaded");
+            }));
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, registry.forProvider("p").state());
+        assertEquals(CircuitBreaker.State.OPEN, registry.forModel("p", "m").state());
+        assertEquals("ok", registry.execute("p", "other", () -> "ok"));
+
+        // window is now [ok, ok]; one refused connection makes it 50% failed
+        assertThrows(IOException.class, () -> registry.execute("p", "other", () -> {
+            throw new IOException("Connection refused");
+        }));
+        var ex = assertThrows(CircuitOpenException.class, () -> registry.execute("p", "third", () -> "x"));
+        assertNull(ex.model());
+    }
+
+    @Test
+    void clientErrorsDoNotTripBreaker() {
+        var registry = new CircuitBreakerRegistry(
+                new CircuitBreakerConfig(true, 2, 2, 0.5, 60_000, 1.0, 10, 1), now::get);
+        for (int i = 0; i < 3; i++) {
+            assertThrows(RuntimeException.class, () -> registry.execute("p", "m", () -> {
+                throw new ProviderClientException("p", 400, Map.of(), "p API error 400: bad request");
+            }));
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, registry.forModel("p", "m").state());
+    }
+}
@@ -0,0 +1,81 @@
+package com.javaclaw.providers;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CoalescingProviderTest {
+
+    private static class GatedProvider implements ModelProvider {
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch gate = new CountDownLatch(1);
+
+        @Override public String id() { return "p"; }
+
+        @Override public ChatResponse chat(ChatRequest r) {
+            calls.incrementAndGet();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return new ChatResponse(r.model(), "answer", Map.of(), List.of());
+        }
+
+        @Override public Iterator<ChatEvent> chatStream(ChatRequest r) { return null; }
+    }
+
+    private static ChatRequest request(String text) {
+        return request(text, 0.0);
+    }
+
+    private static ChatRequest request(String text, double temperature) {
+        return new ChatRequest("m", List.of(Map.of("role", "user", "content", text)), temperature);
+    }
+
+    @Test
+    void identicalConcurrentRequestsMakeOneUpstreamCall() throws Exception {
+        var upstream = new GatedProvider();
+        var provider = new CoalescingProvider(upstream, 0.2);
+        var threads = new Thread[3];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = Thread.startVirtualThread(() ->
+                    assertEquals("answer", provider.chat(request("same")).content()));
+        }
+        while (provider.coalesced() < 2) Thread.sleep(1);
+        upstream.gate.countDown();
+        for (var t : threads) t.join();
+        assertEquals(1, upstream.calls.get());
+    }
+
+    @Test
+    void optedOutRequestsAreNotShared() throws Exception {
+        var upstream = new GatedProvider();
+        upstream.gate.countDown();
+        var provider = new CoalescingProvider(upstream, 0.2);
+        provider.chat(request("x").noCache());
+        provider.chat(request("x").noCache());
+        assertEquals(2, upstream.calls.get());
+        assertEquals(0, provider.coalesced());
+    }
+
+    @Test
+    void requestsHotterThanTheCacheCeilingAreNotShared() throws Exception {
+        var upstream = new GatedProvider();
+        var provider = new CoalescingProvider(upstream, 0.2);
+        var threads = new Thread[2];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = Thread.startVirtualThread(() -> provider.chat(request("same", 0.7)));
+        }
+        while (upstream.calls.get() < 2) Thread.sleep(1);
+        upstream.gate.countDown();
+        for (var t : threads) t.join();
+        assertEquals(0, provider.coalesced());
+    }
+}
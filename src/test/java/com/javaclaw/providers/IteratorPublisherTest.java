@@ -0,0 +1,141 @@
+package com.javaclaw.providers;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IteratorPublisherTest {
+
+    /** Counts pulls and records closing. */
+    private static final class CountingIterator implements Iterator<Integer>, Closeable {
+        final AtomicInteger pulled = new AtomicInteger();
+        final CountDownLatch closed = new CountDownLatch(1);
+        final int size;
+
+        CountingIterator(int size) { this.size = size; }
+
+        @Override public boolean hasNext() { return pulled.get() < size; }
+        @Override public Integer next() { return pulled.incrementAndGet(); }
+        @Override public void close() { closed.countDown(); }
+    }
+
+    private static final class Recorder implements Flow.Subscriber<Integer> {
+        final List<Integer> items = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile Flow.Subscription subscription;
+        volatile Throwable error;
+        volatile boolean completed;
+
+        @Override public void onSubscribe(Flow.Subscription s) { subscription = s; }
+        @Override public synchronized void onNext(Integer item) { items.add(item); }
+        @Override public void onError(Throwable t) { error = t; done.countDown(); }
+        @Override public void onComplete() { completed = true; done.countDown(); }
+
+        synchronized int count() { return items.size(); }
+    }
+
+    @Test
+    void pullsOnlyWhatWasRequested() throws Exception {
+        var it = new CountingIterator(100);
+        var publisher = new IteratorPublisher<>(() -> CompletableFuture.completedFuture(it));
+        var sub = new Recorder();
+        publisher.subscribe(sub);
+
+        sub.subscription.request(3);
+        while (sub.count() < 3) Thread.sleep(1);
+        Thread.sleep(50);
+        assertEquals(3, it.pulled.get());
+
+        sub.subscription.request(Long.MAX_VALUE);
+        assertTrue(sub.done.await(2, TimeUnit.SECONDS));
+        assertTrue(sub.completed);
+        assertEquals(100, sub.count());
+        assertTrue(it.closed.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void cancelStopsAndClosesUpstream() throws Exception {
+        var it = new CountingIterator(100);
+        var publisher = new IteratorPublisher<>(() -> CompletableFuture.completedFuture(it));
+        var sub = new Recorder();
+        publisher.subscribe(sub);
+        sub.subscription.request(1);
+        while (sub.count() < 1) Thread.sleep(1);
+
+        sub.subscription.cancel();
+        assertTrue(it.closed.await(1, TimeUnit.SECONDS));
+        sub.subscription.request(10);
+        Thread.sleep(50);
+        assertEquals(1, sub.count());
+        assertFalse(sub.completed);
+    }
+
+    @Test
+    void cancelBeforeOpenCompletesCancelsTheOpen() throws Exception {
+        var opening = new CompletableFuture<Iterator<Integer>>();
+        var publisher = new IteratorPublisher<>(() -> opening);
+        var sub = new Recorder();
+        publisher.subscribe(sub);
+        sub.subscription.request(1);
+        sub.subscription.cancel();
+        assertTrue(opening.isCancelled());
+        assertNull(sub.error);
+    }
+
+    @Test
+    void openFailureIsSignalledUnwrapped() throws Exception {
+        var publisher = new IteratorPublisher<Integer>(
+                () -> CompletableFuture.failedFuture(new IllegalStateException("503 unavailable")));
+        var sub = new Recorder();
+        publisher.subscribe(sub);
+        sub.subscription.request(1);
+        assertTrue(sub.done.await(1, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, sub.error);
+    }
+
+    @Test
+    void nonPositiveRequestIsAnError() throws Exception {
+        var publisher = new IteratorPublisher<>(() -> CompletableFuture.completedFuture(new CountingIterator(1)));
+        var sub = new Recorder();
+        publisher.subscribe(sub);
+        sub.subscription.request(0);
+        assertTrue(sub.done.await(1, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalArgumentException.class, sub.error);
+    }
+
+    @Test
+    void defaultAsyncMethodsWrapBlockingProvider() throws Exception {
+        var provider = new ModelProvider() {
+            @Override public String id() { return "p"; }
+            @Override public ChatResponse chat(ChatRequest r) {
+                return new ChatResponse("m", "ok", java.util.Map.of(), List.of());
+            }
+            @Override public Iterator<ChatEvent> chatStream(ChatRequest r) {
+                return List.of(ChatEvent.text("a"), ChatEvent.text("b")).iterator();
+            }
+        };
+        var req = new ChatRequest("m", List.of(), 0.0);
+        assertEquals("ok", provider.chatAsync(req).get(1, TimeUnit.SECONDS).content());
+
+        var deltas = new ArrayList<String>();
+        var done = new CountDownLatch(1);
+        provider.chatPublisher(req).subscribe(new Flow.Subscriber<>() {
+            @Override public void onSubscribe(Flow.Subscription s) { s.request(Long.MAX_VALUE); }
+            @Override public void onNext(ChatEvent e) { deltas.add(e.delta()); }
+            @Override public void onError(Throwable t) { done.countDown(); }
+            @Override public void onComplete() { done.countDown(); }
+        });
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        assertEquals(List.of("a", "b"), deltas);
+    }
+}
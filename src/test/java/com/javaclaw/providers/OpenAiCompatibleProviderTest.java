@@ -0,0 +1,117 @@
+package com.javaclaw.providers;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OpenAiCompatibleProviderTest {
+
+    private HttpServer server;
+    private volatile int status = 200;
+    private volatile String lastBody;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/chat/completions", exchange -> {
+            var body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            lastBody = body;
+            byte[] out;
+            if (status != 200) {
+                out = "{\"error\":\"overloaded\"}".getBytes(StandardCharsets.UTF_8);
+            } else if (body.contains("\"stream\":true")) {
+                exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+                out = ("data: {\"model\":\"m\",\"choices\":[{\"delta\":{\"content\":\"Hel\"}}]}\n\n"
+                        + "data: {\"choices\":[{\"delta\":{\"content\":\"lo\"}}]}\n\n"
+                        + "data: [DONE]\n\n").getBytes(StandardCharsets.UTF_8);
+            } else {
+                out = ("{\"model\":\"m\",\"choices\":[{\"message\":{\"content\":\"Hello\"}}],"
+                        + "\"usage\":{\"prompt_tokens\":3,\"completion_tokens\":1}}").getBytes(StandardCharsets.UTF_8);
+            }
+            exchange.sendResponseHeaders(status, out.length);
+            exchange.getResponseBody().write(out);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+    }
+
+    private OpenAiProvider provider() {
+        return new OpenAiProvider("key", "http://127.0.0.1:" + server.getAddress().getPort() + "/v1", "m");
+    }
+
+    private static ChatRequest request() {
+        return new ChatRequest("m", List.of(Map.of("role", "user", "content", "hi")), 0.0);
+    }
+
+    @Test
+    void splicesPrecompiledToolsVerbatim() {
+        var def = "{\"type\":\"function\",\"function\":{\"name\":\"echo\",\"parameters\":{\"type\":\"object\"}}}";
+        var tools = PrecompiledTools.of(List.of(def));
+        provider().chat(new ChatRequest("m", List.of(Map.of("role", "user", "content", "hi")), 0.0, tools));
+        assertTrue(lastBody.contains("\"tools\":[" + def + "]"), lastBody);
+    }
+
+    @Test
+    void chatAsyncCompletesWithParsedResponse() throws Exception {
+        var resp = provider().chatAsync(request()).get(5, TimeUnit.SECONDS);
+        assertEquals("Hello", resp.content());
+        assertEquals(3, resp.usage().get("promptTokens"));
+    }
+
+    @Test
+    void chatAsyncFailsOnErrorStatus() {
+        status = 503;
+        var ex = assertThrows(ExecutionException.class, () -> provider().chatAsync(request()).get(5, TimeUnit.SECONDS));
+        assertTrue(ex.getCause().getMessage().contains("503"));
+    }
+
+    @Test
+    void publisherDeliversDeltasAndDoneEvent() throws Exception {
+        var events = new ArrayList<ChatEvent>();
+        var done = new CountDownLatch(1);
+        var error = new Throwable[1];
+        provider().chatPublisher(request()).subscribe(new Flow.Subscriber<>() {
+            Flow.Subscription s;
+            @Override public void onSubscribe(Flow.Subscription s) { this.s = s; s.request(1); }
+            @Override public void onNext(ChatEvent e) { events.add(e); s.request(1); }
+            @Override public void onError(Throwable t) { error[0] = t; done.countDown(); }
+            @Override public void onComplete() { done.countDown(); }
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertNull(error[0]);
+        assertEquals(3, events.size());
+        assertEquals("Hel", events.get(0).delta());
+        assertEquals("Hello", events.get(2).response().content());
+    }
+
+    @Test
+    void routerForwardsAsyncCallsAndRecordsOutcome() throws Exception {
+        var router = new ProviderRouter();
+        router.register(provider());
+        assertEquals("Hello", router.chatAsync(request()).join().content());
+        assertEquals(1, router.stats().get("openai").successes());
+
+        status = 500;
+        assertThrows(CompletionException.class, () -> router.chatAsync(request()).join());
+        assertEquals(2, router.stats().get("openai").calls());
+    }
+}
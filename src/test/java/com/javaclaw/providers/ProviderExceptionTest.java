@@ -0,0 +1,73 @@
+package com.javaclaw.providers;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.http.HttpHeaders;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProviderExceptionTest {
+
+    private static HttpHeaders headers(String... kv) {
+        var map = new HashMap<String, List<String>>();
+        for (int i = 0; i < kv.length; i += 2) map.put(kv[i], List.of(kv[i + 1]));
+        return HttpHeaders.of(map, (k, v) -> true);
+    }
+
+    @Test
+    void classifiesByStatusNotBodyText() {
+        var limited = ProviderException.fromResponse("p", 429, headers(), "slow down");
+        assertInstanceOf(RateLimitedException.class, limited);
+        assertTrue(limited.retryable());
+
+        var unavailable = ProviderException.fromResponse("p", 503, headers(), "overloaded");
+        assertInstanceOf(ProviderUnavailableException.class, unavailable);
+        assertTrue(unavailable.retryable());
+        assertTrue(ProviderException.fromResponse("p", 408, headers(), "").retryable());
+
+        // A body mentioning 503 must not make a 400 retryable.
+        var client = ProviderException.fromResponse("p", 400, headers(), "max_tokens must be < 503");
+        assertInstanceOf(ProviderClientException.class, client);
+        assertFalse(client.retryable());
+        assertEquals(400, client.statusCode());
+        assertFalse(ProviderException.fromResponse("p", 501, headers(), "").retryable());
+    }
+
+    @Test
+    void transportFailuresAreRetryableWithoutStatus() {
+        var e = ProviderException.transport("p", new IOException("connection reset"));
+        assertEquals(0, e.statusCode());
+        assertTrue(e.retryable());
+        assertInstanceOf(IOException.class, e.getCause());
+    }
+
+    @Test
+    void parsesRetryAfterHeaders() {
+        var now = Instant.parse("2026-01-01T00:00:00Z");
+        var clock = Clock.fixed(now, ZoneOffset.UTC);
+
+        assertEquals(3_000, ProviderException.fromResponse("p", 429, headers("Retry-After", "3"), "")
+                .retryAfterMs(clock));
+        assertEquals(1_500, ProviderException.fromResponse("p", 429,
+                headers("retry-after-ms", "1500", "retry-after", "2"), "").retryAfterMs(clock));
+        assertEquals(20_000, ProviderException.fromResponse("p", 503,
+                headers("Retry-After", "Thu, 01 Jan 2026 00:00:20 GMT"), "").retryAfterMs(clock));
+        assertEquals(0, ProviderException.fromResponse("p", 503,
+                headers("Retry-After", "soon"), "").retryAfterMs(clock));
+        assertEquals(0, new RateLimitedException("p", Map.of(), "429").retryAfterMs(clock));
+    }
+
+    @Test
+    void headerLookupIsCaseInsensitive() {
+        var e = new RateLimitedException("p", Map.of("X-RateLimit-Remaining", List.of("0")), "429");
+        assertEquals("0", e.header("x-ratelimit-remaining").orElseThrow());
+        assertTrue(e.header("missing").isEmpty());
+    }
+}
@@ -0,0 +1,102 @@
+package com.javaclaw.providers;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProviderRouterTest {
+
+    private static ModelProvider provider(String id) {
+        return new ModelProvider() {
+            @Override public String id() { return id; }
+            @Override public ChatResponse chat(ChatRequest r) {
+                return new ChatResponse(r.model(), "ok from " + id, Map.of(), List.of());
+            }
+            @Override public Iterator<ChatEvent> chatStream(ChatRequest r) { return null; }
+        };
+    }
+
+    private static List<String> ids(List<ModelProvider> ranked) {
+        return ranked.stream().map(ModelProvider::id).toList();
+    }
+
+    private static ProviderRouter router(ProviderRouter.Policy policy, String... ids) {
+        var router = new ProviderRouter();
+        for (var id : ids) router.register(provider(id));
+        router.setPolicy(policy);
+        return router;
+    }
+
+    @Test
+    void primaryPolicyKeepsPrimaryFirst() {
+        var router = router(ProviderRouter.Policy.PRIMARY, "a", "b", "c");
+        router.setPrimary("b");
+        assertEquals(List.of("b", "a", "c"), ids(router.route()));
+        assertEquals("ok from b", router.chat(new ChatRequest("m", List.of(), 0.0)).content());
+    }
+
+    @Test
+    void fastestPrefersLowestLatencyAndPenalisesErrors() {
+        var router = router(ProviderRouter.Policy.FASTEST, "a", "b", "c");
+        router.recordSuccess("a", "m", 900);
+        router.recordSuccess("b", "m", 300);
+        router.recordSuccess("c", "m", 200);
+        assertEquals(List.of("c", "b", "a"), ids(router.route()));
+
+        router.recordFailure("c");
+        router.recordFailure("c");
+        assertEquals("b", router.route().get(0).id());
+    }
+
+    @Test
+    void unmeasuredProvidersAreTriedFirstAndFailingOnesLast() {
+        var router = router(ProviderRouter.Policy.FASTEST, "a", "b", "c");
+        router.recordSuccess("a", "m", 100);
+        router.recordFailure("b");
+        assertEquals(List.of("c", "a", "b"), ids(router.route()));
+    }
+
+    @Test
+    void cheapestPicksLowestPriceWithinSlo() {
+        var router = router(ProviderRouter.Policy.CHEAPEST, "paid", "local", "slow");
+        router.setLatencySloMs(5_000);
+        router.recordSuccess("paid", "deepseek-chat", 800);
+        router.recordSuccess("local", "qwen3:4b", 2_000);
+        router.recordSuccess("slow", "qwen3:4b", 20_000);
+        assertEquals(List.of("local", "paid", "slow"), ids(router.route()));
+        assertEquals(0.21, router.stats().get("paid").pricePerMillion(), 1e-9);
+    }
+
+    @Test
+    void cheapestFallsBackToFastestWhenNothingMeetsSlo() {
+        var router = router(ProviderRouter.Policy.CHEAPEST, "a", "b");
+        router.setLatencySloMs(100);
+        router.recordSuccess("a", "qwen3:4b", 3_000);
+        router.recordSuccess("b", "deepseek-chat", 1_000);
+        assertEquals(List.of("b", "a"), ids(router.route()));
+    }
+
+    @Test
+    void weightedRoundRobinSpreadsByWeight() {
+        var router = router(ProviderRouter.Policy.WEIGHTED_ROUND_ROBIN, "a", "b");
+        router.setWeight("a", 3);
+        router.setWeight("b", 1);
+        var counts = new HashMap<String, Integer>();
+        for (int i = 0; i < 8; i++) counts.merge(router.route().get(0).id(), 1, Integer::sum);
+        assertEquals(6, counts.get("a"));
+        assertEquals(2, counts.get("b"));
+    }
+
+    @Test
+    void policyParsesConfigNames() {
+        assertEquals(ProviderRouter.Policy.WEIGHTED_ROUND_ROBIN, ProviderRouter.Policy.parse("weighted"));
+        assertEquals(ProviderRouter.Policy.CHEAPEST, ProviderRouter.Policy.parse("Cheapest"));
+        assertEquals(ProviderRouter.Policy.WEIGHTED_ROUND_ROBIN,
+                ProviderRouter.Policy.parse("weighted-round-robin"));
+    }
+}
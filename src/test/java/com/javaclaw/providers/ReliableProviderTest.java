@@ -1,11 +1,20 @@
 package com.javaclaw.providers;
 
+import com.javaclaw.observability.MetricsConfig;
+import com.javaclaw.shared.config.CircuitBreakerConfig;
+import com.javaclaw.shared.config.HedgingConfig;
+import com.javaclaw.shared.config.LlmCacheConfig;
 import org.junit.jupiter.api.Test;
 
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -28,16 +37,46 @@ class ReliableProviderTest {
         @Override
         public ChatResponse chat(ChatRequest request) {
             int attempt = calls.incrementAndGet();
-            if (attempt <= failUntil) throw new RuntimeException(error);
+            // Errors here are written "<status> <reason>".
+            if (attempt <= failUntil) {
+                throw ProviderException.fromResponse(name, Integer.parseInt(error.substring(0, 3)), null, error);
+            }
             return new ChatResponse(request.model(), "ok from " + name, Map.of(), List.of());
         }
 
         @Override
         public Iterator<ChatEvent> chatStream(ChatRequest request) {
+            calls.incrementAndGet();
             return List.of(new ChatEvent("stream", true)).iterator();
         }
     }
 
+    static class SlowProvider extends MockProvider {
+        final long delayMs;
+        final CountDownLatch interrupted = new CountDownLatch(1);
+
+        SlowProvider(String name, long delayMs) {
+            super(name, 0, "");
+            this.delayMs = delayMs;
+        }
+
+        @Override
+        public ChatResponse chat(ChatRequest request) {
+            calls.incrementAndGet();
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw new RuntimeException("cancelled", e);
+            }
+            return new ChatResponse(request.model(), "ok from " + name, Map.of(), List.of());
+        }
+    }
+
+    private static HedgingConfig hedgeAfter(long delayMs) {
+        return new HedgingConfig(true, 0.95, delayMs, delayMs);
+    }
+
     private ChatRequest req(String model) {
         return new ChatRequest(model, List.of(), 0.0);
     }
@@ -90,7 +129,7 @@ class ReliableProviderTest {
         var p = new ModelProvider() {
             @Override public String id() { return "p"; }
             @Override public ChatResponse chat(ChatRequest r) {
-                if ("model-a".equals(r.model())) throw new RuntimeException("500 unavailable");
+                if ("model-a".equals(r.model())) throw new ProviderUnavailableException("p", 500, Map.of(), "500 unavailable");
                 return new ChatResponse(r.model(), "ok", Map.of(), List.of());
             }
             @Override public Iterator<ChatEvent> chatStream(ChatRequest r) { return null; }
@@ -114,4 +153,164 @@ class ReliableProviderTest {
         // p1 should be called only once (non-retryable skips retries)
         assertEquals(1, p1.calls.get());
     }
+
+    @Test
+    void streamFallsBackWhenFirstProviderFailsBeforeFirstEvent() {
+        var p1 = new MockProvider("p1", 0, "") {
+            @Override public Iterator<ChatEvent> chatStream(ChatRequest r) {
+                calls.incrementAndGet();
+                throw new ProviderUnavailableException("p", 503, Map.of(), "503 unavailable");
+            }
+        };
+        var p2 = new MockProvider("p2", 0, "");
+        var reliable = new ReliableProvider(List.of(p1, p2), 0, 1);
+
+        var it = reliable.chatStream(req("m"));
+        assertTrue(it.hasNext());
+        assertEquals("stream", it.next().delta());
+        assertFalse(it.hasNext());
+        assertEquals(1, p1.calls.get());
+    }
+
+    @Test
+    void streamFailureAfterFirstEventIsNotRetried() {
+        var p1 = new MockProvider("p1", 0, "") {
+            @Override public Iterator<ChatEvent> chatStream(ChatRequest r) {
+                calls.incrementAndGet();
+                return new Iterator<>() {
+                    int i = 0;
+                    @Override public boolean hasNext() {
+                        if (i >= 1) throw new RuntimeException("connection reset");
+                        return true;
+                    }
+                    @Override public ChatEvent next() { i++; return ChatEvent.text("Hel"); }
+                };
+            }
+        };
+        var p2 = new MockProvider("p2", 0, "");
+        var reliable = new ReliableProvider(List.of(p1, p2), 3, 1);
+
+        var it = reliable.chatStream(req("m"));
+        assertEquals("Hel", it.next().delta());
+        var ex = assertThrows(StreamInterruptedException.class, it::hasNext);
+        assertEquals("p1", ex.providerId());
+        assertEquals(1, ex.eventsEmitted());
+        assertEquals(1, p1.calls.get());
+        assertEquals(0, p2.calls.get());
+    }
+
+    @Test
+    void cancellingAStreamSubscriptionClosesTheProviderStream() throws Exception {
+        var closed = new AtomicBoolean();
+        var p1 = new MockProvider("p1", 0, "") {
+            @Override public Iterator<ChatEvent> chatStream(ChatRequest r) {
+                calls.incrementAndGet();
+                return new AdmissionControllerTest.CloseableEvents(closed,
+                        ChatEvent.text("a"), ChatEvent.text("b"), ChatEvent.text("c"));
+            }
+        };
+        var reliable = new CachingProvider(new ReliableProvider(List.of(p1), 0, 1),
+                new LlmCacheConfig(true, 10, 60, 0.2, null), new MetricsConfig());
+
+        var received = new CountDownLatch(1);
+        var subscription = new AtomicReference<Flow.Subscription>();
+        reliable.chatPublisher(req("m")).subscribe(new Flow.Subscriber<>() {
+            @Override public void onSubscribe(Flow.Subscription s) { subscription.set(s); s.request(1); }
+            @Override public void onNext(ChatEvent e) { received.countDown(); }
+            @Override public void onError(Throwable t) {}
+            @Override public void onComplete() {}
+        });
+        assertTrue(received.await(1, TimeUnit.SECONDS));
+
+        subscription.get().cancel();
+        assertTrue(closed.get());
+    }
+
+    @Test
+    void hedgesSlowPrimaryAndCancelsLoser() throws Exception {
+        var p1 = new SlowProvider("p1", 5_000);
+        var p2 = new MockProvider("p2", 0, "");
+        var reliable = new ReliableProvider(List.of(p1, p2), 0, 1, Map.of(), hedgeAfter(20));
+
+        var resp = reliable.chat(req("m"));
+        assertEquals("ok from p2", resp.content());
+        assertTrue(p1.interrupted.await(2, TimeUnit.SECONDS), "losing call should be cancelled");
+        assertEquals(new ReliableProvider.HedgeStats(1, 1), reliable.hedgeStats().get("p2"));
+        assertEquals(new ReliableProvider.HedgeStats(0, 0), reliable.hedgeStats().get("p1"));
+    }
+
+    @Test
+    void fastPrimaryIsNotHedged() {
+        var p1 = new MockProvider("p1", 0, "");
+        var p2 = new MockProvider("p2", 0, "");
+        var reliable = new ReliableProvider(List.of(p1, p2), 0, 1, Map.of(), hedgeAfter(1_000));
+
+        assertEquals("ok from p1", reliable.chat(req("m")).content());
+        assertEquals(0, p2.calls.get());
+        assertEquals(0, reliable.hedgeStats().get("p2").hedged());
+    }
+
+    @Test
+    void primaryCanStillWinHedgedRace() {
+        var p1 = new SlowProvider("p1", 100);
+        var p2 = new SlowProvider("p2", 5_000);
+        var reliable = new ReliableProvider(List.of(p1, p2), 0, 1, Map.of(), hedgeAfter(20));
+
+        assertEquals("ok from p1", reliable.chat(req("m")).content());
+        assertEquals(new ReliableProvider.HedgeStats(1, 0), reliable.hedgeStats().get("p2"));
+        assertEquals(1, reliable.hedgeStats().get("p1").won());
+    }
+
+    @Test
+    void hedgedPairFailingFallsThroughToNextProvider() {
+        var p1 = new MockProvider("p1", Integer.MAX_VALUE, "500 down") {
+            @Override public ChatResponse chat(ChatRequest r) {
+                try { Thread.sleep(50); } catch (InterruptedException ignored) {}
+                return super.chat(r);
+            }
+        };
+        var p2 = new MockProvider("p2", Integer.MAX_VALUE, "502 down");
+        var p3 = new MockProvider("p3", 0, "");
+        var reliable = new ReliableProvider(List.of(p1, p2, p3), 0, 1, Map.of(), hedgeAfter(10));
+
+        assertEquals("ok from p3", reliable.chat(req("m")).content());
+        assertEquals(1, p1.calls.get());
+        assertEquals(1, p2.calls.get());
+    }
+
+    @Test
+    void openCircuitSkipsProviderWithoutCallingIt() {
+        var p1 = new MockProvider("p1", Integer.MAX_VALUE, "503 unavailable");
+        var p2 = new MockProvider("p2", 0, "");
+        var breakers = new CircuitBreakerRegistry(
+                new CircuitBreakerConfig(true, 4, 2, 0.5, 60_000, 1.0, 60, 1));
+        var reliable = new ReliableProvider(List.of(p1, p2), 3, 1, Map.of(),
+                HedgingConfig.defaults(), breakers);
+
+        assertEquals("ok from p2", reliable.chat(req("m")).content());
+        assertEquals(2, p1.calls.get(), "breaker opens mid-retry and stops further attempts");
+
+        assertEquals("ok from p2", reliable.chat(req("m")).content());
+        assertEquals(2, p1.calls.get());
+        assertEquals(CircuitBreaker.State.OPEN, breakers.snapshot().get("p1/m").state());
+    }
+
+    @Test
+    void routerOrdersProvidersAndLearnsFromAttempts() {
+        var p1 = new MockProvider("p1", Integer.MAX_VALUE, "503 unavailable");
+        var p2 = new MockProvider("p2", 0, "");
+        var router = new ProviderRouter();
+        router.register(p1);
+        router.register(p2);
+        router.setPolicy(ProviderRouter.Policy.FASTEST);
+        var reliable = new ReliableProvider(List.of(p1, p2), 0, 1);
+        reliable.setRouter(router);
+
+        assertEquals("ok from p2", reliable.chat(req("m")).content());
+        assertEquals(1, p1.calls.get());
+        assertEquals(0, router.stats().get("p1").successes());
+
+        assertEquals("ok from p2", reliable.chat(req("m")).content());
+        assertEquals(1, p1.calls.get(), "failing provider is ranked last");
+    }
 }
@@ -2,6 +2,9 @@ package com.javaclaw.providers;
 
 import org.junit.jupiter.api.Test;
 
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -52,4 +55,73 @@ class ResilientCallTest {
         // 退避：500ms + 1000ms = 1500ms 最小
         assertTrue(elapsed >= 1400, "Expected >= 1400ms backoff, got " + elapsed + "ms");
     }
+
+    @Test
+    void doesNotRetryClientErrors() {
+        var attempts = new AtomicInteger(0);
+        var ex = assertThrows(RuntimeException.class, () ->
+            ResilientCall.execute(() -> {
+                attempts.incrementAndGet();
+                throw new ProviderClientException("p", 400, Map.of(), "p API error 400: limit is 503 tokens");
+            }, 2, 10)
+        );
+        assertEquals(1, attempts.get());
+        assertEquals(400, ResilientCall.statusCode(ex));
+    }
+
+    @Test
+    void honoursRetryAfterOverBackoff() {
+        var attempts = new AtomicInteger(0);
+        long start = System.currentTimeMillis();
+        var result = ResilientCall.execute(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new RateLimitedException("p", Map.of("retry-after-ms", List.of("300")), "429");
+            }
+            return "ok";
+        }, 2, 10);
+        assertEquals("ok", result);
+        assertTrue(System.currentTimeMillis() - start >= 290, "waits for Retry-After, not the 10ms backoff");
+    }
+
+    @Test
+    void givesUpWhenTheBackoffWouldOutliveTheDeadline() {
+        var attempts = new AtomicInteger(0);
+        long start = System.currentTimeMillis();
+        var ex = assertThrows(DeadlineExceededException.class, () ->
+            ResilientCall.execute(() -> {
+                attempts.incrementAndGet();
+                throw new ProviderUnavailableException("p", 503, Map.of(), "503");
+            }, 3, 500, RetryBudget.unlimited(), Instant.now().plusMillis(200))
+        );
+        assertEquals(1, attempts.get());
+        assertEquals("p", ex.providerId());
+        assertTrue(System.currentTimeMillis() - start < 400, "does not sleep into the deadline");
+    }
+
+    @Test
+    void retryBudgetStopsRetriesDuringAnOutage() {
+        var budget = new RetryBudget(4, 0.5);
+        var attempts = new AtomicInteger(0);
+        var ex = assertThrows(RuntimeException.class, () ->
+            ResilientCall.execute(() -> {
+                attempts.incrementAndGet();
+                throw new ProviderUnavailableException("p", 503, Map.of(), "503");
+            }, 5, 1, budget)
+        );
+        // 4 -> 3 -> 2 tokens: the retry at 2 (not above half) is refused.
+        assertEquals(2, attempts.get());
+        assertEquals("Retry budget exhausted", ex.getMessage());
+        assertEquals(1, budget.denied());
+
+        // Successes earn tokens back until retries are allowed again.
+        for (int i = 0; i < 4; i++) ResilientCall.execute(() -> "ok", 0, 1, budget);
+        assertEquals(4.0, budget.tokens(), 1e-9);
+    }
+
+    @Test
+    void unlimitedBudgetNeverDenies() {
+        var budget = RetryBudget.unlimited();
+        for (int i = 0; i < 100; i++) budget.onFailure();
+        assertTrue(budget.tryRetry());
+    }
 }
@@ -0,0 +1,164 @@
+package com.javaclaw.providers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SseEventIteratorTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static SseEventIterator iterator(String sse) {
+        return new SseEventIterator(
+                new ByteArrayInputStream(sse.getBytes(StandardCharsets.UTF_8)), MAPPER.getFactory());
+    }
+
+    @Test
+    void emitsTextDeltasThenAssembledResponse() {
+        var sse = """
+                data: {"model":"m1","choices":[{"delta":{"role":"assistant","content":""}}]}
+
+                data: {"choices":[{"delta":{"content":"Hel"}}]}
+
+                data: {"choices":[{"delta":{"content":"lo"}}]}
+
+                data: {"choices":[],"usage":{"prompt_tokens":7,"completion_tokens":2}}
+
+                data: [DONE]
+                """;
+        var events = new ArrayList<ChatEvent>();
+        iterator(sse).forEachRemaining(events::add);
+
+        assertEquals(3, events.size());
+        assertEquals("Hel", events.get(0).delta());
+        assertEquals("lo", events.get(1).delta());
+        var last = events.get(2);
+        assertTrue(last.done());
+        assertEquals("Hello", last.response().content());
+        assertEquals("m1", last.response().model());
+        assertEquals(7, last.response().usage().get("promptTokens"));
+        assertEquals(2, last.response().usage().get("completionTokens"));
+    }
+
+    @Test
+    void emitsToolCallFragmentsAndAssemblesArguments() {
+        var sse = """
+                data: {"choices":[{"delta":{"tool_calls":[{"index":0,"id":"call_1","function":{"name":"shell","arguments":""}}]}}]}
+                data: {"choices":[{"delta":{"tool_calls":[{"index":0,"function":{"arguments":"{\\"command\\":"}}]}}]}
+                data: {"choices":[{"delta":{"tool_calls":[{"index":0,"function":{"arguments":"\\"ls\\"}"}}]}}]}
+                data: [DONE]
+                """;
+        var events = new ArrayList<ChatEvent>();
+        iterator(sse).forEachRemaining(events::add);
+
+        assertEquals(4, events.size());
+        var first = events.get(0).toolCall();
+        assertEquals("call_1", first.id());
+        assertEquals("shell", first.name());
+        assertEquals("{\"command\":", events.get(1).toolCall().argumentsDelta());
+        assertNull(events.get(1).toolCall().id());
+
+        var resp = events.get(3).response();
+        assertTrue(resp.hasToolCalls());
+        assertEquals("{\"command\":\"ls\"}", resp.toolCalls().get(0).arguments());
+    }
+
+    @Test
+    void endOfStreamWithoutDoneMarkerStillTerminates() {
+        var resp = iterator("data: {\"choices\":[{\"delta\":{\"content\":\"x\"}}]}\n").drain();
+        assertEquals("x", resp.content());
+    }
+
+    @Test
+    void malformedChunkSurfacesAsException() {
+        var it = iterator("data: {not json}\n");
+        assertThrows(RuntimeException.class, it::hasNext);
+        assertFalse(it.hasNext());
+    }
+
+    @Test
+    void handlesCrlfLinesAndSkipsUnknownFields() {
+        var sse = "event: message\r\n"
+                + "data: {\"id\":\"x\",\"extra\":{\"nested\":[1,{\"content\":\"no\"}]},"
+                + "\"choices\":[{\"index\":0,\"delta\":{\"content\":\"你好\"},\"logprobs\":null}]}\r\n\r\n"
+                + "data: [DONE]\r\n";
+        var resp = iterator(sse).drain();
+        assertEquals("你好", resp.content());
+    }
+
+    @Test
+    void parsesNonStreamedJsonBody() {
+        var json = """
+                {"id":"c1","model":"m2","choices":[{"index":0,"message":{"role":"assistant","content":null,
+                  "tool_calls":[{"id":"call_9","type":"function","function":{"name":"git","arguments":"{}"}}]}}],
+                 "usage":{"prompt_tokens":11,"completion_tokens":4,"total_tokens":15}}
+                """;
+        var resp = iterator(json).drain();
+        assertEquals("m2", resp.model());
+        assertEquals("", resp.content());
+        assertEquals(11, resp.usage().get("promptTokens"));
+        assertEquals("call_9", resp.toolCalls().get(0).id());
+        assertEquals("git", resp.toolCalls().get(0).name());
+        assertEquals("{}", resp.toolCalls().get(0).arguments());
+    }
+
+    @Test
+    void keepsToolCallsWithoutIdsUnderSynthesisedIds() {
+        var json = """
+                {"model":"llama","choices":[{"message":{"role":"assistant","content":"",
+                  "tool_calls":[{"function":{"name":"git","arguments":"{}"}},
+                                {"function":{"name":"shell","arguments":"{\\"command\\":\\"ls\\"}"}}]}}]}
+                """;
+        var resp = iterator(json).drain();
+        assertEquals(2, resp.toolCalls().size());
+        assertEquals("call_0", resp.toolCalls().get(0).id());
+        assertEquals("git", resp.toolCalls().get(0).name());
+        assertEquals("call_1", resp.toolCalls().get(1).id());
+        assertEquals("{\"command\":\"ls\"}", resp.toolCalls().get(1).arguments());
+
+        var sse = """
+                data: {"choices":[{"delta":{"tool_calls":[{"index":0,"function":{"name":"shell","arguments":"{"}}]}}]}
+                data: {"choices":[{"delta":{"tool_calls":[{"index":0,"function":{"arguments":"}"}}]}}]}
+                data: [DONE]
+                """;
+        var streamed = iterator(sse).drain();
+        assertEquals(1, streamed.toolCalls().size());
+        assertEquals("call_0", streamed.toolCalls().get(0).id());
+        assertEquals("{}", streamed.toolCalls().get(0).arguments());
+    }
+
+    @Test
+    void parsesOpenAiCachedTokens() {
+        var json = """
+                {"choices":[{"message":{"content":"ok"}}],
+                 "usage":{"prompt_tokens":2000,"completion_tokens":5,"prompt_tokens_details":{"cached_tokens":1536}}}
+                """;
+        var resp = iterator(json).drain();
+        assertEquals(1536, resp.cachedTokens());
+        assertEquals(2000, resp.usage().get("promptTokens"));
+    }
+
+    @Test
+    void parsesDeepSeekCacheHitTokens() {
+        var json = """
+                {"choices":[{"message":{"content":"ok"}}],
+                 "usage":{"prompt_tokens":900,"completion_tokens":5,"prompt_cache_hit_tokens":640,"prompt_cache_miss_tokens":260}}
+                """;
+        assertEquals(640, iterator(json).drain().cachedTokens());
+    }
+
+    @Test
+    void cachedTokensDefaultToZero() {
+        var json = """
+                {"choices":[{"message":{"content":"ok"}}],"usage":{"prompt_tokens":9,"completion_tokens":1,"prompt_tokens_details":null}}
+                """;
+        var resp = iterator(json).drain();
+        assertEquals(0, resp.cachedTokens());
+        assertNull(resp.usage().get("cachedTokens"));
+    }
+}
@@ -0,0 +1,134 @@
+package com.javaclaw.providers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token-level {@link SseEventIterator} vs the previous split + readTree SSE parser on
+ * realistic completion streams (mixed Chinese/English text deltas, a trailing tool
+ * call, usage chunk). Not a test; run with
+ * {@code java -cp target/test-classes:<test classpath> com.javaclaw.providers.SseParserBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SseParserBenchmark {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Param({"2000", "20000"})
+    int chunks;
+
+    private String body;
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        var sb = new StringBuilder();
+        var words = new String[]{"The ", "quick ", "函数", "返回", "value ", "\\n", "```java", "} ", "测试"};
+        for (int i = 0; i < chunks; i++) {
+            sb.append("data: {\"id\":\"chatcmpl-9x\",\"object\":\"chat.completion.chunk\",\"created\":1718000000,")
+              .append("\"model\":\"deepseek-chat\",\"system_fingerprint\":\"fp_a1b2\",\"choices\":[{\"index\":0,")
+              .append("\"delta\":{\"content\":\"").append(words[i % words.length])
+              .append("\"},\"logprobs\":null,\"finish_reason\":null}]}\n\n");
+        }
+        sb.append("data: {\"choices\":[{\"index\":0,\"delta\":{\"tool_calls\":[{\"index\":0,\"id\":\"call_1\",")
+          .append("\"type\":\"function\",\"function\":{\"name\":\"shell\",\"arguments\":\"{\\\"command\\\":\\\"ls\\\"}\"}}]}}]}\n\n");
+        sb.append("data: {\"choices\":[],\"usage\":{\"prompt_tokens\":1200,\"completion_tokens\":")
+          .append(chunks).append("}}\n\n");
+        sb.append("data: [DONE]\n\n");
+        body = sb.toString();
+        bytes = body.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public ChatResponse tokenParser() {
+        return new SseEventIterator(new ByteArrayInputStream(bytes), MAPPER.getFactory()).drain();
+    }
+
+    @Benchmark
+    public ChatResponse legacyTreeParser() throws Exception {
+        return legacyParseSSE(body);
+    }
+
+    /** The split("\n") + readTree implementation this parser replaced, kept as the baseline. */
+    static ChatResponse legacyParseSSE(String sse) throws Exception {
+        var contentBuf = new StringBuilder();
+        String model = null;
+        Map<String, Integer> usage = Map.of("promptTokens", 0, "completionTokens", 0);
+        var toolCallMap = new LinkedHashMap<Integer, String[]>();
+        var toolCallArgs = new LinkedHashMap<Integer, StringBuilder>();
+
+        for (var line : sse.split("\n")) {
+            line = line.trim();
+            if (!line.startsWith("data:")) continue;
+            var data = line.substring(5).trim();
+            if ("[DONE]".equals(data)) break;
+
+            var node = MAPPER.readTree(data);
+            if (model == null) model = node.path("model").asText(null);
+
+            var u = node.path("usage");
+            if (!u.isMissingNode() && u.has("prompt_tokens")) {
+                usage = Map.of(
+                        "promptTokens", u.path("prompt_tokens").asInt(0),
+                        "completionTokens", u.path("completion_tokens").asInt(0));
+            }
+
+            var delta = node.path("choices").path(0).path("delta");
+            var c = delta.path("content").asText(null);
+            if (c != null) contentBuf.append(c);
+
+            var tcs = delta.path("tool_calls");
+            if (tcs.isArray()) {
+                for (var tc : tcs) {
+                    int idx = tc.path("index").asInt(0);
+                    var id = tc.path("id").asText(null);
+                    var fn = tc.path("function");
+                    var name = fn.path("name").asText(null);
+                    if (id != null && !toolCallMap.containsKey(idx)) {
+                        toolCallMap.put(idx, new String[]{id, name});
+                        toolCallArgs.put(idx, new StringBuilder());
+                    }
+                    var args = fn.path("arguments").asText(null);
+                    if (args != null && toolCallArgs.containsKey(idx)) {
+                        toolCallArgs.get(idx).append(args);
+                    }
+                }
+            }
+        }
+
+        var toolCalls = new ArrayList<ToolCallInfo>();
+        for (var entry : toolCallMap.entrySet()) {
+            var v = entry.getValue();
+            toolCalls.add(new ToolCallInfo(v[0], v[1], toolCallArgs.get(entry.getKey()).toString()));
+        }
+        return new ChatResponse(model, contentBuf.toString(), usage, toolCalls);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(SseParserBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,37 @@
+package com.javaclaw.shared.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeadlinesTest {
+
+    @Test
+    void noDeadlineLeavesTimeoutsAlone() {
+        assertFalse(Deadlines.expired(null));
+        assertEquals(30_000, Deadlines.clampMillis(null, 30_000));
+        assertEquals(Duration.ofSeconds(30), Deadlines.clamp(null, Duration.ofSeconds(30)));
+        assertEquals(60, Deadlines.clampSeconds(null, 60));
+    }
+
+    @Test
+    void shrinksTimeoutsToTheRemainingTime() {
+        var deadline = Instant.now().plusMillis(2_500);
+        assertTrue(Deadlines.clampMillis(deadline, 30_000) <= 2_500);
+        assertTrue(Deadlines.clamp(deadline, Duration.ofSeconds(30)).toMillis() <= 2_500);
+        assertEquals(3, Deadlines.clampSeconds(deadline, 60), "rounds partial seconds up");
+        assertEquals(1_000, Deadlines.clampMillis(deadline, 1_000), "shorter timeouts are kept");
+    }
+
+    @Test
+    void passedDeadlineLeavesTheMinimumTimeout() {
+        var deadline = Instant.now().minusSeconds(1);
+        assertTrue(Deadlines.expired(deadline));
+        assertEquals(0, Deadlines.remainingMillis(deadline));
+        assertEquals(1, Deadlines.clampMillis(deadline, 30_000));
+        assertEquals(1, Deadlines.clampSeconds(deadline, 60));
+    }
+}
@@ -0,0 +1,112 @@
+package com.javaclaw.shared.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MailboxExecutorTest {
+
+    @Test
+    void runsTasksForOneKeyInOrderAndOneAtATime() throws Exception {
+        var executor = new MailboxExecutor<String>("test");
+        var order = new ArrayList<Integer>();
+        var active = new AtomicInteger();
+        var maxActive = new AtomicInteger();
+        var done = new CountDownLatch(20);
+        for (int i = 0; i < 20; i++) {
+            int n = i;
+            executor.execute("s1", () -> {
+                maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                sleep(2);
+                synchronized (order) { order.add(n); }
+                active.decrementAndGet();
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, maxActive.get());
+        var expected = new ArrayList<Integer>();
+        for (int i = 0; i < 20; i++) expected.add(i);
+        assertEquals(expected, order);
+    }
+
+    @Test
+    void differentKeysRunInParallel() throws Exception {
+        var executor = new MailboxExecutor<String>("test");
+        var bothStarted = new CountDownLatch(2);
+        var done = new CountDownLatch(2);
+        for (var key : List.of("a", "b")) {
+            executor.execute(key, () -> {
+                bothStarted.countDown();
+                try {
+                    // Only returns if the other key's task is running at the same time.
+                    assertTrue(bothStarted.await(5, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void failingTaskDoesNotStallItsMailbox() throws Exception {
+        var executor = new MailboxExecutor<String>("test");
+        var ran = new CountDownLatch(1);
+        executor.execute("s1", () -> { throw new IllegalStateException("boom"); });
+        executor.execute("s1", ran::countDown);
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void evictsIdleMailboxesAndReportsDepthAndWait() throws Exception {
+        var executor = new MailboxExecutor<String>("test");
+        var gate = new CountDownLatch(1);
+        var done = new CountDownLatch(3);
+        executor.execute("s1", () -> {
+            await(gate);
+            done.countDown();
+        });
+        executor.execute("s1", done::countDown);
+        executor.execute("s1", done::countDown);
+
+        var busy = executor.stats();
+        assertEquals(1, busy.mailboxes());
+        assertTrue(busy.maxDepth() >= 2, "two turns waiting behind the first");
+
+        sleep(20);
+        gate.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 100 && executor.stats().mailboxes() > 0; i++) sleep(10);
+
+        var idle = executor.stats();
+        assertEquals(0, idle.mailboxes());
+        assertEquals(0, idle.queued());
+        assertEquals(3, idle.completed());
+        assertTrue(idle.maxWaitMs() >= 20, "queued turns waited for the first one");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
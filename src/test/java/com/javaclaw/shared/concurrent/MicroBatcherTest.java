@@ -0,0 +1,61 @@
+package com.javaclaw.shared.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MicroBatcherTest {
+
+    @Test
+    void mergesItemsArrivingWithinTheWindow() throws Exception {
+        var sizes = new ArrayList<Integer>();
+        var batcher = new MicroBatcher<Integer, Integer>(100, 50, items -> {
+            synchronized (sizes) { sizes.add(items.size()); }
+            return items.stream().map(i -> i * 2).toList();
+        });
+        var futures = new ArrayList<CompletableFuture<Integer>>();
+        for (int i = 0; i < 10; i++) futures.add(batcher.submit(i));
+
+        for (int i = 0; i < 10; i++) assertEquals(i * 2, futures.get(i).get(5, TimeUnit.SECONDS));
+        assertEquals(List.of(10), sizes);
+        assertEquals(1, batcher.batches());
+        assertEquals(10, batcher.items());
+    }
+
+    @Test
+    void fullBatchGoesOutWithoutWaitingForTheWindow() throws Exception {
+        var batcher = new MicroBatcher<String, String>(3, 60_000, items -> items);
+        var futures = List.of(batcher.submit("a"), batcher.submit("b"), batcher.submit("c"));
+        for (var f : futures) assertNotNull(f.get(5, TimeUnit.SECONDS));
+        var last = batcher.submit("d");
+        assertFalse(last.isDone(), "a lone item waits for the window");
+        assertEquals(1, batcher.batches());
+    }
+
+    @Test
+    void handlerFailureFailsTheWholeBatch() {
+        var batcher = new MicroBatcher<String, String>(2, 10, items -> {
+            throw new IllegalStateException("down");
+        });
+        var a = batcher.submit("a");
+        var b = batcher.submit("b");
+        var e = assertThrows(ExecutionException.class, () -> a.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        assertThrows(ExecutionException.class, () -> b.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void rejectsMismatchedResultCount() {
+        var batcher = new MicroBatcher<String, String>(2, 10, items -> List.of("only one"));
+        var a = batcher.submit("a");
+        batcher.submit("b");
+        var e = assertThrows(ExecutionException.class, () -> a.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+    }
+}
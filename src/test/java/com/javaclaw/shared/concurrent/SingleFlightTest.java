@@ -0,0 +1,84 @@
+package com.javaclaw.shared.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    @Test
+    void concurrentCallersShareOneLoad() throws Exception {
+        var flight = new SingleFlight<String, String>();
+        var loads = new AtomicInteger();
+        var release = new CountDownLatch(1);
+        var results = new ArrayList<String>();
+        var threads = new ArrayList<Thread>();
+        for (int i = 0; i < 5; i++) {
+            threads.add(Thread.startVirtualThread(() -> {
+                try {
+                    var r = flight.execute("k", () -> {
+                        loads.incrementAndGet();
+                        release.await();
+                        return "v";
+                    });
+                    synchronized (results) { results.add(r); }
+                } catch (InterruptedException ignored) {}
+            }));
+        }
+        while (flight.loads() + flight.coalesced() < 5) Thread.sleep(1);
+        release.countDown();
+        for (var t : threads) t.join();
+
+        assertEquals(1, loads.get());
+        assertEquals(4, flight.coalesced());
+        assertEquals(5, results.size());
+        assertEquals(0, flight.inFlight());
+    }
+
+    @Test
+    void failuresPropagateToAllWaitersAndAreNotRemembered() throws Exception {
+        var flight = new SingleFlight<String, String>();
+        var ex = assertThrows(IllegalStateException.class, () -> flight.execute("k", () -> {
+            throw new IllegalStateException("boom");
+        }));
+        assertEquals("boom", ex.getMessage());
+        assertEquals("ok", flight.execute("k", () -> "ok"));
+    }
+
+    @Test
+    void loadIsCancelledOnlyWhenLastWaiterLeaves() throws Exception {
+        var flight = new SingleFlight<String, String>();
+        var loadInterrupted = new CountDownLatch(1);
+        Runnable waiter = () -> {
+            try {
+                flight.execute("k", () -> {
+                    try {
+                        Thread.sleep(10_000);
+                    } catch (InterruptedException e) {
+                        loadInterrupted.countDown();
+                        throw e;
+                    }
+                    return "late";
+                });
+            } catch (InterruptedException ignored) {}
+        };
+        var a = Thread.startVirtualThread(waiter);
+        var b = Thread.startVirtualThread(waiter);
+        while (flight.loads() + flight.coalesced() < 2) Thread.sleep(1);
+
+        a.interrupt();
+        a.join();
+        assertFalse(loadInterrupted.await(100, TimeUnit.MILLISECONDS), "one waiter is still there");
+
+        b.interrupt();
+        b.join();
+        assertTrue(loadInterrupted.await(2, TimeUnit.SECONDS));
+        assertEquals(0, flight.inFlight());
+        assertEquals("fresh", flight.execute("k", () -> "fresh"));
+    }
+}
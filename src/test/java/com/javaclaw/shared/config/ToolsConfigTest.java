@@ -25,12 +25,16 @@ class ToolsConfigTest {
         assertEquals("duckduckgo", tools.webSearch().provider());
         assertFalse(tools.browser().enabled());
         assertTrue(tools.browser().allowedDomains().isEmpty());
+        assertEquals(4, tools.maxParallel());
+        assertTrue(tools.spill().enabled());
+        assertEquals(16_000, tools.spill().thresholdChars());
     }
 
     @Test
     void parsesFullConfig() throws IOException {
         var yaml = """
             tools:
+              max-parallel: 8
               http-request:
                 enabled: false
                 allowed-domains: ["example.com", "api.test.io"]
@@ -48,6 +52,12 @@ class ToolsConfigTest {
                 enabled: true
                 allowed-domains: ["docs.oracle.com"]
                 timeout: 45
+              spill:
+                enabled: false
+                threshold-chars: 4000
+                preview-chars: 500
+                path: /tmp/spill
+                retention-hours: 2
             """;
         var cfg = writeAndLoad(yaml);
         var tools = cfg.tools();
@@ -64,6 +74,8 @@ class ToolsConfigTest {
         assertTrue(tools.browser().enabled());
         assertTrue(tools.browser().allowedDomains().contains("docs.oracle.com"));
         assertEquals(45, tools.browser().timeoutSeconds());
+        assertEquals(8, tools.maxParallel());
+        assertEquals(new ToolsConfig.SpillConfig(false, 4000, 500, "/tmp/spill", 2), tools.spill());
     }
 
     @Test
@@ -0,0 +1,63 @@
+package com.javaclaw.shared.http;
+
+import com.javaclaw.shared.config.HttpConfig;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpClientRegistryTest {
+
+    @Test
+    void reusesOneClientPerRedirectPolicy() {
+        var registry = new HttpClientRegistry(HttpConfig.defaults());
+        assertSame(registry.client(), registry.client(HttpClient.Redirect.NEVER));
+        assertSame(registry.client(HttpClient.Redirect.NORMAL), registry.client(HttpClient.Redirect.NORMAL));
+        assertNotSame(registry.client(), registry.client(HttpClient.Redirect.NORMAL));
+        assertEquals(HttpClient.Version.HTTP_2, registry.client().version());
+    }
+
+    @Test
+    void keysClientsByConnectTimeout() {
+        var registry = new HttpClientRegistry(HttpConfig.defaults());
+        var tool = registry.client(HttpClient.Redirect.NEVER, Duration.ofSeconds(30));
+        assertSame(tool, registry.client(HttpClient.Redirect.NEVER, Duration.ofSeconds(30)));
+        assertSame(registry.client(), registry.client(HttpClient.Redirect.NEVER, Duration.ofSeconds(10)));
+        assertNotSame(registry.client(), tool);
+        assertEquals(Duration.ofSeconds(30), tool.connectTimeout().orElseThrow());
+    }
+
+    @Test
+    void honoursHttp1AndRecordsRequests() throws Exception {
+        var server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", ex -> {
+            ex.sendResponseHeaders(200, 2);
+            ex.getResponseBody().write("ok".getBytes());
+            ex.close();
+        });
+        server.start();
+        try {
+            var registry = new HttpClientRegistry(new HttpConfig(false, false, 5));
+            var req = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/"))
+                    .GET().build();
+            registry.client().send(req, HttpResponse.BodyHandlers.ofString());
+            registry.client().sendAsync(req, HttpResponse.BodyHandlers.ofString()).join();
+
+            var stats = registry.stats();
+            assertEquals(2L, stats.get("requests"));
+            assertEquals(0L, stats.get("failures"));
+            assertEquals(Map.of("127.0.0.1", 2L), stats.get("hosts"));
+            assertEquals(Map.of("HTTP_1_1", 2L), stats.get("versions"));
+        } finally {
+            server.stop(0);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.javaclaw.shared.http;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Flow;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonBodyPublisherTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static byte[] collect(JsonBodyPublisher publisher) {
+        var out = new ByteArrayOutputStream();
+        var completed = new boolean[1];
+        publisher.subscribe(new Flow.Subscriber<>() {
+            Flow.Subscription sub;
+            @Override public void onSubscribe(Flow.Subscription s) { sub = s; s.request(1); }
+            @Override public void onNext(ByteBuffer item) {
+                var b = new byte[item.remaining()];
+                item.get(b);
+                out.writeBytes(b);
+                sub.request(1);
+            }
+            @Override public void onError(Throwable t) { fail(t.toString()); }
+            @Override public void onComplete() { completed[0] = true; }
+        });
+        assertTrue(completed[0]);
+        return out.toByteArray();
+    }
+
+    @Test
+    void matchesObjectMapperOutputAcrossChunks() throws Exception {
+        var big = "工具输出 tool output ".repeat(5_000);
+        var body = Map.of("model", "m", "messages", List.of(Map.of("role", "tool", "content", big)));
+        var expected = MAPPER.writeValueAsBytes(body);
+        assertTrue(expected.length > 3 * JsonBodyPublisher.CHUNK_SIZE);
+
+        var publisher = JsonBodyPublisher.write(MAPPER, gen -> MAPPER.writeValue(gen, body));
+        assertEquals(expected.length, publisher.contentLength());
+        assertArrayEquals(expected, collect(publisher));
+        // HttpClient may subscribe again on retry/redirect
+        assertArrayEquals(expected, collect(publisher));
+    }
+
+    @Test
+    void bodyStaysIntactWhileOtherRequestsAreWritten() throws Exception {
+        var first = JsonBodyPublisher.write(MAPPER, gen -> gen.writeString("a".repeat(40_000)));
+        var expected = collect(first);
+        // A later request must not reuse the first body's chunks, which the client may still be sending.
+        JsonBodyPublisher.write(MAPPER, gen -> gen.writeString("b".repeat(40_000)));
+        assertArrayEquals(expected, collect(first));
+        assertEquals("\"short\"", new String(collect(JsonBodyPublisher.write(MAPPER, gen -> gen.writeString("short")))));
+    }
+}
@@ -0,0 +1,85 @@
+package com.javaclaw.tokenizer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BpeTokenizerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private BpeTokenizer load(Map<String, Integer> vocab) throws IOException {
+        var sb = new StringBuilder();
+        var enc = Base64.getEncoder();
+        vocab.forEach((token, rank) -> sb.append(enc.encodeToString(token.getBytes(StandardCharsets.UTF_8)))
+                .append(' ').append(rank).append('\n'));
+        var file = tempDir.resolve("test.tiktoken");
+        Files.writeString(file, sb);
+        return BpeTokenizer.load(file);
+    }
+
+    private BpeTokenizer abc() throws IOException {
+        var vocab = new LinkedHashMap<String, Integer>();
+        vocab.put("a", 0);
+        vocab.put("b", 1);
+        vocab.put("c", 2);
+        vocab.put(" ", 3);
+        vocab.put("ab", 10);
+        vocab.put("abc", 11);
+        return load(vocab);
+    }
+
+    @Test
+    void loadsVocabularyAndNamesItAfterTheFile() throws IOException {
+        var tokenizer = abc();
+        assertEquals(6, tokenizer.vocabularySize());
+        assertEquals("bpe:test", tokenizer.id());
+    }
+
+    @Test
+    void wholePieceInVocabularyIsOneToken() throws IOException {
+        assertEquals(1, abc().count("abc"));
+    }
+
+    @Test
+    void mergesLowestRankPairsFirst() throws IOException {
+        // abcab -> [ab,c,ab] -> [abc,ab]; "abcab" itself is not a token
+        assertEquals(2, abc().count("abcab"));
+    }
+
+    @Test
+    void leadingSpaceStaysWithItsWordPiece() throws IOException {
+        // " ab" is one pre-token; without a " ab" entry it merges to [" ", "ab"]
+        assertEquals(3, abc().count("ab ab"));
+    }
+
+    @Test
+    void unknownBytesCountOneEach() throws IOException {
+        // "é" is two UTF-8 bytes, neither in the vocabulary
+        assertEquals(2, abc().count("é"));
+    }
+
+    @Test
+    void emptyAndNullAreZero() throws IOException {
+        var tokenizer = abc();
+        assertEquals(0, tokenizer.count(""));
+        assertEquals(0, tokenizer.count(null));
+    }
+
+    @Test
+    void rejectsEmptyVocabulary() throws IOException {
+        var file = tempDir.resolve("empty.tiktoken");
+        Files.writeString(file, "");
+        assertThrows(IOException.class, () -> BpeTokenizer.load(file));
+    }
+}
@@ -0,0 +1,105 @@
+package com.javaclaw.tokenizer;
+
+import com.javaclaw.shared.config.ContextConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenCounterTest {
+
+    /** One token per character, counting how often it is asked. */
+    private static final class CharTokenizer implements Tokenizer {
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public String id() { return "chars"; }
+
+        @Override
+        public int count(String text) {
+            calls.incrementAndGet();
+            return text == null ? 0 : text.length();
+        }
+    }
+
+    @Test
+    void countsMessageOverheadRoleAndContent() {
+        var counter = new TokenCounter(new CharTokenizer(), 100);
+        var msg = Map.<String, Object>of("role", "user", "content", "hello");
+        assertEquals(TokenCounter.PER_MESSAGE + 4 + 5, counter.countMessage(msg));
+        assertEquals(TokenCounter.REPLY_PRIMING + TokenCounter.PER_MESSAGE + 9,
+                counter.countMessages(List.of(msg)));
+    }
+
+    @Test
+    void cachesPerMessageByValue() {
+        var tokenizer = new CharTokenizer();
+        var counter = new TokenCounter(tokenizer, 100);
+        counter.countMessage(Map.of("role", "user", "content", "hello"));
+        int calls = tokenizer.calls.get();
+        counter.countMessage(Map.of("role", "user", "content", "hello"));
+        assertEquals(calls, tokenizer.calls.get());
+        assertEquals(0.5, counter.hitRatio(), 1e-9);
+    }
+
+    @Test
+    void growingConversationOnlyTokenizesNewMessages() {
+        var tokenizer = new CharTokenizer();
+        var counter = new TokenCounter(tokenizer, 100);
+        var first = Map.<String, Object>of("role", "user", "content", "a");
+        var second = Map.<String, Object>of("role", "assistant", "content", "b");
+        counter.countMessages(List.of(first));
+        int calls = tokenizer.calls.get();
+        counter.countMessages(List.of(first, second));
+        assertEquals(calls + 2, tokenizer.calls.get());  // role + content of the new message
+    }
+
+    @Test
+    void countsToolCallsAsJson() {
+        var counter = new TokenCounter(new CharTokenizer(), 100);
+        var plain = Map.<String, Object>of("role", "assistant", "content", "");
+        var withCalls = Map.<String, Object>of("role", "assistant", "content", "",
+                "tool_calls", List.of(Map.of("id", "c1")));
+        assertEquals(counter.countMessage(plain) + "[{\"id\":\"c1\"}]".length(), counter.countMessage(withCalls));
+    }
+
+    @Test
+    void countsToolSchemas() {
+        var counter = new TokenCounter(new CharTokenizer(), 100);
+        assertEquals(0, counter.countTools(null));
+        List<Map<String, Object>> tools = List.of(Map.of("type", "function"));
+        assertEquals("[{\"type\":\"function\"}]".length(), counter.countTools(tools));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed() {
+        var tokenizer = new CharTokenizer();
+        var counter = new TokenCounter(tokenizer, 1);
+        var a = Map.<String, Object>of("content", "a");
+        counter.countMessage(a);
+        counter.countMessage(Map.of("content", "b"));
+        int calls = tokenizer.calls.get();
+        counter.countMessage(a);
+        assertEquals(calls + 1, tokenizer.calls.get());
+    }
+
+    @Test
+    void fallsBackToApproximateWithoutVocabulary() {
+        var config = new ContextConfig(1000, "bpe", "/nonexistent/cl100k_base.tiktoken", 16, 500, 4, false, null, "stable");
+        assertEquals("approximate", TokenCounter.fromConfig(config).tokenizer().id());
+    }
+
+    @Test
+    void approximateCountsAreInTheRightBallpark() {
+        var t = new ApproximateTokenizer();
+        assertEquals(0, t.count(""));
+        assertEquals(1, t.count("word"));
+        assertEquals(2, t.count("hello world"));
+        assertEquals(2, t.count("123456"));
+        assertEquals(3, t.count("a, b"));
+        assertEquals(3, t.count("你好"));
+    }
+}
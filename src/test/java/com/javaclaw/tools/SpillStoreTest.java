@@ -0,0 +1,95 @@
+package com.javaclaw.tools;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpillStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void leavesSmallOutputInline() throws Exception {
+        var store = SpillStore.open(tempDir, 1_000, 200, Duration.ofHours(1));
+        assertEquals("short", store.spill("short"));
+        assertEquals(0, store.stats().spilled());
+    }
+
+    @Test
+    void replacesLargeOutputWithPreviewAndReadsItBack() throws Exception {
+        var store = SpillStore.open(tempDir, 1_000, 200, Duration.ofHours(1));
+        var output = numberedLines(5_000);
+
+        var preview = store.spill(output);
+
+        assertTrue(preview.length() < 500, "preview is " + preview.length() + " chars");
+        assertTrue(preview.startsWith("line 1\n"));
+        assertTrue(preview.endsWith("line 5000"));
+        var handle = handleIn(preview);
+        assertEquals(output.lines().toList(), store.lines(handle));
+        var stats = store.stats();
+        assertEquals(1, stats.spilled());
+        assertTrue(stats.storedBytes() < stats.rawBytes() / 3, "stored compressed");
+    }
+
+    @Test
+    void repeatedOutputIsStoredOnce() throws Exception {
+        var store = SpillStore.open(tempDir, 1_000, 200, Duration.ofHours(1));
+        var output = numberedLines(1_000);
+        assertEquals(store.spill(output), store.spill(output));
+        assertEquals(1, store.stats().spilled());
+    }
+
+    @Test
+    void rejectsUnknownAndMalformedHandles() throws Exception {
+        var store = SpillStore.open(tempDir, 1_000, 200, Duration.ofHours(1));
+        assertNull(store.lines("0123456789abcdef"));
+        assertNull(store.lines("../../etc/passwd"));
+    }
+
+    @Test
+    void dropsExpiredFilesOnOpen() throws Exception {
+        var handle = handleIn(SpillStore.open(tempDir, 1_000, 200, Duration.ofHours(1)).spill(numberedLines(1_000)));
+        Files.setLastModifiedTime(tempDir.resolve(handle + SpillStore.SUFFIX),
+                FileTime.from(Instant.now().minus(Duration.ofHours(2))));
+
+        var reopened = SpillStore.open(tempDir, 1_000, 200, Duration.ofHours(1));
+
+        assertNull(reopened.lines(handle));
+    }
+
+    @Test
+    void dropsExpiredFilesWhenANewOutputIsSpilled() throws Exception {
+        var store = SpillStore.open(tempDir, 1_000, 200, Duration.ofHours(1));
+        var handle = handleIn(store.spill(numberedLines(1_000)));
+        store.lines(handle);
+        Files.setLastModifiedTime(tempDir.resolve(handle + SpillStore.SUFFIX),
+                FileTime.from(Instant.now().minus(Duration.ofHours(2))));
+
+        store.spill(numberedLines(2_000));
+
+        assertFalse(Files.exists(tempDir.resolve(handle + SpillStore.SUFFIX)));
+        assertNull(store.lines(handle), "the cached copy goes too");
+    }
+
+    static String numberedLines(int n) {
+        return IntStream.rangeClosed(1, n).mapToObj(i -> "line " + i).collect(Collectors.joining("\n"));
+    }
+
+    static String handleIn(String preview) {
+        var m = Pattern.compile("handle ([0-9a-f]{16})").matcher(preview);
+        assertTrue(m.find(), preview);
+        return m.group(1);
+    }
+}
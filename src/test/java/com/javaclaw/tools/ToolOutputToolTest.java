@@ -0,0 +1,100 @@
+package com.javaclaw.tools;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ToolOutputToolTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @TempDir
+    Path tempDir;
+
+    private SpillStore store;
+    private ToolOutputTool tool;
+    private String handle;
+    private final ToolContext ctx = new ToolContext("/tmp", "s1", Set.of());
+
+    @BeforeEach
+    void spill() throws Exception {
+        store = SpillStore.open(tempDir, 2_000, 200, Duration.ofHours(1));
+        tool = new ToolOutputTool(store);
+        handle = SpillStoreTest.handleIn(store.spill(SpillStoreTest.numberedLines(5_000)));
+    }
+
+    @Test
+    void readsALineRange() {
+        var result = tool.execute(ctx, MAPPER.createObjectNode()
+                .put("handle", handle).put("from_line", 100).put("lines", 3));
+
+        assertFalse(result.isError());
+        assertEquals("100: line 100\n101: line 101\n102: line 102\n[lines 100-102 of 5000; continue with from_line 103]",
+                result.output());
+    }
+
+    @Test
+    void stopsPagesAtTheSpillThreshold() {
+        var result = tool.execute(ctx, MAPPER.createObjectNode().put("handle", handle).put("lines", 5_000));
+
+        assertTrue(result.output().length() <= store.thresholdChars());
+        assertTrue(result.output().contains("continue with from_line"));
+    }
+
+    @Test
+    void grepsForMatchingLines() {
+        var result = tool.execute(ctx, MAPPER.createObjectNode().put("handle", handle).put("pattern", "line 49\\d\\d$"));
+
+        assertFalse(result.isError());
+        assertTrue(result.output().startsWith("4900: line 4900\n"));
+        assertTrue(result.output().contains("more matches from line 4950"), "capped at 50 matches");
+    }
+
+    @Test
+    void reportsUnknownHandleAndBadPattern() {
+        assertTrue(tool.execute(ctx, MAPPER.createObjectNode().put("handle", "ffffffffffffffff")).isError());
+        assertTrue(tool.execute(ctx, MAPPER.createObjectNode().put("handle", handle).put("pattern", "(")).isError());
+    }
+
+    @Test
+    void pagesThroughASingleHugeLineByCharOffset() {
+        var line = new StringBuilder();
+        for (int i = 0; line.length() < 100_000; i++) line.append("{\"id\":").append(i).append("},");
+        var huge = line.toString();
+        var hugeHandle = SpillStoreTest.handleIn(store.spill(huge));
+
+        var read = new StringBuilder();
+        var next = Pattern.compile("continue with from_line 1 from_char (\\d+)]$");
+        int fromChar = 0;
+        for (int pages = 0; ; pages++) {
+            assertTrue(pages < 1_000, "paging makes progress");
+            var result = tool.execute(ctx, MAPPER.createObjectNode()
+                    .put("handle", hugeHandle).put("from_char", fromChar));
+            assertFalse(result.isError(), result.output());
+            assertTrue(result.output().length() <= store.thresholdChars());
+            var out = result.output();
+            var segments = out.substring(0, out.lastIndexOf('\n') + 1);
+            for (var segment : segments.lines().toList()) read.append(segment.substring(segment.indexOf(": ") + 2));
+            var m = next.matcher(out);
+            if (!m.find()) {
+                assertTrue(out.endsWith("[lines 1-1 of 1]"), out);
+                break;
+            }
+            fromChar = Integer.parseInt(m.group(1));
+        }
+        assertEquals(huge, read.toString());
+
+        var grep = tool.execute(ctx, MAPPER.createObjectNode().put("handle", hugeHandle).put("pattern", "\"id\":5000}"));
+        assertTrue(grep.output().startsWith("1@"), grep.output());
+        assertTrue(grep.output().contains("{\"id\":5000}"));
+        assertTrue(grep.output().length() < 1_000);
+    }
+}